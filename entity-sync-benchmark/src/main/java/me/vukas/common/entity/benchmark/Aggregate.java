@@ -0,0 +1,27 @@
+package me.vukas.common.entity.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//about 5000 fields reached from one root, the shape diffs of large documents have
+public class Aggregate {
+    private long id;
+    private String owner;
+    private List<Line> lines;
+
+    public Aggregate() {
+    }
+
+    public Aggregate(long id, String owner, int lines) {
+        this.id = id;
+        this.owner = owner;
+        this.lines = new ArrayList<Line>(lines);
+        for (int i = 0; i < lines; i++) {
+            this.lines.add(new Line(i));
+        }
+    }
+
+    public List<Line> getLines() {
+        return this.lines;
+    }
+}
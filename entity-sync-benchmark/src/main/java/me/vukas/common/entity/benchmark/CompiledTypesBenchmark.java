@@ -0,0 +1,82 @@
+package me.vukas.common.entity.benchmark;
+
+import me.vukas.common.entity.Name;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.operation.Compare;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//reflective object path against code generated per type, on an aggregate of 200 lines with 2 of them changed
+//patch applies the diff and its reverse, so the patched aggregate is the same before every invocation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledTypesBenchmark {
+    private static final int LINES = 200;
+
+    @Param({"false", "true"})
+    public boolean compileTypes;
+
+    private Diff diff;
+    private Compare compare;
+    private Patch patch;
+    private Aggregate original;
+    private Aggregate copy;
+    private Aggregate revised;
+    private Element<Name, Aggregate> forward;
+    private Element<Name, Aggregate> backward;
+    private Aggregate patched;
+
+    @Setup
+    public void setUp() {
+        this.diff = new Diff.Builder().compileTypes(this.compileTypes).build();
+        this.compare = new Compare.Builder().compileTypes(this.compileTypes).build();
+        this.patch = new Patch.Builder().compileTypes(this.compileTypes).build();
+
+        this.original = new Aggregate(1, "owner", LINES);
+        this.copy = new Aggregate(1, "owner", LINES);
+        this.revised = new Aggregate(1, "owner", LINES);
+        this.revised.getLines().get(10).reprice(99.5);
+        this.revised.getLines().get(150).reprice(0.5);
+
+        this.forward = this.diff.diff(this.original, this.revised);
+        this.backward = this.diff.diff(this.revised, this.original);
+        this.patched = new Aggregate(1, "owner", LINES);
+        if (!this.compare.compare(this.patch.patch(this.patched, this.forward), this.revised)
+                || !this.compare.compare(this.patch.patch(this.patched, this.backward), this.original)) {
+            throw new IllegalStateException("Patched aggregate differs");
+        }
+    }
+
+    @Benchmark
+    public Element<Name, Aggregate> diff() {
+        return this.diff.diff(this.original, this.revised);
+    }
+
+    @Benchmark
+    public boolean compare() {
+        return this.compare.compare(this.original, this.copy);
+    }
+
+    @Benchmark
+    public Aggregate patch() {
+        this.patch.patch(this.patched, this.forward);
+        return this.patch.patch(this.patched, this.backward);
+    }
+}
@@ -0,0 +1,66 @@
+package me.vukas.common.entity.benchmark;
+
+//25 fields of every primitive kind, wrappers and strings, as lines of wide aggregates usually are
+public class Line {
+    private int id;
+    private int row;
+    private int column;
+    private int shelf;
+    private int priority;
+    private long quantity;
+    private long reserved;
+    private double price;
+    private double discount;
+    private double tax;
+    private float weight;
+    private boolean active;
+    private boolean taxable;
+    private char grade;
+    private short bin;
+    private byte flags;
+    private String sku;
+    private String name;
+    private String description;
+    private String currency;
+    private String warehouse;
+    private Integer version;
+    private Long barcode;
+    private Double rating;
+    private Boolean gift;
+
+    public Line() {
+    }
+
+    public Line(int id) {
+        this.id = id;
+        this.row = id / 100;
+        this.column = id % 100;
+        this.shelf = id % 7;
+        this.priority = id % 3;
+        this.quantity = id * 3L;
+        this.reserved = id;
+        this.price = id * 1.25;
+        this.discount = id % 10 / 100.0;
+        this.tax = 0.2;
+        this.weight = id / 4f;
+        this.active = id % 2 == 0;
+        this.taxable = true;
+        this.grade = (char) ('A' + id % 5);
+        this.bin = (short) (id % 1000);
+        this.flags = (byte) id;
+        this.sku = "SKU-" + id;
+        this.name = "Line " + id;
+        this.description = "Description of line " + id;
+        this.currency = "EUR";
+        this.warehouse = "WH-" + id % 4;
+        this.version = 1;
+        this.barcode = 4000000000000L + id;
+        this.rating = id % 5 + 0.5;
+        this.gift = id % 11 == 0;
+    }
+
+    public void reprice(double price) {
+        this.price = price;
+        this.version = this.version + 1;
+    }
+}
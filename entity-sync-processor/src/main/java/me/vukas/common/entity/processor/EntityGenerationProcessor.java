@@ -0,0 +1,82 @@
+package me.vukas.common.entity.processor;
+
+import me.vukas.common.entity.annotation.SyncEntity;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+@SupportedAnnotationTypes("me.vukas.common.entity.annotation.SyncEntity")
+public class EntityGenerationProcessor extends AbstractProcessor {
+    private static final String SERVICE_FILE = "META-INF/services/me.vukas.common.entity.generation.object.ObjectEntityGeneration";
+
+    private final Set<String> generatedClasses = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(SyncEntity.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "SyncEntity can only be used on classes", element);
+                continue;
+            }
+            try {
+                EntityModel model = new EntityModel(this.processingEnv, (TypeElement) element);
+                this.writeSource(model);
+                this.generatedClasses.add(model.getGeneratedQualifiedName());
+            } catch (EntityModel.InvalidEntityException e) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.getElement());
+            } catch (IOException e) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write entity generation: " + e.getMessage(), element);
+            }
+        }
+
+        if (roundEnv.processingOver() && !this.generatedClasses.isEmpty()) {
+            this.writeServiceFile();
+        }
+        return true;
+    }
+
+    private void writeSource(EntityModel model) throws IOException {
+        JavaFileObject file = this.processingEnv.getFiler().createSourceFile(model.getGeneratedQualifiedName(), model.getType());
+        Writer writer = file.openWriter();
+        try {
+            writer.write(new EntityGenerationWriter(model).write());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeServiceFile() {
+        try {
+            FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            Writer writer = file.openWriter();
+            try {
+                for (String generatedClass : this.generatedClasses) {
+                    writer.write(generatedClass);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package me.vukas.common.entity.processor;
+
+import javax.lang.model.type.TypeKind;
+import java.util.List;
+
+//writes ObjectEntityGeneration source mirroring the reflective object path of Diff, Compare and Patch
+class EntityGenerationWriter {
+    private final EntityModel model;
+    private final StringBuilder source = new StringBuilder();
+
+    EntityGenerationWriter(EntityModel model) {
+        this.model = model;
+    }
+
+    String write() {
+        String type = this.model.getTypeName();
+
+        if (!this.model.getPackageName().isEmpty()) {
+            this.line(0, "package " + this.model.getPackageName() + ";");
+            this.line(0, "");
+        }
+        this.line(0, "import me.vukas.common.entity.element.Element;");
+        this.line(0, "import me.vukas.common.entity.element.NodeElement;");
+        this.line(0, "import me.vukas.common.entity.generation.object.ObjectEntityGeneration;");
+        this.line(0, "import me.vukas.common.entity.key.Key;");
+        this.line(0, "import me.vukas.common.entity.operation.Compare;");
+        this.line(0, "import me.vukas.common.entity.operation.Diff;");
+        this.line(0, "import me.vukas.common.entity.operation.Patch;");
+        this.line(0, "");
+        this.line(0, "import java.util.ArrayList;");
+        this.line(0, "import java.util.List;");
+        this.line(0, "");
+        this.line(0, "//generated by entity-sync-processor from " + type);
+        this.line(0, "@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        this.line(0, "public final class " + this.model.getGeneratedSimpleName() + " extends ObjectEntityGeneration<" + type + "> {");
+
+        this.writeDiffFields(type);
+        this.writeGenerateFieldKeys(type);
+        this.writePatchFields(type);
+        this.writeCompareFields(type);
+
+        this.line(0, "}");
+        return this.source.toString();
+    }
+
+    private void writeDiffFields(String type) {
+        List<EntityModel.FieldModel> fields = this.model.getFields();
+        this.line(0, "");
+        this.line(1, "@Override");
+        this.line(1, "public List<Element<?, ?>> diffFields(Diff diff, " + type + " original, " + type + " revised) {");
+        this.line(2, "List<Element<?, ?>> elements = new ArrayList<Element<?, ?>>(" + fields.size() + ");");
+        for (EntityModel.FieldModel field : fields) {
+            String original = field.read("original");
+            String revised = field.read("revised");
+            if (field.isPrimitive()) {
+                this.line(2, "elements.add(this.diffPrimitiveField(\"" + field.getName() + "\", " + field.getTypeName() + ".class, "
+                        + field.getContainerName() + ".class, " + this.primitiveEquals(field, original, revised) + ", " + original + ", " + revised + "));");
+            } else {
+                this.line(2, "elements.add(this.diffField(diff, \"" + field.getName() + "\", " + field.getTypeName() + ".class, "
+                        + field.getContainerName() + ".class, " + original + ", " + revised + "));");
+            }
+        }
+        this.line(2, "return elements;");
+        this.line(1, "}");
+    }
+
+    private void writeGenerateFieldKeys(String type) {
+        List<EntityModel.FieldModel> fields = this.model.getKeyFields();
+        this.line(0, "");
+        this.line(1, "@Override");
+        this.line(1, "public List<Key<?, ?>> generateFieldKeys(Diff diff, " + type + " value) {");
+        this.line(2, "List<Key<?, ?>> keys = new ArrayList<Key<?, ?>>(" + fields.size() + ");");
+        for (EntityModel.FieldModel field : fields) {
+            this.line(2, "keys.add(this.generateFieldKey(diff, \"" + field.getName() + "\", " + field.getTypeName() + ".class, "
+                    + field.getContainerName() + ".class, " + field.read("value") + "));");
+        }
+        this.line(2, "return keys;");
+        this.line(1, "}");
+    }
+
+    private void writePatchFields(String type) {
+        this.line(0, "");
+        this.line(1, "@Override");
+        this.line(1, "public void patchFields(Patch patch, " + type + " original, NodeElement<?, " + type + "> diff) {");
+        this.line(2, "for (Element<?, ?> element : diff.getChildren()) {");
+        this.line(3, "Class container = element.getKey().getContainer();");
+        this.line(3, "Object name = element.getKey().getName();");
+        String prefix = "";
+        for (EntityModel.FieldModel field : this.model.getFields()) {
+            this.line(3, prefix + "if (container == " + field.getContainerName() + ".class && \"" + field.getName() + "\".equals(name)) {");
+            String value = "(" + field.getBoxedTypeName() + ") this.patchField(patch, " + field.read("original") + ", element)";
+            this.line(4, field.write("original", value) + ";");
+            prefix = "} else ";
+        }
+        if (prefix.isEmpty()) {
+            this.line(3, "throw new UnsupportedOperationException(\"Field not found during patch process\");");
+        } else {
+            this.line(3, "} else {");
+            this.line(4, "throw new UnsupportedOperationException(\"Field not found during patch process\");");
+            this.line(3, "}");
+        }
+        this.line(2, "}");
+        this.line(1, "}");
+    }
+
+    private void writeCompareFields(String type) {
+        this.line(0, "");
+        this.line(1, "@Override");
+        this.line(1, "public boolean compareFields(Compare compare, " + type + " entity1, " + type + " entity2) {");
+        for (EntityModel.FieldModel field : this.model.getComparedFields()) {
+            String value1 = field.read("entity1");
+            String value2 = field.read("entity2");
+            if (field.isPrimitive()) {
+                this.line(2, "if (!(" + this.primitiveEquals(field, value1, value2) + ")) {");
+            } else {
+                this.line(2, "if (!this.compareField(compare, " + value1 + ", " + value2 + ")) {");
+            }
+            this.line(3, "return false;");
+            this.line(2, "}");
+        }
+        this.line(2, "return true;");
+        this.line(1, "}");
+    }
+
+    //same semantics as FieldMetadata.equalValues
+    private String primitiveEquals(EntityModel.FieldModel field, String value1, String value2) {
+        if (field.getKind() == TypeKind.DOUBLE) {
+            return "Double.doubleToLongBits(" + value1 + ") == Double.doubleToLongBits(" + value2 + ")";
+        }
+        if (field.getKind() == TypeKind.FLOAT) {
+            return "Float.floatToIntBits(" + value1 + ") == Float.floatToIntBits(" + value2 + ")";
+        }
+        return value1 + " == " + value2;
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent; i++) {
+            this.source.append("    ");
+        }
+        this.source.append(text).append('\n');
+    }
+}
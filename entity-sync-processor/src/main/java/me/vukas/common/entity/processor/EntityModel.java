@@ -0,0 +1,250 @@
+package me.vukas.common.entity.processor;
+
+import me.vukas.common.entity.annotation.SyncEntity;
+import me.vukas.common.entity.annotation.SyncIgnore;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+//fields of one SyncEntity class in the same order as ClassMetadata (declared first, then superclasses)
+class EntityModel {
+    private static final String GENERATION_SUFFIX = "_EntityGeneration";
+
+    private final Elements elements;
+    private final Types types;
+    private final TypeElement type;
+    private final String packageName;
+    private final List<FieldModel> fields = new ArrayList<FieldModel>();
+    private final List<FieldModel> keyFields = new ArrayList<FieldModel>();
+
+    EntityModel(ProcessingEnvironment processingEnv, TypeElement type) {
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.type = type;
+        this.packageName = this.elements.getPackageOf(type).getQualifiedName().toString();
+
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new InvalidEntityException("SyncEntity class can not be private", type);
+        }
+
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (!field.getModifiers().contains(Modifier.STATIC)) {
+                    this.fields.add(new FieldModel(field, current));
+                }
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+
+        String[] keyNames = type.getAnnotation(SyncEntity.class).key();
+        if (keyNames.length == 0) {
+            this.keyFields.addAll(this.fields);
+        } else {
+            for (String keyName : keyNames) {
+                this.keyFields.add(this.findField(keyName));
+            }
+        }
+    }
+
+    private FieldModel findField(String name) {
+        for (FieldModel field : this.fields) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        throw new InvalidEntityException("Key field " + name + " not found in " + this.type.getQualifiedName(), this.type);
+    }
+
+    TypeElement getType() {
+        return this.type;
+    }
+
+    String getPackageName() {
+        return this.packageName;
+    }
+
+    String getTypeName() {
+        return this.erasure(this.type.asType());
+    }
+
+    String getGeneratedSimpleName() {
+        String binaryName = this.elements.getBinaryName(this.type).toString();
+        String simpleName = this.packageName.isEmpty() ? binaryName : binaryName.substring(this.packageName.length() + 1);
+        return simpleName.replace('$', '_') + GENERATION_SUFFIX;
+    }
+
+    String getGeneratedQualifiedName() {
+        return this.packageName.isEmpty() ? this.getGeneratedSimpleName() : this.packageName + "." + this.getGeneratedSimpleName();
+    }
+
+    //fields that take part in diff and patch
+    List<FieldModel> getFields() {
+        List<FieldModel> result = new ArrayList<FieldModel>();
+        for (FieldModel field : this.fields) {
+            if (!field.isIgnored()) {
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+    //fields that identify an element, ignored fields included (same as TypeMetadata)
+    List<FieldModel> getKeyFields() {
+        return this.keyFields;
+    }
+
+    //fields compared for equality, key fields without ignored ones
+    List<FieldModel> getComparedFields() {
+        List<FieldModel> result = new ArrayList<FieldModel>();
+        for (FieldModel field : this.keyFields) {
+            if (!field.isIgnored()) {
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+    private String erasure(TypeMirror typeMirror) {
+        return this.types.erasure(typeMirror).toString();
+    }
+
+    private boolean isAccessible(Element element) {
+        Element current = element;
+        while (current != null && !(current instanceof PackageElement)) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!current.getModifiers().contains(Modifier.PUBLIC)
+                    && !this.elements.getPackageOf(current).getQualifiedName().contentEquals(this.packageName)) {
+                return false;
+            }
+            current = current.getEnclosingElement();
+        }
+        return true;
+    }
+
+    class FieldModel {
+        private final VariableElement field;
+        private final TypeElement declaringType;
+        private final boolean ignored;
+        private final boolean direct;
+        private final ExecutableElement getter;
+        private final ExecutableElement setter;
+
+        private FieldModel(VariableElement field, TypeElement declaringType) {
+            this.field = field;
+            this.declaringType = declaringType;
+            this.ignored = field.getAnnotation(SyncIgnore.class) != null;
+            this.direct = isAccessible(field) && isAccessible(declaringType);
+            this.getter = this.findAccessor(true);
+            this.setter = this.findAccessor(false);
+        }
+
+        private ExecutableElement findAccessor(boolean getter) {
+            String name = this.field.getSimpleName().toString();
+            String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+                if (method.getModifiers().contains(Modifier.STATIC) || !isAccessible(method)) {
+                    continue;
+                }
+                String methodName = method.getSimpleName().toString();
+                if (getter && method.getParameters().isEmpty() && types.isSameType(method.getReturnType(), this.field.asType())
+                        && (methodName.equals("get" + suffix) || (methodName.equals("is" + suffix) && this.field.asType().getKind() == TypeKind.BOOLEAN))) {
+                    return method;
+                }
+                if (!getter && method.getParameters().size() == 1 && methodName.equals("set" + suffix)
+                        && types.isSameType(method.getParameters().get(0).asType(), this.field.asType())) {
+                    return method;
+                }
+            }
+            return null;
+        }
+
+        String getName() {
+            return this.field.getSimpleName().toString();
+        }
+
+        boolean isIgnored() {
+            return this.ignored;
+        }
+
+        boolean isPrimitive() {
+            return this.field.asType().getKind().isPrimitive();
+        }
+
+        TypeKind getKind() {
+            return this.field.asType().getKind();
+        }
+
+        String getTypeName() {
+            return erasure(this.field.asType());
+        }
+
+        String getBoxedTypeName() {
+            if (this.isPrimitive()) {
+                return types.boxedClass(types.getPrimitiveType(this.getKind())).getQualifiedName().toString();
+            }
+            return this.getTypeName();
+        }
+
+        String getContainerName() {
+            return erasure(this.declaringType.asType());
+        }
+
+        String read(String target) {
+            if (this.direct) {
+                return this.qualify(target) + "." + this.getName();
+            }
+            if (this.getter != null) {
+                return target + "." + this.getter.getSimpleName() + "()";
+            }
+            throw new InvalidEntityException("Field " + this.getName() + " is not accessible from generated code and has no getter, mark it with SyncIgnore", this.field);
+        }
+
+        String write(String target, String value) {
+            if (this.direct && !this.field.getModifiers().contains(Modifier.FINAL)) {
+                return this.qualify(target) + "." + this.getName() + " = " + value;
+            }
+            if (this.setter != null) {
+                return target + "." + this.setter.getSimpleName() + "(" + value + ")";
+            }
+            throw new InvalidEntityException("Field " + this.getName() + " can not be written from generated code and has no setter, mark it with SyncIgnore", this.field);
+        }
+
+        //fields of superclasses are read through a cast so shadowed fields resolve to the right declaration
+        private String qualify(String target) {
+            if (this.declaringType.equals(type)) {
+                return target;
+            }
+            return "((" + this.getContainerName() + ") " + target + ")";
+        }
+    }
+
+    static class InvalidEntityException extends RuntimeException {
+        private final Element element;
+
+        InvalidEntityException(String message, Element element) {
+            super(message);
+            this.element = element;
+        }
+
+        Element getElement() {
+            return this.element;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package me.vukas.common.entity.processor;
+
+import me.vukas.common.entity.Name;
+import me.vukas.common.entity.annotation.SyncEntity;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.generation.object.ObjectEntityGeneration;
+import me.vukas.common.entity.operation.Compare;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class EntityGenerationProcessorTests {
+    private static final String ACCOUNT = "package sample;\n"
+            + "import me.vukas.common.entity.annotation.SyncEntity;\n"
+            + "import me.vukas.common.entity.annotation.SyncIgnore;\n"
+            + "import java.util.ArrayList;\n"
+            + "import java.util.List;\n"
+            + "@SyncEntity\n"
+            + "public class Account extends Base {\n"
+            + "    String owner;\n"
+            + "    long balance;\n"
+            + "    List<String> tags = new ArrayList<String>();\n"
+            + "    @SyncIgnore String cache;\n"
+            + "    private double rate;\n"
+            + "    public double getRate() { return this.rate; }\n"
+            + "    public void setRate(double rate) { this.rate = rate; }\n"
+            + "}\n";
+    private static final String BASE = "package sample;\n"
+            + "public class Base {\n"
+            + "    int id;\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void processingSyncEntityShouldGenerateRegisteredEntityGeneration() throws Exception {
+        File output = this.folder.newFolder();
+        List<Diagnostic<? extends JavaFileObject>> errors = this.compile(output, source("sample.Account", ACCOUNT), source("sample.Base", BASE));
+        assertThat(errors.toString(), errors.isEmpty(), is(true));
+
+        assertThat(new File(output, "sample/Account_EntityGeneration.class").isFile(), is(true));
+        String services = new String(Files.readAllBytes(new File(output, "META-INF/services/" + ObjectEntityGeneration.class.getName()).toPath()), StandardCharsets.UTF_8);
+        assertThat(services, is("sample.Account_EntityGeneration\n"));
+    }
+
+    @Test
+    public void patchingWithGeneratedEntityGenerationShouldSkipIgnoredFields() throws Exception {
+        File output = this.folder.newFolder();
+        this.compile(output, source("sample.Account", ACCOUNT), source("sample.Base", BASE));
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toURI().toURL()}, this.getClass().getClassLoader());
+        List<ObjectEntityGeneration<?>> generations = new ArrayList<ObjectEntityGeneration<?>>();
+        for (ObjectEntityGeneration<?> generation : ServiceLoader.load(ObjectEntityGeneration.class, classLoader)) {
+            generations.add(generation);
+        }
+        assertThat(generations.size(), is(1));
+        Class<?> accountClass = classLoader.loadClass("sample.Account");
+        assertThat(generations.get(0).getType() == accountClass, is(true));
+
+        Diff diff = new Diff.Builder().registerObjectEntityGeneration(generations.get(0)).build();
+        Patch patch = new Patch.Builder().registerObjectEntityGeneration(generations.get(0)).build();
+        Compare compare = new Compare.Builder().registerObjectEntityGeneration(generations.get(0)).build();
+
+        Object original = account(accountClass, 1, "owner", 10L, 0.5, "cached", "a");
+        Object revised = account(accountClass, 1, "changed", 20L, 1.5, "other", "a", "b");
+        Element<Name, Object> element = diff.diff(original, revised);
+        assertThat(element.getStatus(), is(Element.Status.MODIFIED));
+        Object patched = patch.patch(account(accountClass, 1, "owner", 10L, 0.5, "cached", "a"), element);
+
+        assertThat(compare.compare(patched, revised), is(true));
+        assertThat(field(patched, "owner"), is((Object) "changed"));
+        assertThat(field(patched, "rate"), is((Object) 1.5));
+        assertThat(field(patched, "tags"), is((Object) Arrays.asList("a", "b")));
+        assertThat(field(patched, "cache"), is((Object) "cached"));    //reflection would have patched it
+        assertThat(diff.diff(original, account(accountClass, 1, "owner", 10L, 0.5, "other", "a")).getStatus(), is(Element.Status.EQUAL));
+        assertThat(new Compare.Builder().build().compare(original, account(accountClass, 1, "owner", 10L, 0.5, "other", "a")), is(false));
+    }
+
+    @Test
+    public void processingInvalidSyncEntitiesShouldReportErrors() throws Exception {
+        String unknownKey = "package sample;\n"
+                + "@me.vukas.common.entity.annotation.SyncEntity(key = {\"code\"})\n"
+                + "public class UnknownKey {\n"
+                + "    int id;\n"
+                + "}\n";
+        String inaccessible = "package sample;\n"
+                + "@me.vukas.common.entity.annotation.SyncEntity\n"
+                + "public class Inaccessible {\n"
+                + "    private int id;\n"
+                + "}\n";
+        String notClass = "package sample;\n"
+                + "@me.vukas.common.entity.annotation.SyncEntity\n"
+                + "public interface NotClass {\n"
+                + "}\n";
+
+        List<Diagnostic<? extends JavaFileObject>> errors = this.compile(this.folder.newFolder(), source("sample.UnknownKey", unknownKey),
+                source("sample.Inaccessible", inaccessible), source("sample.NotClass", notClass));
+        List<String> messages = new ArrayList<String>();
+        for (Diagnostic<? extends JavaFileObject> error : errors) {
+            messages.add(error.getMessage(null));
+        }
+        Collections.sort(messages);
+        assertThat(messages.size(), is(3));
+        assertThat(messages.get(0), containsString("Field id is not accessible from generated code and has no getter"));
+        assertThat(messages.get(1), is("Key field code not found in sample.UnknownKey"));
+        assertThat(messages.get(2), is("SyncEntity can only be used on classes"));
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compile(File output, JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        String classPath = new File(SyncEntity.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath();
+        List<String> options = Arrays.asList("-d", output.getPath(), "-classpath", classPath);
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new EntityGenerationProcessor()));
+        task.call();
+
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic);
+            }
+        }
+        return errors;
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static Object account(Class<?> type, int id, String owner, long balance, double rate, String cache, String... tags) throws Exception {
+        Object account = type.newInstance();
+        setField(account, "id", id);
+        setField(account, "owner", owner);
+        setField(account, "balance", balance);
+        setField(account, "rate", rate);
+        setField(account, "cache", cache);
+        setField(account, "tags", new ArrayList<String>(Arrays.asList(tags)));
+        return account;
+    }
+
+    private static Field findField(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(name)) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        findField(target.getClass(), name).set(target, value);
+    }
+
+    private static Object field(Object target, String name) throws Exception {
+        return findField(target.getClass(), name).get(target);
+    }
+}
@@ -69,6 +69,16 @@ public class Arrays {
         return input;   //if needs no unwrapping, return original
     }
 
+    //same length as wrapCollectionOrMapOrPrimitiveArray would produce, without copying
+    public static int lengthOfCollectionOrMapOrArray(Object input) {
+        if (input instanceof Collection) {
+            return ((Collection) input).size();
+        } else if (input instanceof Map) {
+            return ((Map) input).size();
+        }
+        return Array.getLength(input);
+    }
+
     public static Object[] wrapCollectionOrMapOrPrimitiveArray(Object input) {
         if (input == null) {
             throw new IllegalArgumentException("Parameter 'input' can not be null");
@@ -262,4 +272,110 @@ public class Arrays {
         }
         return (Object[]) array;
     }
+
+    //offset of the first element, relative to the from indexes, which differs in the two primitive arrays of the same type, -1 if all are equal
+    //elements are equal in the same way as their wrappers (floating point values are compared by bits)
+    public static int mismatch(Object array1, int from1, Object array2, int from2, int length) {
+        Class componentType = array1.getClass().getComponentType();
+        if (componentType == byte.class) {
+            byte[] a = (byte[]) array1;
+            byte[] b = (byte[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (a[from1 + i] != b[from2 + i]) {
+                    return i;
+                }
+            }
+        } else if (componentType == short.class) {
+            short[] a = (short[]) array1;
+            short[] b = (short[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (a[from1 + i] != b[from2 + i]) {
+                    return i;
+                }
+            }
+        } else if (componentType == int.class) {
+            int[] a = (int[]) array1;
+            int[] b = (int[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (a[from1 + i] != b[from2 + i]) {
+                    return i;
+                }
+            }
+        } else if (componentType == long.class) {
+            long[] a = (long[]) array1;
+            long[] b = (long[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (a[from1 + i] != b[from2 + i]) {
+                    return i;
+                }
+            }
+        } else if (componentType == float.class) {
+            float[] a = (float[]) array1;
+            float[] b = (float[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (Float.floatToIntBits(a[from1 + i]) != Float.floatToIntBits(b[from2 + i])) {
+                    return i;
+                }
+            }
+        } else if (componentType == double.class) {
+            double[] a = (double[]) array1;
+            double[] b = (double[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (Double.doubleToLongBits(a[from1 + i]) != Double.doubleToLongBits(b[from2 + i])) {
+                    return i;
+                }
+            }
+        } else if (componentType == boolean.class) {
+            boolean[] a = (boolean[]) array1;
+            boolean[] b = (boolean[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (a[from1 + i] != b[from2 + i]) {
+                    return i;
+                }
+            }
+        } else if (componentType == char.class) {
+            char[] a = (char[]) array1;
+            char[] b = (char[]) array2;
+            for (int i = 0; i < length; i++) {
+                if (a[from1 + i] != b[from2 + i]) {
+                    return i;
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Parameter 'array1' must be a primitive Array");
+        }
+        return -1;
+    }
+
+    public static boolean elementEquals(Object array1, int index1, Object array2, int index2) {
+        return mismatch(array1, index1, array2, index2, 1) < 0;
+    }
+
+    public static int hashCodeOfPrimitiveArray(Object primitiveArray) {
+        Class componentType = primitiveArray.getClass().getComponentType();
+        if (componentType == byte.class) {
+            return java.util.Arrays.hashCode((byte[]) primitiveArray);
+        } else if (componentType == short.class) {
+            return java.util.Arrays.hashCode((short[]) primitiveArray);
+        } else if (componentType == int.class) {
+            return java.util.Arrays.hashCode((int[]) primitiveArray);
+        } else if (componentType == long.class) {
+            return java.util.Arrays.hashCode((long[]) primitiveArray);
+        } else if (componentType == float.class) {
+            return java.util.Arrays.hashCode((float[]) primitiveArray);
+        } else if (componentType == double.class) {
+            return java.util.Arrays.hashCode((double[]) primitiveArray);
+        } else if (componentType == boolean.class) {
+            return java.util.Arrays.hashCode((boolean[]) primitiveArray);
+        } else if (componentType == char.class) {
+            return java.util.Arrays.hashCode((char[]) primitiveArray);
+        }
+        throw new IllegalArgumentException("Parameter 'primitiveArray' must be a primitive Array");
+    }
+
+    public static Object copyOfRange(Object array, int from, int to) {
+        Object copy = Array.newInstance(array.getClass().getComponentType(), to - from);
+        System.arraycopy(array, from, copy, 0, to - from);
+        return copy;
+    }
 }
@@ -0,0 +1,119 @@
+package me.vukas.common.base;
+
+//64 bit hashes of primitive array and string contents, for keys that stand in for the whole value when a patch is verified
+//each step is a bijection of the running hash for a given element, so values of the same length that differ in one element
+//never collide, and every element goes through a full avalanche mix, unlike the 31 based polynomial of hashCode
+//where differences in two elements are easy to cancel out
+public class ContentHash {
+    private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    public static long ofPrimitiveArray(Object primitiveArray) {
+        Class componentType = primitiveArray.getClass().getComponentType();
+        if (componentType == byte.class) {
+            byte[] array = (byte[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i += 8) {     //eight elements per step
+                long bits = 0;
+                for (int j = i; j < i + 8 && j < array.length; j++) {
+                    bits = bits << 8 | array[j] & 0xff;
+                }
+                hash = step(hash, bits);
+            }
+            return mix(hash);
+        } else if (componentType == short.class) {
+            short[] array = (short[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i += 4) {
+                long bits = 0;
+                for (int j = i; j < i + 4 && j < array.length; j++) {
+                    bits = bits << 16 | array[j] & 0xffff;
+                }
+                hash = step(hash, bits);
+            }
+            return mix(hash);
+        } else if (componentType == char.class) {
+            char[] array = (char[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i += 4) {
+                long bits = 0;
+                for (int j = i; j < i + 4 && j < array.length; j++) {
+                    bits = bits << 16 | array[j];
+                }
+                hash = step(hash, bits);
+            }
+            return mix(hash);
+        } else if (componentType == int.class) {
+            int[] array = (int[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i++) {
+                hash = step(hash, array[i]);
+            }
+            return mix(hash);
+        } else if (componentType == long.class) {
+            long[] array = (long[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i++) {
+                hash = step(hash, array[i]);
+            }
+            return mix(hash);
+        } else if (componentType == float.class) {
+            float[] array = (float[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i++) {
+                hash = step(hash, Float.floatToIntBits(array[i]));
+            }
+            return mix(hash);
+        } else if (componentType == double.class) {
+            double[] array = (double[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i++) {
+                hash = step(hash, Double.doubleToLongBits(array[i]));
+            }
+            return mix(hash);
+        } else if (componentType == boolean.class) {
+            boolean[] array = (boolean[]) primitiveArray;
+            long hash = start(array.length);
+            for (int i = 0; i < array.length; i++) {
+                hash = step(hash, array[i] ? 1 : 0);
+            }
+            return mix(hash);
+        }
+        throw new IllegalArgumentException("Parameter 'primitiveArray' must be a primitive Array");
+    }
+
+    public static long ofString(String value) {
+        int length = value.length();
+        long hash = start(length);
+        for (int i = 0; i < length; i += 4) {
+            long bits = 0;
+            for (int j = i; j < i + 4 && j < length; j++) {
+                bits = bits << 16 | value.charAt(j);
+            }
+            hash = step(hash, bits);
+        }
+        return mix(hash);
+    }
+
+    //folds the hash for keys that are also looked up by an int fingerprint
+    public static int fold(long hash) {
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    private static long start(int length) {
+        return mix(length + MULTIPLIER);
+    }
+
+    private static long step(long hash, long bits) {
+        return Long.rotateLeft(hash ^ mix(bits), 29) * MULTIPLIER;
+    }
+
+    //finalizer of MurmurHash3, a bijection in which every input bit affects every output bit
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,115 @@
+package me.vukas.common.base;
+
+//replacement for Stack.contains on the path of visited objects, counts by reference so nested visits of the same object are allowed
+public class IdentityCounter {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size;
+    private int peakSize;
+
+    private int indexOf(Object key) {
+        int mask = this.keys.length - 1;
+        int index = IdentityMap.hash(key, mask);
+        while (this.keys[index] != null) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean contains(Object key) {
+        return this.indexOf(IdentityMap.maskNull(key)) >= 0;
+    }
+
+    public void push(Object key) {
+        Object maskedKey = IdentityMap.maskNull(key);
+        int mask = this.keys.length - 1;
+        int index = IdentityMap.hash(maskedKey, mask);
+        while (this.keys[index] != null) {
+            if (this.keys[index] == maskedKey) {
+                this.counts[index]++;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        this.keys[index] = maskedKey;
+        this.counts[index] = 1;
+        if (++this.size > this.peakSize) {
+            this.peakSize = this.size;
+            if (this.size * 2 > this.keys.length) {
+                this.resize();
+            }
+        }
+    }
+
+    public void pop(Object key) {
+        int index = this.indexOf(IdentityMap.maskNull(key));
+        if (index < 0) {
+            throw new IllegalStateException("Object was not pushed");
+        }
+        if (--this.counts[index] == 0) {
+            this.size--;
+            this.delete(index);
+        }
+    }
+
+    private void delete(int index) {
+        int mask = this.keys.length - 1;
+        int free = index;
+        this.keys[free] = null;
+        int next = (free + 1) & mask;
+        while (this.keys[next] != null) {
+            int ideal = IdentityMap.hash(this.keys[next], mask);
+            if (((next - ideal) & mask) >= ((next - free) & mask)) {
+                this.keys[free] = this.keys[next];
+                this.counts[free] = this.counts[next];
+                this.keys[next] = null;
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        Object[] oldKeys = this.keys;
+        int[] oldCounts = this.counts;
+        this.keys = new Object[oldKeys.length * 2];
+        this.counts = new int[oldCounts.length * 2];
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = IdentityMap.hash(oldKeys[i], mask);
+                while (this.keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    int capacity() {
+        return this.keys.length;
+    }
+
+    //the path is usually empty again by the time of clear(), so the peak depth decides whether to shrink
+    public void clear() {
+        int capacity = IdentityMap.capacityFor(this.peakSize);
+        if (this.keys.length > capacity * 2) {
+            this.keys = new Object[capacity];
+            this.counts = new int[capacity];
+        } else if (this.size > 0) {
+            java.util.Arrays.fill(this.keys, null);
+        }
+        this.size = 0;
+        this.peakSize = 0;
+    }
+}
@@ -0,0 +1,166 @@
+package me.vukas.common.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//open addressed map comparing keys by reference, clear() keeps the tables so one instance is reused across operations
+//unless one large operation grew them far beyond what the last operation used
+public class IdentityMap<K, V> {
+    private static final Object NULL_KEY = new Object();
+    private static final int INITIAL_CAPACITY = 32;
+
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+    private int peakSize;
+
+    static int hash(Object key, int mask) {
+        int hash = System.identityHashCode(key);
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9 & mask;
+    }
+
+    //smallest table that holds size keys without growing, with room for the same size again
+    static int capacityFor(int size) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < size * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private int indexOf(Object key) {
+        int mask = this.keys.length - 1;
+        int index = hash(key, mask);
+        while (this.keys[index] != null) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean containsKey(K key) {
+        return this.indexOf(maskNull(key)) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int index = this.indexOf(maskNull(key));
+        return index < 0 ? null : (V) this.values[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Object maskedKey = maskNull(key);
+        int mask = this.keys.length - 1;
+        int index = hash(maskedKey, mask);
+        while (this.keys[index] != null) {
+            if (this.keys[index] == maskedKey) {
+                V previous = (V) this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        this.keys[index] = maskedKey;
+        this.values[index] = value;
+        if (++this.size > this.peakSize) {
+            this.peakSize = this.size;
+            if (this.size * 2 > this.keys.length) {
+                this.resize();
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int index = this.indexOf(maskNull(key));
+        if (index < 0) {
+            return null;
+        }
+        V previous = (V) this.values[index];
+        this.size--;
+        this.delete(index);
+        return previous;
+    }
+
+    //backward shift deletion keeps probe sequences intact without tombstones
+    private void delete(int index) {
+        int mask = this.keys.length - 1;
+        int free = index;
+        this.keys[free] = null;
+        this.values[free] = null;
+        int next = (free + 1) & mask;
+        while (this.keys[next] != null) {
+            int ideal = hash(this.keys[next], mask);
+            if (((next - ideal) & mask) >= ((next - free) & mask)) {
+                this.keys[free] = this.keys[next];
+                this.values[free] = this.values[next];
+                this.keys[next] = null;
+                this.values[next] = null;
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new Object[oldKeys.length * 2];
+        this.values = new Object[oldValues.length * 2];
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = hash(oldKeys[i], mask);
+                while (this.keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<K> keys() {
+        List<K> result = new ArrayList<K>(this.size);
+        for (Object key : this.keys) {
+            if (key != null) {
+                result.add(key == NULL_KEY ? null : (K) key);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    int capacity() {
+        return this.keys.length;
+    }
+
+    public void clear() {
+        int capacity = capacityFor(this.peakSize);
+        if (this.keys.length > capacity * 2) {
+            this.keys = new Object[capacity];
+            this.values = new Object[capacity];
+        } else if (this.size > 0) {
+            java.util.Arrays.fill(this.keys, null);
+            java.util.Arrays.fill(this.values, null);
+        }
+        this.size = 0;
+        this.peakSize = 0;
+    }
+}
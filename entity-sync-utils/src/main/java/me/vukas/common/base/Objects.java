@@ -89,6 +89,10 @@ public class Objects {
                     return null;
                 }
 
+                if (isWrapped(type)) {
+                    return defaultValue(type);
+                }
+
                 int numberOfConstructorParams = Integer.MAX_VALUE;
                 Object[] parameters;
                 Constructor constructor = null;
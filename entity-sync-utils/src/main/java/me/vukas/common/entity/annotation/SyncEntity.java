@@ -0,0 +1,16 @@
+package me.vukas.common.entity.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//classes marked with this annotation get an ObjectEntityGeneration from entity-sync-processor,
+//key fields are resolved like in EntityDefinition (no key fields means value object)
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface SyncEntity {
+    String[] key() default {};
+}
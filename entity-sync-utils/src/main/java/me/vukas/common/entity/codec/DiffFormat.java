@@ -0,0 +1,83 @@
+package me.vukas.common.entity.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//binary diff format: MAGIC, VERSION and flags, then (optionally deflated) diffs each starting with DIFF, and END
+//classes are written by name once per stream and referenced by index after that, fields by their index in ClassMetadata,
+//objects in values and circular keys by their index within one diff
+final class DiffFormat {
+    static final int MAGIC = 0xE5D1;
+    static final int VERSION = 2;
+    static final int FLAG_DEFLATE = 1;
+
+    //lengths and sizes read from a stream are rejected above this, buffers only grow as the data actually arrives
+    static final int MAX_LENGTH = 1 << 26;
+    static final int INITIAL_CAPACITY = 1024;
+
+    static final int END = 0;
+    static final int DIFF = 1;
+
+    //element header is kind << 3 | status ordinal (NULL_STATUS when there is none), followed by key and name
+    static final int ELEMENT_NULL = 0;
+    static final int ELEMENT_NODE = 1;
+    static final int ELEMENT_LEAF = 2;
+    static final int ELEMENT_CIRCULAR_LEAF = 3;     //leaf resolved through a circular key during patch
+    static final int ELEMENT_MAP_ENTRY = 4;
+    static final int ELEMENT_ARRAY_RANGE = 5;
+    static final int ELEMENT_BLOCK_DELTA = 6;
+    static final int NULL_STATUS = 7;
+
+    static final int KEY_NULL = 0;
+    static final int KEY_LEAF = 1;
+    static final int KEY_CIRCULAR_LEAF = 2;
+    static final int KEY_NODE = 3;
+    static final int KEY_ARRAY_NODE = 4;
+    static final int KEY_MAP_NODE = 5;
+    static final int KEY_MAP_ENTRY = 6;
+    static final int KEY_PRIMITIVE_ARRAY = 7;
+    static final int KEY_STRING = 8;
+    static final int KEY_REFERENCE = 9;     //circular key written earlier in the same diff
+    static final int KEY_FINGERPRINT = 10;  //followed by the positions circular references resolve through
+
+    static final int VALUE_NULL = 0;
+    static final int VALUE_FALSE = 1;
+    static final int VALUE_TRUE = 2;
+    static final int VALUE_BYTE = 3;
+    static final int VALUE_SHORT = 4;
+    static final int VALUE_CHAR = 5;
+    static final int VALUE_INT = 6;
+    static final int VALUE_LONG = 7;
+    static final int VALUE_FLOAT = 8;
+    static final int VALUE_DOUBLE = 9;
+    static final int VALUE_STRING = 10;
+    static final int VALUE_ENUM = 11;
+    static final int VALUE_PRIMITIVE_ARRAY = 12;
+    static final int VALUE_ARRAY = 13;
+    static final int VALUE_COLLECTION = 14;
+    static final int VALUE_MAP = 15;
+    static final int VALUE_OBJECT = 16;
+    static final int VALUE_REFERENCE = 17;  //object written earlier in the same diff
+    static final int NAME_FIELD = 18;       //field of the key container, by index
+    static final int NAME_OF_KEY = 19;      //element named the same as its key
+    static final int VALUE_SERIALIZED = 20; //platform object, whose fields are not open to reflection
+
+    static final Map<String, Class> PRIMITIVE_CLASSES = new HashMap<String, Class>();
+
+    static {
+        for (Class type : new Class[]{boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class, void.class}) {
+            PRIMITIVE_CLASSES.put(type.getName(), type);
+        }
+    }
+
+    private DiffFormat() {
+    }
+
+    static boolean isPlatformClass(Class type) {
+        return isPlatformClassName(type.getName());
+    }
+
+    static boolean isPlatformClassName(String name) {
+        return name.startsWith("java.") || name.startsWith("javax.");
+    }
+}
@@ -0,0 +1,553 @@
+package me.vukas.common.entity.codec;
+
+import me.vukas.common.entity.EntityDefinition;
+import me.vukas.common.entity.IgnoredFields;
+import me.vukas.common.entity.Name;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.element.ArrayRangeElement;
+import me.vukas.common.entity.generation.array.element.BlockDeltaElement;
+import me.vukas.common.entity.generation.array.key.ArrayNodeKey;
+import me.vukas.common.entity.generation.array.key.PrimitiveArrayKey;
+import me.vukas.common.entity.generation.map.element.MapEntryNodeElement;
+import me.vukas.common.entity.generation.map.key.MapEntryNodeKey;
+import me.vukas.common.entity.generation.map.key.MapNodeKey;
+import me.vukas.common.entity.generation.string.key.StringKey;
+import me.vukas.common.entity.key.CircularKey;
+import me.vukas.common.entity.key.FingerprintKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.key.LeafKey;
+import me.vukas.common.entity.key.NodeKey;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import static me.vukas.common.base.Objects.createNewObjectOfType;
+import static me.vukas.common.entity.codec.DiffFormat.*;
+
+//reads diffs written by DiffWriter, not thread safe
+public class DiffReader implements Closeable {
+    private final DataInputStream in;
+    private final ClassLoader classLoader;
+    private final MetadataRegistry metadataRegistry;    //fingerprint keys are matched over key fields of its types
+    private final List<Class> classes = new ArrayList<Class>();
+    private boolean ended;
+
+    //state of one diff
+    private final List<Object> objects = new ArrayList<Object>();
+    private final List<CircularKey> circularKeys = new ArrayList<CircularKey>();
+    private final Map<Integer, List<Object>> pendingCircularLeaves = new HashMap<Integer, List<Object>>();
+
+    public DiffReader(InputStream input) throws IOException {
+        this(input, DiffReader.class.getClassLoader());
+    }
+
+    public DiffReader(InputStream input, ClassLoader classLoader) throws IOException {
+        this(input, classLoader, new MetadataRegistry(Collections.<Class, EntityDefinition>emptyMap(), Collections.<Class, IgnoredFields>emptyMap()));
+    }
+
+    public DiffReader(InputStream input, ClassLoader classLoader, MetadataRegistry metadataRegistry) throws IOException {
+        this.classLoader = classLoader;
+        this.metadataRegistry = metadataRegistry;
+        DataInputStream header = new DataInputStream(input);
+        if (header.readUnsignedShort() != MAGIC) {
+            throw new StreamCorruptedException("Not a diff stream");
+        }
+        int version = header.readUnsignedByte();
+        if (version != VERSION) {     //content hashes of keys differ between versions
+            throw new StreamCorruptedException("Unsupported diff format version " + version);
+        }
+        InputStream body = (header.readUnsignedByte() & FLAG_DEFLATE) != 0 ? new InflaterInputStream(input) : input;
+        this.in = new DataInputStream(new BufferedInputStream(body));
+    }
+
+    //next diff of the stream, null after the last one
+    @SuppressWarnings("unchecked")
+    public <N, V> Element<N, V> read() throws IOException {
+        if (this.ended) {
+            return null;
+        }
+        int marker = this.in.readUnsignedByte();
+        if (marker == END) {
+            this.ended = true;
+            return null;
+        }
+        if (marker != DIFF) {
+            throw new StreamCorruptedException("Diff expected");
+        }
+        try {
+            return (Element<N, V>) this.readElement();
+        } finally {
+            this.objects.clear();
+            this.circularKeys.clear();
+            this.pendingCircularLeaves.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Element<?, ?> readElement() throws IOException {
+        int header = this.in.readUnsignedByte();
+        int kind = header >>> 3;
+        if (kind == ELEMENT_NULL) {
+            return null;
+        }
+        Element.Status status = (header & 7) == NULL_STATUS ? null : Element.Status.values()[header & 7];
+        Key key = this.readKey();
+        int nameTag = this.in.readUnsignedByte();
+        Object name = nameTag == NAME_OF_KEY ? key.getName() : this.readName(nameTag, key == null ? null : key.getContainer());
+
+        switch (kind) {
+            case ELEMENT_NODE:
+                int size = this.readLength();
+                List<Element<?, ?>> children = new ArrayList<Element<?, ?>>(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    children.add(this.readElement());
+                }
+                return new NodeElement(name, status, key, children);
+            case ELEMENT_LEAF:
+                return new LeafElement(name, status, key, this.readValue());
+            case ELEMENT_CIRCULAR_LEAF:
+                LeafElement element = new LeafElement(name, status, key, Name.CIRCULAR_REFERENCE);
+                this.registerCircularLeaf(this.readVarint(), element);
+                return element;
+            case ELEMENT_MAP_ENTRY:
+                Element elementKey = this.readElement();
+                return new MapEntryNodeElement(name, status, key, elementKey, this.readElement());
+            case ELEMENT_ARRAY_RANGE:
+                int originalLength = this.readLength();
+                return new ArrayRangeElement(name, status, key, originalLength, this.readValue());
+            case ELEMENT_BLOCK_DELTA:
+                int length = this.readLength();
+                int blockCount = this.readLength();
+                List<BlockDeltaElement.Block> blocks = new ArrayList<BlockDeltaElement.Block>(capacity(blockCount));
+                for (int i = 0; i < blockCount; i++) {
+                    int originalOffset = this.readVarint() - 1;
+                    int blockLength = this.readLength();
+                    blocks.add(originalOffset < 0 ? BlockDeltaElement.Block.insert(this.readValue(), blockLength) : BlockDeltaElement.Block.copy(originalOffset, blockLength));
+                }
+                return new BlockDeltaElement(name, status, key, length, blocks);
+            default:
+                throw new StreamCorruptedException("Unknown element kind " + kind);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Key<?, ?> readKey() throws IOException {
+        int kind = this.in.readUnsignedByte();
+        if (kind == KEY_NULL) {
+            return null;
+        }
+        if (kind == KEY_REFERENCE) {
+            return this.circularKeys.get(this.readVarint());
+        }
+
+        Class type = this.readClass();
+        Class container = this.readClass();
+        Object name = this.readName(this.in.readUnsignedByte(), container);
+        switch (kind) {
+            case KEY_LEAF:
+                return new LeafKey(name, type, container, this.readValue());
+            case KEY_CIRCULAR_LEAF:
+                LeafKey leafKey = new LeafKey(name, type, container, Name.CIRCULAR_REFERENCE);
+                this.registerCircularLeaf(this.readVarint(), leafKey);
+                return leafKey;
+            case KEY_NODE:
+            case KEY_ARRAY_NODE:
+                int id = this.circularKeys.size();
+                this.circularKeys.add(null);    //numbered before its children, as in the writer
+                int length = kind == KEY_ARRAY_NODE ? this.readLength() : 0;
+                int size = this.readLength();
+                List<Key<?, ?>> children = new ArrayList<Key<?, ?>>(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    children.add(this.readKey());
+                }
+                NodeKey nodeKey = kind == KEY_NODE ? new NodeKey(name, type, container, children) : new ArrayNodeKey(name, type, container, children, length);
+                this.circularKeys.set(id, nodeKey);
+                List<Object> pendingLeaves = this.pendingCircularLeaves.remove(id);
+                if (pendingLeaves != null) {
+                    for (Object leaf : pendingLeaves) {
+                        this.registerCircularLeaf(nodeKey, leaf);
+                    }
+                }
+                return nodeKey;
+            case KEY_FINGERPRINT:
+                long fingerprint = this.in.readLong();
+                int[] cuts = new int[this.readLength()];
+                for (int i = 0; i < cuts.length; i++) {
+                    cuts[i] = this.readVarint();
+                }
+                FingerprintKey fingerprintKey = new FingerprintKey(name, type, container, this.metadataRegistry, fingerprint, cuts);
+                this.addCircularKey(fingerprintKey);
+                int referenceCount = this.readLength();
+                for (int i = 0; i < referenceCount; i++) {
+                    int position = this.readVarint();
+                    this.addCircularKey(new FingerprintKey.Reference(fingerprintKey, position, this.readClass()));
+                }
+                return fingerprintKey;
+            case KEY_MAP_NODE:
+                int mapSize = this.readLength();
+                int valueKeyCount = this.readLength();
+                Map<Object, Key<?, ?>> valueKeys = new HashMap<Object, Key<?, ?>>(capacity(valueKeyCount) * 4 / 3 + 1);
+                for (int i = 0; i < valueKeyCount; i++) {
+                    Object mapKey = this.readValue();
+                    valueKeys.put(mapKey, this.readKey());
+                }
+                return new MapNodeKey(name, type, container, valueKeys, mapSize);
+            case KEY_MAP_ENTRY:
+                Key keyKey = this.readKey();
+                return new MapEntryNodeKey(name, type, container, keyKey, this.readKey());
+            case KEY_PRIMITIVE_ARRAY:
+                int arrayLength = this.readLength();
+                return new PrimitiveArrayKey(name, type, container, arrayLength, this.in.readLong());
+            case KEY_STRING:
+                int stringLength = this.readLength();
+                return new StringKey(name, type, container, stringLength, this.in.readLong());
+            default:
+                throw new StreamCorruptedException("Unknown key kind " + kind);
+        }
+    }
+
+    private void addCircularKey(CircularKey key) {
+        int id = this.circularKeys.size();
+        this.circularKeys.add(key);
+        List<Object> pendingLeaves = this.pendingCircularLeaves.remove(id);
+        if (pendingLeaves != null) {
+            for (Object leaf : pendingLeaves) {
+                this.registerCircularLeaf(key, leaf);
+            }
+        }
+    }
+
+    //circular leaves can be written before the key they are resolved through
+    private void registerCircularLeaf(int id, Object leaf) {
+        CircularKey key = id < this.circularKeys.size() ? this.circularKeys.get(id) : null;
+        if (key != null) {
+            this.registerCircularLeaf(key, leaf);
+            return;
+        }
+        List<Object> pendingLeaves = this.pendingCircularLeaves.get(id);
+        if (pendingLeaves == null) {
+            pendingLeaves = new ArrayList<Object>();
+            this.pendingCircularLeaves.put(id, pendingLeaves);
+        }
+        pendingLeaves.add(leaf);
+    }
+
+    private void registerCircularLeaf(CircularKey key, Object leaf) {
+        if (leaf instanceof LeafElement) {
+            key.registerCircularElement((LeafElement) leaf);
+        } else {
+            key.registerCircularKey((LeafKey) leaf);
+        }
+    }
+
+    private Object readName(int tag, Class container) throws IOException {
+        if (tag == NAME_FIELD) {
+            return ClassMetadata.forClass(container).getFields().get(this.readVarint()).getName();
+        }
+        return this.readValue(tag);
+    }
+
+    private Object readValue() throws IOException {
+        return this.readValue(this.in.readUnsignedByte());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readValue(int tag) throws IOException {
+        switch (tag) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_TRUE:
+                return true;
+            case VALUE_BYTE:
+                return this.in.readByte();
+            case VALUE_SHORT:
+                return this.in.readShort();
+            case VALUE_CHAR:
+                return this.in.readChar();
+            case VALUE_INT:
+                return unzigzag(this.readVarint());
+            case VALUE_LONG:
+                return unzigzag(this.readVarlong());
+            case VALUE_FLOAT:
+                return this.in.readFloat();
+            case VALUE_DOUBLE:
+                return this.in.readDouble();
+            case VALUE_STRING:
+                return this.readString();
+            case VALUE_ENUM:
+                Class enumType = this.readClass(Enum.class);
+                return enumType.getEnumConstants()[this.readVarint()];
+            case VALUE_REFERENCE:
+                return this.objects.get(this.readVarint());
+            case VALUE_PRIMITIVE_ARRAY:
+                Class primitiveArrayType = this.readClass();
+                if (primitiveArrayType == null || !ClassMetadata.forClass(primitiveArrayType).isPrimitiveArray()) {
+                    throw new StreamCorruptedException("Primitive array expected");
+                }
+                Object primitiveArray = this.readPrimitiveArray(primitiveArrayType.getComponentType(), this.readLength());
+                this.objects.add(primitiveArray);   //holds no objects, so it gets the same index when it is added after its elements
+                return primitiveArray;
+            case VALUE_ARRAY:
+                Class arrayType = this.readClass(Object[].class);
+                Object[] array = (Object[]) Array.newInstance(arrayType.getComponentType(), this.readLength());
+                this.objects.add(array);
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = this.readValue();
+                }
+                return array;
+            case VALUE_COLLECTION:
+                Collection collection = (Collection) createNewObjectOfType(this.readClass(Collection.class));
+                this.objects.add(collection);
+                int collectionSize = this.readLength();
+                for (int i = 0; i < collectionSize; i++) {
+                    collection.add(this.readValue());
+                }
+                return collection;
+            case VALUE_MAP:
+                Map map = (Map) createNewObjectOfType(this.readClass(Map.class));
+                this.objects.add(map);
+                int mapSize = this.readLength();
+                for (int i = 0; i < mapSize; i++) {
+                    Object mapKey = this.readValue();
+                    map.put(mapKey, this.readValue());
+                }
+                return map;
+            case VALUE_OBJECT:
+                Class type = this.readClass(Object.class);
+                if (type.isArray() || isPlatformClass(type) && Serializable.class.isAssignableFrom(type)) {
+                    throw new StreamCorruptedException("Class " + type.getName() + " is not written field by field");
+                }
+                Object object = createNewObjectOfType(type);
+                this.objects.add(object);
+                for (FieldMetadata field : ClassMetadata.forClass(type).getFields()) {
+                    field.set(object, field.isPrimitive() ? this.readPrimitive(field.getType()) : this.readValue());
+                }
+                return object;
+            case VALUE_SERIALIZED:
+                byte[] bytes = (byte[]) this.readPrimitiveArray(byte.class, this.readLength());
+                ObjectInputStream objectIn = new PlatformObjectInputStream(new ByteArrayInputStream(bytes));
+                try {
+                    Object serialized = objectIn.readObject();
+                    this.objects.add(serialized);
+                    return serialized;
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Class of the diff not found", e);
+                } finally {
+                    objectIn.close();
+                }
+            default:
+                throw new StreamCorruptedException("Unknown value tag " + tag);
+        }
+    }
+
+    //allocates INITIAL_CAPACITY elements at first and doubles while elements arrive, a forged length ends the stream early
+    private Object readPrimitiveArray(Class componentType, int length) throws IOException {
+        Object array = Array.newInstance(componentType, capacity(length));
+        this.readPrimitiveArray(array, 0);
+        for (int filled = Array.getLength(array); filled < length; filled = Array.getLength(array)) {
+            Object grown = Array.newInstance(componentType, Math.min(length, filled * 2));
+            System.arraycopy(array, 0, grown, 0, filled);
+            array = grown;
+            this.readPrimitiveArray(array, filled);
+        }
+        return array;
+    }
+
+    private void readPrimitiveArray(Object array, int from) throws IOException {
+        if (array instanceof byte[]) {
+            this.in.readFully((byte[]) array, from, ((byte[]) array).length - from);
+        } else if (array instanceof boolean[]) {
+            boolean[] values = (boolean[]) array;
+            for (int i = from; i < values.length; i++) {
+                values[i] = this.in.readBoolean();
+            }
+        } else if (array instanceof short[]) {
+            short[] values = (short[]) array;
+            for (int i = from; i < values.length; i++) {
+                values[i] = this.in.readShort();
+            }
+        } else if (array instanceof char[]) {
+            char[] values = (char[]) array;
+            for (int i = from; i < values.length; i++) {
+                values[i] = this.in.readChar();
+            }
+        } else if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            for (int i = from; i < values.length; i++) {
+                values[i] = unzigzag(this.readVarint());
+            }
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            for (int i = from; i < values.length; i++) {
+                values[i] = unzigzag(this.readVarlong());
+            }
+        } else if (array instanceof float[]) {
+            float[] values = (float[]) array;
+            for (int i = from; i < values.length; i++) {
+                values[i] = this.in.readFloat();
+            }
+        } else {
+            double[] values = (double[]) array;
+            for (int i = from; i < values.length; i++) {
+                values[i] = this.in.readDouble();
+            }
+        }
+    }
+
+    private Object readPrimitive(Class type) throws IOException {
+        if (type == boolean.class) {
+            return this.in.readBoolean();
+        } else if (type == byte.class) {
+            return this.in.readByte();
+        } else if (type == short.class) {
+            return this.in.readShort();
+        } else if (type == char.class) {
+            return this.in.readChar();
+        } else if (type == int.class) {
+            return unzigzag(this.readVarint());
+        } else if (type == long.class) {
+            return unzigzag(this.readVarlong());
+        } else if (type == float.class) {
+            return this.in.readFloat();
+        }
+        return this.in.readDouble();
+    }
+
+    private Class readClass() throws IOException {
+        int id = this.readVarint() - 1;
+        if (id < 0) {
+            return null;
+        }
+        if (id < this.classes.size()) {
+            return this.classes.get(id);
+        }
+        if (id > this.classes.size()) {
+            throw new StreamCorruptedException("Unknown class " + id);
+        }
+        String className = this.readString();
+        Class type = PRIMITIVE_CLASSES.get(className);
+        if (type == null) {
+            try {
+                type = Class.forName(className, false, this.classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Class " + className + " of the diff not found", e);
+            }
+        }
+        this.classes.add(type);
+        return type;
+    }
+
+    //class of the given kind, so a stream can not get other classes instantiated in its place
+    private Class readClass(Class supertype) throws IOException {
+        Class type = this.readClass();
+        if (type == null || !supertype.isAssignableFrom(type)) {
+            throw new StreamCorruptedException("Class " + (type == null ? null : type.getName()) + " is not a " + supertype.getName());
+        }
+        return type;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = (byte[]) this.readPrimitiveArray(byte.class, this.readLength());
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readLength() throws IOException {
+        int length = this.readVarint();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new StreamCorruptedException("Length " + (length & 0xFFFFFFFFL) + " out of bounds");
+        }
+        return length;
+    }
+
+    private static int capacity(int length) {
+        return Math.min(length, INITIAL_CAPACITY);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = this.in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private long readVarlong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = this.in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    //serialized values are instances of platform classes only (see DiffWriter), other classes are rejected before they are loaded
+    private static class PlatformObjectInputStream extends ObjectInputStream {
+        PlatformObjectInputStream(InputStream input) throws IOException {
+            super(input);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+            String name = description.getName();
+            int dimensions = 0;
+            while (name.charAt(dimensions) == '[') {
+                dimensions++;
+            }
+            if (dimensions == 0 ? !isPlatformClassName(name)
+                    : name.charAt(dimensions) == 'L' && !isPlatformClassName(name.substring(dimensions + 1, name.length() - 1))) {
+                throw new InvalidClassException(name, "Class can not be deserialized from a diff");
+            }
+            return super.resolveClass(description);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes can not be deserialized from a diff");
+        }
+    }
+}
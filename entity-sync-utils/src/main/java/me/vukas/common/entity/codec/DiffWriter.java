@@ -0,0 +1,507 @@
+package me.vukas.common.entity.codec;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.element.ArrayRangeElement;
+import me.vukas.common.entity.generation.array.element.BlockDeltaElement;
+import me.vukas.common.entity.generation.array.key.ArrayNodeKey;
+import me.vukas.common.entity.generation.array.key.PrimitiveArrayKey;
+import me.vukas.common.entity.generation.map.element.MapEntryNodeElement;
+import me.vukas.common.entity.generation.map.key.MapEntryNodeKey;
+import me.vukas.common.entity.generation.map.key.MapNodeKey;
+import me.vukas.common.entity.generation.string.key.StringKey;
+import me.vukas.common.entity.key.CircularKey;
+import me.vukas.common.entity.key.FingerprintKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.key.LeafKey;
+import me.vukas.common.entity.key.NodeKey;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static me.vukas.common.entity.codec.DiffFormat.*;
+
+//writes diffs in DiffFormat, not thread safe
+public class DiffWriter implements Closeable, Flushable {
+    private final DataOutputStream out;
+    private final Map<Class, Integer> classIds = new HashMap<Class, Integer>();
+    private final Map<Class, Map<String, Integer>> typesToFieldIndexes = new HashMap<Class, Map<String, Integer>>();
+
+    //state of one diff
+    private final IdentityMap<Object, Integer> objectIds = new IdentityMap<Object, Integer>();
+    private final IdentityMap<Object, Integer> circularKeyIds = new IdentityMap<Object, Integer>();
+    private final IdentityMap<Object, Integer> circularLeaves = new IdentityMap<Object, Integer>();
+    private final IdentityMap<Object, Object> writtenKeys = new IdentityMap<Object, Object>();
+
+    public DiffWriter(OutputStream output) throws IOException {
+        this(output, false);
+    }
+
+    public DiffWriter(OutputStream output, boolean deflate) throws IOException {
+        DataOutputStream header = new DataOutputStream(output);
+        header.writeShort(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(deflate ? FLAG_DEFLATE : 0);
+        header.flush();
+        //sync flush lets a reader on the other side decode every flushed diff
+        OutputStream body = deflate ? new DeflaterOutputStream(output, new Deflater(), 8192, true) : output;
+        this.out = new DataOutputStream(new BufferedOutputStream(body));
+    }
+
+    public void write(Element<?, ?> diff) throws IOException {
+        try {
+            this.indexElement(diff);
+            this.out.writeByte(DIFF);
+            this.writeElement(diff);
+        } finally {
+            this.objectIds.clear();
+            this.circularKeyIds.clear();
+            this.circularLeaves.clear();
+            this.writtenKeys.clear();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.writeByte(END);
+        this.out.close();
+    }
+
+    //numbers circular keys in the order they are written, so circular leaves can refer to keys written after them
+    private void indexElement(Element<?, ?> element) {
+        if (element == null) {
+            return;
+        }
+        this.indexKey(element.getKey());
+        if (element instanceof NodeElement) {
+            for (Element<?, ?> child : ((NodeElement<?, ?>) element).getChildren()) {
+                this.indexElement(child);
+            }
+        } else if (element instanceof MapEntryNodeElement) {
+            this.indexElement(((MapEntryNodeElement<?>) element).getElementKey());
+            this.indexElement(((MapEntryNodeElement<?>) element).getElementValue());
+        }
+    }
+
+    private void indexKey(Key<?, ?> key) {
+        if (key instanceof CircularKey) {
+            if (this.circularKeyIds.containsKey(key)) {
+                return;
+            }
+            int id = this.circularKeyIds.size();
+            this.circularKeyIds.put(key, id);
+            for (LeafElement<?, ?> leafElement : ((CircularKey<?, ?>) key).getCircularLeafElements()) {
+                this.circularLeaves.put(leafElement, id);
+            }
+            for (LeafKey<?, ?> leafKey : ((CircularKey<?, ?>) key).getCircularLeafKeys()) {
+                this.circularLeaves.put(leafKey, id);
+            }
+        }
+        if (key instanceof FingerprintKey) {
+            for (FingerprintKey.Reference reference : ((FingerprintKey<?, ?>) key).getReferences()) {
+                this.indexKey(reference);
+            }
+        }
+
+        if (key instanceof NodeKey) {
+            for (Key<?, ?> child : ((NodeKey<?, ?>) key).getChildren()) {
+                this.indexKey(child);
+            }
+        } else if (key instanceof MapNodeKey) {
+            for (Map.Entry<Object, Key<?, ?>> entry : ((MapNodeKey<?, ?>) key).getValueKeys().entrySet()) {
+                this.indexKey(entry.getValue());
+            }
+        } else if (key instanceof MapEntryNodeKey) {
+            this.indexKey(((MapEntryNodeKey<?>) key).getKeyKey());
+            this.indexKey(((MapEntryNodeKey<?>) key).getKeyValue());
+        }
+    }
+
+    private void writeElement(Element<?, ?> element) throws IOException {
+        if (element == null) {
+            this.out.writeByte(ELEMENT_NULL << 3 | NULL_STATUS);
+            return;
+        }
+
+        int status = element.getStatus() == null ? NULL_STATUS : element.getStatus().ordinal();
+        if (element instanceof NodeElement) {
+            this.writeElementHeader(ELEMENT_NODE, status, element);
+            List<Element<?, ?>> children = ((NodeElement<?, ?>) element).getChildren();
+            this.writeVarint(children.size());
+            for (Element<?, ?> child : children) {
+                this.writeElement(child);
+            }
+        } else if (element.getClass() == LeafElement.class) {
+            Integer circularKeyId = this.circularLeaves.get(element);
+            if (circularKeyId != null) {
+                this.writeElementHeader(ELEMENT_CIRCULAR_LEAF, status, element);
+                this.writeVarint(circularKeyId);
+            } else {
+                this.writeElementHeader(ELEMENT_LEAF, status, element);
+                this.writeValue(((LeafElement<?, ?>) element).getValue());
+            }
+        } else if (element instanceof MapEntryNodeElement) {
+            this.writeElementHeader(ELEMENT_MAP_ENTRY, status, element);
+            this.writeElement(((MapEntryNodeElement<?>) element).getElementKey());
+            this.writeElement(((MapEntryNodeElement<?>) element).getElementValue());
+        } else if (element instanceof ArrayRangeElement) {
+            this.writeElementHeader(ELEMENT_ARRAY_RANGE, status, element);
+            this.writeVarint(((ArrayRangeElement<?>) element).getOriginalLength());
+            this.writeValue(((ArrayRangeElement<?>) element).getValues());
+        } else if (element instanceof BlockDeltaElement) {
+            this.writeElementHeader(ELEMENT_BLOCK_DELTA, status, element);
+            BlockDeltaElement<?> blockDelta = (BlockDeltaElement<?>) element;
+            this.writeVarint(blockDelta.getLength());
+            this.writeVarint(blockDelta.getBlocks().size());
+            for (BlockDeltaElement.Block block : blockDelta.getBlocks()) {
+                this.writeVarint(block.isCopy() ? block.getOriginalOffset() + 1 : 0);
+                this.writeVarint(block.getLength());
+                if (!block.isCopy()) {
+                    this.writeValue(block.getValues());
+                }
+            }
+        } else {
+            throw new UnsupportedOperationException("Element type " + element.getClass().getName() + " can not be written");
+        }
+    }
+
+    private void writeElementHeader(int kind, int status, Element<?, ?> element) throws IOException {
+        this.out.writeByte(kind << 3 | status);
+        Key<?, ?> key = element.getKey();
+        this.writeKey(key);
+        if (key != null && (element.getName() == null ? key.getName() == null : element.getName().equals(key.getName()))) {
+            this.out.writeByte(NAME_OF_KEY);
+        } else {
+            this.writeName(element.getName(), key == null ? null : key.getContainer());
+        }
+    }
+
+    private void writeKey(Key<?, ?> key) throws IOException {
+        if (key == null) {
+            this.out.writeByte(KEY_NULL);
+            return;
+        }
+        if (this.writtenKeys.containsKey(key)) {
+            this.out.writeByte(KEY_REFERENCE);
+            this.writeVarint(this.circularKeyIds.get(key));
+            return;
+        }
+
+        Class keyClass = key.getClass();
+        if (keyClass == LeafKey.class) {
+            Integer circularKeyId = this.circularLeaves.get(key);
+            this.writeKeyHeader(circularKeyId == null ? KEY_LEAF : KEY_CIRCULAR_LEAF, key);
+            if (circularKeyId == null) {
+                this.writeValue(((LeafKey<?, ?>) key).getValue());
+            } else {
+                this.writeVarint(circularKeyId);
+            }
+        } else if (keyClass == NodeKey.class || keyClass == ArrayNodeKey.class) {
+            this.writtenKeys.put(key, key);
+            this.writeKeyHeader(keyClass == NodeKey.class ? KEY_NODE : KEY_ARRAY_NODE, key);
+            if (keyClass == ArrayNodeKey.class) {
+                this.writeVarint(((ArrayNodeKey<?, ?>) key).getLength());
+            }
+            List<Key<?, ?>> children = ((NodeKey<?, ?>) key).getChildren();
+            this.writeVarint(children.size());
+            for (Key<?, ?> child : children) {
+                this.writeKey(child);
+            }
+        } else if (keyClass == FingerprintKey.class) {
+            this.writtenKeys.put(key, key);
+            this.writeKeyHeader(KEY_FINGERPRINT, key);
+            this.out.writeLong(((FingerprintKey<?, ?>) key).getFingerprint());
+            int[] cuts = ((FingerprintKey<?, ?>) key).getCuts();
+            this.writeVarint(cuts.length);
+            for (int cut : cuts) {
+                this.writeVarint(cut);
+            }
+            List<FingerprintKey.Reference> references = ((FingerprintKey<?, ?>) key).getReferences();
+            this.writeVarint(references.size());
+            for (FingerprintKey.Reference reference : references) {
+                this.writeVarint(reference.getPosition());
+                this.writeClass(reference.getType());
+            }
+        } else if (keyClass == MapNodeKey.class) {
+            this.writeKeyHeader(KEY_MAP_NODE, key);
+            Map<Object, Key<?, ?>> valueKeys = ((MapNodeKey<?, ?>) key).getValueKeys();
+            this.writeVarint(((MapNodeKey<?, ?>) key).getSize());
+            this.writeVarint(valueKeys.size());
+            for (Map.Entry<Object, Key<?, ?>> entry : valueKeys.entrySet()) {
+                this.writeValue(entry.getKey());
+                this.writeKey(entry.getValue());
+            }
+        } else if (keyClass == MapEntryNodeKey.class) {
+            this.writeKeyHeader(KEY_MAP_ENTRY, key);
+            this.writeKey(((MapEntryNodeKey<?>) key).getKeyKey());
+            this.writeKey(((MapEntryNodeKey<?>) key).getKeyValue());
+        } else if (keyClass == PrimitiveArrayKey.class) {
+            this.writeKeyHeader(KEY_PRIMITIVE_ARRAY, key);
+            this.writeVarint(((PrimitiveArrayKey<?, ?>) key).getLength());
+            this.out.writeLong(((PrimitiveArrayKey<?, ?>) key).getContentHash());
+        } else if (keyClass == StringKey.class) {
+            this.writeKeyHeader(KEY_STRING, key);
+            this.writeVarint(((StringKey<?>) key).getLength());
+            this.out.writeLong(((StringKey<?>) key).getContentHash());
+        } else {
+            throw new UnsupportedOperationException("Key type " + keyClass.getName() + " can not be written");
+        }
+    }
+
+    private void writeKeyHeader(int kind, Key<?, ?> key) throws IOException {
+        this.out.writeByte(kind);
+        this.writeClass(key.getType());
+        this.writeClass(key.getContainer());
+        this.writeName(key.getName(), key.getContainer());
+    }
+
+    //field names are written as their index among fields of the container
+    private void writeName(Object name, Class container) throws IOException {
+        if (name instanceof String && container != null && !isPlatformClass(container)) {
+            Integer fieldIndex = this.getFieldIndexes(container).get(name);
+            if (fieldIndex != null) {
+                this.out.writeByte(NAME_FIELD);
+                this.writeVarint(fieldIndex);
+                return;
+            }
+        }
+        this.writeValue(name);
+    }
+
+    private Map<String, Integer> getFieldIndexes(Class container) {
+        Map<String, Integer> fieldIndexes = this.typesToFieldIndexes.get(container);
+        if (fieldIndexes == null) {
+            fieldIndexes = new HashMap<String, Integer>();
+            List<FieldMetadata> fields = ClassMetadata.forClass(container).getFields();
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).getDeclaringClass() == container) {
+                    fieldIndexes.put(fields.get(i).getName(), i);
+                }
+            }
+            this.typesToFieldIndexes.put(container, fieldIndexes);
+        }
+        return fieldIndexes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            this.out.writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            this.out.writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Byte) {
+            this.out.writeByte(VALUE_BYTE);
+            this.out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            this.out.writeByte(VALUE_SHORT);
+            this.out.writeShort((Short) value);
+        } else if (value instanceof Character) {
+            this.out.writeByte(VALUE_CHAR);
+            this.out.writeChar((Character) value);
+        } else if (value instanceof Integer) {
+            this.out.writeByte(VALUE_INT);
+            this.writeVarint(zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            this.out.writeByte(VALUE_LONG);
+            this.writeVarlong(zigzag((Long) value));
+        } else if (value instanceof Float) {
+            this.out.writeByte(VALUE_FLOAT);
+            this.out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            this.out.writeByte(VALUE_DOUBLE);
+            this.out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            this.out.writeByte(VALUE_STRING);
+            this.writeString((String) value);
+        } else if (value instanceof Enum) {
+            this.out.writeByte(VALUE_ENUM);
+            this.writeClass(((Enum) value).getDeclaringClass());
+            this.writeVarint(((Enum) value).ordinal());
+        } else if (this.objectIds.containsKey(value)) {
+            this.out.writeByte(VALUE_REFERENCE);
+            this.writeVarint(this.objectIds.get(value));
+        } else {
+            this.objectIds.put(value, this.objectIds.size());
+            this.writeObject(value);
+        }
+    }
+
+    //objects are numbered before their content is written, so the content can refer back to them
+    private void writeObject(Object value) throws IOException {
+        Class type = value.getClass();
+        if (ClassMetadata.forClass(type).isPrimitiveArray()) {
+            this.out.writeByte(VALUE_PRIMITIVE_ARRAY);
+            this.writeClass(type);
+            this.writeVarint(Array.getLength(value));
+            this.writePrimitiveArray(value);
+        } else if (type.isArray()) {
+            this.out.writeByte(VALUE_ARRAY);
+            this.writeClass(type);
+            Object[] array = (Object[]) value;
+            this.writeVarint(array.length);
+            for (Object element : array) {
+                this.writeValue(element);
+            }
+        } else if (value instanceof Collection) {
+            this.out.writeByte(VALUE_COLLECTION);
+            this.writeClass(type);
+            Collection<?> collection = (Collection<?>) value;
+            this.writeVarint(collection.size());
+            for (Object element : collection) {
+                this.writeValue(element);
+            }
+        } else if (value instanceof Map) {
+            this.out.writeByte(VALUE_MAP);
+            this.writeClass(type);
+            Map<?, ?> map = (Map<?, ?>) value;
+            this.writeVarint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                this.writeValue(entry.getKey());
+                this.writeValue(entry.getValue());
+            }
+        } else if (isPlatformClass(type) && value instanceof Serializable) {
+            this.out.writeByte(VALUE_SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+            objectOut.writeObject(value);
+            objectOut.close();
+            this.writeVarint(bytes.size());
+            bytes.writeTo(this.out);
+        } else {
+            this.out.writeByte(VALUE_OBJECT);
+            this.writeClass(type);
+            for (FieldMetadata field : ClassMetadata.forClass(type).getFields()) {
+                if (field.isPrimitive()) {
+                    this.writePrimitive(field.getType(), field.get(value));
+                } else {
+                    this.writeValue(field.get(value));
+                }
+            }
+        }
+    }
+
+    private void writePrimitiveArray(Object array) throws IOException {
+        if (array instanceof byte[]) {
+            this.out.write((byte[]) array);
+        } else if (array instanceof boolean[]) {
+            for (boolean value : (boolean[]) array) {
+                this.out.writeBoolean(value);
+            }
+        } else if (array instanceof short[]) {
+            for (short value : (short[]) array) {
+                this.out.writeShort(value);
+            }
+        } else if (array instanceof char[]) {
+            for (char value : (char[]) array) {
+                this.out.writeChar(value);
+            }
+        } else if (array instanceof int[]) {
+            for (int value : (int[]) array) {
+                this.writeVarint(zigzag(value));
+            }
+        } else if (array instanceof long[]) {
+            for (long value : (long[]) array) {
+                this.writeVarlong(zigzag(value));
+            }
+        } else if (array instanceof float[]) {
+            for (float value : (float[]) array) {
+                this.out.writeFloat(value);
+            }
+        } else {
+            for (double value : (double[]) array) {
+                this.out.writeDouble(value);
+            }
+        }
+    }
+
+    //type is known to the reader, so only the value is written
+    private void writePrimitive(Class type, Object value) throws IOException {
+        if (type == boolean.class) {
+            this.out.writeBoolean((Boolean) value);
+        } else if (type == byte.class) {
+            this.out.writeByte((Byte) value);
+        } else if (type == short.class) {
+            this.out.writeShort((Short) value);
+        } else if (type == char.class) {
+            this.out.writeChar((Character) value);
+        } else if (type == int.class) {
+            this.writeVarint(zigzag((Integer) value));
+        } else if (type == long.class) {
+            this.writeVarlong(zigzag((Long) value));
+        } else if (type == float.class) {
+            this.out.writeFloat((Float) value);
+        } else {
+            this.out.writeDouble((Double) value);
+        }
+    }
+
+    private void writeClass(Class type) throws IOException {
+        if (type == null) {
+            this.writeVarint(0);
+            return;
+        }
+        Integer id = this.classIds.get(type);
+        if (id != null) {
+            this.writeVarint(id + 1);
+            return;
+        }
+        id = this.classIds.size();
+        this.classIds.put(type, id);
+        this.writeVarint(id + 1);
+        this.writeString(type.getName());
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.writeVarint(bytes.length);
+        this.out.write(bytes);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            this.out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.out.writeByte(value);
+    }
+
+    private void writeVarlong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            this.out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.out.writeByte((int) value);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,607 @@
+package me.vukas.common.entity.codec;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.Name;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static me.vukas.common.base.Objects.createNewObjectOfType;
+import static me.vukas.common.base.Objects.getWrappedClass;
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+import static me.vukas.common.entity.codec.DiffFormat.isPlatformClass;
+
+//JSON documents as null, Boolean, BigDecimal, String, List and Map, and their conversion from and to java values
+//objects are written field by field (shadowed fields by their first occurrence), other platform classes by toString
+final class Json {
+    private final Reader in;
+    private int next = -2;  //character read ahead, -2 when there is none
+
+    private Json(Reader in) {
+        this.in = in;
+    }
+
+    static Object parse(Reader in) throws IOException {
+        Json json = new Json(in);
+        Object value = json.readValue();
+        if (json.skipWhitespace() != -1) {
+            throw json.malformed("end of document");
+        }
+        return value;
+    }
+
+    private int peek() throws IOException {
+        if (this.next == -2) {
+            this.next = this.in.read();
+        }
+        return this.next;
+    }
+
+    private int read() throws IOException {
+        int c = this.peek();
+        this.next = -2;
+        return c;
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (this.peek() == ' ' || this.peek() == '\t' || this.peek() == '\n' || this.peek() == '\r') {
+            this.read();
+        }
+        return this.peek();
+    }
+
+    private IOException malformed(String expected) throws IOException {
+        int c = this.peek();
+        return new IOException("Malformed JSON, " + expected + " expected but " + (c < 0 ? "end of input" : "'" + (char) c + "'") + " found");
+    }
+
+    private void expect(char expected) throws IOException {
+        if (this.skipWhitespace() != expected) {
+            throw this.malformed("'" + expected + "'");
+        }
+        this.read();
+    }
+
+    private Object readValue() throws IOException {
+        int c = this.skipWhitespace();
+        if (c == '{') {
+            this.read();
+            Map<String, Object> members = new LinkedHashMap<String, Object>();
+            if (this.skipWhitespace() == '}') {
+                this.read();
+                return members;
+            }
+            do {
+                if (this.skipWhitespace() != '"') {
+                    throw this.malformed("member name");
+                }
+                String name = this.readString();
+                this.expect(':');
+                members.put(name, this.readValue());
+            } while (this.readSeparator('}'));
+            return members;
+        } else if (c == '[') {
+            this.read();
+            List<Object> elements = new ArrayList<Object>();
+            if (this.skipWhitespace() == ']') {
+                this.read();
+                return elements;
+            }
+            do {
+                elements.add(this.readValue());
+            } while (this.readSeparator(']'));
+            return elements;
+        } else if (c == '"') {
+            return this.readString();
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            StringBuilder number = new StringBuilder();
+            while (this.peek() == '-' || this.peek() == '+' || this.peek() == '.' || this.peek() == 'e' || this.peek() == 'E'
+                    || (this.peek() >= '0' && this.peek() <= '9')) {
+                number.append((char) this.read());
+            }
+            try {
+                return new BigDecimal(number.toString());
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed JSON number " + number);
+            }
+        } else if (c == 't') {
+            this.readLiteral("true");
+            return Boolean.TRUE;
+        } else if (c == 'f') {
+            this.readLiteral("false");
+            return Boolean.FALSE;
+        } else if (c == 'n') {
+            this.readLiteral("null");
+            return null;
+        }
+        throw this.malformed("value");
+    }
+
+    //true when another element follows, false at the end of the array or object
+    private boolean readSeparator(char end) throws IOException {
+        int c = this.skipWhitespace();
+        this.read();
+        if (c == ',') {
+            return true;
+        } else if (c == end) {
+            return false;
+        }
+        throw new IOException("Malformed JSON, ',' or '" + end + "' expected");
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (this.read() != literal.charAt(i)) {
+                throw new IOException("Malformed JSON, " + literal + " expected");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        this.read();
+        StringBuilder string = new StringBuilder();
+        while (true) {
+            int c = this.read();
+            if (c < 0) {
+                throw new IOException("Malformed JSON, unterminated string");
+            } else if (c == '"') {
+                return string.toString();
+            } else if (c == '\\') {
+                c = this.read();
+                switch (c) {
+                    case 'b':
+                        string.append('\b');
+                        break;
+                    case 'f':
+                        string.append('\f');
+                        break;
+                    case 'n':
+                        string.append('\n');
+                        break;
+                    case 'r':
+                        string.append('\r');
+                        break;
+                    case 't':
+                        string.append('\t');
+                        break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for (int i = 0; i < 4; i++) {
+                            hex[i] = (char) this.read();
+                        }
+                        try {
+                            string.append((char) Integer.parseInt(new String(hex), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Malformed JSON escape \\u" + new String(hex));
+                        }
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        string.append((char) c);
+                        break;
+                    default:
+                        throw new IOException("Malformed JSON escape");
+                }
+            } else {
+                string.append((char) c);
+            }
+        }
+    }
+
+    static void writeString(Writer out, String string) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                out.write(string, start, i - start);
+                start = i + 1;
+                if (c == '"' || c == '\\') {
+                    out.write('\\');
+                    out.write(c);
+                } else if (c == '\n') {
+                    out.write("\\n");
+                } else if (c == '\r') {
+                    out.write("\\r");
+                } else if (c == '\t') {
+                    out.write("\\t");
+                } else {
+                    out.write(String.format("\\u%04x", (int) c));
+                }
+            }
+        }
+        out.write(string, start, string.length() - start);
+        out.write('"');
+    }
+
+    //objects on the current path are tracked, since JSON can not refer back to them
+    static void writeValue(Writer out, Object value) throws IOException {
+        writeValue(out, value, new IdentityMap<Object, Object>());
+    }
+
+    private static void writeValue(Writer out, Object value, IdentityMap<Object, Object> path) throws IOException {
+        if (value == null) {
+            out.write("null");
+        } else if (value == Name.CIRCULAR_REFERENCE) {
+            throw new UnsupportedOperationException("Circular references can not be written as JSON");
+        } else if (value instanceof Boolean) {
+            out.write(value.toString());
+        } else if (value instanceof Number) {
+            boolean finite = !(value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite()))
+                    && !(value instanceof Float && (((Float) value).isNaN() || ((Float) value).isInfinite()));
+            if (finite) {
+                out.write(value instanceof BigDecimal ? ((BigDecimal) value).toString() : value.toString());
+            } else {
+                writeString(out, value.toString());
+            }
+        } else if (value instanceof String || value instanceof Character) {
+            writeString(out, value.toString());
+        } else if (value instanceof Enum) {
+            writeString(out, ((Enum) value).name());
+        } else if (path.containsKey(value)) {
+            throw new UnsupportedOperationException("Circular references can not be written as JSON");
+        } else {
+            path.put(value, value);
+            writeStructure(out, value, path);
+            path.remove(value);
+        }
+    }
+
+    private static void writeStructure(Writer out, Object value, IdentityMap<Object, Object> path) throws IOException {
+        if (value.getClass().isArray()) {
+            out.write('[');
+            for (int i = 0; i < Array.getLength(value); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeValue(out, Array.get(value, i), path);
+            }
+            out.write(']');
+        } else if (value instanceof Collection) {
+            out.write('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeValue(out, element, path);
+            }
+            out.write(']');
+        } else if (value instanceof Map) {
+            out.write('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeString(out, String.valueOf(entry.getKey()));
+                out.write(':');
+                writeValue(out, entry.getValue(), path);
+            }
+            out.write('}');
+        } else if (isPlatformClass(value.getClass())) {
+            writeString(out, value.toString());
+        } else {
+            out.write('{');
+            Set<String> names = new HashSet<String>();
+            for (FieldMetadata field : ClassMetadata.forClass(value.getClass()).getFields()) {
+                if (names.add(field.getName())) {
+                    if (names.size() > 1) {
+                        out.write(',');
+                    }
+                    writeString(out, field.getName());
+                    out.write(':');
+                    writeValue(out, field.get(value), path);
+                }
+            }
+            out.write('}');
+        }
+    }
+
+    //java value as a parsed JSON document, numbers compare by their value
+    static Object toJson(Object value) throws IOException {
+        StringWriter out = new StringWriter();
+        writeValue(out, value);
+        return parse(new StringReader(out.toString()));
+    }
+
+    static boolean equal(Object json1, Object json2) {
+        if (json1 instanceof BigDecimal && json2 instanceof BigDecimal) {
+            return ((BigDecimal) json1).compareTo((BigDecimal) json2) == 0;
+        } else if (json1 instanceof List && json2 instanceof List) {
+            List<?> list1 = (List<?>) json1;
+            List<?> list2 = (List<?>) json2;
+            if (list1.size() != list2.size()) {
+                return false;
+            }
+            for (int i = 0; i < list1.size(); i++) {
+                if (!equal(list1.get(i), list2.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (json1 instanceof Map && json2 instanceof Map) {
+            Map<?, ?> map1 = (Map<?, ?>) json1;
+            Map<?, ?> map2 = (Map<?, ?>) json2;
+            if (map1.size() != map2.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : map1.entrySet()) {
+                if (!map2.containsKey(entry.getKey()) || !equal(entry.getValue(), map2.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return json1 == null ? json2 == null : json1.equals(json2);
+    }
+
+    static Class rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class) ((ParameterizedType) type).getRawType();
+        }
+        return null;
+    }
+
+    //type argument of a parameterized type, null when it is not known
+    static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            return index < arguments.length ? arguments[index] : null;
+        }
+        return null;
+    }
+
+    //JSON document converted to type, like is a value of the same place (or a sibling) which stands in for unknown types
+    @SuppressWarnings("unchecked")
+    static Object toJava(Object json, Type type, Object like) {
+        Class raw = rawClass(type);
+        if ((raw == null || raw == Object.class || raw.isInterface() || Modifier.isAbstract(raw.getModifiers()))
+                && like != null && (raw == null || raw.isInstance(like))) {
+            raw = like.getClass();
+            if (!(type instanceof ParameterizedType)) {
+                type = raw;
+            }
+        }
+
+        if (json == null) {
+            if (raw != null && raw.isPrimitive()) {
+                throw new UnsupportedOperationException("Null can not be converted to " + raw.getName());
+            }
+            return null;
+        }
+        if (raw == null || raw == Object.class) {
+            return json instanceof BigDecimal ? toNumber((BigDecimal) json) : json;
+        }
+
+        raw = getWrappedClass(raw);
+        if (raw == Boolean.class && json instanceof Boolean) {
+            return json;
+        } else if (json instanceof BigDecimal && Number.class.isAssignableFrom(raw)) {
+            return toNumber((BigDecimal) json, raw);
+        } else if (json instanceof String && (raw == String.class || raw == CharSequence.class)) {
+            return json;
+        } else if (json instanceof String && raw == Character.class && ((String) json).length() == 1) {
+            return ((String) json).charAt(0);
+        } else if (json instanceof String && raw.isEnum()) {
+            return Enum.valueOf(raw, (String) json);
+        } else if (json instanceof List && raw.isArray()) {
+            List<Object> elements = (List<Object>) json;
+            Object array = Array.newInstance(raw.getComponentType(), elements.size());
+            Object likeElement = like != null && like.getClass().isArray() && Array.getLength(like) > 0 ? Array.get(like, 0) : null;
+            for (int i = 0; i < elements.size(); i++) {
+                Array.set(array, i, toJava(elements.get(i), raw.getComponentType(), likeElement));
+            }
+            return array;
+        } else if (json instanceof List && Collection.class.isAssignableFrom(raw)) {
+            Collection<Object> collection = (Collection<Object>) createCollection(raw);
+            Object likeElement = like instanceof Collection && !((Collection) like).isEmpty() ? ((Collection) like).iterator().next() : null;
+            for (Object element : (List<Object>) json) {
+                collection.add(toJava(element, typeArgument(type, 0), likeElement));
+            }
+            return collection;
+        } else if (json instanceof Map && Map.class.isAssignableFrom(raw)) {
+            Map<Object, Object> map = (Map<Object, Object>) createMap(raw);
+            Map.Entry likeEntry = like instanceof Map && !((Map) like).isEmpty() ? (Map.Entry) ((Map) like).entrySet().iterator().next() : null;
+            for (Map.Entry<String, Object> member : ((Map<String, Object>) json).entrySet()) {
+                Object mapKey = toMapKey(member.getKey(), typeArgument(type, 0), likeEntry == null ? null : likeEntry.getKey());
+                map.put(mapKey, toJava(member.getValue(), typeArgument(type, 1), likeEntry == null ? null : likeEntry.getValue()));
+            }
+            return map;
+        } else if (json instanceof Map && !isPlatformClass(raw) && !ClassMetadata.forClass(raw).isContainer()) {
+            Object object = createNewObjectOfType(raw);
+            Map<String, Object> members = (Map<String, Object>) json;
+            Set<String> names = new HashSet<String>();
+            for (FieldMetadata field : ClassMetadata.forClass(raw).getFields()) {
+                if (names.add(field.getName()) && members.containsKey(field.getName())) {
+                    field.set(object, toJava(members.get(field.getName()), field.getField().getGenericType(), field.get(object)));
+                }
+            }
+            return object;
+        }
+        throw new UnsupportedOperationException("JSON value can not be converted to " + raw.getName());
+    }
+
+    //map keys are JSON member names, converted to the key type like scalars written as strings
+    static Object toMapKey(String name, Type type, Object like) {
+        Class raw = rawClass(type);
+        if ((raw == null || raw == Object.class) && like != null) {
+            raw = like.getClass();
+        }
+        if (raw == null || raw == Object.class || raw == String.class) {
+            return name;
+        } else if (Number.class.isAssignableFrom(getWrappedClass(raw))) {
+            return toNumber(new BigDecimal(name), getWrappedClass(raw));
+        } else if (getWrappedClass(raw) == Boolean.class) {
+            return Boolean.valueOf(name);
+        }
+        return toJava(name, raw, like);
+    }
+
+    private static Object toNumber(BigDecimal number) {
+        if (number.scale() <= 0 || number.stripTrailingZeros().scale() <= 0) {
+            try {
+                return number.intValueExact();
+            } catch (ArithmeticException e) {
+                try {
+                    return number.longValueExact();
+                } catch (ArithmeticException e2) {
+                    return number.toBigInteger();
+                }
+            }
+        }
+        return number.doubleValue();
+    }
+
+    private static Object toNumber(BigDecimal number, Class type) {
+        if (type == Integer.class) {
+            return number.intValueExact();
+        } else if (type == Long.class) {
+            return number.longValueExact();
+        } else if (type == Short.class) {
+            return number.shortValueExact();
+        } else if (type == Byte.class) {
+            return number.byteValueExact();
+        } else if (type == Double.class) {
+            return number.doubleValue();
+        } else if (type == Float.class) {
+            return number.floatValue();
+        } else if (type == BigInteger.class) {
+            return number.toBigIntegerExact();
+        } else if (type == BigDecimal.class) {
+            return number;
+        }
+        return toNumber(number);
+    }
+
+    private static Collection<?> createCollection(Class type) {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            return (Collection<?>) createNewObjectOfType(type);
+        } else if (SortedSet.class.isAssignableFrom(type)) {
+            return new TreeSet<Object>();
+        } else if (Set.class.isAssignableFrom(type)) {
+            return new LinkedHashSet<Object>();
+        }
+        return new ArrayList<Object>();
+    }
+
+    private static Map<?, ?> createMap(Class type) {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            return (Map<?, ?>) createNewObjectOfType(type);
+        } else if (SortedMap.class.isAssignableFrom(type)) {
+            return new TreeMap<Object, Object>();
+        }
+        return new LinkedHashMap<Object, Object>();
+    }
+
+    static Object copy(Object value) {
+        return copy(value, new IdentityMap<Object, Object>());
+    }
+
+    //copies what a document can change in place: objects, arrays, collections and maps, with their shared references
+    //other platform objects are only ever replaced, so the copy keeps them, fields and containers left null stay null
+    @SuppressWarnings("unchecked")
+    private static Object copy(Object value, IdentityMap<Object, Object> copies) {
+        if (value == null || isStringOrPrimitiveOrWrapped(value.getClass()) || value instanceof Enum) {
+            return value;
+        }
+        Object copy = copies.get(value);
+        if (copy != null) {
+            return copy;
+        }
+        Class type = value.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            copy = Array.newInstance(type.getComponentType(), length);
+            copies.put(value, copy);
+            if (type.getComponentType().isPrimitive()) {
+                System.arraycopy(value, 0, copy, 0, length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    Array.set(copy, i, copy(Array.get(value, i), copies));
+                }
+            }
+        } else if (value instanceof Collection) {
+            Collection<Object> collection = (Collection<Object>) createNewObjectOfType(type);
+            copies.put(value, collection);
+            for (Object element : (Collection<Object>) value) {
+                collection.add(copy(element, copies));
+            }
+            copy = collection;
+        } else if (value instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) createNewObjectOfType(type);
+            copies.put(value, map);
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                map.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+            }
+            copy = map;
+        } else if (isPlatformClass(type)) {
+            return value;
+        } else {
+            copy = createNewObjectOfType(type);
+            copies.put(value, copy);
+            for (FieldMetadata field : ClassMetadata.forClass(type).getFields()) {
+                field.set(copy, field.isPrimitive() ? field.get(value) : copy(field.get(value), copies));
+            }
+        }
+        return copy;
+    }
+
+    //elements of an array or collection as a list, which operations change before the value is rebuilt
+    static List<Object> toList(Object container) {
+        List<Object> elements = new ArrayList<Object>();
+        if (container instanceof Collection) {
+            elements.addAll((Collection<?>) container);
+        } else {
+            for (int i = 0; i < Array.getLength(container); i++) {
+                elements.add(Array.get(container, i));
+            }
+        }
+        return elements;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Object fromList(List<Object> elements, Object container) {
+        if (container instanceof Collection) {
+            Collection<Object> collection = (Collection<Object>) container;
+            collection.clear();
+            collection.addAll(elements);
+            return collection;
+        }
+        Object array = Array.newInstance(container.getClass().getComponentType(), elements.size());
+        Iterator<Object> iterator = elements.iterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            Array.set(array, i, iterator.next());
+        }
+        return array;
+    }
+}
@@ -0,0 +1,254 @@
+package me.vukas.common.entity.codec;
+
+import me.vukas.common.entity.Name;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.operation.Diff;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static me.vukas.common.base.Objects.defaultValue;
+import static me.vukas.common.base.Objects.getWrappedClass;
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+
+//reads RFC 6902 JSON Patch and RFC 7386 JSON merge patch documents as diffs of the object they are applied to
+//the document is applied to a copy of the original, which is then diffed with it, so the diff can be patched with
+//and exported like any other, values are converted to the declared types of fields (or the types of values they replace)
+public class JsonPatchReader {
+    private final Diff diff;
+
+    public JsonPatchReader(Diff diff) {
+        this.diff = diff;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Element<Name, T> read(Reader json, T original) throws IOException {
+        Object document = Json.parse(json);
+        if (!(document instanceof List)) {
+            throw new UnsupportedOperationException("JSON Patch must be an array of operations");
+        }
+        Object revised = Json.copy(original);
+        for (Object operation : (List<Object>) document) {
+            if (!(operation instanceof Map)) {
+                throw new UnsupportedOperationException("JSON Patch operation must be an object");
+            }
+            revised = this.apply(revised, (Map<String, Object>) operation);
+        }
+        return this.diff.diff(original, (T) revised);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Element<Name, T> readMergePatch(Reader json, T original) throws IOException {
+        Object document = Json.parse(json);
+        Object revised = Json.copy(original);
+        Class type = original == null ? null : original.getClass();
+        return this.diff.diff(original, (T) this.merge(revised, type, document));
+    }
+
+    private Object apply(Object document, Map<String, Object> operation) throws IOException {
+        String op = (String) operation.get("op");
+        List<String> path = parsePointer((String) operation.get("path"));
+        if ("add".equals(op) || "replace".equals(op)) {
+            return this.apply(document, document == null ? null : document.getClass(), path, 0, op, operation.get("value"));
+        } else if ("remove".equals(op)) {
+            return this.apply(document, document == null ? null : document.getClass(), path, 0, op, null);
+        } else if ("move".equals(op) || "copy".equals(op)) {
+            List<String> from = parsePointer((String) operation.get("from"));
+            Object value = get(document, from);
+            if ("move".equals(op)) {
+                document = this.apply(document, document.getClass(), from, 0, "remove", null);
+            } else {
+                value = Json.copy(value);
+            }
+            return this.apply(document, document.getClass(), path, 0, "add", new Value(value));
+        } else if ("test".equals(op)) {
+            if (!Json.equal(Json.toJson(get(document, path)), operation.get("value"))) {
+                throw new UnsupportedOperationException("JSON Patch test failed at " + operation.get("path"));
+            }
+            return document;
+        }
+        throw new UnsupportedOperationException("Unknown JSON Patch operation " + op);
+    }
+
+    //reference tokens of a JSON Pointer
+    private static List<String> parsePointer(String pointer) {
+        if (pointer == null) {
+            throw new UnsupportedOperationException("JSON Patch operation without path");
+        }
+        List<String> tokens = new ArrayList<String>();
+        if (pointer.isEmpty()) {
+            return tokens;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new UnsupportedOperationException("JSON Pointer must start with /");
+        }
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    private static Object get(Object document, List<String> path) {
+        Object value = document;
+        for (String token : path) {
+            value = getChild(value, token);
+        }
+        return value;
+    }
+
+    private static Object getChild(Object container, String token) {
+        if (container instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) container;
+            Object mapKey = findMapKey(map, token);
+            if (mapKey == null && !map.containsKey(token)) {
+                throw new UnsupportedOperationException("No member " + token + " in map");
+            }
+            return map.get(mapKey == null ? token : mapKey);
+        } else if (container instanceof Collection || (container != null && container.getClass().isArray())) {
+            List<Object> elements = Json.toList(container);
+            return elements.get(index(token, elements.size() - 1));
+        } else if (container != null && !isStringOrPrimitiveOrWrapped(container.getClass())) {
+            return field(container.getClass(), token).get(container);
+        }
+        throw new UnsupportedOperationException("No member " + token + " in " + container);
+    }
+
+    //existing key written as token, null when there is none
+    private static Object findMapKey(Map<?, ?> map, String token) {
+        if (map.containsKey(token)) {
+            return token;
+        }
+        for (Object mapKey : map.keySet()) {
+            if (String.valueOf(mapKey).equals(token)) {
+                return mapKey;
+            }
+        }
+        return null;
+    }
+
+    private static int index(String token, int max) {
+        int index;
+        try {
+            index = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new UnsupportedOperationException("Invalid array index " + token);
+        }
+        if (index < 0 || index > max) {
+            throw new UnsupportedOperationException("Array index " + token + " out of bounds");
+        }
+        return index;
+    }
+
+    private static FieldMetadata field(Class type, String name) {
+        for (FieldMetadata field : ClassMetadata.forClass(type).getFields()) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        throw new UnsupportedOperationException("No field " + name + " in " + type.getName());
+    }
+
+    //applies the operation under value of type and returns the value, which changes when the operation targets it
+    //or when it is an array which changed its length
+    @SuppressWarnings("unchecked")
+    private Object apply(Object value, Type type, List<String> path, int depth, String op, Object operand) {
+        if (depth == path.size()) {
+            return "remove".equals(op) ? null : toJava(operand, type, value);
+        }
+        String token = path.get(depth);
+        boolean last = depth == path.size() - 1;
+        if (value instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) value;
+            Object mapKey = findMapKey(map, token);
+            Object like = map.isEmpty() ? null : map.entrySet().iterator().next().getKey();
+            if (mapKey == null) {
+                if (!last || !"add".equals(op)) {
+                    throw new UnsupportedOperationException("No member " + token + " in map");
+                }
+                mapKey = Json.toMapKey(token, Json.typeArgument(type, 0), like);
+            }
+            if (last && "remove".equals(op)) {
+                map.remove(mapKey);
+                return map;
+            }
+            Object current = map.get(mapKey);
+            Object likeValue = current != null || map.isEmpty() ? current : map.values().iterator().next();
+            Object child = last ? toJava(operand, Json.typeArgument(type, 1), likeValue) : this.apply(current, Json.typeArgument(type, 1), path, depth + 1, op, operand);
+            map.put(mapKey, child);
+            return map;
+        } else if (value instanceof Collection || (value != null && value.getClass().isArray())) {
+            List<Object> elements = Json.toList(value);
+            Type elementType = value.getClass().isArray() ? value.getClass().getComponentType() : Json.typeArgument(type, 0);
+            if (last && "add".equals(op)) {
+                int index = "-".equals(token) ? elements.size() : index(token, elements.size());
+                elements.add(index, toJava(operand, elementType, elements.isEmpty() ? null : elements.get(0)));
+            } else if (last && "remove".equals(op)) {
+                elements.remove(index(token, elements.size() - 1));
+            } else {
+                int index = index(token, elements.size() - 1);
+                elements.set(index, this.apply(elements.get(index), elementType, path, depth + 1, op, operand));
+            }
+            return Json.fromList(elements, value);
+        } else if (value != null && !isStringOrPrimitiveOrWrapped(value.getClass())) {
+            FieldMetadata field = field(value.getClass(), token);
+            Object child = this.apply(field.get(value), field.getField().getGenericType(), path, depth + 1, op, operand);
+            field.set(value, child == null && field.isPrimitive() ? defaultValue(getWrappedClass(field.getType())) : child);
+            return value;
+        }
+        throw new UnsupportedOperationException("No member " + token + " in " + value);
+    }
+
+    //operand of add and replace is a JSON value, moved and copied values are java values already
+    private static Object toJava(Object operand, Type type, Object like) {
+        return operand instanceof Value ? ((Value) operand).value : Json.toJava(operand, type, like);
+    }
+
+    //members of JSON objects are merged into objects and maps, null removes them, other values replace the target
+    @SuppressWarnings("unchecked")
+    private Object merge(Object target, Type type, Object patch) {
+        if (!(patch instanceof Map) || target == null || target instanceof Collection || target.getClass().isArray()
+                || isStringOrPrimitiveOrWrapped(target.getClass())) {
+            return Json.toJava(patch, type, target);
+        }
+        Map<String, Object> members = (Map<String, Object>) patch;
+        if (target instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) target;
+            for (Map.Entry<String, Object> member : members.entrySet()) {
+                Object mapKey = findMapKey(map, member.getKey());
+                if (member.getValue() == null) {
+                    if (mapKey != null) {
+                        map.remove(mapKey);
+                    }
+                    continue;
+                }
+                Object like = map.isEmpty() ? null : map.keySet().iterator().next();
+                if (mapKey == null) {
+                    mapKey = Json.toMapKey(member.getKey(), Json.typeArgument(type, 0), like);
+                }
+                map.put(mapKey, this.merge(map.get(mapKey), Json.typeArgument(type, 1), member.getValue()));
+            }
+            return map;
+        }
+        for (Map.Entry<String, Object> member : members.entrySet()) {
+            FieldMetadata field = field(target.getClass(), member.getKey());
+            Object value = member.getValue() == null ? null : this.merge(field.get(target), field.getField().getGenericType(), member.getValue());
+            field.set(target, value == null && field.isPrimitive() ? defaultValue(getWrappedClass(field.getType())) : value);
+        }
+        return target;
+    }
+
+    private static class Value {
+        private final Object value;
+
+        private Value(Object value) {
+            this.value = value;
+        }
+    }
+}
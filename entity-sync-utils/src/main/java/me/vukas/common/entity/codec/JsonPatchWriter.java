@@ -0,0 +1,374 @@
+package me.vukas.common.entity.codec;
+
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.BlockDelta;
+import me.vukas.common.entity.generation.array.element.ArrayRangeElement;
+import me.vukas.common.entity.generation.array.element.BlockDeltaElement;
+import me.vukas.common.entity.generation.array.key.ArrayNodeKey;
+import me.vukas.common.entity.generation.array.key.PrimitiveArrayKey;
+import me.vukas.common.entity.generation.map.key.MapNodeKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.operation.Patch;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static me.vukas.common.base.Arrays.copyOfRange;
+import static me.vukas.common.base.Arrays.elementEquals;
+import static me.vukas.common.base.Arrays.mismatch;
+
+//writes diffs as RFC 6902 JSON Patch or RFC 7386 JSON merge patch documents, operations are written while the diff
+//is walked, without building the document first, not thread safe
+//JSON Patch is written from the diff and the original it was made from, which block deltas of strings and large byte
+//or char arrays and maps diffed by their entries are applied to, circular references can not be written
+//merge patch writes changed values in full and takes them from the revised object
+public class JsonPatchWriter implements Closeable, Flushable {
+    private static final Object NO_ORIGINAL = new Object();
+
+    private final Writer out;
+    private final Patch patch = new Patch.Builder().build();
+    private boolean firstOperation;
+
+    public JsonPatchWriter(Writer out) {
+        this.out = out;
+    }
+
+    //for diffs without block deltas and maps diffed by their entries
+    public void writePatch(Element<?, ?> diff) throws IOException {
+        this.writePatch(diff, NO_ORIGINAL);
+    }
+
+    public void writePatch(Element<?, ?> diff, Object original) throws IOException {
+        this.out.write('[');
+        this.firstOperation = true;
+        this.writeOperations(diff, "", original);
+        this.out.write(']');
+        this.out.flush();
+    }
+
+    public void writeMergePatch(Element<?, ?> diff, Object revised) throws IOException {
+        if (diff.getStatus() == Element.Status.EQUAL) {
+            this.out.write("{}");
+        } else {
+            this.writeMerge(diff, revised);
+        }
+        this.out.flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    //JSON Pointer of a child, ~ and / are escaped in the name
+    private static String childPath(String path, Object name) {
+        return path + "/" + String.valueOf(name).replace("~", "~0").replace("/", "~1");
+    }
+
+    private static boolean isUnchanged(Element<?, ?> element) {
+        return element.getStatus() == Element.Status.EQUAL || element.getStatus() == Element.Status.EQUAL_MOVED;
+    }
+
+    //moves, additions and deletions are written by the parent, which knows the indexes
+    //original is the value the element was diffed from, NO_ORIGINAL when it is not known
+    private void writeOperations(Element<?, ?> element, String path, Object original) throws IOException {
+        if (isUnchanged(element)) {
+            return;
+        }
+        if (element.getClass() == LeafElement.class) {
+            this.writeOperation("replace", path, null, ((LeafElement<?, ?>) element).getValue(), true);
+            return;
+        }
+        if (element instanceof BlockDeltaElement) {
+            this.writeBlockDeltaOperations((BlockDeltaElement<?>) element, path, requireOriginal(element, original));
+            return;
+        }
+        if (!(element instanceof NodeElement)) {
+            throw new UnsupportedOperationException("Element " + element.getClass().getSimpleName() + " can not be written as JSON Patch");
+        }
+
+        Key<?, ?> key = element.getKey();
+        List<Element<?, ?>> children = ((NodeElement<?, ?>) element).getChildren();
+        if (key instanceof ArrayNodeKey && Map.class.isAssignableFrom(key.getType())) {
+            this.writeEntryMapOperations(element, path, requireOriginal(element, original));
+        } else if (key instanceof ArrayNodeKey) {
+            this.writeArrayOperations((ArrayNodeKey<?, ?>) key, children, path, original);
+        } else if (key instanceof MapNodeKey) {
+            this.writeMapOperations(children, path, original);
+        } else if (key instanceof PrimitiveArrayKey) {
+            this.writeRangeOperations(children, path);
+        } else {
+            for (Element<?, ?> child : children) {
+                Object childOriginal = original == NO_ORIGINAL || original == null ? original : child.getKey().getFieldMetadata().get(original);
+                this.writeOperations(child, childPath(path, child.getName()), childOriginal);
+            }
+        }
+    }
+
+    private static Object requireOriginal(Element<?, ?> element, Object original) {
+        if (original == NO_ORIGINAL) {
+            throw new UnsupportedOperationException("Element " + element.getClass().getSimpleName() + " of " + element.getKey().getType().getName()
+                    + " can only be written as JSON Patch with the original it was diffed from");
+        }
+        if (!((Key) element.getKey()).match(original)) {
+            throw new UnsupportedOperationException("Key does not match");
+        }
+        return original;
+    }
+
+    //strings are replaced, arrays are rebuilt and written as the range between their common prefix and suffix
+    private void writeBlockDeltaOperations(BlockDeltaElement<?> element, String path, Object original) throws IOException {
+        if (original instanceof String) {
+            this.writeOperation("replace", path, null, new String((char[]) BlockDelta.patch(((String) original).toCharArray(), element)), true);
+            return;
+        }
+        Object revised = BlockDelta.patch(original, element);
+        int originalLength = Array.getLength(original);
+        int revisedLength = Array.getLength(revised);
+        int prefix = mismatch(original, 0, revised, 0, Math.min(originalLength, revisedLength));
+        if (prefix < 0) {
+            prefix = Math.min(originalLength, revisedLength);
+        }
+        int suffix = 0;
+        while (suffix < originalLength - prefix && suffix < revisedLength - prefix
+                && elementEquals(original, originalLength - suffix - 1, revised, revisedLength - suffix - 1)) {
+            suffix++;
+        }
+        this.writeRange(path, prefix, originalLength - prefix - suffix, copyOfRange(revised, prefix, revisedLength - suffix));
+    }
+
+    //member names of entries are their keys as strings, entries are removed and added again with their revised values
+    @SuppressWarnings("unchecked")
+    private void writeEntryMapOperations(Element<?, ?> element, String path, Object original) throws IOException {
+        Map<Object, Object> revised = this.patch.patch((Map<Object, Object>) Json.copy(original), (Element<?, Map<Object, Object>>) element);
+        Map<String, Object> originalMembers = members((Map<Object, Object>) original);
+        Map<String, Object> revisedMembers = members(revised);
+        for (String name : originalMembers.keySet()) {
+            if (!revisedMembers.containsKey(name)) {
+                this.writeOperation("remove", childPath(path, name), null, null, false);
+            }
+        }
+        for (Map.Entry<String, Object> member : revisedMembers.entrySet()) {
+            if (!originalMembers.containsKey(member.getKey())
+                    || !Json.equal(Json.toJson(originalMembers.get(member.getKey())), Json.toJson(member.getValue()))) {
+                this.writeOperation("add", childPath(path, member.getKey()), null, member.getValue(), true);
+            }
+        }
+    }
+
+    private static Map<String, Object> members(Map<Object, Object> map) {
+        Map<String, Object> members = new LinkedHashMap<String, Object>();
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            members.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return members;
+    }
+
+    //deletions are written before additions, since a value that changed its class is deleted and added under one key
+    private void writeMapOperations(List<Element<?, ?>> children, String path, Object original) throws IOException {
+        for (Element<?, ?> child : children) {
+            if (child.getStatus() == Element.Status.DELETED) {
+                this.writeOperation("remove", childPath(path, child.getName()), null, null, false);
+            }
+        }
+        for (Element<?, ?> child : children) {
+            if (child.getStatus() == Element.Status.ADDED) {
+                this.writeOperation("add", childPath(path, child.getName()), null, valueOf(child), true);
+            } else if (child.getStatus() != Element.Status.DELETED) {
+                Object childOriginal = original == NO_ORIGINAL || original == null ? original : ((Map<?, ?>) original).get(child.getName());
+                this.writeOperations(child, childPath(path, child.getName()), childOriginal);
+            }
+        }
+    }
+
+    //deleted elements are removed from the end, then the revised array is built from the start by adding elements and
+    //moving matched ones to their revised index, so every operation leaves the elements before it in place
+    //elements missing from a sparse diff are unchanged and keep their index
+    private void writeArrayOperations(ArrayNodeKey<?, ?> key, List<Element<?, ?>> children, String path, Object original) throws IOException {
+        List<Object> originalElements = original == NO_ORIGINAL || original == null ? null : Json.toList(original);
+        int length = key.getLength();
+        boolean[] deleted = new boolean[length];
+        boolean[] listed = new boolean[length];
+        boolean moved = false;
+        int revisedLength = length;
+        for (Element<?, ?> child : children) {
+            if (child.getStatus() == Element.Status.DELETED) {
+                deleted[(Integer) child.getKey().getName()] = true;
+                revisedLength--;
+            } else if (child.getStatus() == Element.Status.ADDED) {
+                revisedLength++;
+            } else {
+                listed[(Integer) child.getKey().getName()] = true;
+                moved |= child.getStatus() == Element.Status.EQUAL_MOVED || child.getStatus() == Element.Status.MODIFIED_MOVED;
+            }
+        }
+
+        int[] originalIndexes = new int[revisedLength];     //-1 for added elements
+        Element<?, ?>[] revisedElements = new Element<?, ?>[revisedLength];
+        Arrays.fill(originalIndexes, -2);
+        for (Element<?, ?> child : children) {
+            if (child.getStatus() != Element.Status.DELETED) {
+                int j = (Integer) child.getName();
+                originalIndexes[j] = child.getStatus() == Element.Status.ADDED ? -1 : (Integer) child.getKey().getName();
+                revisedElements[j] = child;
+            }
+        }
+        for (int i = 0; i < length && i < revisedLength; i++) {
+            if (!deleted[i] && !listed[i]) {
+                originalIndexes[i] = i;
+            }
+        }
+
+        for (int i = length - 1; i >= 0; i--) {
+            if (deleted[i]) {
+                this.writeOperation("remove", childPath(path, i), null, null, false);
+            }
+        }
+
+        List<Integer> current = null;   //original indexes in their current order, only tracked when elements move
+        if (moved) {
+            current = new ArrayList<Integer>(revisedLength);
+            for (int i = 0; i < length; i++) {
+                if (!deleted[i]) {
+                    current.add(i);
+                }
+            }
+        }
+
+        for (int j = 0; j < revisedLength; j++) {
+            if (originalIndexes[j] == -2) {
+                throw new UnsupportedOperationException("Array diff does not cover revised index " + j);
+            }
+            if (originalIndexes[j] == -1) {
+                this.writeOperation("add", childPath(path, j), null, valueOf(revisedElements[j]), true);
+                if (current != null) {
+                    current.add(j, -1);
+                }
+                continue;
+            }
+            if (current != null && current.get(j) != originalIndexes[j]) {
+                int from = current.indexOf(originalIndexes[j]);
+                this.writeOperation("move", childPath(path, j), childPath(path, from), null, false);
+                current.add(j, current.remove(from));
+            }
+            if (revisedElements[j] != null) {
+                Object childOriginal = originalElements == null ? original : originalElements.get(originalIndexes[j]);
+                this.writeOperations(revisedElements[j], childPath(path, j), childOriginal);
+            }
+        }
+    }
+
+    //ranges are written from the last one, so indexes of the ones before stay valid
+    private void writeRangeOperations(List<Element<?, ?>> children, String path) throws IOException {
+        for (int r = children.size() - 1; r >= 0; r--) {
+            ArrayRangeElement<?> range = (ArrayRangeElement<?>) children.get(r);
+            this.writeRange(path, (Integer) range.getName(), range.getOriginalLength(), range.getValues());
+        }
+    }
+
+    //originalLength elements from start are replaced by values
+    private void writeRange(String path, int start, int originalLength, Object values) throws IOException {
+        int revisedLength = Array.getLength(values);
+        for (int k = 0; k < Math.min(originalLength, revisedLength); k++) {
+            this.writeOperation("replace", childPath(path, start + k), null, Array.get(values, k), true);
+        }
+        for (int k = originalLength; k < revisedLength; k++) {
+            this.writeOperation("add", childPath(path, start + k), null, Array.get(values, k), true);
+        }
+        for (int k = revisedLength; k < originalLength; k++) {
+            this.writeOperation("remove", childPath(path, start + revisedLength), null, null, false);
+        }
+    }
+
+    private static Object valueOf(Element<?, ?> element) {
+        if (element.getClass() != LeafElement.class) {
+            throw new UnsupportedOperationException("Element " + element.getClass().getSimpleName() + " can not be written as JSON value");
+        }
+        return ((LeafElement<?, ?>) element).getValue();
+    }
+
+    private void writeOperation(String op, String path, String from, Object value, boolean withValue) throws IOException {
+        if (!this.firstOperation) {
+            this.out.write(',');
+        }
+        this.firstOperation = false;
+        this.out.write("{\"op\":");
+        Json.writeString(this.out, op);
+        if (from != null) {
+            this.out.write(",\"from\":");
+            Json.writeString(this.out, from);
+        }
+        this.out.write(",\"path\":");
+        Json.writeString(this.out, path);
+        if (withValue) {
+            this.out.write(",\"value\":");
+            Json.writeValue(this.out, value);
+        }
+        this.out.write('}');
+    }
+
+    //objects and keyed maps are written member by member, everything else changed is written in full
+    private void writeMerge(Element<?, ?> element, Object revised) throws IOException {
+        if (revised == null || !(element instanceof NodeElement)) {
+            Json.writeValue(this.out, revised);
+            return;
+        }
+        Key<?, ?> key = element.getKey();
+        List<Element<?, ?>> children = ((NodeElement<?, ?>) element).getChildren();
+        if (key instanceof MapNodeKey) {
+            Map<?, ?> revisedMap = (Map<?, ?>) revised;
+            this.out.write('{');
+            boolean first = true;
+            for (Element<?, ?> child : children) {
+                if (isUnchanged(child) || (child.getStatus() == Element.Status.DELETED && revisedMap.containsKey(child.getName()))) {
+                    continue;
+                }
+                first = this.writeMember(String.valueOf(child.getName()), first);
+                if (child.getStatus() == Element.Status.DELETED) {
+                    this.out.write("null");
+                } else if (child.getStatus() == Element.Status.ADDED) {
+                    Json.writeValue(this.out, revisedMap.get(child.getName()));
+                } else {
+                    this.writeMerge(child, revisedMap.get(child.getName()));
+                }
+            }
+            this.out.write('}');
+        } else if (key instanceof ArrayNodeKey || key instanceof PrimitiveArrayKey) {
+            Json.writeValue(this.out, revised);
+        } else {
+            this.out.write('{');
+            boolean first = true;
+            for (Element<?, ?> child : children) {
+                if (!isUnchanged(child)) {
+                    first = this.writeMember((String) child.getName(), first);
+                    this.writeMerge(child, child.getKey().getFieldMetadata().get(revised));
+                }
+            }
+            this.out.write('}');
+        }
+    }
+
+    private boolean writeMember(String name, boolean first) throws IOException {
+        if (!first) {
+            this.out.write(',');
+        }
+        Json.writeString(this.out, name);
+        this.out.write(':');
+        return false;
+    }
+}
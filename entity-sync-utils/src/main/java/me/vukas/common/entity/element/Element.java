@@ -29,6 +29,11 @@ public abstract class Element<N, V> {
         return key;
     }
 
+    //element detached from the diffed objects, lazily diffed elements compute the rest of their children
+    public Element<N, V> materialize() {
+        return this;
+    }
+
     public enum Status {
         EQUAL,
         EQUAL_MOVED,
@@ -0,0 +1,364 @@
+package me.vukas.common.entity.generation.array;
+
+import me.vukas.common.entity.operation.Compare;
+import me.vukas.common.entity.operation.Diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+//matches original elements to revised ones
+//sorted collections are paired by their comparator in a single merge-join pass
+//ordered collections keep their longest common subsequence in place (Myers' O(ND) diff), everything else is matched
+//to the first unmatched equal revised element, which is looked up in buckets of revised elements
+//that can equal the original element class, keyed by fingerprint (key field tuple for entities)
+class ArrayElementIndex {
+    private static final int MAX_ORDERED_MATCH_STEPS = 1 << 20;   //bounds time and trace memory of Myers' diff, greedy matching is used above it
+
+    private final Diff diff;
+    private final Compare compare;
+    private final Object[] originalArray;
+    private final Object[] revisedArray;
+    private final Object[] entities1;           //original elements, resolved to revised ones when circular
+    private final Class[] entity1Classes;
+    private final boolean[] comparableEntities1;
+    private final int[] entity1Fingerprints;
+    private final boolean[] resolved;
+    private final int[] matches;
+    private final boolean[] movedOriginals;
+    private final boolean[] matchedIndexes;
+    private final List<Integer> nullIndexes = new LinkedList<Integer>();
+    private final Map<Class, Integer[]> typesToFingerprints = new HashMap<Class, Integer[]>();
+    private final Map<Class, Map<Integer, List<Integer>>> typesToBuckets = new HashMap<Class, Map<Integer, List<Integer>>>();
+    private boolean inOrder;
+    private boolean sorted;
+
+    ArrayElementIndex(Diff diff, Compare compare, Object[] originalArray, Object[] revisedArray) {
+        this.diff = diff;
+        this.compare = compare;
+        this.revisedArray = revisedArray;
+        this.matchedIndexes = new boolean[revisedArray.length];
+        for (int j = 0; j < revisedArray.length; j++) {
+            if (revisedArray[j] == null) {
+                this.nullIndexes.add(j);
+            }
+        }
+
+        this.originalArray = originalArray;
+        this.entities1 = new Object[originalArray.length];
+        this.entity1Classes = new Class[originalArray.length];
+        this.comparableEntities1 = new boolean[originalArray.length];
+        this.entity1Fingerprints = new int[originalArray.length];
+        this.resolved = new boolean[originalArray.length];
+        this.matches = new int[originalArray.length];
+        this.movedOriginals = new boolean[originalArray.length];
+        Arrays.fill(this.matches, -1);
+    }
+
+    //circular references are resolved again when the element is matched, since diffing previous elements can register them
+    private void resolve(int i) {
+        this.resolved[i] = true;
+        this.entity1Classes[i] = this.originalArray[i] == null ? null : this.originalArray[i].getClass();
+        this.entities1[i] = this.diff.getRevisedIfCircularReference(this.originalArray[i]);
+        //circular reference resolved to an element of unrelated type can only match by identity
+        this.comparableEntities1[i] = this.compare.canEqual(this.entities1[i], this.entity1Classes[i]);
+        if (this.comparableEntities1[i]) {
+            this.entity1Fingerprints[i] = this.compare.fingerprint(this.entities1[i], this.entity1Classes[i]);
+        }
+    }
+
+    //pairs elements of the longest common subsequence up front, they stay in place even if their index shifted
+    //elements are resolved as the walk reaches them and the pairs are checked again in match(i)
+    void matchInOrder() {
+        int start = 0;
+        int originalEnd = this.originalArray.length;
+        int revisedEnd = this.revisedArray.length;
+        while (start < originalEnd && start < revisedEnd && this.equal(start, start)) {
+            this.pair(start, start, false);
+            start++;
+        }
+        while (originalEnd > start && revisedEnd > start && this.equal(originalEnd - 1, revisedEnd - 1)) {
+            originalEnd--;
+            revisedEnd--;
+            this.pair(originalEnd, revisedEnd, false);
+        }
+        this.inOrder = this.matchCommonSubsequence(start, originalEnd, start, revisedEnd);
+    }
+
+    //elements ordered the same way on both sides are paired when the comparator finds them equal, the rest is not matched
+    void matchSorted(Comparator<Object> comparator) {
+        this.sorted = true;
+        int i = 0;
+        int j = 0;
+        while (i < this.originalArray.length && j < this.revisedArray.length) {
+            int order = comparator.compare(this.originalArray[i], this.revisedArray[j]);
+            if (order == 0) {
+                this.pair(i, j, false);
+            }
+            if (order <= 0) {
+                i++;
+            }
+            if (order >= 0) {
+                j++;
+            }
+        }
+    }
+
+    //revised index matched to the original element, -1 if it was deleted
+    //elements outside of the common subsequence are matched to the first unmatched equal revised element
+    int match(int i) {
+        if (this.sorted) {
+            return this.matches[i];
+        }
+        Object entity1 = this.entities1[i];
+        this.resolve(i);
+        if (this.matches[i] >= 0) {
+            //diffing previous elements may have resolved the element to a different revised one than the walk saw
+            if (this.entities1[i] == entity1 || this.equal(i, this.matches[i])) {
+                return this.matches[i];
+            }
+            this.unpair(i);
+        }
+        int j = this.findMatch(i);
+        if (j >= 0) {
+            this.pair(i, j, this.inOrder || i != j);   //outside of the common subsequence every match is a move
+        }
+        return j;
+    }
+
+    //Myers' greedy LCS of [originalStart, originalEnd) and [revisedStart, revisedEnd), false if it exceeds the step budget
+    private boolean matchCommonSubsequence(int originalStart, int originalEnd, int revisedStart, int revisedEnd) {
+        int n = originalEnd - originalStart;
+        int m = revisedEnd - revisedStart;
+        int max = n + m;
+        if (n == 0 || m == 0) {
+            return true;
+        }
+
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<int[]>();
+        int steps = 0;
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && this.equal(originalStart + x, revisedStart + y)) {
+                    x++;
+                    y++;
+                    steps++;
+                }
+                v[offset + k] = x;
+                if (++steps > MAX_ORDERED_MATCH_STEPS) {
+                    return false;
+                }
+                if (x >= n && y >= m) {
+                    this.backtrack(trace, d, originalStart, revisedStart, n, m);
+                    return true;
+                }
+            }
+            trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+        }
+        return true;
+    }
+
+    //walks the edit path back from the end and pairs its diagonals, trace[d] holds furthest x of diagonals -d..d
+    private void backtrack(List<int[]> trace, int d, int originalStart, int revisedStart, int n, int m) {
+        int x = n;
+        int y = m;
+        for (; d > 0; d--) {
+            int[] previous = trace.get(d - 1);
+            int k = x - y;
+            int previousK;
+            if (k == -d || (k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1])) {
+                previousK = k + 1;
+            } else {
+                previousK = k - 1;
+            }
+            int previousX = previous[previousK + d - 1];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+                this.pair(originalStart + x, revisedStart + y, false);
+            }
+            x = previousX;
+            y = previousY;
+        }
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            this.pair(originalStart + x, revisedStart + y, false);
+        }
+    }
+
+    private void pair(int i, int j, boolean moved) {
+        this.matches[i] = j;
+        this.movedOriginals[i] = moved;
+        this.matchedIndexes[j] = true;
+    }
+
+    private boolean equal(int i, int j) {
+        if (!this.resolved[i]) {
+            this.resolve(i);
+        }
+        Object entity1 = this.entities1[i];
+        Object entity2 = this.revisedArray[j];
+        if (entity1 == null || entity2 == null) {
+            return entity1 == entity2;
+        }
+        if (this.comparableEntities1[i]) {
+            Integer fingerprint = this.getFingerprints(this.entity1Classes[i])[j];
+            if (fingerprint == null || fingerprint != this.entity1Fingerprints[i]) {
+                return false;
+            }
+        }
+        return this.compare.compare(entity1, entity2, this.entity1Classes[i]);
+    }
+
+    //makes the revised element of a broken pair available to the following matches again
+    private void unpair(int i) {
+        int j = this.matches[i];
+        this.matches[i] = -1;
+        this.movedOriginals[i] = false;
+        this.matchedIndexes[j] = false;
+        if (this.revisedArray[j] == null) {
+            insertIndex(this.nullIndexes, j);
+            return;
+        }
+        for (Map.Entry<Class, Map<Integer, List<Integer>>> typeToBuckets : this.typesToBuckets.entrySet()) {
+            Integer fingerprint = this.typesToFingerprints.get(typeToBuckets.getKey())[j];
+            if (fingerprint == null) {
+                continue;
+            }
+            List<Integer> bucket = typeToBuckets.getValue().get(fingerprint);
+            if (bucket == null) {
+                bucket = new LinkedList<Integer>();
+                typeToBuckets.getValue().put(fingerprint, bucket);
+            }
+            insertIndex(bucket, j);
+        }
+    }
+
+    //candidates stay in index order so the first equal revised element is still the one matched
+    private static void insertIndex(List<Integer> candidates, int j) {
+        ListIterator<Integer> iterator = candidates.listIterator();
+        while (iterator.hasNext()) {
+            int candidate = iterator.next();
+            if (candidate == j) {
+                return;
+            }
+            if (candidate > j) {
+                iterator.previous();
+                break;
+            }
+        }
+        iterator.add(j);
+    }
+
+    //fingerprints of revised elements as elements of type, null for the ones which can not equal it
+    private Integer[] getFingerprints(Class type) {
+        Integer[] fingerprints = this.typesToFingerprints.get(type);
+        if (fingerprints == null) {
+            fingerprints = new Integer[this.revisedArray.length];
+            for (int j = 0; j < this.revisedArray.length; j++) {
+                if (this.compare.canEqual(this.revisedArray[j], type)) {
+                    fingerprints[j] = this.compare.fingerprint(this.revisedArray[j], type);
+                }
+            }
+            this.typesToFingerprints.put(type, fingerprints);
+        }
+        return fingerprints;
+    }
+
+    private Map<Integer, List<Integer>> getBuckets(Class type) {
+        Map<Integer, List<Integer>> buckets = this.typesToBuckets.get(type);
+        if (buckets == null) {
+            buckets = new HashMap<Integer, List<Integer>>();
+            Integer[] fingerprints = this.getFingerprints(type);
+            for (int j = 0; j < this.revisedArray.length; j++) {
+                if (this.matchedIndexes[j] || fingerprints[j] == null) {
+                    continue;
+                }
+                List<Integer> bucket = buckets.get(fingerprints[j]);
+                if (bucket == null) {
+                    bucket = new LinkedList<Integer>();
+                    buckets.put(fingerprints[j], bucket);
+                }
+                bucket.add(j);
+            }
+            this.typesToBuckets.put(type, buckets);
+        }
+        return buckets;
+    }
+
+    //index of the first unmatched revised element equal to the original one, -1 if there is none
+    private int findMatch(int i) {
+        Object entity1 = this.entities1[i];
+        Class entity1Class = this.entity1Classes[i];
+
+        if (entity1 == null) {
+            return this.match(entity1, this.nullIndexes, entity1Class);
+        }
+
+        if (!this.comparableEntities1[i]) {
+            for (int j = 0; j < this.revisedArray.length; j++) {
+                if (this.tryMatch(entity1, j, entity1Class)) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        List<Integer> bucket = this.getBuckets(entity1Class).get(this.entity1Fingerprints[i]);
+        return bucket == null ? -1 : this.match(entity1, bucket, entity1Class);
+    }
+
+    private int match(Object entity1, List<Integer> candidates, Class entity1Class) {
+        Iterator<Integer> iterator = candidates.iterator();
+        while (iterator.hasNext()) {
+            int j = iterator.next();
+            if (this.matchedIndexes[j]) {
+                iterator.remove();  //matched through a bucket of another type
+                continue;
+            }
+            if (this.tryMatch(entity1, j, entity1Class)) {
+                iterator.remove();  //keeps buckets of repeated elements from being rescanned
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    private boolean tryMatch(Object entity1, int j, Class entity1Class) {
+        if (!this.matchedIndexes[j] && this.compare.compare(entity1, this.revisedArray[j], entity1Class)) {
+            this.matchedIndexes[j] = true;
+            return true;
+        }
+        return false;
+    }
+
+    //true if the element still resolves to what it was matched as, reading it records the dependency in forked diffs
+    boolean isResolved(int i) {
+        return this.sorted || this.entities1[i] == this.diff.getRevisedIfCircularReference(this.originalArray[i]);
+    }
+
+    boolean isMoved(int i) {
+        return this.movedOriginals[i];
+    }
+
+    boolean isMatched(int j) {
+        return this.matchedIndexes[j];
+    }
+}
@@ -0,0 +1,474 @@
+package me.vukas.common.entity.generation.array;
+
+import me.vukas.common.entity.EntityGeneration;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.key.ArrayNodeKey;
+import me.vukas.common.entity.generation.array.key.KeyIndex;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.operation.Compare;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import static me.vukas.common.base.Arrays.*;
+
+public class ArrayEntityGeneration<T> extends EntityGeneration<T> {
+
+    public ArrayEntityGeneration(Diff diff, Compare compare) {
+        this(compare);
+        this.setDiff(diff);
+    }
+
+    public ArrayEntityGeneration(Patch patch) {
+        super();
+        this.setPatch(patch);
+    }
+
+    public ArrayEntityGeneration(Compare compare) {
+        super();
+        this.setCompare(compare);
+    }
+
+    @Override
+    public <N> Element<N, T> diff(T original, T revised, N elementName, Class fieldType, Class containerType, Key<N, T> key) {
+        Object[] originalArray = wrapCollectionOrMapOrPrimitiveArray(original);
+        Object[] revisedArray = wrapCollectionOrMapOrPrimitiveArray(revised);
+
+        ArrayElementIndex elementIndex = this.createElementIndex(original, revised, originalArray, revisedArray);
+        List<Element<?, ?>> elements = this.getDiff().shouldDiffInParallel(originalArray.length + revisedArray.length)
+                ? this.diffInParallel(elementIndex, originalArray, revisedArray, fieldType)
+                : new ArrayList<Element<?, ?>>();
+
+        //the rest is diffed in order, match(i) checks the pairs again against what the diffed elements registered
+        if (elements.size() < originalArray.length) {
+            for (int i = elements.size(); i < originalArray.length; i++) {
+                Key<Integer, Object> elementKey = this.generateElementKey(originalArray, i, fieldType);
+                int j = elementIndex.match(i);
+                elements.add(this.diffOriginalElement(originalArray, revisedArray, i, j, elementIndex.isMoved(i), fieldType, elementKey));
+            }
+            for (int j = 0; j < revisedArray.length; j++) {
+                if (!elementIndex.isMatched(j)) {
+                    elements.add(this.diffAddedElement(revisedArray, j, fieldType));
+                }
+            }
+        } else {
+            int diffedAdded = elements.size() - originalArray.length;
+            for (int j = 0; j < revisedArray.length; j++) {
+                if (!elementIndex.isMatched(j) && diffedAdded-- <= 0) {
+                    elements.add(this.diffAddedElement(revisedArray, j, fieldType));
+                }
+            }
+        }
+
+        Element.Status status = Diff.determineElementStatus(elements);
+
+        Key<N, T> arrayKey = this.generateKey(elementName, fieldType, containerType, original);
+        return new NodeElement<N, T>(elementName, status, arrayKey, elements);
+    }
+
+    //matching only reads diff state, element keys and diffs are forked per element
+    //an element whose circular reference resolves differently once the elements before it are merged has to be matched
+    //again, so it ends the parallel part and the rest is diffed in order with the same index
+    private List<Element<?, ?>> diffInParallel(final ArrayElementIndex elementIndex, final Object[] originalArray, final Object[] revisedArray, final Class fieldType) {
+        List<Callable<Element<?, ?>>> elementDiffs = new ArrayList<Callable<Element<?, ?>>>(originalArray.length + revisedArray.length);
+        for (int i = 0; i < originalArray.length; i++) {
+            final int originalIndex = i;
+            final int revisedIndex = elementIndex.match(i);
+            final boolean moved = elementIndex.isMoved(i);
+            elementDiffs.add(new Callable<Element<?, ?>>() {
+                @Override
+                public Element<?, ?> call() {
+                    if (!elementIndex.isResolved(originalIndex)) {
+                        return null;
+                    }
+                    Key<Integer, Object> elementKey = generateElementKey(originalArray, originalIndex, fieldType);
+                    return diffOriginalElement(originalArray, revisedArray, originalIndex, revisedIndex, moved, fieldType, elementKey);
+                }
+            });
+        }
+        for (int j = 0; j < revisedArray.length; j++) {
+            if (!elementIndex.isMatched(j)) {
+                final int revisedIndex = j;
+                elementDiffs.add(new Callable<Element<?, ?>>() {
+                    @Override
+                    public Element<?, ?> call() {
+                        return diffAddedElement(revisedArray, revisedIndex, fieldType);
+                    }
+                });
+            }
+        }
+        return this.getDiff().diffInParallel(elementDiffs);
+    }
+
+    //lists and arrays are ordered, their common subsequence is kept in place and only the rest is matched as moved
+    //sorted sets with the same ordering are paired by their comparator
+    @SuppressWarnings("unchecked")
+    private ArrayElementIndex createElementIndex(Object original, Object revised, Object[] originalArray, Object[] revisedArray) {
+        ArrayElementIndex elementIndex = new ArrayElementIndex(this.getDiff(), this.getCompare(), originalArray, revisedArray);
+        if (isSorted(original, revised)) {
+            Comparator comparator = ((SortedSet) original).comparator();
+            elementIndex.matchSorted(comparator == null ? (Comparator) Comparator.naturalOrder() : comparator);
+        } else if (isOrdered(original) && isOrdered(revised)) {
+            elementIndex.matchInOrder();
+        }
+        return elementIndex;
+    }
+
+    private static boolean isSorted(Object original, Object revised) {
+        if (!(original instanceof SortedSet) || !(revised instanceof SortedSet)) {
+            return false;
+        }
+        Comparator originalComparator = ((SortedSet) original).comparator();
+        Comparator revisedComparator = ((SortedSet) revised).comparator();
+        return originalComparator == null ? revisedComparator == null : originalComparator.equals(revisedComparator);
+    }
+
+    private static boolean isOrdered(Object collection) {
+        return collection.getClass().isArray() || collection instanceof List;
+    }
+
+    private Key<Integer, Object> generateElementKey(Object[] originalArray, int i, Class fieldType) {
+        Class elementType = originalArray[i] == null ? null : originalArray[i].getClass();
+        return this.getDiff().generateKey(i, elementType, fieldType, originalArray[i]);
+    }
+
+    private Element<?, ?> diffOriginalElement(Object[] originalArray, Object[] revisedArray, int i, int j, boolean moved, Class fieldType, Key<Integer, Object> elementKey) {
+        if (j < 0) {
+            return new LeafElement<Integer, Object>(i, Element.Status.DELETED, elementKey, null);
+        }
+        Class elementType = originalArray[i] == null ? null : originalArray[i].getClass();
+        Element<Integer, Object> element = this.getDiff().diff(this.getDiff().getRevisedIfCircularReference(originalArray[i]), revisedArray[j], j, elementType, fieldType, elementKey);
+        if (moved) {
+            if (element.getStatus() == Element.Status.EQUAL) {
+                element.setStatus(Element.Status.EQUAL_MOVED);
+            } else {
+                element.setStatus(Element.Status.MODIFIED_MOVED);
+            }
+        }
+        return element;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Element<?, ?> diffAddedElement(Object[] revisedArray, int j, Class fieldType) {
+        Class elementType = revisedArray[j] == null ? null : revisedArray[j].getClass();
+        Key<Integer, Object> elementKey = this.getDiff().generateKey(j, elementType, fieldType, null);
+        Element element = this.getDiff().diff(null, revisedArray[j], j, elementType, fieldType, elementKey);
+        element.setStatus(Element.Status.ADDED);
+        return element;
+    }
+
+    @Override
+    public <N> Key<N, T> generateKey(N elementName, Class elementType, Class containerType, T value) {
+        List<Key<?, ?>> keys = new ArrayList<Key<?, ?>>();
+        Object[] originalArray = wrapCollectionOrMapOrPrimitiveArray(value);
+        for (int i = 0; i < originalArray.length; i++) {
+            Class keyType = originalArray[i] == null ? null : originalArray[i].getClass();
+            keys.add(this.getDiff().generateKey(i, keyType, elementType, originalArray[i]));
+        }
+        return new ArrayNodeKey<N, T>(elementName, elementType, containerType, keys, originalArray.length);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> T patch(T original, Element<N, T> diff) {
+        if (this.getPatch().isInPlace() && original instanceof Collection) {
+            return (T) this.patchInPlace((Collection<Object>) original, (NodeElement<?, ?>) diff);
+        }
+
+        Class originalType = diff.getKey() == null ? null : diff.getKey().getType();
+        Object[] originalArray = wrapCollectionOrMapOrPrimitiveArray(original);
+
+        if (((ArrayNodeKey) diff.getKey()).getLength() != originalArray.length
+                || !diff.getKey().match(original)) { //TODO: check if getkey match is needed here -- possible previous checking, should not check 2 times
+            throw new UnsupportedOperationException("Array size and/or element mismatch");
+        }
+
+        return (T) this.patchCopy(originalArray, (NodeElement<?, ?>) diff, originalType);
+    }
+
+    private Object patchCopy(Object[] originalArray, NodeElement<?, ?> diff, Class originalType) {
+        Set<Integer> skipIndexes = new TreeSet<Integer>();
+        int newLength = originalArray.length;
+        for (Element<?, ?> childElement : diff.getChildren()) {
+            if (childElement.getStatus() == Element.Status.ADDED) {
+                newLength++;
+            } else if (childElement.getStatus() == Element.Status.DELETED) {
+                newLength--;
+            }
+
+            //elements of the common subsequence of ordered collections are not moved but their index can still shift
+            if (childElement.getStatus() == Element.Status.DELETED
+                    || childElement.getStatus() == Element.Status.EQUAL_MOVED
+                    || childElement.getStatus() == Element.Status.MODIFIED_MOVED
+                    || !childElement.getKey().getName().equals(childElement.getName())) {
+                skipIndexes.add((Integer) childElement.getKey().getName());
+            }
+        }
+
+        int[] skipIndexesUnwrapped = (int[]) unwrap(skipIndexes.toArray(new Integer[skipIndexes.size()]));
+        Object newArray = partialCopy(originalArray, newLength, skipIndexesUnwrapped);
+        for (Element childElement : diff.getChildren()) {
+            if (childElement.getStatus() == Element.Status.EQUAL || childElement.getStatus() == Element.Status.EQUAL_MOVED) {
+
+                if (!childElement.getKey().match(originalArray[(Integer) childElement.getKey().getName()])) {
+                    return tryPatchingAsUnorderedCollection(diff, originalType, originalArray);
+                }
+
+                //collection is ordered so we can process it as usual
+                insert(newArray, (Integer) childElement.getName(), originalArray[(Integer) childElement.getKey().getName()]);
+
+            } else if (childElement.getStatus() == Element.Status.MODIFIED || childElement.getStatus() == Element.Status.MODIFIED_MOVED) {
+
+                if (!childElement.getKey().match(originalArray[(Integer) childElement.getKey().getName()])) {
+                    return tryPatchingAsUnorderedCollection(diff, originalType, originalArray);
+                }
+
+                //collection is ordered so we can process it as usual
+                insert(newArray, (Integer) childElement.getName(), this.getPatch().patch(originalArray[(Integer) childElement.getKey().getName()], childElement));
+            } else if (childElement.getStatus() == Element.Status.ADDED) {
+                insert(newArray, (Integer) childElement.getName(), this.getPatch().patch(null, childElement));
+            }
+        }
+
+        return unwrapCollectionOrMapOrPrimitiveArray(newArray, originalType);
+    }
+
+    //mutates the collection instead of creating a new one, so its instance and implementation class are kept
+    //lists without moved elements and hash or sorted sets are patched element by element, other collections are refilled
+    private Collection<Object> patchInPlace(Collection<Object> original, NodeElement<?, ?> diff) {
+        if (this.getPatch().isPatchedInPlace(original)) {
+            return original;
+        }
+        this.getPatch().putPatchedInPlace(original);
+
+        if (((ArrayNodeKey) diff.getKey()).getLength() != original.size() || !((Key) diff.getKey()).match(original)) {
+            throw new UnsupportedOperationException("Array size and/or element mismatch");
+        }
+
+        Map<Integer, Element<?, ?>> changedElements = new HashMap<Integer, Element<?, ?>>();  //by original index
+        List<Element<?, ?>> addedElements = new ArrayList<Element<?, ?>>();
+        boolean moved = false;
+        for (Element<?, ?> childElement : diff.getChildren()) {
+            if (childElement.getStatus() == Element.Status.ADDED) {
+                addedElements.add(childElement);
+                continue;
+            }
+            if (childElement.getStatus() == Element.Status.EQUAL_MOVED || childElement.getStatus() == Element.Status.MODIFIED_MOVED) {
+                moved = true;
+            }
+            if (childElement.getStatus() != Element.Status.EQUAL) {
+                changedElements.put((Integer) childElement.getKey().getName(), childElement);
+            }
+        }
+
+        if (this.matchChangedElements(original, changedElements)) {
+            if (original instanceof List && !moved) {
+                this.patchListInPlace((List<Object>) original, changedElements, addedElements);
+                return original;
+            }
+            if (original instanceof Set && !(original instanceof LinkedHashSet)) {
+                this.patchSetInPlace((Set<Object>) original, changedElements, addedElements);
+                return original;
+            }
+        }
+
+        Collection<Object> patched = (Collection<Object>) this.patchCopy(original.toArray(), diff, ArrayList.class);
+        original.clear();
+        original.addAll(patched);
+        return original;
+    }
+
+    private boolean matchChangedElements(Collection<Object> original, Map<Integer, Element<?, ?>> changedElements) {
+        int i = 0;
+        for (Object element : original) {
+            Element childElement = changedElements.get(i++);
+            if (childElement != null && !childElement.getKey().match(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //elements are kept in order, so added elements are inserted at their revised index while walking the list once
+    private void patchListInPlace(List<Object> original, Map<Integer, Element<?, ?>> changedElements, List<Element<?, ?>> addedElements) {
+        Collections.sort(addedElements, new Comparator<Element<?, ?>>() {
+            @Override
+            public int compare(Element<?, ?> element1, Element<?, ?> element2) {
+                return ((Integer) element1.getName()).compareTo((Integer) element2.getName());
+            }
+        });
+        Iterator<Element<?, ?>> addedIterator = addedElements.iterator();
+        Element<?, ?> addedElement = addedIterator.hasNext() ? addedIterator.next() : null;
+
+        ListIterator<Object> iterator = original.listIterator();
+        int i = 0;
+        int j = 0;
+        while (true) {
+            while (addedElement != null && (!iterator.hasNext() || (Integer) addedElement.getName() == j)) {
+                iterator.add(this.getPatch().patch(null, (Element) addedElement));
+                j++;
+                addedElement = addedIterator.hasNext() ? addedIterator.next() : null;
+            }
+            if (!iterator.hasNext()) {
+                return;
+            }
+            Object element = iterator.next();
+            Element childElement = changedElements.get(i++);
+            if (childElement == null) {
+                j++;
+            } else if (childElement.getStatus() == Element.Status.DELETED) {
+                iterator.remove();
+            } else {
+                iterator.set(this.getPatch().patch(element, childElement));
+                j++;
+            }
+        }
+    }
+
+    //changed elements are removed before they are patched, since patching can change their hash code or order
+    private void patchSetInPlace(Set<Object> original, Map<Integer, Element<?, ?>> changedElements, List<Element<?, ?>> addedElements) {
+        List<Object> patchedElements = new ArrayList<Object>();
+        Iterator<Object> iterator = original.iterator();
+        int i = 0;
+        while (iterator.hasNext()) {
+            Object element = iterator.next();
+            Element childElement = changedElements.get(i++);
+            if (childElement != null) {
+                iterator.remove();
+                if (childElement.getStatus() != Element.Status.DELETED) {
+                    patchedElements.add(this.getPatch().patch(element, childElement));
+                }
+            }
+        }
+        for (Element addedElement : addedElements) {
+            patchedElements.add(this.getPatch().patch(null, addedElement));
+        }
+        original.addAll(patchedElements);
+    }
+
+    //children are matched to original elements by key regardless of their index, patched and added elements are appended
+    private Object tryPatchingAsUnorderedCollection(NodeElement<?, ?> diff, Class originalType, Object[] originalArray) {
+        //this means that collection is not ordered!
+        KeyIndex keyIndex = new KeyIndex(originalArray);
+        List<Object> appendedElements = new ArrayList<Object>();
+
+        for (Element childElement : diff.getChildren()) {
+            if (childElement.getStatus() == Element.Status.ADDED) {
+                appendedElements.add(this.getPatch().patch(null, childElement));
+                continue;
+            }
+
+            int i = keyIndex.find(childElement.getKey());
+            if (i < 0) {
+                throw new RuntimeException("Cannot even find it if threaten as unordered");
+            }
+            if (childElement.getStatus() == Element.Status.MODIFIED || childElement.getStatus() == Element.Status.MODIFIED_MOVED) {
+                keyIndex.setMatched(i);
+                appendedElements.add(this.getPatch().patch(originalArray[i], childElement));
+            } else if (childElement.getStatus() == Element.Status.DELETED) {
+                keyIndex.setMatched(i);
+            }
+        }
+
+        Collection<Object> newCollection = new ArrayList<Object>(originalArray.length + appendedElements.size());
+        for (int i = 0; i < originalArray.length; i++) {
+            if (!keyIndex.isMatched(i)) {
+                newCollection.add(originalArray[i]);
+            }
+        }
+        newCollection.addAll(appendedElements);
+
+        return unwrapCollectionOrMapOrPrimitiveArray(newCollection.toArray(), originalType);
+    }
+
+    @Override
+    public boolean compare(T entity1, T entity2, Class fieldType) {
+        Object[] entity1Array = wrapCollectionOrMapOrPrimitiveArray(entity1);
+        Object[] entity2Array = wrapCollectionOrMapOrPrimitiveArray(entity2);
+
+        if (entity1Array.length != entity2Array.length) {
+            return false;
+        }
+
+        for (int i = 0; i < entity1Array.length; i++) {
+            Class entity1Class = entity1Array[i] == null ? null : entity1Array[i].getClass();
+            if (!this.getCompare().compare(entity1Array[i], entity2Array[i], entity1Class)) {   //TODO: check if this is real array - if it is, it must be ordered!
+                //we possibly compare unordered collections so switch to that mode
+                return this.compareUnordered(entity1Array, entity2Array, i);
+            }
+        }
+
+        return true;
+    }
+
+    //remaining elements are compared as multisets, each element takes the first unmatched equal element of the other
+    //collection, which is looked up in buckets of elements that can equal its class, keyed by fingerprint
+    private boolean compareUnordered(Object[] entity1Array, Object[] entity2Array, int from) {
+        boolean[] matchedIndexes = new boolean[entity2Array.length];
+        Map<Class, Map<Integer, List<Integer>>> typesToBuckets = new HashMap<Class, Map<Integer, List<Integer>>>();
+        List<Integer> nullIndexes = null;
+
+        ELEMENTS:
+        for (int j = from; j < entity1Array.length; j++) {
+            Object entity1Element = entity1Array[j];
+            List<Integer> candidates;
+            if (entity1Element == null) {
+                if (nullIndexes == null) {
+                    nullIndexes = new LinkedList<Integer>();
+                    for (int k = from; k < entity2Array.length; k++) {
+                        if (entity2Array[k] == null) {
+                            nullIndexes.add(k);
+                        }
+                    }
+                }
+                candidates = nullIndexes;
+            } else {
+                Class entity1Class = entity1Element.getClass();
+                Map<Integer, List<Integer>> buckets = typesToBuckets.get(entity1Class);
+                if (buckets == null) {
+                    buckets = this.createBuckets(entity2Array, from, entity1Class);
+                    typesToBuckets.put(entity1Class, buckets);
+                }
+                candidates = buckets.get(this.getCompare().fingerprint(entity1Element, entity1Class));
+            }
+
+            if (candidates != null) {
+                Iterator<Integer> iterator = candidates.iterator();
+                while (iterator.hasNext()) {
+                    int k = iterator.next();
+                    if (matchedIndexes[k]) {
+                        iterator.remove();  //matched through a bucket of another type
+                    } else if (entity1Element == null || this.getCompare().compare(entity1Element, entity2Array[k], entity1Element.getClass())) {
+                        iterator.remove();
+                        matchedIndexes[k] = true;
+                        continue ELEMENTS;
+                    }
+                }
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    private Map<Integer, List<Integer>> createBuckets(Object[] entity2Array, int from, Class entity1Class) {
+        Map<Integer, List<Integer>> buckets = new HashMap<Integer, List<Integer>>();
+        for (int k = from; k < entity2Array.length; k++) {
+            if (!this.getCompare().canEqual(entity2Array[k], entity1Class)) {
+                continue;
+            }
+            int fingerprint = this.getCompare().fingerprint(entity2Array[k], entity1Class);
+            List<Integer> bucket = buckets.get(fingerprint);
+            if (bucket == null) {
+                bucket = new LinkedList<Integer>();
+                buckets.put(fingerprint, bucket);
+            }
+            bucket.add(k);
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,147 @@
+package me.vukas.common.entity.generation.array;
+
+import me.vukas.common.entity.generation.array.element.BlockDeltaElement;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static me.vukas.common.base.Arrays.*;
+
+//delta of byte or char arrays as blocks copied from the original array and inserted values
+//blocks of the original array are found in the revised one by rsync's rolling checksum
+public class BlockDelta {
+    private static final int MIN_BLOCK_SIZE = 64;
+
+    //common prefix and suffix are copied, the rest of the revised array is searched for blocks of the original one
+    public static List<BlockDeltaElement.Block> diff(Object original, Object revised) {
+        int originalLength = Array.getLength(original);
+        int revisedLength = Array.getLength(revised);
+        int commonLength = Math.min(originalLength, revisedLength);
+        int prefix = mismatch(original, 0, revised, 0, commonLength);
+        if (prefix < 0) {
+            prefix = commonLength;
+        }
+        int suffix = 0;
+        while (suffix < commonLength - prefix && elementEquals(original, originalLength - suffix - 1, revised, revisedLength - suffix - 1)) {
+            suffix++;
+        }
+
+        List<BlockDeltaElement.Block> blocks = new ArrayList<BlockDeltaElement.Block>();
+        if (prefix > 0) {
+            blocks.add(BlockDeltaElement.Block.copy(0, prefix));
+        }
+
+        int originalEnd = originalLength - suffix;
+        int revisedEnd = revisedLength - suffix;
+        int blockSize = Math.max(MIN_BLOCK_SIZE, (int) Math.sqrt(originalEnd - prefix));
+        Map<Integer, List<Integer>> checksumsToOffsets = new HashMap<Integer, List<Integer>>();
+        for (int offset = prefix; offset + blockSize <= originalEnd; offset += blockSize) {
+            int checksum = checksum(original, offset, blockSize);
+            List<Integer> offsets = checksumsToOffsets.get(checksum);
+            if (offsets == null) {
+                offsets = new LinkedList<Integer>();
+                checksumsToOffsets.put(checksum, offsets);
+            }
+            offsets.add(offset);
+        }
+
+        int literalStart = prefix;
+        int position = prefix;
+        int checksum = position + blockSize <= revisedEnd ? checksum(revised, position, blockSize) : 0;
+        while (position + blockSize <= revisedEnd) {
+            int offset = findBlock(checksumsToOffsets.get(checksum), original, revised, position, blockSize);
+            if (offset >= 0) {
+                if (literalStart < position) {
+                    blocks.add(BlockDeltaElement.Block.insert(copyOfRange(revised, literalStart, position), position - literalStart));
+                }
+                addCopy(blocks, offset, blockSize);
+                position += blockSize;
+                literalStart = position;
+                if (position + blockSize <= revisedEnd) {
+                    checksum = checksum(revised, position, blockSize);
+                }
+            } else {
+                if (position + blockSize < revisedEnd) {
+                    checksum = roll(checksum, valueAt(revised, position), valueAt(revised, position + blockSize), blockSize);
+                }
+                position++;
+            }
+        }
+        if (literalStart < revisedEnd) {
+            blocks.add(BlockDeltaElement.Block.insert(copyOfRange(revised, literalStart, revisedEnd), revisedEnd - literalStart));
+        }
+
+        if (suffix > 0) {
+            addCopy(blocks, originalEnd, suffix);
+        }
+        return blocks;
+    }
+
+    //candidates with the same weak checksum are confirmed by comparing their elements
+    private static int findBlock(List<Integer> offsets, Object original, Object revised, int position, int blockSize) {
+        if (offsets == null) {
+            return -1;
+        }
+        for (Integer offset : offsets) {
+            if (mismatch(original, offset, revised, position, blockSize) < 0) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    //consecutive original blocks are merged into one copy
+    private static void addCopy(List<BlockDeltaElement.Block> blocks, int offset, int length) {
+        if (!blocks.isEmpty()) {
+            BlockDeltaElement.Block last = blocks.get(blocks.size() - 1);
+            if (last.isCopy() && last.getOriginalOffset() + last.getLength() == offset) {
+                blocks.set(blocks.size() - 1, BlockDeltaElement.Block.copy(last.getOriginalOffset(), last.getLength() + length));
+                return;
+            }
+        }
+        blocks.add(BlockDeltaElement.Block.copy(offset, length));
+    }
+
+    //rsync's weak checksum, sum of the elements in the lower and sum of the running sums in the upper 16 bits
+    private static int checksum(Object array, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int value = valueAt(array, offset + i);
+            a += value;
+            b += (length - i) * value;
+        }
+        return (a & 0xffff) | (b << 16);
+    }
+
+    private static int roll(int checksum, int removed, int added, int length) {
+        int a = (checksum & 0xffff) - removed + added;
+        int b = (checksum >>> 16) - length * removed + a;
+        return (a & 0xffff) | (b << 16);
+    }
+
+    private static int valueAt(Object array, int index) {
+        if (array instanceof byte[]) {
+            return ((byte[]) array)[index] & 0xff;
+        }
+        return ((char[]) array)[index];
+    }
+
+    public static Object patch(Object original, BlockDeltaElement<?> diff) {
+        Object newArray = Array.newInstance(original.getClass().getComponentType(), diff.getLength());
+        int newIndex = 0;
+        for (BlockDeltaElement.Block block : diff.getBlocks()) {
+            if (block.isCopy()) {
+                System.arraycopy(original, block.getOriginalOffset(), newArray, newIndex, block.getLength());
+            } else {
+                System.arraycopy(block.getValues(), 0, newArray, newIndex, block.getLength());
+            }
+            newIndex += block.getLength();
+        }
+        return newArray;
+    }
+}
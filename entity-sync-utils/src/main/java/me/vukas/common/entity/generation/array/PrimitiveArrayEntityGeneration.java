@@ -0,0 +1,145 @@
+package me.vukas.common.entity.generation.array;
+
+import me.vukas.common.entity.EntityGeneration;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.element.ArrayRangeElement;
+import me.vukas.common.entity.generation.array.element.BlockDeltaElement;
+import me.vukas.common.entity.generation.array.key.PrimitiveArrayKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.operation.Compare;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.vukas.common.base.Arrays.*;
+import static me.vukas.common.base.ContentHash.ofPrimitiveArray;
+
+//diffs primitive arrays without boxing, changes are emitted as ranges of replaced elements
+//large byte and char arrays are diffed into a BlockDelta, so content shifted by insertions and deletions is not sent again
+public class PrimitiveArrayEntityGeneration<T> extends EntityGeneration<T> {
+    private static final int MIN_EQUAL_RUN = 8;     //shorter equal runs between changes are replaced together with them
+    private static final int MIN_BLOCK_DELTA_LENGTH = 4 * 1024;
+
+    public PrimitiveArrayEntityGeneration(Diff diff, Compare compare) {
+        this(compare);
+        this.setDiff(diff);
+    }
+
+    public PrimitiveArrayEntityGeneration(Patch patch) {
+        super();
+        this.setPatch(patch);
+    }
+
+    public PrimitiveArrayEntityGeneration(Compare compare) {
+        super();
+        this.setCompare(compare);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> Element<N, T> diff(T original, T revised, N elementName, Class fieldType, Class containerType, Key<N, T> key) {
+        if (original == null) {
+            return new LeafElement<N, T>(elementName, Element.Status.MODIFIED, key, (T) copyOfRange(revised, 0, Array.getLength(revised)));
+        }
+
+        int originalLength = Array.getLength(original);
+        int revisedLength = Array.getLength(revised);
+        if ((original instanceof byte[] || original instanceof char[]) && Math.max(originalLength, revisedLength) >= MIN_BLOCK_DELTA_LENGTH
+                && (originalLength != revisedLength || mismatch(original, 0, revised, 0, originalLength) >= 0)) {
+            Key<N, Object> arrayKey = (Key<N, Object>) this.generateKey(elementName, fieldType, containerType, original);
+            return (Element<N, T>) new BlockDeltaElement<N>(elementName, Element.Status.MODIFIED, arrayKey, revisedLength, BlockDelta.diff(original, revised));
+        }
+
+        List<Element<?, ?>> elements = new ArrayList<Element<?, ?>>();
+        if (originalLength == revisedLength) {
+            int i = 0;
+            while (i < originalLength) {
+                int mismatch = mismatch(original, i, revised, i, originalLength - i);
+                if (mismatch < 0) {
+                    break;
+                }
+                int start = i + mismatch;
+                int end = start + 1;
+                for (int k = end; k < originalLength && k - end < MIN_EQUAL_RUN; k++) {
+                    if (!elementEquals(original, k, revised, k)) {
+                        end = k + 1;
+                    }
+                }
+                elements.add(new ArrayRangeElement<Integer>(start, Element.Status.MODIFIED, null, end - start, copyOfRange(revised, start, end)));
+                i = end;
+            }
+        } else {
+            int commonLength = Math.min(originalLength, revisedLength);
+            int prefix = mismatch(original, 0, revised, 0, commonLength);
+            if (prefix < 0) {
+                prefix = commonLength;
+            }
+            int suffix = 0;
+            while (suffix < commonLength - prefix && elementEquals(original, originalLength - suffix - 1, revised, revisedLength - suffix - 1)) {
+                suffix++;
+            }
+            elements.add(new ArrayRangeElement<Integer>(prefix, Element.Status.MODIFIED, null, originalLength - prefix - suffix,
+                    copyOfRange(revised, prefix, revisedLength - suffix)));
+        }
+
+        Element.Status status = elements.isEmpty() ? Element.Status.EQUAL : Element.Status.MODIFIED;
+        Key<N, T> arrayKey = this.generateKey(elementName, fieldType, containerType, original);
+        return new NodeElement<N, T>(elementName, status, arrayKey, elements);
+    }
+
+    @Override
+    public <N> Key<N, T> generateKey(N elementName, Class elementType, Class containerType, T value) {
+        return new PrimitiveArrayKey<N, T>(elementName, elementType, containerType, Array.getLength(value), ofPrimitiveArray(value));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> T patch(T original, Element<N, T> diff) {
+        if (!diff.getKey().match(original)) {
+            throw new UnsupportedOperationException("Array size and/or element mismatch");
+        }
+
+        if (diff instanceof BlockDeltaElement) {
+            return (T) BlockDelta.patch(original, (BlockDeltaElement<?>) diff);
+        }
+
+        List<Element<?, ?>> children = ((NodeElement<?, ?>) diff).getChildren();
+        int originalLength = Array.getLength(original);
+        int newLength = originalLength;
+        for (Element<?, ?> childElement : children) {
+            ArrayRangeElement<?> range = (ArrayRangeElement<?>) childElement;
+            newLength += Array.getLength(range.getValues()) - range.getOriginalLength();
+        }
+
+        Object newArray = Array.newInstance(original.getClass().getComponentType(), newLength);
+        int originalIndex = 0;
+        int newIndex = 0;
+        for (Element<?, ?> childElement : children) {
+            ArrayRangeElement<?> range = (ArrayRangeElement<?>) childElement;
+            int start = (Integer) range.getName();
+            System.arraycopy(original, originalIndex, newArray, newIndex, start - originalIndex);
+            newIndex += start - originalIndex;
+            int valuesLength = Array.getLength(range.getValues());
+            System.arraycopy(range.getValues(), 0, newArray, newIndex, valuesLength);
+            newIndex += valuesLength;
+            originalIndex = start + range.getOriginalLength();
+        }
+        System.arraycopy(original, originalIndex, newArray, newIndex, originalLength - originalIndex);
+        return (T) newArray;
+    }
+
+    //arrays are ordered, equal when their elements are equal in order
+    @Override
+    public boolean compare(T entity1, T entity2, Class fieldType) {
+        if (entity1.getClass() != entity2.getClass()) {
+            return false;
+        }
+        int length = Array.getLength(entity1);
+        return length == Array.getLength(entity2) && mismatch(entity1, 0, entity2, 0, length) < 0;
+    }
+}
@@ -0,0 +1,24 @@
+package me.vukas.common.entity.generation.array.element;
+
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.key.Key;
+
+//replaces originalLength elements of a primitive array, starting at the index in name, with values
+public class ArrayRangeElement<N> extends Element<N, Object> {
+    private final int originalLength;
+    private final Object values;
+
+    public ArrayRangeElement(N name, Status status, Key<N, Object> key, int originalLength, Object values) {
+        super(name, status, key);
+        this.originalLength = originalLength;
+        this.values = values;
+    }
+
+    public int getOriginalLength() {
+        return originalLength;
+    }
+
+    public Object getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,63 @@
+package me.vukas.common.entity.generation.array.element;
+
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.key.Key;
+
+import java.util.List;
+
+//rebuilds a byte or char array from blocks copied from the original array and inserted values
+public class BlockDeltaElement<N> extends Element<N, Object> {
+    private final int length;
+    private final List<Block> blocks;
+
+    public BlockDeltaElement(N name, Status status, Key<N, Object> key, int length, List<Block> blocks) {
+        super(name, status, key);
+        this.length = length;
+        this.blocks = blocks;
+    }
+
+    //length of the revised array
+    public int getLength() {
+        return length;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    public static class Block {
+        private final int originalOffset;
+        private final int length;
+        private final Object values;
+
+        private Block(int originalOffset, int length, Object values) {
+            this.originalOffset = originalOffset;
+            this.length = length;
+            this.values = values;
+        }
+
+        public static Block copy(int originalOffset, int length) {
+            return new Block(originalOffset, length, null);
+        }
+
+        public static Block insert(Object values, int length) {
+            return new Block(-1, length, values);
+        }
+
+        public boolean isCopy() {
+            return this.values == null;
+        }
+
+        public int getOriginalOffset() {
+            return originalOffset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public Object getValues() {
+            return values;
+        }
+    }
+}
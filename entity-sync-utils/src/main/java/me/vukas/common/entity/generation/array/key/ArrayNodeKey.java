@@ -0,0 +1,66 @@
+package me.vukas.common.entity.generation.array.key;
+
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.key.NodeKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.vukas.common.base.Arrays.wrapCollectionOrMapOrPrimitiveArray;
+
+public class ArrayNodeKey<N, V> extends NodeKey<N, V> {
+    private final int length;
+
+    public ArrayNodeKey(N name, Class type, Class container, List<Key<?, ?>> children, int length) {
+        super(name, type, container, children);
+        this.length = length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    //children match elements at their index until the first one that does not, which is skipped as before,
+    //the rest match any unmatched element
+    @Override
+    public boolean match(V value) {
+        Object[] array = wrapCollectionOrMapOrPrimitiveArray(value);
+        boolean[] matchedIndexes = new boolean[array.length];
+        List<Key<?, ?>> unorderedChildren = null;
+        for (Key child : this.getChildren()) {
+            int index = (Integer) child.getName();
+            if (unorderedChildren != null) {
+                unorderedChildren.add(child);
+            } else if (array.length > index && child.match(array[index])) {
+                matchedIndexes[index] = true;
+            } else {
+                unorderedChildren = new ArrayList<Key<?, ?>>();
+            }
+        }
+        return unorderedChildren == null || this.matchUnordered(unorderedChildren, array, matchedIndexes);
+    }
+
+    //every child takes the first unmatched element it matches
+    private boolean matchUnordered(List<Key<?, ?>> children, Object[] array, boolean[] matchedIndexes) {
+        KeyIndex keyIndex = new KeyIndex(array, matchedIndexes);
+        for (Key child : children) {
+            int i = keyIndex.find(child);
+            if (i < 0) {
+                return false;
+            }
+            keyIndex.setMatched(i);
+        }
+        return true;
+    }
+
+    //elements do not have to be at their index, so only the number of elements could tell collections apart
+    @Override
+    public Integer fingerprint() {
+        return 0;
+    }
+
+    @Override
+    public int fingerprint(V value) {
+        return 0;
+    }
+}
@@ -0,0 +1,86 @@
+package me.vukas.common.entity.generation.array.key;
+
+import me.vukas.common.entity.key.Key;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+//finds elements matched by keys regardless of their index
+//candidates are looked up by fingerprint in buckets built once per key class and type,
+//keys without a fingerprint are checked against all elements
+public class KeyIndex {
+    private final Object[] array;
+    private final boolean[] matchedIndexes;
+    private final Map<List<Object>, Map<Integer, List<Integer>>> typesToBuckets = new HashMap<List<Object>, Map<Integer, List<Integer>>>();
+
+    public KeyIndex(Object[] array) {
+        this(array, new boolean[array.length]);
+    }
+
+    KeyIndex(Object[] array, boolean[] matchedIndexes) {
+        this.array = array;
+        this.matchedIndexes = matchedIndexes;
+    }
+
+    //index of the first unmatched element the key matches, -1 if there is none
+    public int find(Key key) {
+        Integer fingerprint = key.fingerprint();
+        if (fingerprint == null) {
+            for (int i = 0; i < this.array.length; i++) {
+                if (!this.matchedIndexes[i] && key.match(this.array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        List<Integer> bucket = this.getBuckets(key).get(fingerprint);
+        if (bucket == null) {
+            return -1;
+        }
+        Iterator<Integer> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            int i = iterator.next();
+            if (this.matchedIndexes[i]) {
+                iterator.remove();  //keeps buckets of repeated elements from being rescanned
+            } else if (key.match(this.array[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void setMatched(int i) {
+        this.matchedIndexes[i] = true;
+    }
+
+    public boolean isMatched(int i) {
+        return this.matchedIndexes[i];
+    }
+
+    private Map<Integer, List<Integer>> getBuckets(Key key) {
+        List<Object> type = Arrays.<Object>asList(key.getClass(), key.getType());
+        Map<Integer, List<Integer>> buckets = this.typesToBuckets.get(type);
+        if (buckets == null) {
+            buckets = new HashMap<Integer, List<Integer>>();
+            for (int i = 0; i < this.array.length; i++) {
+                if (this.matchedIndexes[i]) {
+                    continue;
+                }
+                int fingerprint = key.fingerprint(this.array[i]);
+                List<Integer> bucket = buckets.get(fingerprint);
+                if (bucket == null) {
+                    bucket = new LinkedList<Integer>();
+                    buckets.put(fingerprint, bucket);
+                }
+                bucket.add(i);
+            }
+            this.typesToBuckets.put(type, buckets);
+        }
+        return buckets;
+    }
+}
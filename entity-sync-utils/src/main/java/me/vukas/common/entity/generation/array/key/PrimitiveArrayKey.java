@@ -0,0 +1,44 @@
+package me.vukas.common.entity.generation.array.key;
+
+import me.vukas.common.entity.key.Key;
+
+import java.lang.reflect.Array;
+
+import static me.vukas.common.base.ContentHash.fold;
+import static me.vukas.common.base.ContentHash.ofPrimitiveArray;
+
+//matches primitive arrays by length and 64 bit content hash instead of a key per element
+public class PrimitiveArrayKey<N, V> extends Key<N, V> {
+    private final int length;
+    private final long contentHash;
+
+    public PrimitiveArrayKey(N name, Class type, Class container, int length, long contentHash) {
+        super(name, type, container);
+        this.length = length;
+        this.contentHash = contentHash;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean match(V value) {
+        return value != null && value.getClass() == this.getType()
+                && Array.getLength(value) == this.length && ofPrimitiveArray(value) == this.contentHash;
+    }
+
+    @Override
+    public Integer fingerprint() {
+        return fold(this.contentHash);
+    }
+
+    @Override
+    public int fingerprint(V value) {
+        return value != null && value.getClass() == this.getType() ? fold(ofPrimitiveArray(value)) : 0;
+    }
+}
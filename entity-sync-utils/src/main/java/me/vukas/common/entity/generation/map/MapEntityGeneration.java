@@ -0,0 +1,251 @@
+package me.vukas.common.entity.generation.map;
+
+import me.vukas.common.entity.EntityGeneration;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.ArrayEntityGeneration;
+import me.vukas.common.entity.generation.map.key.MapNodeKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.operation.Compare;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+
+//diffs maps by key lookup and patches them in place, elements are named by map keys
+//only for hash based maps with leaf keys, where lookup agrees with Compare, and for sorted maps with the same ordering,
+//which are walked together and paired by their comparator, other maps are diffed as arrays of entries
+public class MapEntityGeneration<T> extends EntityGeneration<T> {
+    private final ArrayEntityGeneration<T> entryGeneration;
+
+    public MapEntityGeneration(Diff diff, Compare compare, ArrayEntityGeneration<T> entryGeneration) {
+        this(compare, entryGeneration);
+        this.setDiff(diff);
+    }
+
+    public MapEntityGeneration(Patch patch, ArrayEntityGeneration<T> entryGeneration) {
+        super();
+        this.setPatch(patch);
+        this.entryGeneration = entryGeneration;
+    }
+
+    public MapEntityGeneration(Compare compare, ArrayEntityGeneration<T> entryGeneration) {
+        super();
+        this.setCompare(compare);
+        this.entryGeneration = entryGeneration;
+    }
+
+    private static boolean isKeyed(Object value) {
+        if (!(value instanceof HashMap || value instanceof Hashtable || value instanceof ConcurrentHashMap)) {
+            return false;
+        }
+        for (Object key : ((Map) value).keySet()) {
+            if (key != null && !isStringOrPrimitiveOrWrapped(key.getClass()) && !(key instanceof Enum)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSorted(Object original, Object revised) {
+        if (!(original instanceof SortedMap) || !(revised instanceof SortedMap)) {
+            return false;
+        }
+        Comparator originalComparator = ((SortedMap) original).comparator();
+        Comparator revisedComparator = ((SortedMap) revised).comparator();
+        return originalComparator == null ? revisedComparator == null : originalComparator.equals(revisedComparator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> getComparator(SortedMap<Object, Object> map) {
+        return map.comparator() == null ? (Comparator<Object>) (Comparator) Comparator.naturalOrder() : (Comparator<Object>) map.comparator();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> Element<N, T> diff(T original, T revised, N elementName, Class fieldType, Class containerType, Key<N, T> key) {
+        List<Element<?, ?>> elements;
+        if (original != null && isSorted(original, revised)) {
+            elements = this.diffSorted((SortedMap<Object, Object>) original, (SortedMap<Object, Object>) revised, fieldType);
+        } else if (original != null && isKeyed(original) && isKeyed(revised)) {
+            elements = this.diffKeyed((Map<Object, Object>) original, (Map<Object, Object>) revised, fieldType);
+        } else {
+            return this.entryGeneration.diff(original, revised, elementName, fieldType, containerType, key);
+        }
+
+        Element.Status status = Diff.determineElementStatus(elements);
+
+        Key<N, T> mapKey = this.generateKey(elementName, fieldType, containerType, original);
+        return new NodeElement<N, T>(elementName, status, mapKey, elements);
+    }
+
+    private List<Element<?, ?>> diffKeyed(Map<Object, Object> originalMap, Map<Object, Object> revisedMap, Class fieldType) {
+        List<Element<?, ?>> elements = new ArrayList<Element<?, ?>>();
+        for (Map.Entry<Object, Object> entry : originalMap.entrySet()) {
+            Object mapKey = entry.getKey();
+            if (!revisedMap.containsKey(mapKey)) {
+                elements.add(this.diffDeletedValue(mapKey, entry.getValue(), fieldType));
+            } else {
+                this.diffValue(elements, mapKey, entry.getValue(), revisedMap.get(mapKey), fieldType);
+            }
+        }
+        for (Map.Entry<Object, Object> entry : revisedMap.entrySet()) {
+            if (!originalMap.containsKey(entry.getKey())) {
+                elements.add(this.diffAddedValue(entry.getKey(), entry.getValue(), fieldType));
+            }
+        }
+        return elements;
+    }
+
+    //single merge-join pass over both maps in their common order, entries are never compared pairwise
+    private List<Element<?, ?>> diffSorted(SortedMap<Object, Object> originalMap, SortedMap<Object, Object> revisedMap, Class fieldType) {
+        Comparator<Object> comparator = getComparator(originalMap);
+        List<Element<?, ?>> elements = new ArrayList<Element<?, ?>>();
+        Iterator<Map.Entry<Object, Object>> originalIterator = originalMap.entrySet().iterator();
+        Iterator<Map.Entry<Object, Object>> revisedIterator = revisedMap.entrySet().iterator();
+        Map.Entry<Object, Object> originalEntry = originalIterator.hasNext() ? originalIterator.next() : null;
+        Map.Entry<Object, Object> revisedEntry = revisedIterator.hasNext() ? revisedIterator.next() : null;
+        while (originalEntry != null || revisedEntry != null) {
+            int order = originalEntry == null ? 1 : revisedEntry == null ? -1 : comparator.compare(originalEntry.getKey(), revisedEntry.getKey());
+            if (order < 0) {
+                elements.add(this.diffDeletedValue(originalEntry.getKey(), originalEntry.getValue(), fieldType));
+            } else if (order > 0) {
+                elements.add(this.diffAddedValue(revisedEntry.getKey(), revisedEntry.getValue(), fieldType));
+            } else {
+                this.diffValue(elements, originalEntry.getKey(), originalEntry.getValue(), revisedEntry.getValue(), fieldType);
+            }
+            if (order <= 0) {
+                originalEntry = originalIterator.hasNext() ? originalIterator.next() : null;
+            }
+            if (order >= 0) {
+                revisedEntry = revisedIterator.hasNext() ? revisedIterator.next() : null;
+            }
+        }
+        return elements;
+    }
+
+    //value that changed its class is deleted and added again
+    private void diffValue(List<Element<?, ?>> elements, Object mapKey, Object originalValue, Object revisedValue, Class fieldType) {
+        Class originalValueClass = originalValue == null ? null : originalValue.getClass();
+        Class revisedValueClass = revisedValue == null ? null : revisedValue.getClass();
+        if (originalValue != null && revisedValue != null && originalValueClass != revisedValueClass) {
+            elements.add(this.diffDeletedValue(mapKey, originalValue, fieldType));
+            elements.add(this.diffAddedValue(mapKey, revisedValue, fieldType));
+            return;
+        }
+        Key<Object, Object> valueKey = this.getDiff().generateKey(mapKey, originalValueClass, fieldType, originalValue);
+        elements.add(this.getDiff().diff(this.getDiff().getRevisedIfCircularReference(originalValue), revisedValue, mapKey, revisedValueClass, fieldType, valueKey));
+    }
+
+    private Element<?, ?> diffDeletedValue(Object mapKey, Object originalValue, Class fieldType) {
+        Class originalValueClass = originalValue == null ? null : originalValue.getClass();
+        Key<Object, Object> valueKey = this.getDiff().generateKey(mapKey, originalValueClass, fieldType, originalValue);
+        return new LeafElement<Object, Object>(mapKey, Element.Status.DELETED, valueKey, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Element<?, ?> diffAddedValue(Object mapKey, Object revisedValue, Class fieldType) {
+        Class revisedValueClass = revisedValue == null ? null : revisedValue.getClass();
+        Key<Object, Object> valueKey = this.getDiff().generateKey(mapKey, revisedValueClass, fieldType, null);
+        Element element = this.getDiff().diff(null, revisedValue, mapKey, revisedValueClass, fieldType, valueKey);
+        element.setStatus(Element.Status.ADDED);
+        return element;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> Key<N, T> generateKey(N elementName, Class elementType, Class containerType, T value) {
+        if (!isKeyed(value) && !(value instanceof SortedMap)) {
+            return this.entryGeneration.generateKey(elementName, elementType, containerType, value);
+        }
+        Map<Object, Object> map = (Map<Object, Object>) value;
+        Map<Object, Key<?, ?>> valueKeys = new HashMap<Object, Key<?, ?>>(map.size() * 4 / 3 + 1);
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            Class valueClass = entry.getValue() == null ? null : entry.getValue().getClass();
+            valueKeys.put(entry.getKey(), this.getDiff().generateKey(entry.getKey(), valueClass, elementType, entry.getValue()));
+        }
+        return new MapNodeKey<N, T>(elementName, elementType, containerType, valueKeys);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> T patch(T original, Element<N, T> diff) {
+        if (!(diff.getKey() instanceof MapNodeKey)) {
+            return this.entryGeneration.patch(original, diff);
+        }
+        if (this.getPatch().isPatchedInPlace(original)) {     //map shared by several references
+            return original;
+        }
+        this.getPatch().putPatchedInPlace(original);
+
+        Map<Object, Object> map = (Map<Object, Object>) original;
+        for (Element childElement : ((NodeElement<?, ?>) diff).getChildren()) {
+            Object mapKey = childElement.getName();
+            if (childElement.getStatus() == Element.Status.DELETED) {
+                map.remove(mapKey);
+            } else if (childElement.getStatus() == Element.Status.ADDED) {
+                map.put(mapKey, this.getPatch().patch(null, childElement));
+            } else if (childElement.getStatus() != Element.Status.EQUAL) {
+                map.put(mapKey, this.getPatch().patch(map.get(mapKey), childElement));
+            }
+        }
+        return original;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean compare(T entity1, T entity2, Class fieldType) {
+        if (isSorted(entity1, entity2)) {
+            return this.compareSorted((SortedMap<Object, Object>) entity1, (SortedMap<Object, Object>) entity2);
+        }
+        if (!isKeyed(entity1) || !isKeyed(entity2)) {
+            return this.entryGeneration.compare(entity1, entity2, fieldType);
+        }
+        Map<Object, Object> map1 = (Map<Object, Object>) entity1;
+        Map<Object, Object> map2 = (Map<Object, Object>) entity2;
+        if (map1.size() != map2.size()) {
+            return false;
+        }
+        for (Map.Entry<Object, Object> entry : map1.entrySet()) {
+            if (!map2.containsKey(entry.getKey())) {
+                return false;
+            }
+            Class valueClass = entry.getValue() == null ? null : entry.getValue().getClass();
+            if (!this.getCompare().compare(entry.getValue(), map2.get(entry.getKey()), valueClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //entries at the same position have keys in the same order and equal values
+    private boolean compareSorted(SortedMap<Object, Object> map1, SortedMap<Object, Object> map2) {
+        if (map1.size() != map2.size()) {
+            return false;
+        }
+        Comparator<Object> comparator = getComparator(map1);
+        Iterator<Map.Entry<Object, Object>> iterator = map2.entrySet().iterator();
+        for (Map.Entry<Object, Object> entry1 : map1.entrySet()) {
+            Map.Entry<Object, Object> entry2 = iterator.next();
+            if (comparator.compare(entry1.getKey(), entry2.getKey()) != 0) {
+                return false;
+            }
+            Class valueClass = entry1.getValue() == null ? null : entry1.getValue().getClass();
+            if (!this.getCompare().compare(entry1.getValue(), entry2.getValue(), valueClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
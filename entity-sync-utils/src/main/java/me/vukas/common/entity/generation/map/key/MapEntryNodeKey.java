@@ -0,0 +1,44 @@
+package me.vukas.common.entity.generation.map.key;
+
+import me.vukas.common.entity.key.Key;
+
+import java.util.Map;
+
+public class MapEntryNodeKey<N> extends Key<N, Map.Entry> {
+    private Key keyKey;
+    private Key keyValue;
+
+    public MapEntryNodeKey(N name, Class type, Class container, Key<?, ?> keyKey, Key<?, ?> keyValue) {
+        super(name, type, container);
+        this.keyKey = keyKey;
+        this.keyValue = keyValue;
+    }
+
+    public Key getKeyKey() {
+        return keyKey;
+    }
+
+    public Key getKeyValue() {
+        return keyValue;
+    }
+
+    @Override
+    public boolean match(Map.Entry value) {
+        return keyKey.match(value.getKey()) && keyValue.match(value.getValue());
+    }
+
+    //entries are told apart by keys of leaf types
+    @Override
+    public Integer fingerprint() {
+        if (isLeafType(keyKey.getType())) {
+            return keyKey.fingerprint();
+        }
+        return keyKey.fingerprint() == null ? null : Integer.valueOf(0);
+    }
+
+    @Override
+    public int fingerprint(Map.Entry value) {
+        Object key = value == null ? null : value.getKey();
+        return key != null && isLeafType(key.getClass()) ? key.hashCode() : 0;
+    }
+}
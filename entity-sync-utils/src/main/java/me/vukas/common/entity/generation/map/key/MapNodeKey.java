@@ -0,0 +1,54 @@
+package me.vukas.common.entity.generation.map.key;
+
+import me.vukas.common.entity.key.Key;
+
+import java.util.Map;
+
+public class MapNodeKey<N, V> extends Key<N, V> {
+    private final Map<Object, Key<?, ?>> valueKeys;
+    private final int size;
+
+    public MapNodeKey(N name, Class type, Class container, Map<Object, Key<?, ?>> valueKeys) {
+        this(name, type, container, valueKeys, valueKeys.size());
+    }
+
+    //keys of some values can be left out, the map still has to be of the same size
+    public MapNodeKey(N name, Class type, Class container, Map<Object, Key<?, ?>> valueKeys, int size) {
+        super(name, type, container);
+        this.valueKeys = valueKeys;
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Map<Object, Key<?, ?>> getValueKeys() {
+        return valueKeys;
+    }
+
+    @Override
+    public boolean match(V value) {
+        if (!(value instanceof Map) || ((Map) value).size() != this.size) {
+            return false;
+        }
+        Map map = (Map) value;
+        for (Map.Entry<Object, Key<?, ?>> entry : this.valueKeys.entrySet()) {
+            Key valueKey = entry.getValue();
+            if (!map.containsKey(entry.getKey()) || !valueKey.match(map.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Integer fingerprint() {
+        return this.size;
+    }
+
+    @Override
+    public int fingerprint(V value) {
+        return value instanceof Map ? ((Map) value).size() : -1;
+    }
+}
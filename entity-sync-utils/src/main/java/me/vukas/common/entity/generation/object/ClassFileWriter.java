@@ -0,0 +1,381 @@
+package me.vukas.common.entity.generation.object;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+//writes the subset of the class file format compiled generations use, java 8 class files
+//generated code keeps its stack empty and never stores locals at branch targets, so every frame equals the initial one
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_PROTECTED = 0x0004;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int ASTORE = 0x3a;
+    static final int AALOAD = 0x32;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IDIV = 0x6c;
+    static final int IFNE = 0x9a;
+    static final int TABLESWITCH = 0xaa;
+    static final int IRETURN = 0xac;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int NEW = 0xbb;
+    static final int CHECKCAST = 0xc0;
+
+    private static final int MAX_STACK = 16;    //deepest sequence pushes a list, the generation, a field and two wide values
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOutput = new DataOutputStream(this.pool);
+    private final Map<String, Integer> poolIndexes = new HashMap<String, Integer>();
+    private int poolSize = 1;
+    private final ByteArrayOutputStream members = new ByteArrayOutputStream();
+    private final DataOutputStream membersOutput = new DataOutputStream(this.members);
+    private int fieldCount;
+    private final List<Code> methods = new ArrayList<Code>();
+    private final String name;
+    private final String superName;
+
+    ClassFileWriter(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    void field(int access, String name, String descriptor) {
+        try {
+            this.membersOutput.writeShort(access);
+            this.membersOutput.writeShort(this.utf8(name));
+            this.membersOutput.writeShort(this.utf8(descriptor));
+            this.membersOutput.writeShort(0);
+        } catch (IOException e) {
+            throw new UnsupportedOperationException(e);
+        }
+        this.fieldCount++;
+    }
+
+    //maxLocals covers the arguments, this included, and any locals the code stores
+    Code method(int access, String name, String descriptor, int maxLocals) {
+        Code code = new Code(access, this.utf8(name), this.utf8(descriptor), maxLocals);
+        this.methods.add(code);
+        return code;
+    }
+
+    byte[] toByteArray() {
+        try {
+            int codeName = this.utf8("Code");
+            int stackMapTableName = this.utf8("StackMapTable");
+            int thisClass = this.classReference(this.name);
+            int superClass = this.classReference(this.superName);
+            if (this.poolSize > 0xffff) {
+                throw new UnsupportedOperationException("Too many constants in " + this.name);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(0xcafebabe);
+            output.writeShort(0);
+            output.writeShort(52);
+            output.writeShort(this.poolSize);
+            this.pool.writeTo(output);
+            output.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            output.writeShort(thisClass);
+            output.writeShort(superClass);
+            output.writeShort(0);
+            output.writeShort(this.fieldCount);
+            this.members.writeTo(output);
+            output.writeShort(this.methods.size());
+            for (Code code : this.methods) {
+                code.writeTo(output, codeName, stackMapTableName);
+            }
+            output.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    private int utf8(String value) {
+        Integer index = this.poolIndexes.get("U" + value);
+        if (index == null) {
+            index = this.constant("U" + value, 1);
+            try {
+                this.poolOutput.writeUTF(value);
+            } catch (IOException e) {
+                throw new UnsupportedOperationException(e);
+            }
+        }
+        return index;
+    }
+
+    private int classReference(String internalName) {
+        return this.reference("C" + internalName, 7, this.utf8(internalName), -1);
+    }
+
+    private int string(String value) {
+        return this.reference("S" + value, 8, this.utf8(value), -1);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return this.reference("N" + name + ' ' + descriptor, 12, this.utf8(name), this.utf8(descriptor));
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        return this.reference(tag + owner + '.' + name + descriptor, tag, this.classReference(owner), this.nameAndType(name, descriptor));
+    }
+
+    //entries which only refer to other entries, second is -1 for the ones with a single reference
+    private int reference(String key, int tag, int first, int second) {
+        Integer index = this.poolIndexes.get(key);
+        if (index == null) {
+            index = this.constant(key, tag);
+            try {
+                this.poolOutput.writeShort(first);
+                if (second >= 0) {
+                    this.poolOutput.writeShort(second);
+                }
+            } catch (IOException e) {
+                throw new UnsupportedOperationException(e);
+            }
+        }
+        return index;
+    }
+
+    private int constant(String key, int tag) {
+        int index = this.poolSize++;
+        this.poolIndexes.put(key, index);
+        this.pool.write(tag);
+        return index;
+    }
+
+    static final class Label {
+        private int position = -1;
+        private final List<int[]> references = new ArrayList<int[]>();  //instruction start and offset position
+    }
+
+    final class Code {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final int maxLocals;
+        private byte[] code = new byte[256];
+        private int length;
+        private final List<Label> labels = new ArrayList<Label>();
+        private final TreeSet<Integer> frames = new TreeSet<Integer>();
+
+        private Code(int access, int name, int descriptor, int maxLocals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = maxLocals;
+        }
+
+        void op(int opcode) {
+            this.u1(opcode);
+        }
+
+        void local(int opcode, int index) {
+            this.u1(opcode);
+            this.u1(index);
+        }
+
+        void intConstant(int value) {
+            if (value >= -1 && value <= 5) {
+                this.u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                this.u1(BIPUSH);
+                this.u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                this.u1(SIPUSH);
+                this.u2(value);
+            } else {
+                throw new UnsupportedOperationException("Constant out of range: " + value);
+            }
+        }
+
+        void string(String value) {
+            this.u1(LDC_W);
+            this.u2(ClassFileWriter.this.string(value));
+        }
+
+        void type(int opcode, String internalName) {
+            this.u1(opcode);
+            this.u2(ClassFileWriter.this.classReference(internalName));
+        }
+
+        void field(int opcode, String owner, String name, String descriptor) {
+            this.u1(opcode);
+            this.u2(ClassFileWriter.this.member(9, owner, name, descriptor));
+        }
+
+        void method(int opcode, String owner, String name, String descriptor) {
+            this.u1(opcode);
+            if (opcode == INVOKEINTERFACE) {
+                this.u2(ClassFileWriter.this.member(11, owner, name, descriptor));
+                this.u1(argumentSlots(descriptor) + 1);
+                this.u1(0);
+            } else {
+                this.u2(ClassFileWriter.this.member(10, owner, name, descriptor));
+            }
+        }
+
+        void jump(int opcode, Label label) {
+            this.reference(label, this.length, 2);
+            this.u1(opcode);
+            this.u2(0);
+        }
+
+        void tableSwitch(int low, Label defaultLabel, Label[] labels) {
+            int start = this.length;
+            this.u1(TABLESWITCH);
+            while (this.length % 4 != 0) {
+                this.u1(0);
+            }
+            this.reference(defaultLabel, start, 4);
+            this.u4(0);
+            this.u4(low);
+            this.u4(low + labels.length - 1);
+            for (Label label : labels) {
+                this.reference(label, start, 4);
+                this.u4(0);
+            }
+        }
+
+        void mark(Label label) {
+            label.position = this.length;
+            this.frames.add(this.length);
+        }
+
+        private void reference(Label label, int instruction, int size) {
+            int offsetPosition = size == 2 ? this.length + 1 : this.length;
+            label.references.add(new int[]{instruction, offsetPosition, size});
+            if (!this.labels.contains(label)) {
+                this.labels.add(label);
+            }
+        }
+
+        private void writeTo(DataOutputStream output, int codeName, int stackMapTableName) throws IOException {
+            for (Label label : this.labels) {
+                for (int[] reference : label.references) {
+                    int offset = label.position - reference[0];
+                    if (reference[2] == 2) {
+                        this.put(reference[1], offset >> 8);
+                        this.put(reference[1] + 1, offset);
+                    } else {
+                        this.put(reference[1], offset >> 24);
+                        this.put(reference[1] + 1, offset >> 16);
+                        this.put(reference[1] + 2, offset >> 8);
+                        this.put(reference[1] + 3, offset);
+                    }
+                }
+            }
+            if (this.length > 0xffff) {
+                throw new UnsupportedOperationException("Method too large");
+            }
+
+            ByteArrayOutputStream stackMapTable = new ByteArrayOutputStream();
+            DataOutputStream frames = new DataOutputStream(stackMapTable);
+            frames.writeShort(this.frames.size());
+            int previous = -1;
+            for (int position : this.frames) {
+                int delta = position - previous - 1;
+                if (delta < 64) {
+                    frames.write(delta);                //same_frame
+                } else {
+                    frames.write(251);                  //same_frame_extended
+                    frames.writeShort(delta);
+                }
+                previous = position;
+            }
+
+            int attributesLength = this.frames.isEmpty() ? 0 : 6 + stackMapTable.size();
+            output.writeShort(this.access);
+            output.writeShort(this.name);
+            output.writeShort(this.descriptor);
+            output.writeShort(1);
+            output.writeShort(codeName);
+            output.writeInt(12 + this.length + attributesLength);
+            output.writeShort(MAX_STACK);
+            output.writeShort(this.maxLocals);
+            output.writeInt(this.length);
+            output.write(this.code, 0, this.length);
+            output.writeShort(0);
+            if (this.frames.isEmpty()) {
+                output.writeShort(0);
+            } else {
+                output.writeShort(1);
+                output.writeShort(stackMapTableName);
+                output.writeInt(stackMapTable.size());
+                stackMapTable.writeTo(output);
+            }
+        }
+
+        private void u1(int value) {
+            if (this.length == this.code.length) {
+                byte[] code = new byte[this.code.length * 2];
+                System.arraycopy(this.code, 0, code, 0, this.length);
+                this.code = code;
+            }
+            this.code[this.length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            this.u1(value >> 8);
+            this.u1(value);
+        }
+
+        private void u4(int value) {
+            this.u2(value >> 16);
+            this.u2(value);
+        }
+
+        private void put(int position, int value) {
+            this.code[position] = (byte) value;
+        }
+    }
+
+    //slots taken by the arguments of a method descriptor, longs and doubles take two
+    static int argumentSlots(String descriptor) {
+        int slots = 0;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            char type = descriptor.charAt(i);
+            if (type == 'J' || type == 'D') {
+                slots += 2;
+                continue;
+            }
+            slots++;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,109 @@
+package me.vukas.common.entity.generation.object;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.TypeMetadata;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//base of the ObjectEntityGeneration spun at runtime for one type when the engines are built with compileTypes
+//the generated subclass reads and writes every field through its own static final method handle, which the JIT treats
+//as a constant, so diff, key generation and matching, compare and patch run straight-line code inlined field by field
+public abstract class CompiledEntityGeneration extends ObjectEntityGeneration<Object> {
+    private static final ConcurrentMap<String, Object[]> CONSTANTS = new ConcurrentHashMap<String, Object[]>();
+
+    private final IdentityMap<FieldMetadata, Integer> fieldIndexes = new IdentityMap<FieldMetadata, Integer>();
+
+    protected CompiledEntityGeneration(TypeMetadata typeMetadata) {
+        super(typeMetadata.getClassMetadata().getType());
+        List<FieldMetadata> fields = typeMetadata.getClassMetadata().getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            this.fieldIndexes.put(fields.get(i), i);
+        }
+    }
+
+    //null for types the generated class can not hold, those stay on the reflective path
+    public static ObjectEntityGeneration<?> compile(TypeMetadata typeMetadata) {
+        return EntityGenerationCompiler.compile(typeMetadata);
+    }
+
+    static void putConstants(String className, Object[] constants) {
+        CONSTANTS.put(className, constants);
+    }
+
+    //called once by the static initializer of each generated class, the handles end up in its static final fields
+    public static Object[] takeConstants(String className) {
+        return CONSTANTS.remove(className);
+    }
+
+    //children name fields of the type or its superclasses, the field index selects the generated code for it
+    @Override
+    public void patchFields(Patch patch, Object original, NodeElement<?, Object> diff) {
+        for (Element<?, ?> element : diff.getChildren()) {
+            Integer index = this.fieldIndexes.get(element.getKey().getFieldMetadata());
+            if (index == null) {
+                throw new UnsupportedOperationException("Field not found during patch process");
+            }
+            this.patchField(index, patch, original, element);
+        }
+    }
+
+    //index of the field in ClassMetadata.getFields()
+    protected abstract void patchField(int index, Patch patch, Object original, Element<?, ?> element);
+
+    protected Element<?, ?> diffField(Diff diff, FieldMetadata field, Object originalValue, Object revisedValue) {
+        return this.diffField(diff, field.getName(), field.getType(), field.getDeclaringClass(), originalValue, revisedValue);
+    }
+
+    protected Element<?, ?> diffPrimitiveField(FieldMetadata field, boolean equal, Object originalValue, Object revisedValue) {
+        return this.diffPrimitiveField(field.getName(), field.getType(), field.getDeclaringClass(), equal, originalValue, revisedValue);
+    }
+
+    protected Key<?, ?> generateFieldKey(Diff diff, FieldMetadata field, Object value) {
+        return this.generateFieldKey(diff, field.getName(), field.getType(), field.getDeclaringClass(), value);
+    }
+
+    //same semantics as FieldMetadata.equalValues, public so generated classes in their own class loader can call them
+    public static boolean equal(int value1, int value2) {
+        return value1 == value2;
+    }
+
+    public static boolean equal(long value1, long value2) {
+        return value1 == value2;
+    }
+
+    public static boolean equal(double value1, double value2) {
+        return Double.doubleToLongBits(value1) == Double.doubleToLongBits(value2);
+    }
+
+    public static boolean equal(float value1, float value2) {
+        return Float.floatToIntBits(value1) == Float.floatToIntBits(value2);
+    }
+
+    public static boolean equal(short value1, short value2) {
+        return value1 == value2;
+    }
+
+    public static boolean equal(byte value1, byte value2) {
+        return value1 == value2;
+    }
+
+    public static boolean equal(char value1, char value2) {
+        return value1 == value2;
+    }
+
+    public static boolean equal(boolean value1, boolean value2) {
+        return value1 == value2;
+    }
+
+    public static boolean equal(Object value1, Object value2) {
+        return value1 == value2 || value1 != null && value1.equals(value2);
+    }
+}
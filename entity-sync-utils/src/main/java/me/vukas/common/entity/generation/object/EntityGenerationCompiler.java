@@ -0,0 +1,433 @@
+package me.vukas.common.entity.generation.object;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.TypeMetadata;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+import static me.vukas.common.entity.generation.object.ClassFileWriter.*;
+
+//spins a CompiledEntityGeneration subclass with the same field order and semantics as the reflective paths of Diff,
+//Compare and Patch, the generated code only refers to library and platform classes, field values are passed as Object
+//methods are split into chunks of fields so each stays small enough for the JIT to compile
+final class EntityGenerationCompiler {
+    private static final int FIELDS_PER_METHOD = 32;
+    private static final int MAX_FIELDS = 4096;    //three constants per field, the constant pool holds 65535 entries
+    private static final AtomicInteger GENERATED_CLASSES = new AtomicInteger();
+
+    private static final String BASE = "me/vukas/common/entity/generation/object/CompiledEntityGeneration";
+    private static final String OBJECT_GENERATION = "me/vukas/common/entity/generation/object/ObjectEntityGeneration";
+    private static final String DIFF = "Lme/vukas/common/entity/operation/Diff;";
+    private static final String COMPARE = "Lme/vukas/common/entity/operation/Compare;";
+    private static final String PATCH = "Lme/vukas/common/entity/operation/Patch;";
+    private static final String ELEMENT = "Lme/vukas/common/entity/element/Element;";
+    private static final String KEY = "me/vukas/common/entity/key/Key";
+    private static final String FIELD_METADATA = "Lme/vukas/common/entity/metadata/FieldMetadata;";
+    private static final String TYPE_METADATA = "Lme/vukas/common/entity/metadata/TypeMetadata;";
+    private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String LIST = "java/util/List";
+    private static final String ARRAY_LIST = "java/util/ArrayList";
+
+    private final TypeMetadata typeMetadata;
+    private final List<FieldMetadata> fields;
+    private final IdentityMap<FieldMetadata, Integer> fieldIndexes = new IdentityMap<FieldMetadata, Integer>();
+    private final ClassFileWriter writer;
+
+    private EntityGenerationCompiler(TypeMetadata typeMetadata, String className) {
+        this.typeMetadata = typeMetadata;
+        this.fields = typeMetadata.getClassMetadata().getFields();
+        for (int i = 0; i < this.fields.size(); i++) {
+            this.fieldIndexes.put(this.fields.get(i), i);
+        }
+        this.writer = new ClassFileWriter(className, BASE);
+    }
+
+    static ObjectEntityGeneration<?> compile(TypeMetadata typeMetadata) {
+        Class type = typeMetadata.getClassMetadata().getType();
+        String simpleName = type.getSimpleName().isEmpty() ? "Type" : type.getSimpleName();
+        String className = BASE + "$" + simpleName + "$" + GENERATED_CLASSES.incrementAndGet();
+        EntityGenerationCompiler compiler = new EntityGenerationCompiler(typeMetadata, className);
+        if (!compiler.canCompile()) {
+            return null;
+        }
+        byte[] bytes = compiler.write();
+
+        String binaryName = className.replace('/', '.');
+        CompiledEntityGeneration.putConstants(binaryName, compiler.constants());
+        try {
+            Class<?> generated = new GeneratedClassLoader(CompiledEntityGeneration.class.getClassLoader()).define(binaryName, bytes);
+            return (ObjectEntityGeneration<?>) generated.getConstructor(TypeMetadata.class).newInstance(typeMetadata);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException(e);
+        } catch (InstantiationException e) {
+            throw new UnsupportedOperationException(e);
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException(e);
+        } catch (InvocationTargetException e) {
+            throw new UnsupportedOperationException(e.getCause());
+        } finally {
+            CompiledEntityGeneration.takeConstants(binaryName);     //left behind only if initialization failed
+        }
+    }
+
+    //key and compared fields of entities come from their declaring classes, they must be fields of the type itself
+    private boolean canCompile() {
+        if (this.fields.size() > MAX_FIELDS) {
+            return false;
+        }
+        for (FieldMetadata field : this.typeMetadata.getKeyFields()) {
+            if (!this.fieldIndexes.containsKey(field)) {
+                return false;
+            }
+        }
+        for (FieldMetadata field : this.typeMetadata.getComparedFields()) {
+            if (!this.fieldIndexes.containsKey(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //getter, setter and metadata of every field, in the order of the static final fields
+    private Object[] constants() {
+        Object[] constants = new Object[this.fields.size() * 3];
+        for (int i = 0; i < this.fields.size(); i++) {
+            FieldMetadata field = this.fields.get(i);
+            Class valueType = field.getType().isPrimitive() ? field.getType() : Object.class;
+            constants[3 * i] = field.getTypedGetter().asType(MethodType.methodType(valueType, Object.class));
+            constants[3 * i + 1] = field.getSetter();
+            constants[3 * i + 2] = field;
+        }
+        return constants;
+    }
+
+    private byte[] write() {
+        for (int i = 0; i < this.fields.size(); i++) {
+            this.writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "G" + i, "L" + METHOD_HANDLE + ";");
+            this.writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "S" + i, "L" + METHOD_HANDLE + ";");
+            this.writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "F" + i, FIELD_METADATA);
+        }
+        this.writeStaticInitializer();
+        this.writeConstructor();
+        this.writeDiffFields();
+        this.writeGenerateFieldKeys();
+        this.writeMatchFieldKeys();
+        this.writeCompareFields();
+        this.writePatchField();
+        return this.writer.toByteArray();
+    }
+
+    //class files before java 9 may assign static final fields outside of <clinit>, so the assignments are chunked too
+    private void writeStaticInitializer() {
+        ClassFileWriter.Code code = this.writer.method(ACC_STATIC, "<clinit>", "()V", 0);
+        code.string(this.writer.getName().replace('/', '.'));
+        code.method(INVOKESTATIC, BASE, "takeConstants", "(Ljava/lang/String;)[Ljava/lang/Object;");
+        for (int chunk = 0; chunk < chunks(this.fields.size()); chunk++) {
+            code.op(DUP);
+            code.method(INVOKESTATIC, this.writer.getName(), "init" + chunk, "([Ljava/lang/Object;)V");
+
+            ClassFileWriter.Code init = this.writer.method(ACC_PRIVATE | ACC_STATIC, "init" + chunk, "([Ljava/lang/Object;)V", 1);
+            for (int i = chunk * FIELDS_PER_METHOD; i < end(chunk, this.fields.size()); i++) {
+                this.writeConstant(init, 3 * i, "G" + i, METHOD_HANDLE);
+                this.writeConstant(init, 3 * i + 1, "S" + i, METHOD_HANDLE);
+                this.writeConstant(init, 3 * i + 2, "F" + i, FIELD_METADATA.substring(1, FIELD_METADATA.length() - 1));
+            }
+            init.op(RETURN);
+        }
+        code.op(POP);
+        code.op(RETURN);
+    }
+
+    private void writeConstant(ClassFileWriter.Code code, int index, String field, String type) {
+        code.local(ALOAD, 0);
+        code.intConstant(index);
+        code.op(AALOAD);
+        code.type(CHECKCAST, type);
+        code.field(PUTSTATIC, this.writer.getName(), field, "L" + type + ";");
+    }
+
+    private void writeConstructor() {
+        ClassFileWriter.Code code = this.writer.method(ACC_PUBLIC, "<init>", "(" + TYPE_METADATA + ")V", 2);
+        code.local(ALOAD, 0);
+        code.local(ALOAD, 1);
+        code.method(INVOKESPECIAL, BASE, "<init>", "(" + TYPE_METADATA + ")V");
+        code.op(RETURN);
+    }
+
+    //same as Diff.processFields, primitive fields become leaves, the rest is diffed through the engine
+    private void writeDiffFields() {
+        List<FieldMetadata> fields = this.typeMetadata.getFields();
+        String chunkDescriptor = "(" + DIFF + OBJECT + OBJECT + "L" + LIST + ";)V";
+        ClassFileWriter.Code code = this.writer.method(ACC_PUBLIC, "diffFields", "(" + DIFF + OBJECT + OBJECT + ")L" + LIST + ";", 5);
+        this.newList(code, fields.size(), 4);
+        for (int chunk = 0; chunk < chunks(fields.size()); chunk++) {
+            for (int local = 0; local <= 4; local++) {
+                code.local(ALOAD, local);
+            }
+            code.method(INVOKESPECIAL, this.writer.getName(), "diff" + chunk, chunkDescriptor);
+
+            ClassFileWriter.Code diff = this.writer.method(ACC_PRIVATE, "diff" + chunk, chunkDescriptor, 5);
+            for (int i = chunk * FIELDS_PER_METHOD; i < end(chunk, fields.size()); i++) {
+                FieldMetadata field = fields.get(i);
+                int index = this.fieldIndexes.get(field);
+                diff.local(ALOAD, 4);
+                diff.local(ALOAD, 0);
+                if (field.getType().isPrimitive()) {
+                    this.getField(diff, "F", index, FIELD_METADATA);
+                    this.readField(diff, index, 2, false);
+                    this.readField(diff, index, 3, false);
+                    diff.method(INVOKESTATIC, BASE, "equal", "(" + descriptor(field.getType()) + descriptor(field.getType()) + ")Z");
+                    this.readField(diff, index, 2, true);
+                    this.readField(diff, index, 3, true);
+                    diff.method(INVOKEVIRTUAL, BASE, "diffPrimitiveField", "(" + FIELD_METADATA + "Z" + OBJECT + OBJECT + ")" + ELEMENT);
+                } else {
+                    diff.local(ALOAD, 1);
+                    this.getField(diff, "F", index, FIELD_METADATA);
+                    this.readField(diff, index, 2, true);
+                    this.readField(diff, index, 3, true);
+                    diff.method(INVOKEVIRTUAL, BASE, "diffField", "(" + DIFF + FIELD_METADATA + OBJECT + OBJECT + ")" + ELEMENT);
+                }
+                this.addToList(diff);
+            }
+            diff.op(RETURN);
+        }
+        code.local(ALOAD, 4);
+        code.op(ARETURN);
+    }
+
+    //same as Diff.generateKey, one key per key field
+    private void writeGenerateFieldKeys() {
+        List<FieldMetadata> fields = this.typeMetadata.getKeyFields();
+        String chunkDescriptor = "(" + DIFF + OBJECT + "L" + LIST + ";)V";
+        ClassFileWriter.Code code = this.writer.method(ACC_PUBLIC, "generateFieldKeys", "(" + DIFF + OBJECT + ")L" + LIST + ";", 4);
+        this.newList(code, fields.size(), 3);
+        for (int chunk = 0; chunk < chunks(fields.size()); chunk++) {
+            for (int local = 0; local <= 3; local++) {
+                code.local(ALOAD, local);
+            }
+            code.method(INVOKESPECIAL, this.writer.getName(), "keys" + chunk, chunkDescriptor);
+
+            ClassFileWriter.Code keys = this.writer.method(ACC_PRIVATE, "keys" + chunk, chunkDescriptor, 4);
+            for (int i = chunk * FIELDS_PER_METHOD; i < end(chunk, fields.size()); i++) {
+                int index = this.fieldIndexes.get(fields.get(i));
+                keys.local(ALOAD, 3);
+                keys.local(ALOAD, 0);
+                keys.local(ALOAD, 1);
+                this.getField(keys, "F", index, FIELD_METADATA);
+                this.readField(keys, index, 2, true);
+                keys.method(INVOKEVIRTUAL, BASE, "generateFieldKey", "(" + DIFF + FIELD_METADATA + OBJECT + ")L" + KEY + ";");
+                this.addToList(keys);
+            }
+            keys.op(RETURN);
+        }
+        code.local(ALOAD, 3);
+        code.op(ARETURN);
+    }
+
+    //keys are in key field order, as generateFieldKeys made them
+    private void writeMatchFieldKeys() {
+        List<FieldMetadata> fields = this.typeMetadata.getKeyFields();
+        String descriptor = "(L" + LIST + ";" + OBJECT + ")Z";
+        ClassFileWriter.Code code = this.writer.method(ACC_PUBLIC, "matchFieldKeys", descriptor, 3);
+        for (int chunk = 0; chunk < chunks(fields.size()); chunk++) {
+            for (int local = 0; local <= 2; local++) {
+                code.local(ALOAD, local);
+            }
+            code.method(INVOKESPECIAL, this.writer.getName(), "match" + chunk, descriptor);
+            returnFalseUnless(code);
+
+            ClassFileWriter.Code match = this.writer.method(ACC_PRIVATE, "match" + chunk, descriptor, 3);
+            for (int i = chunk * FIELDS_PER_METHOD; i < end(chunk, fields.size()); i++) {
+                match.local(ALOAD, 1);
+                match.intConstant(i);
+                match.method(INVOKEINTERFACE, LIST, "get", "(I)" + OBJECT);
+                match.type(CHECKCAST, KEY);
+                this.readField(match, this.fieldIndexes.get(fields.get(i)), 2, true);
+                match.method(INVOKEVIRTUAL, KEY, "match", "(" + OBJECT + ")Z");
+                returnFalseUnless(match);
+            }
+            returnTrue(match);
+        }
+        returnTrue(code);
+    }
+
+    //same as Compare with compiled types, leaf fields are compared by value before the graph is walked
+    private void writeCompareFields() {
+        List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+        for (FieldMetadata field : this.typeMetadata.getComparedFields()) {
+            if (isStringOrPrimitiveOrWrapped(field.getType())) {
+                fields.add(field);
+            }
+        }
+        for (FieldMetadata field : this.typeMetadata.getComparedFields()) {
+            if (!isStringOrPrimitiveOrWrapped(field.getType())) {
+                fields.add(field);
+            }
+        }
+
+        String descriptor = "(" + COMPARE + OBJECT + OBJECT + ")Z";
+        ClassFileWriter.Code code = this.writer.method(ACC_PUBLIC, "compareFields", descriptor, 4);
+        for (int chunk = 0; chunk < chunks(fields.size()); chunk++) {
+            for (int local = 0; local <= 3; local++) {
+                code.local(ALOAD, local);
+            }
+            code.method(INVOKESPECIAL, this.writer.getName(), "compare" + chunk, descriptor);
+            returnFalseUnless(code);
+
+            ClassFileWriter.Code compare = this.writer.method(ACC_PRIVATE, "compare" + chunk, descriptor, 4);
+            for (int i = chunk * FIELDS_PER_METHOD; i < end(chunk, fields.size()); i++) {
+                FieldMetadata field = fields.get(i);
+                int index = this.fieldIndexes.get(field);
+                if (isStringOrPrimitiveOrWrapped(field.getType())) {
+                    String valueDescriptor = field.getType().isPrimitive() ? descriptor(field.getType()) : OBJECT;
+                    this.readField(compare, index, 2, false);
+                    this.readField(compare, index, 3, false);
+                    compare.method(INVOKESTATIC, BASE, "equal", "(" + valueDescriptor + valueDescriptor + ")Z");
+                } else {
+                    compare.local(ALOAD, 0);
+                    compare.local(ALOAD, 1);
+                    this.readField(compare, index, 2, false);
+                    this.readField(compare, index, 3, false);
+                    compare.method(INVOKEVIRTUAL, OBJECT_GENERATION, "compareField", "(" + COMPARE + OBJECT + OBJECT + ")Z");
+                }
+                returnFalseUnless(compare);
+            }
+            returnTrue(compare);
+        }
+        returnTrue(code);
+    }
+
+    //switches on the chunk of the field index, then on the index, the original value is patched and set back
+    private void writePatchField() {
+        String descriptor = "(I" + PATCH + OBJECT + ELEMENT + ")V";
+        ClassFileWriter.Code code = this.writer.method(ACC_PROTECTED, "patchField", descriptor, 5);
+        int chunks = chunks(this.fields.size());
+        if (chunks == 0) {
+            code.op(RETURN);
+            return;
+        }
+        ClassFileWriter.Label[] chunkLabels = labels(chunks);
+        ClassFileWriter.Label none = new ClassFileWriter.Label();
+        code.local(ILOAD, 1);
+        code.intConstant(FIELDS_PER_METHOD);
+        code.op(IDIV);
+        code.tableSwitch(0, none, chunkLabels);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            code.mark(chunkLabels[chunk]);
+            code.local(ALOAD, 0);
+            code.local(ILOAD, 1);
+            code.local(ALOAD, 2);
+            code.local(ALOAD, 3);
+            code.local(ALOAD, 4);
+            code.method(INVOKESPECIAL, this.writer.getName(), "patch" + chunk, descriptor);
+            code.op(RETURN);
+
+            ClassFileWriter.Code patch = this.writer.method(ACC_PRIVATE, "patch" + chunk, descriptor, 5);
+            int start = chunk * FIELDS_PER_METHOD;
+            ClassFileWriter.Label[] fieldLabels = labels(end(chunk, this.fields.size()) - start);
+            ClassFileWriter.Label noField = new ClassFileWriter.Label();
+            patch.local(ILOAD, 1);
+            patch.tableSwitch(start, noField, fieldLabels);
+            for (int i = start; i < end(chunk, this.fields.size()); i++) {
+                patch.mark(fieldLabels[i - start]);
+                this.getField(patch, "S", i, "L" + METHOD_HANDLE + ";");
+                patch.local(ALOAD, 3);
+                patch.local(ALOAD, 0);
+                patch.local(ALOAD, 2);
+                this.readField(patch, i, 3, true);
+                patch.local(ALOAD, 4);
+                patch.method(INVOKEVIRTUAL, OBJECT_GENERATION, "patchField", "(" + PATCH + OBJECT + ELEMENT + ")" + OBJECT);
+                patch.method(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "(" + OBJECT + OBJECT + ")V");
+                patch.op(RETURN);
+            }
+            patch.mark(noField);
+            patch.op(RETURN);
+        }
+        code.mark(none);
+        code.op(RETURN);
+    }
+
+    private void getField(ClassFileWriter.Code code, String prefix, int index, String descriptor) {
+        code.field(GETSTATIC, this.writer.getName(), prefix + index, descriptor);
+    }
+
+    //pushes the value of the field of the object in the local, boxed if asked and primitive
+    private void readField(ClassFileWriter.Code code, int index, int local, boolean boxed) {
+        Class type = this.fields.get(index).getType();
+        String valueDescriptor = type.isPrimitive() ? descriptor(type) : OBJECT;
+        this.getField(code, "G", index, "L" + METHOD_HANDLE + ";");
+        code.local(ALOAD, local);
+        code.method(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "(" + OBJECT + ")" + valueDescriptor);
+        if (boxed && type.isPrimitive()) {
+            String wrapper = wrapper(type);
+            code.method(INVOKESTATIC, wrapper, "valueOf", "(" + valueDescriptor + ")L" + wrapper + ";");
+        }
+    }
+
+    private void newList(ClassFileWriter.Code code, int size, int local) {
+        code.type(NEW, ARRAY_LIST);
+        code.op(DUP);
+        code.intConstant(size);
+        code.method(INVOKESPECIAL, ARRAY_LIST, "<init>", "(I)V");
+        code.local(ASTORE, local);
+    }
+
+    private void addToList(ClassFileWriter.Code code) {
+        code.method(INVOKEINTERFACE, LIST, "add", "(" + OBJECT + ")Z");
+        code.op(POP);
+    }
+
+    private static void returnFalseUnless(ClassFileWriter.Code code) {
+        ClassFileWriter.Label next = new ClassFileWriter.Label();
+        code.jump(IFNE, next);
+        code.op(ICONST_0);
+        code.op(IRETURN);
+        code.mark(next);
+    }
+
+    private static void returnTrue(ClassFileWriter.Code code) {
+        code.op(ICONST_1);
+        code.op(IRETURN);
+    }
+
+    private static ClassFileWriter.Label[] labels(int count) {
+        ClassFileWriter.Label[] labels = new ClassFileWriter.Label[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = new ClassFileWriter.Label();
+        }
+        return labels;
+    }
+
+    private static int chunks(int fields) {
+        return (fields + FIELDS_PER_METHOD - 1) / FIELDS_PER_METHOD;
+    }
+
+    private static int end(int chunk, int fields) {
+        return Math.min((chunk + 1) * FIELDS_PER_METHOD, fields);
+    }
+
+    private static String descriptor(Class primitive) {
+        return MethodType.methodType(primitive).toMethodDescriptorString().substring(2);
+    }
+
+    private static String wrapper(Class primitive) {
+        return MethodType.methodType(primitive).wrap().returnType().getName().replace('.', '/');
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
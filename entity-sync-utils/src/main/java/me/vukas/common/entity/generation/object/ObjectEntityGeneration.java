@@ -0,0 +1,102 @@
+package me.vukas.common.entity.generation.object;
+
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.key.LeafKey;
+import me.vukas.common.entity.operation.Compare;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+//field level code for one exact type, used by Diff, Compare and Patch instead of reflective field access,
+//circular references and keys are still registered by the operations themselves
+//generations hold no state, so one instance is shared by all engines and the engine is passed to every call
+public abstract class ObjectEntityGeneration<T> {
+    private static volatile List<ObjectEntityGeneration<?>> generated;
+
+    private final Class<T> type;
+
+    @SuppressWarnings("unchecked")
+    protected ObjectEntityGeneration() {
+        this.type = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+    }
+
+    protected ObjectEntityGeneration(Class<T> type) {
+        this.type = type;
+    }
+
+    //generations written by entity-sync-processor and registered in META-INF/services, loaded once
+    public static List<ObjectEntityGeneration<?>> getGenerated() {
+        List<ObjectEntityGeneration<?>> generations = generated;
+        if (generations == null) {
+            synchronized (ObjectEntityGeneration.class) {
+                generations = generated;
+                if (generations == null) {
+                    generations = new ArrayList<ObjectEntityGeneration<?>>();
+                    for (ObjectEntityGeneration<?> generation : ServiceLoader.load(ObjectEntityGeneration.class)) {
+                        generations.add(generation);
+                    }
+                    generations = Collections.unmodifiableList(generations);
+                    generated = generations;
+                }
+            }
+        }
+        return generations;
+    }
+
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    public abstract List<Element<?, ?>> diffFields(Diff diff, T original, T revised);
+
+    public abstract List<Key<?, ?>> generateFieldKeys(Diff diff, T value);
+
+    public abstract void patchFields(Patch patch, T original, NodeElement<?, T> element);
+
+    public abstract boolean compareFields(Compare compare, T entity1, T entity2);
+
+    //matches keys made by generateFieldKeys against the fields of value, in the same order
+    @SuppressWarnings("unchecked")
+    public boolean matchFieldKeys(List<Key<?, ?>> keys, T value) {
+        for (Key key : keys) {
+            if (!key.match(key.getFieldMetadata().get(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected Element<?, ?> diffField(Diff diff, String name, Class type, Class container, Object originalValue, Object revisedValue) {
+        Class revisedType = revisedValue == null ? null : revisedValue.getClass();
+        Key key = diff.generateKey(name, type, container, originalValue);
+        return diff.diff(diff.getRevisedIfCircularReference(originalValue), revisedValue, name, revisedType, container, key);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Element<?, ?> diffPrimitiveField(String name, Class type, Class container, boolean equal, Object originalValue, Object revisedValue) {
+        Key key = new LeafKey(name, type, container, originalValue);
+        return new LeafElement(name, equal ? Element.Status.EQUAL : Element.Status.MODIFIED, key, revisedValue);
+    }
+
+    protected Key<?, ?> generateFieldKey(Diff diff, String name, Class type, Class container, Object value) {
+        return diff.generateKey(name, type, container, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Object patchField(Patch patch, Object original, Element<?, ?> element) {
+        return patch.patch(original, (Element) element);
+    }
+
+    protected boolean compareField(Compare compare, Object value1, Object value2) {
+        Class type = value1 == null ? null : value1.getClass();
+        return compare.compare(value1, value2, type);
+    }
+}
@@ -0,0 +1,75 @@
+package me.vukas.common.entity.generation.string;
+
+import me.vukas.common.entity.EntityGeneration;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.generation.array.BlockDelta;
+import me.vukas.common.entity.generation.array.element.BlockDeltaElement;
+import me.vukas.common.entity.generation.string.key.StringKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.operation.Diff;
+import me.vukas.common.entity.operation.Patch;
+
+import java.util.List;
+
+import static me.vukas.common.base.ContentHash.ofString;
+
+//diffs long strings into a BlockDelta of their characters instead of sending the whole revised string
+public class StringEntityGeneration extends EntityGeneration<String> {
+    private final int minLength;
+
+    public StringEntityGeneration(Diff diff, int minLength) {
+        super();
+        this.minLength = minLength;
+        this.setDiff(diff);
+    }
+
+    public StringEntityGeneration(Patch patch) {
+        super();
+        this.minLength = 0;
+        this.setPatch(patch);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> Element<N, String> diff(String original, String revised, N elementName, Class fieldType, Class containerType, Key<N, String> key) {
+        if (original.equals(revised)) {
+            return new LeafElement<N, String>(elementName, Element.Status.EQUAL, key, revised);
+        }
+        if (revised.length() < this.minLength) {
+            return new LeafElement<N, String>(elementName, Element.Status.MODIFIED, key, revised);
+        }
+
+        List<BlockDeltaElement.Block> blocks = BlockDelta.diff(original.toCharArray(), revised.toCharArray());
+        int insertedLength = 0;
+        for (BlockDeltaElement.Block block : blocks) {
+            if (!block.isCopy()) {
+                insertedLength += block.getLength();
+            }
+        }
+        if (insertedLength == revised.length()) {   //nothing to copy from the original string
+            return new LeafElement<N, String>(elementName, Element.Status.MODIFIED, key, revised);
+        }
+
+        Key stringKey = this.generateKey(elementName, fieldType, containerType, original);
+        return (Element) new BlockDeltaElement<N>(elementName, Element.Status.MODIFIED, stringKey, revised.length(), blocks);
+    }
+
+    @Override
+    public <N> Key<N, String> generateKey(N elementName, Class elementType, Class containerType, String value) {
+        return new StringKey<N>(elementName, elementType, containerType, value.length(), ofString(value));
+    }
+
+    @Override
+    public <N> String patch(String original, Element<N, String> diff) {
+        if (!diff.getKey().match(original)) {
+            throw new UnsupportedOperationException("String length and/or hash mismatch");
+        }
+        return new String((char[]) BlockDelta.patch(original.toCharArray(), (BlockDeltaElement<?>) (Element<?, ?>) diff));
+    }
+
+    @Override
+    public boolean compare(String entity1, String entity2, Class fieldType) {
+        return entity1.equals(entity2);
+    }
+}
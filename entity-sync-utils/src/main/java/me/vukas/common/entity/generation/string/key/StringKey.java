@@ -0,0 +1,41 @@
+package me.vukas.common.entity.generation.string.key;
+
+import me.vukas.common.entity.key.Key;
+
+import static me.vukas.common.base.ContentHash.fold;
+import static me.vukas.common.base.ContentHash.ofString;
+
+//matches strings by length and 64 bit content hash, so the delta does not carry the original string
+public class StringKey<N> extends Key<N, String> {
+    private final int length;
+    private final long contentHash;
+
+    public StringKey(N name, Class type, Class container, int length, long contentHash) {
+        super(name, type, container);
+        this.length = length;
+        this.contentHash = contentHash;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean match(String value) {
+        return value != null && value.length() == this.length && ofString(value) == this.contentHash;
+    }
+
+    @Override
+    public Integer fingerprint() {
+        return fold(this.contentHash);
+    }
+
+    @Override
+    public int fingerprint(String value) {
+        return value == null ? 0 : fold(ofString(value));
+    }
+}
@@ -23,6 +23,19 @@ public abstract class CircularKey<N, V> extends Key<N, V> {
         this.circularLeafKeys.add(key);
     }
 
+    public List<LeafElement<?, ?>> getCircularLeafElements() {
+        return circularLeafElements;
+    }
+
+    public List<LeafKey<?, ?>> getCircularLeafKeys() {
+        return circularLeafKeys;
+    }
+
+    //circular references elsewhere in the diff are resolved when this key is matched
+    public boolean isReferenced() {
+        return !this.circularLeafElements.isEmpty() || !this.circularLeafKeys.isEmpty();
+    }
+
     public void updateCircularReferences(V value) {
         for (LeafElement element : this.circularLeafElements) {
             element.setValue(value);
@@ -0,0 +1,132 @@
+package me.vukas.common.entity.key;
+
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//compact alternative to NodeKey, keeps the structural hash of the value instead of a key per field
+//objects that had keys of their own when the value was hashed are cut, the same positions are cut when it is matched
+//objects inside the value are referenced by their position, circular references to them are resolved on match as
+//they would be through the nested keys of a NodeKey
+public class FingerprintKey<N, V> extends CircularKey<N, V> {
+    private final MetadataRegistry metadataRegistry;
+    private final long fingerprint;
+    private final int[] cuts;
+    private final List<Reference> references = new ArrayList<Reference>(0);    //only the ones circular references resolve through
+
+    public FingerprintKey(N name, Class type, Class container, MetadataRegistry metadataRegistry, long fingerprint, int[] cuts) {
+        super(name, type, container);
+        this.metadataRegistry = metadataRegistry;
+        this.fingerprint = fingerprint;
+        this.cuts = cuts;
+    }
+
+    public MetadataRegistry getMetadataRegistry() {
+        return this.metadataRegistry;
+    }
+
+    public long getFingerprint() {
+        return this.fingerprint;
+    }
+
+    public int[] getCuts() {
+        return this.cuts;
+    }
+
+    public List<Reference> getReferences() {
+        return this.references;
+    }
+
+    @Override
+    public boolean match(V value) {
+        final Object[] referenced = new Object[this.references.size()];
+        final int[] positions = new int[this.references.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = this.references.get(i).getPosition();
+        }
+
+        long hash = new StructuralHash(this.metadataRegistry) {
+            @Override
+            protected boolean isCut(Object value, int position) {
+                return Arrays.binarySearch(FingerprintKey.this.cuts, position) >= 0;
+            }
+
+            @Override
+            protected void reached(Object value, int position) {
+                for (int i = 0; i < positions.length; i++) {
+                    if (positions[i] == position) {
+                        referenced[i] = value;
+                    }
+                }
+            }
+        }.hash(value);
+        if (hash != this.fingerprint) {
+            return false;
+        }
+
+        this.updateCircularReferences(value);
+        for (int i = 0; i < referenced.length; i++) {
+            this.references.get(i).updateCircularReferences(referenced[i]);
+        }
+        return true;
+    }
+
+    //values with cuts hash differently depending on where they are cut, so only keys without them have a fingerprint
+    @Override
+    public Integer fingerprint() {
+        return this.cuts.length == 0 ? (int) (this.fingerprint ^ (this.fingerprint >>> 32)) : null;
+    }
+
+    @Override
+    public int fingerprint(V value) {
+        long hash = new StructuralHash(this.metadataRegistry).hash(value);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    //object at a position of the hashed value, added to the key once a circular reference is resolved through it
+    public static class Reference extends CircularKey<Object, Object> {
+        private final FingerprintKey<?, ?> key;
+        private final int position;
+
+        public Reference(FingerprintKey<?, ?> key, int position, Class type) {
+            super(null, type, null);
+            this.key = key;
+            this.position = position;
+        }
+
+        public FingerprintKey<?, ?> getKey() {
+            return this.key;
+        }
+
+        public int getPosition() {
+            return this.position;
+        }
+
+        @Override
+        public void registerCircularElement(LeafElement<?, ?> element) {
+            this.addToKey();
+            super.registerCircularElement(element);
+        }
+
+        @Override
+        public void registerCircularKey(LeafKey<?, ?> key) {
+            this.addToKey();
+            super.registerCircularKey(key);
+        }
+
+        private void addToKey() {
+            if (!this.isReferenced()) {
+                this.key.references.add(this);
+            }
+        }
+
+        //matched through its key
+        @Override
+        public boolean match(Object value) {
+            throw new UnsupportedOperationException("Reference is matched through its fingerprint key");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package me.vukas.common.entity.key;
+
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+
+import java.lang.reflect.Field;
+
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+
+public abstract class Key<N, V> {
+    private final N name;
+    private final Class type;
+    private final Class container;
+    private FieldMetadata fieldMetadata;
+
+    public Key(N name, Class type, Class container) {
+        this.name = name;
+        this.type = type;
+        this.container = container;
+    }
+
+    public N getName() {
+        return name;
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public Class getContainer() {
+        return container;
+    }
+
+    public Field getAccessibleDeclaredFiled() {
+        return this.getAccessibleDeclaredFiled((String) this.getName());
+    }
+
+    public Field getAccessibleDeclaredFiled(String fieldName) {
+        return this.getFieldMetadata(fieldName).getField();
+    }
+
+    public FieldMetadata getFieldMetadata() {
+        if (this.fieldMetadata == null) {
+            this.fieldMetadata = this.getFieldMetadata((String) this.getName());
+        }
+        return this.fieldMetadata;
+    }
+
+    public FieldMetadata getFieldMetadata(String fieldName) {
+        FieldMetadata field = ClassMetadata.forClass(this.getContainer()).getDeclaredField(fieldName);
+        if (field == null) {
+            throw new UnsupportedOperationException("Field not found during patch process");
+        }
+        return field;
+    }
+
+    public abstract boolean match(V value);
+
+    //equal for all values this key matches, null if it can match values regardless of their content
+    public Integer fingerprint() {
+        return null;
+    }
+
+    //fingerprint of the value as seen by keys of the same class and type, it equals fingerprint() of every such key matching the value
+    public int fingerprint(V value) {
+        return 0;
+    }
+
+    protected static boolean isLeafType(Class type) {
+        return isStringOrPrimitiveOrWrapped(type) || type != null && Enum.class.isAssignableFrom(type);
+    }
+}
@@ -22,4 +22,17 @@ public class LeafKey<N, V> extends Key<N, V> {
     public boolean match(V value) {
         return this.value == value || this.value != null && (this.value.equals(value) || this.value.equals(Name.CIRCULAR_REFERENCE));
     }
+
+    @Override
+    public Integer fingerprint() {
+        if (this.value != null && this.value.equals(Name.CIRCULAR_REFERENCE)) {
+            return null;
+        }
+        return this.value == null ? 0 : this.value.hashCode();
+    }
+
+    @Override
+    public int fingerprint(V value) {
+        return value == null ? 0 : value.hashCode();
+    }
 }
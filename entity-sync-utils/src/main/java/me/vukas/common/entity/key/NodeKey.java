@@ -0,0 +1,79 @@
+package me.vukas.common.entity.key;
+
+import me.vukas.common.entity.generation.object.ObjectEntityGeneration;
+
+import java.util.List;
+
+public class NodeKey<N, V> extends CircularKey<N, V> {
+    private final List<Key<?, ?>> children;
+    private final ObjectEntityGeneration<V> generation;     //generated the children, matches them without reflection
+
+    public NodeKey(N name, Class type, Class container, List<Key<?, ?>> children) {
+        this(name, type, container, children, null);
+    }
+
+    public NodeKey(N name, Class type, Class container, List<Key<?, ?>> children, ObjectEntityGeneration<V> generation) {
+        super(name, type, container);
+        this.children = children;
+        this.generation = generation;
+    }
+
+    public List<Key<?, ?>> getChildren() {
+        return children;
+    }
+
+    @Override
+    public boolean match(V value) {
+        return this.matchKey(value);
+    }
+
+    //only key fields of leaf types take part, keys of other fields depend on the values they were generated from
+    @Override
+    public Integer fingerprint() {
+        int fingerprint = 1;
+        for (Key child : this.children) {
+            fingerprint = 31 * fingerprint;
+            if (isLeafType(child.getType())) {
+                Integer childFingerprint = child.fingerprint();
+                if (childFingerprint == null) {
+                    return null;
+                }
+                fingerprint += childFingerprint;
+            }
+        }
+        return fingerprint;
+    }
+
+    @Override
+    public int fingerprint(V value) {
+        int fingerprint = 1;
+        for (Key child : this.children) {
+            fingerprint = 31 * fingerprint;
+            if (isLeafType(child.getType())) {
+                if (!child.getContainer().isInstance(value)) {
+                    return 0;
+                }
+                fingerprint += child.fingerprint(child.getFieldMetadata().get(value));
+            }
+        }
+        return fingerprint;
+    }
+
+    private boolean matchKey(V value) {
+        if (this.generation != null && value != null && value.getClass() == this.generation.getType()) {
+            if (!this.generation.matchFieldKeys(this.children, value)) {
+                return false;
+            }
+            this.updateCircularReferences(value);
+            return true;
+        }
+        for (Key child : this.children) {
+            Object childObject = child.getFieldMetadata().get(value);
+            if (!child.match(childObject)) {
+                return false;
+            }
+        }
+        this.updateCircularReferences(value);
+        return true;
+    }
+}
@@ -0,0 +1,235 @@
+package me.vukas.common.entity.key;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+
+//64-bit hash of a value graph over the key fields of its types, the same fields NodeKey is generated from
+//objects are numbered in traversal order, an object reached again (shared or circular) is hashed by the position it was
+//first reached at, and objects at cut positions are hashed by a marker only, so their content is not walked
+//lists and arrays are hashed in order, other collections and maps regardless of it: their elements are walked in the
+//order of a shape hash that ignores positions, so positions do not depend on iteration order
+//immutable platform value types are hashed by their value, other platform classes by their fields like any object
+public class StructuralHash {
+    private static final long NULL = 0x5BD1E995L;
+    private static final long REFERENCE = 0x27D4EB2F165667C5L;
+    private static final long CUT = 0x94D049BB133111EBL;
+    private static final Long IN_PROGRESS = 0xD6E8FEB86659FD93L;
+
+    private final MetadataRegistry metadataRegistry;
+    private final IdentityMap<Object, Integer> positions = new IdentityMap<Object, Integer>();
+    private final IdentityMap<Object, Long> shapes = new IdentityMap<Object, Long>();
+
+    public StructuralHash(MetadataRegistry metadataRegistry) {
+        this.metadataRegistry = metadataRegistry;
+    }
+
+    public long hash(Object value) {
+        this.positions.clear();
+        this.shapes.clear();
+        return this.hashValue(value);
+    }
+
+    //true if the object at position is hashed as a cut
+    protected boolean isCut(Object value, int position) {
+        return false;
+    }
+
+    //called for every object when it is first reached, before it is hashed
+    protected void reached(Object value, int position) {
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value * 0x9E3779B97F4A7C15L;
+        hash = Long.rotateLeft(hash, 27) * 0xBF58476D1CE4E5B9L;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static long hashString(String string) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < string.length(); i++) {
+            hash = (hash ^ string.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long hashLeaf(Object value) {
+        if (value instanceof String) {
+            return hashString((String) value);
+        } else if (value instanceof Double) {
+            return Double.doubleToLongBits((Double) value);
+        } else if (value instanceof Float) {
+            return Float.floatToIntBits((Float) value);
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return hashString(value.toString());    //keeps the scale, as equals does
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Character) {
+            return (Character) value;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 2;
+        } else if (value instanceof Enum) {
+            return hashString(((Enum) value).name());
+        } else if (value instanceof Date) {
+            long time = ((Date) value).getTime();
+            return value instanceof Timestamp ? mix(time, ((Timestamp) value).getNanos()) : time;
+        } else if (value instanceof Class) {
+            return hashString(((Class) value).getName());
+        }
+        return hashString(value.toString());    //value types whose string form is as precise as their equals
+    }
+
+    private static boolean isValueType(Class type) {
+        return type == BigDecimal.class || type == BigInteger.class || type == UUID.class || type == Locale.class
+                || type == Currency.class || type == URI.class || type == Class.class || Date.class.isAssignableFrom(type)
+                || (type.getName().startsWith("java.time.") && !Clock.class.isAssignableFrom(type));
+    }
+
+    private static boolean isLeaf(Object value) {
+        Class type = value.getClass();
+        return isStringOrPrimitiveOrWrapped(type) || value instanceof Enum || isValueType(type);
+    }
+
+    private long hashValue(Object value) {
+        if (value == null) {
+            return mix(NULL, 0);
+        }
+        Class type = value.getClass();
+        long hash = mix(hashString(type.getName()), 0);
+        if (isLeaf(value)) {
+            return mix(hash, hashLeaf(value));
+        }
+
+        Integer reached = this.positions.get(value);
+        if (reached != null) {
+            return mix(mix(hash, REFERENCE), reached);
+        }
+        int position = this.positions.size();
+        this.positions.put(value, position);
+        this.reached(value, position);
+        if (this.isCut(value, position)) {
+            return mix(hash, CUT);
+        }
+
+        if (type.isArray() && type.getComponentType().isPrimitive()) {
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                hash = mix(hash, hashLeaf(Array.get(value, i)));
+            }
+            return mix(hash, length);
+        } else if (type.isArray() || value instanceof List) {
+            int length = 0;
+            for (Object element : type.isArray() ? Arrays.asList((Object[]) value) : (List<?>) value) {
+                hash = mix(hash, this.hashValue(element));
+                length++;
+            }
+            return mix(hash, length);
+        } else if (value instanceof Collection) {
+            long sum = 0;
+            for (Object element : this.sortByShape(((Collection<?>) value).toArray())) {
+                sum += this.hashValue(element);
+            }
+            return mix(mix(hash, sum), ((Collection<?>) value).size());
+        } else if (value instanceof Map) {
+            long sum = 0;
+            for (Object entry : this.sortByShape(((Map<?, ?>) value).entrySet().toArray())) {
+                sum += mix(this.hashValue(((Map.Entry<?, ?>) entry).getKey()), this.hashValue(((Map.Entry<?, ?>) entry).getValue()));
+            }
+            return mix(mix(hash, sum), ((Map<?, ?>) value).size());
+        }
+
+        for (FieldMetadata field : this.metadataRegistry.getTypeMetadata(type).getKeyFields()) {
+            hash = mix(hash, this.hashValue(field.get(value)));
+        }
+        return hash;
+    }
+
+    //elements (or map entries) ordered by shape, elements of the same shape are interchangeable for the hash
+    private Object[] sortByShape(Object[] elements) {
+        final long[] shapes = new long[elements.length];
+        Integer[] order = new Integer[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            Object element = elements[i];
+            shapes[i] = element instanceof Map.Entry
+                    ? mix(this.shape(((Map.Entry<?, ?>) element).getKey()), this.shape(((Map.Entry<?, ?>) element).getValue()))
+                    : this.shape(element);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                return Long.compare(shapes[i], shapes[j]);
+            }
+        });
+        Object[] sorted = new Object[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            sorted[i] = elements[order[i]];
+        }
+        return sorted;
+    }
+
+    //hash of the content alone, without positions, references or cuts, shared objects are walked once
+    private long shape(Object value) {
+        if (value == null) {
+            return NULL;
+        }
+        Class type = value.getClass();
+        long hash = hashString(type.getName());
+        if (isLeaf(value)) {
+            return mix(hash, hashLeaf(value));
+        }
+
+        Long shape = this.shapes.get(value);
+        if (shape != null) {
+            return shape == IN_PROGRESS ? mix(hash, REFERENCE) : shape;
+        }
+        this.shapes.put(value, IN_PROGRESS);
+
+        if (type.isArray() && type.getComponentType().isPrimitive()) {
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                hash = mix(hash, hashLeaf(Array.get(value, i)));
+            }
+        } else if (type.isArray() || value instanceof List) {
+            for (Object element : type.isArray() ? Arrays.asList((Object[]) value) : (List<?>) value) {
+                hash = mix(hash, this.shape(element));
+            }
+        } else if (value instanceof Collection) {
+            long sum = 0;
+            for (Object element : (Collection<?>) value) {
+                sum += this.shape(element);
+            }
+            hash = mix(hash, sum);
+        } else if (value instanceof Map) {
+            long sum = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sum += mix(this.shape(entry.getKey()), this.shape(entry.getValue()));
+            }
+            hash = mix(hash, sum);
+        } else {
+            for (FieldMetadata field : this.metadataRegistry.getTypeMetadata(type).getKeyFields()) {
+                hash = mix(hash, this.shape(field.get(value)));
+            }
+        }
+        this.shapes.put(value, hash);
+        return hash;
+    }
+}
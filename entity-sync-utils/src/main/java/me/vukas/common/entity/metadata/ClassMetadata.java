@@ -0,0 +1,97 @@
+package me.vukas.common.entity.metadata;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ClassMetadata {
+    private static final ClassValue<ClassMetadata> CLASS_METADATA = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private final Class type;
+    private final boolean container;
+    private final boolean map;
+    private final boolean primitiveArray;
+    private volatile List<FieldMetadata> fields;
+    private volatile Map<String, FieldMetadata> declaredFields;
+
+    private ClassMetadata(Class type) {
+        this.type = type;
+        this.map = Map.class.isAssignableFrom(type);
+        this.container = type.isArray() || Collection.class.isAssignableFrom(type) || this.map;
+        this.primitiveArray = type.isArray() && type.getComponentType().isPrimitive();
+    }
+
+    //fields are resolved on first use, classes used only for dispatch are never opened for reflection
+    private synchronized void resolveFields() {
+        if (this.fields != null) {
+            return;
+        }
+        List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+        Map<String, FieldMetadata> declaredFields = new HashMap<String, FieldMetadata>();
+        for (Field field : this.type.getDeclaredFields()) {
+            if (isInstanceField(field)) {
+                field.setAccessible(true);
+                FieldMetadata fieldMetadata = new FieldMetadata(field);
+                fields.add(fieldMetadata);
+                declaredFields.put(field.getName(), fieldMetadata);
+            }
+        }
+        if (this.type.getSuperclass() != null) {
+            fields.addAll(forClass(this.type.getSuperclass()).getFields());  //superclass metadata is shared, not recomputed
+        }
+
+        this.declaredFields = declaredFields;
+        this.fields = Collections.unmodifiableList(fields);
+    }
+
+    public static ClassMetadata forClass(Class type) {
+        return CLASS_METADATA.get(type);
+    }
+
+    private static boolean isInstanceField(Field field) {
+        return !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic();
+    }
+
+    public Class getType() {
+        return this.type;
+    }
+
+    //arrays, collections and maps are handled by ArrayEntityGeneration
+    public boolean isContainer() {
+        return this.container;
+    }
+
+    //maps are handled by MapEntityGeneration, which falls back to ArrayEntityGeneration
+    public boolean isMap() {
+        return this.map;
+    }
+
+    //primitive arrays are handled by PrimitiveArrayEntityGeneration, without boxing their elements
+    public boolean isPrimitiveArray() {
+        return this.primitiveArray;
+    }
+
+    public List<FieldMetadata> getFields() {
+        if (this.fields == null) {
+            this.resolveFields();
+        }
+        return this.fields;
+    }
+
+    public FieldMetadata getDeclaredField(String fieldName) {
+        if (this.fields == null) {
+            this.resolveFields();
+        }
+        return this.declaredFields.get(fieldName);
+    }
+}
@@ -0,0 +1,189 @@
+package me.vukas.common.entity.metadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+public final class FieldMetadata {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Field field;
+    private final Class type;
+    private final MethodHandle getter;              //(Object)Object
+    private final MethodHandle setter;              //(Object,Object)void
+    private final MethodHandle typedGetter;         //(Object)<field type>
+    private final MethodHandle primitiveGetter;     //same as typedGetter, null for reference fields
+
+    FieldMetadata(Field field) {
+        this.field = field;
+        this.type = field.getType();
+        try {
+            MethodHandle getter = LOOKUP.unreflectGetter(field);
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.typedGetter = getter.asType(MethodType.methodType(this.type, Object.class));
+            this.primitiveGetter = this.type.isPrimitive() ? this.typedGetter : null;
+            this.setter = unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    private static MethodHandle unreflectSetter(Field field) throws IllegalAccessException {
+        MethodHandle setter;
+        try {
+            setter = LOOKUP.unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            //final fields can not be bound on every runtime, go through reflection for those
+            try {
+                setter = LOOKUP.findVirtual(Field.class, "set", MethodType.methodType(void.class, Object.class, Object.class)).bindTo(field);
+            } catch (NoSuchMethodException noSuchMethod) {
+                throw e;
+            }
+        }
+        return setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
+    public Field getField() {
+        return this.field;
+    }
+
+    public String getName() {
+        return this.field.getName();
+    }
+
+    public Class getType() {
+        return this.type;
+    }
+
+    public Class getDeclaringClass() {
+        return this.field.getDeclaringClass();
+    }
+
+    //handles are constants once generated code keeps them in static final fields
+    public MethodHandle getTypedGetter() {
+        return this.typedGetter;
+    }
+
+    public MethodHandle getSetter() {
+        return this.setter;
+    }
+
+    public boolean isPrimitive() {
+        return this.primitiveGetter != null;
+    }
+
+    public Object get(Object target) {
+        try {
+            return (Object) this.getter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void set(Object target, Object value) {
+        try {
+            this.setter.invokeExact(target, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public int getInt(Object target) {
+        try {
+            return (int) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long getLong(Object target) {
+        try {
+            return (long) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public double getDouble(Object target) {
+        try {
+            return (double) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public float getFloat(Object target) {
+        try {
+            return (float) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public short getShort(Object target) {
+        try {
+            return (short) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public byte getByte(Object target) {
+        try {
+            return (byte) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public char getChar(Object target) {
+        try {
+            return (char) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public boolean getBoolean(Object target) {
+        try {
+            return (boolean) this.primitiveGetter.invokeExact(target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    //compares primitive fields without boxing, with the same semantics as equals of the wrapped values
+    public boolean equalValues(Object target1, Object target2) {
+        if (this.type == int.class) {
+            return this.getInt(target1) == this.getInt(target2);
+        } else if (this.type == long.class) {
+            return this.getLong(target1) == this.getLong(target2);
+        } else if (this.type == double.class) {
+            return Double.doubleToLongBits(this.getDouble(target1)) == Double.doubleToLongBits(this.getDouble(target2));
+        } else if (this.type == float.class) {
+            return Float.floatToIntBits(this.getFloat(target1)) == Float.floatToIntBits(this.getFloat(target2));
+        } else if (this.type == boolean.class) {
+            return this.getBoolean(target1) == this.getBoolean(target2);
+        } else if (this.type == char.class) {
+            return this.getChar(target1) == this.getChar(target2);
+        } else if (this.type == short.class) {
+            return this.getShort(target1) == this.getShort(target2);
+        } else if (this.type == byte.class) {
+            return this.getByte(target1) == this.getByte(target2);
+        }
+        Object value1 = this.get(target1);
+        Object value2 = this.get(target2);
+        return value1 == value2 || value1 != null && value1.equals(value2);
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new UnsupportedOperationException(e);
+    }
+}
@@ -0,0 +1,48 @@
+package me.vukas.common.entity.metadata;
+
+import me.vukas.common.entity.EntityComparison;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//most specific registered generation per concrete class, resolved once and cached
+public class GenerationRegistry<G extends EntityComparison<?>> {
+    private static final Object NONE = new Object();
+
+    private final List<G> generations;
+    private final ConcurrentMap<Class, Object> typesToGenerations = new ConcurrentHashMap<Class, Object>();
+
+    public GenerationRegistry(List<G> generations) {
+        this.generations = new ArrayList<G>(generations);
+    }
+
+    @SuppressWarnings("unchecked")
+    public G getGeneration(Class type) {
+        if (type == null) {
+            return null;
+        }
+        Object generation = this.typesToGenerations.get(type);
+        if (generation == null) {
+            generation = this.resolve(type);
+            this.typesToGenerations.putIfAbsent(type, generation == null ? NONE : generation);
+        }
+        return generation == NONE ? null : (G) generation;
+    }
+
+    //a generation is replaced only by a later one registered for a strict subtype, so first registered wins on equal types
+    private G resolve(Class type) {
+        G result = null;
+        for (G generation : this.generations) {
+            Class generationType = generation.getType();
+            if (generationType == null || !generationType.isAssignableFrom(type)) {
+                continue;
+            }
+            if (result == null || (result.getType() != generationType && result.getType().isAssignableFrom(generationType))) {
+                result = generation;
+            }
+        }
+        return result;
+    }
+}
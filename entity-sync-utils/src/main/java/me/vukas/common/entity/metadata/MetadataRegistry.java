@@ -0,0 +1,32 @@
+package me.vukas.common.entity.metadata;
+
+import me.vukas.common.entity.EntityDefinition;
+import me.vukas.common.entity.IgnoredFields;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class MetadataRegistry {
+    private final Map<Class, EntityDefinition> typesToEntityDefinitions;
+    private final Map<Class, IgnoredFields> typesToIgnoredFields;
+    private final ConcurrentMap<Class, TypeMetadata> typesToMetadata = new ConcurrentHashMap<Class, TypeMetadata>();
+
+    public MetadataRegistry(Map<Class, EntityDefinition> typesToEntityDefinitions, Map<Class, IgnoredFields> typesToIgnoredFields) {
+        this.typesToEntityDefinitions = new HashMap<Class, EntityDefinition>(typesToEntityDefinitions);
+        this.typesToIgnoredFields = new HashMap<Class, IgnoredFields>(typesToIgnoredFields);
+    }
+
+    public TypeMetadata getTypeMetadata(Class type) {
+        TypeMetadata typeMetadata = this.typesToMetadata.get(type);
+        if (typeMetadata == null) {
+            typeMetadata = new TypeMetadata(ClassMetadata.forClass(type), this.typesToEntityDefinitions.get(type), this.typesToIgnoredFields.get(type));
+            TypeMetadata existing = this.typesToMetadata.putIfAbsent(type, typeMetadata);
+            if (existing != null) {
+                typeMetadata = existing;
+            }
+        }
+        return typeMetadata;
+    }
+}
@@ -0,0 +1,92 @@
+package me.vukas.common.entity.metadata;
+
+import me.vukas.common.entity.EntityDefinition;
+import me.vukas.common.entity.IgnoredFields;
+import me.vukas.common.entity.generation.object.CompiledEntityGeneration;
+import me.vukas.common.entity.generation.object.ObjectEntityGeneration;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class TypeMetadata {
+    private final ClassMetadata classMetadata;
+    private final List<FieldMetadata> fields;
+    private final List<FieldMetadata> keyFields;
+    private final List<FieldMetadata> comparedFields;
+    private final boolean entity;
+    private volatile ObjectEntityGeneration<?> compiledGeneration;
+    private volatile boolean compiled;
+
+    TypeMetadata(ClassMetadata classMetadata, EntityDefinition entityDefinition, IgnoredFields ignoredFields) {
+        this.classMetadata = classMetadata;
+        this.entity = entityDefinition != null;
+
+        List<FieldMetadata> allFields = classMetadata.getFields();
+        List<FieldMetadata> fields = new ArrayList<FieldMetadata>(allFields.size());
+        for (FieldMetadata field : allFields) {
+            if (ignoredFields == null || !ignoredFields.containsField(field.getDeclaringClass(), field.getName())) {
+                fields.add(field);
+            }
+        }
+        this.fields = Collections.unmodifiableList(fields);
+
+        if (entityDefinition == null) {
+            this.keyFields = allFields;
+            this.comparedFields = this.fields;
+        } else {
+            List<FieldMetadata> keyFields = new ArrayList<FieldMetadata>();
+            List<FieldMetadata> comparedFields = new ArrayList<FieldMetadata>();
+            for (Field field : entityDefinition.getFields()) {
+                FieldMetadata fieldMetadata = ClassMetadata.forClass(field.getDeclaringClass()).getDeclaredField(field.getName());
+                if (fieldMetadata == null) {
+                    throw new UnsupportedOperationException("Entity key field '" + field.getName() + "' must be an instance field");
+                }
+                keyFields.add(fieldMetadata);
+                if (ignoredFields == null || !ignoredFields.containsField(field.getDeclaringClass(), field.getName())) {
+                    comparedFields.add(fieldMetadata);
+                }
+            }
+            this.keyFields = Collections.unmodifiableList(keyFields);
+            this.comparedFields = Collections.unmodifiableList(comparedFields);
+        }
+    }
+
+    public ClassMetadata getClassMetadata() {
+        return this.classMetadata;
+    }
+
+    public boolean isEntity() {
+        return this.entity;
+    }
+
+    //all instance fields which are not ignored
+    public List<FieldMetadata> getFields() {
+        return this.fields;
+    }
+
+    //entity key fields, or all instance fields for value objects
+    public List<FieldMetadata> getKeyFields() {
+        return this.keyFields;
+    }
+
+    //key fields which are not ignored
+    public List<FieldMetadata> getComparedFields() {
+        return this.comparedFields;
+    }
+
+    //generated once on first use by engines built with compileTypes, null when the type can not be compiled
+    //engines shared between threads can reach it concurrently, so the class is defined under the lock
+    public ObjectEntityGeneration<?> getCompiledGeneration() {
+        if (!this.compiled) {
+            synchronized (this) {
+                if (!this.compiled) {
+                    this.compiledGeneration = CompiledEntityGeneration.compile(this);
+                    this.compiled = true;
+                }
+            }
+        }
+        return this.compiledGeneration;
+    }
+}
@@ -6,17 +6,13 @@ import me.vukas.common.entity.key.Key;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Stack;
 
 import static me.vukas.common.base.Objects.createNewObjectOfType;
 import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
 
 public class Clone {
-    private Diff diff;
-    private Patch patch;
-
-    public final Stack<Object> clonedElements = new Stack<Object>();
-    private final Map<Object, Object> originalToRevisedElements = new HashMap<Object, Object>();
+    private final Diff diff;
+    private final Patch patch;
 
     @SuppressWarnings("unchecked")
     private Clone(Builder builder) {
@@ -31,29 +27,31 @@ public class Clone {
     }
 
     public <T> T clone(T original) {
-        T result = this.clone(original, true);
-        this.originalToRevisedElements.clear();
-        return result;
+        return this.clone(original, true);
     }
 
+    //cloned elements are tracked in the diff session, so clones made during one diff share references
     public <T> T clone(T original, boolean flag) {
-        if (this.originalToRevisedElements.containsKey(original)) {
-            return (T) this.originalToRevisedElements.get(original);
-        }
-        Class originalClass = original == null ? null : original.getClass();
-        T cloned = (T) createNewObjectOfType(originalClass);
-        this.clonedElements.push(original);
-
-        if (originalClass != null && !isStringOrPrimitiveOrWrapped(originalClass)) {
-            this.originalToRevisedElements.put(original, cloned);
+        DiffSession session = this.diff.openSession();
+        try {
+            Object existing = session.getClonedElement(original);
+            if (existing != null) {
+                return (T) existing;
+            }
+            Class originalClass = original == null ? null : original.getClass();
+            T cloned = (T) createNewObjectOfType(originalClass);
+
+            if (originalClass != null && !isStringOrPrimitiveOrWrapped(originalClass)) {
+                session.putClonedElement(original, cloned);
+            }
+
+            Class revisedClass = original == null ? null : original.getClass();
+            Key<Name, T> rootKey = this.diff.generateKey(Name.ROOT, revisedClass, null, cloned);
+
+            return this.patch.patch(cloned, this.diff.diff(cloned, original, Name.ROOT, revisedClass, null, rootKey));
+        } finally {
+            this.diff.closeSession(session);
         }
-
-        Class revisedClass = original == null ? null : original.getClass();
-        Key<Name, T> rootKey = this.diff.generateKey(Name.ROOT, revisedClass, null, cloned);
-
-        cloned = this.patch.patch(cloned, this.diff.diff(cloned, original, Name.ROOT, revisedClass, null, rootKey));
-        this.clonedElements.pop();
-        return cloned;
     }
 
     public static class Builder {
@@ -0,0 +1,274 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.entity.EntityComparison;
+import me.vukas.common.entity.EntityDefinition;
+import me.vukas.common.entity.IgnoredFields;
+import me.vukas.common.entity.generation.array.ArrayEntityGeneration;
+import me.vukas.common.entity.generation.array.PrimitiveArrayEntityGeneration;
+import me.vukas.common.entity.generation.map.MapEntityGeneration;
+import me.vukas.common.entity.generation.map.MapEntryEntityGeneration;
+import me.vukas.common.entity.generation.object.ObjectEntityGeneration;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.GenerationRegistry;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+import me.vukas.common.entity.metadata.TypeMetadata;
+
+import java.util.*;
+
+import static me.vukas.common.base.Arrays.lengthOfCollectionOrMapOrArray;
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+
+public class Compare {
+    private final ThreadLocal<CompareSession> sessions = new ThreadLocal<CompareSession>() {
+        @Override
+        protected CompareSession initialValue() {
+            return new CompareSession();
+        }
+    };
+    private final MetadataRegistry metadataRegistry;
+    private final GenerationRegistry<EntityComparison<?>> entityComparisons;
+    private final Map<Class, ObjectEntityGeneration<?>> typesToObjectGenerations = new HashMap<Class, ObjectEntityGeneration<?>>();
+    private final EntityComparison<?> arrayComparison = new ArrayEntityGeneration<Object>(this);
+    private final EntityComparison<?> primitiveArrayComparison = new PrimitiveArrayEntityGeneration<Object>(this);
+    private final EntityComparison<?> mapComparison = new MapEntityGeneration<Object>(this, (ArrayEntityGeneration<Object>) this.arrayComparison);
+    private final boolean compileTypes;
+
+    private Compare(Builder builder) {
+        this.compileTypes = builder.compileTypes;
+        this.metadataRegistry = new MetadataRegistry(builder.typesToEntityDefinitions, builder.typesToIgnoredFields);
+
+        List<EntityComparison<?>> entityComparisons = new ArrayList<EntityComparison<?>>();
+        for (EntityComparison<?> entityComparison : builder.entityComparisons) {
+            entityComparison.setCompare(this);
+            entityComparisons.add(entityComparison);
+        }
+        this.entityComparisons = new GenerationRegistry<EntityComparison<?>>(entityComparisons);
+
+        //registered ones first, then the ones generated by entity-sync-processor
+        for (ObjectEntityGeneration<?> objectEntityGeneration : builder.objectEntityGenerations) {
+            this.typesToObjectGenerations.putIfAbsent(objectEntityGeneration.getType(), objectEntityGeneration);
+        }
+        for (ObjectEntityGeneration<?> objectEntityGeneration : ObjectEntityGeneration.getGenerated()) {
+            this.typesToObjectGenerations.putIfAbsent(objectEntityGeneration.getType(), objectEntityGeneration);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> EntityComparison<T> getEntityComparison(Class type) {
+        if (ClassMetadata.forClass(type).isPrimitiveArray()) {
+            return (EntityComparison<T>) this.primitiveArrayComparison;
+        }
+        if (ClassMetadata.forClass(type).isMap()) {
+            return (EntityComparison<T>) this.mapComparison;
+        }
+        if (ClassMetadata.forClass(type).isContainer()) {
+            return (EntityComparison<T>) this.arrayComparison;
+        }
+        return (EntityComparison<T>) this.entityComparisons.getGeneration(type);
+    }
+
+    public <T> boolean compare(T entity1, T entity2) {
+        Class entity1Class = entity1 == null ? null : entity1.getClass();
+        return this.compare(entity1, entity2, entity1Class);
+    }
+
+    public <T> boolean compare(T entity1, T entity2, Class fieldType) { //TODO: remove field type?
+        CompareSession session = this.sessions.get();
+        session.enter();
+        try {
+            return this.compare(session, entity1, entity2, fieldType);
+        } finally {
+            session.exit();
+        }
+    }
+
+    private <T> boolean compare(CompareSession session, T entity1, T entity2, Class fieldType) {
+        if (entity1 == entity2) {
+            return true;
+        }
+
+        if (entity1 == null || entity2 == null) {
+            return false;
+        }
+
+        if (isStringOrPrimitiveOrWrapped(fieldType) || Enum.class.isAssignableFrom(fieldType)) {
+            return entity1.equals(entity2);
+        }
+
+        if (session.visitedElements.contains(entity1) && session.allVisitedElements.containsKey(entity1)) {
+//            if(session.allVisitedElements.get(entity1).contains(entity2)) {
+//                return true;
+//            }
+            return session.allVisitedElements.get(entity1).equals(entity2);
+        }
+        session.visitedElements.push(entity1);
+
+        EntityComparison<T> entityComparison = this.getEntityComparison(fieldType);
+        if (entityComparison != null) {
+            boolean equals = entityComparison.compare(entity1, entity2, fieldType);
+            session.visitedElements.pop(entity1);
+            return equals;
+        }
+
+        session.allVisitedElements.put(entity1, entity2);
+
+        ObjectEntityGeneration<T> objectGeneration = (ObjectEntityGeneration<T>) this.typesToObjectGenerations.get(fieldType);
+        if (objectGeneration != null) {
+            boolean equals = objectGeneration.compareFields(this, entity1, entity2);
+            session.visitedElements.pop(entity1);
+            return equals;
+        }
+
+        TypeMetadata typeMetadata = this.metadataRegistry.getTypeMetadata(fieldType);
+        if (this.compileTypes) {
+            objectGeneration = (ObjectEntityGeneration<T>) typeMetadata.getCompiledGeneration();
+            if (objectGeneration != null) {
+                boolean equals = objectGeneration.compareFields(this, entity1, entity2);
+                session.visitedElements.pop(entity1);
+                return equals;
+            }
+        }
+
+        for (FieldMetadata field : typeMetadata.getComparedFields()) {
+            if (field.isPrimitive()) {
+                if (!field.equalValues(entity1, entity2)) {
+                    session.visitedElements.pop(entity1);
+                    return false;
+                }
+                continue;
+            }
+            Object field1 = field.get(entity1);
+            Class fieldClass = field1 == null ? null : field1.getClass();
+            if (!this.compare(session, field1, field.get(entity2), fieldClass)) {
+                session.visitedElements.pop(entity1);
+                return false;
+            }
+        }
+
+        session.visitedElements.pop(entity1);
+        return true;
+    }
+
+    //false when compare(entity1, entity, fieldType) can not hold for any non null entity1 of fieldType
+    //entities which can be equal to one of fieldType can be passed to fingerprint with that fieldType
+    public boolean canEqual(Object entity, Class fieldType) {
+        if (entity == null) {
+            return false;
+        }
+
+        if (isStringOrPrimitiveOrWrapped(fieldType) || Enum.class.isAssignableFrom(fieldType)) {
+            return fieldType.isInstance(entity);
+        }
+
+        if (ClassMetadata.forClass(fieldType).isContainer()) {
+            return ClassMetadata.forClass(entity.getClass()).isContainer();
+        }
+
+        if (this.getEntityComparison(fieldType) != null || this.typesToObjectGenerations.containsKey(fieldType)) {
+            return true;
+        }
+
+        //compared fields, entity key fields for entities, are read from the other entity
+        for (FieldMetadata field : this.metadataRegistry.getTypeMetadata(fieldType).getComparedFields()) {
+            if (!field.getDeclaringClass().isInstance(entity)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //hash which is equal for any two entities this compare considers equal when compared as fieldType, so candidates can be bucketed before a full compare
+    //leaf fields hash by value, so entities hash by their key field tuple, nested references only contribute whether they are null
+    public int fingerprint(Object entity, Class fieldType) {
+        if (entity == null) {
+            return 0;
+        }
+
+        if (isStringOrPrimitiveOrWrapped(fieldType) || Enum.class.isAssignableFrom(fieldType)) {
+            return entity.hashCode();
+        }
+
+        if (ClassMetadata.forClass(fieldType).isContainer()) {
+            return lengthOfCollectionOrMapOrArray(entity);
+        }
+
+        if (this.getEntityComparison(fieldType) != null || this.typesToObjectGenerations.containsKey(fieldType)) {
+            return 1;
+        }
+
+        int fingerprint = 1;
+        for (FieldMetadata field : this.metadataRegistry.getTypeMetadata(fieldType).getComparedFields()) {
+            Object value = field.get(entity);
+            int valueFingerprint = value == null ? 0 : 1;
+            if (value != null && (isStringOrPrimitiveOrWrapped(field.getType()) || Enum.class.isAssignableFrom(field.getType()))) {
+                valueFingerprint = value.hashCode();
+            }
+            fingerprint = 31 * fingerprint + valueFingerprint;
+        }
+        return fingerprint;
+    }
+
+    public static class Builder {
+        private final Map<Class, EntityDefinition> typesToEntityDefinitions = new HashMap<Class, EntityDefinition>();
+        private final Map<Class, IgnoredFields> typesToIgnoredFields = new HashMap<Class, IgnoredFields>();
+        private final List<EntityComparison<?>> entityComparisons = new ArrayList<EntityComparison<?>>();
+        private final List<ObjectEntityGeneration<?>> objectEntityGenerations = new ArrayList<ObjectEntityGeneration<?>>();
+        private boolean compileTypes;
+
+        public Builder() {
+            this.registerInternalEntityComparisons();
+        }
+
+        public Builder registerEntity(EntityDefinition entityDefinition) {
+            this.typesToEntityDefinitions.putIfAbsent(entityDefinition.getType(), entityDefinition);
+            return this;
+        }
+
+        public Builder registerEntities(List<EntityDefinition> entityDefinitions) {
+            for (EntityDefinition entityDefinition : entityDefinitions) {
+                this.typesToEntityDefinitions.putIfAbsent(entityDefinition.getType(), entityDefinition);
+            }
+            return this;
+        }
+
+        public Builder ignoreFields(IgnoredFields ignoredFields) {
+            this.typesToIgnoredFields.putIfAbsent(ignoredFields.getType(), ignoredFields);
+            return this;
+        }
+
+        public Builder registerEntityComparison(EntityComparison entityComparison) {
+            this.entityComparisons.add(entityComparison);
+            return this;
+        }
+
+        public Builder registerEntityGenerations(List<EntityComparison<?>> entityComparisons) {
+            this.entityComparisons.addAll(entityComparisons);
+            return this;
+        }
+
+        public Builder registerObjectEntityGeneration(ObjectEntityGeneration<?> objectEntityGeneration) {
+            this.objectEntityGenerations.add(objectEntityGeneration);
+            return this;
+        }
+
+        public Builder registerObjectEntityGenerations(List<ObjectEntityGeneration<?>> objectEntityGenerations) {
+            this.objectEntityGenerations.addAll(objectEntityGenerations);
+            return this;
+        }
+
+        //objects are handled by code generated for their type on first use, see CompiledEntityGeneration
+        public Builder compileTypes(boolean compileTypes) {
+            this.compileTypes = compileTypes;
+            return this;
+        }
+
+        private void registerInternalEntityComparisons() {
+            this.registerEntityComparison(new MapEntryEntityGeneration());
+        }
+
+        public Compare build() {
+            return new Compare(this);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.base.IdentityCounter;
+import me.vukas.common.base.IdentityMap;
+
+//traversal state of one compare call, pooled per thread and reset when the outermost call returns
+class CompareSession {
+    final IdentityCounter visitedElements = new IdentityCounter();
+    final IdentityMap<Object, Object> allVisitedElements = new IdentityMap<Object, Object>();
+
+    private int depth;
+
+    void enter() {
+        this.depth++;
+    }
+
+    void exit() {
+        if (--this.depth == 0) {
+            this.visitedElements.clear();
+            this.allVisitedElements.clear();
+        }
+    }
+}
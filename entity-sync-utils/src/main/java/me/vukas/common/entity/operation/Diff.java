@@ -0,0 +1,760 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.*;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.ArrayEntityGeneration;
+import me.vukas.common.entity.generation.array.PrimitiveArrayEntityGeneration;
+import me.vukas.common.entity.generation.array.key.ArrayNodeKey;
+import me.vukas.common.entity.generation.map.MapEntityGeneration;
+import me.vukas.common.entity.generation.map.MapEntryEntityGeneration;
+import me.vukas.common.entity.generation.map.key.MapNodeKey;
+import me.vukas.common.entity.generation.object.ObjectEntityGeneration;
+import me.vukas.common.entity.generation.string.StringEntityGeneration;
+import me.vukas.common.entity.key.CircularKey;
+import me.vukas.common.entity.key.FingerprintKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.key.LeafKey;
+import me.vukas.common.entity.key.NodeKey;
+import me.vukas.common.entity.key.StructuralHash;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.GenerationRegistry;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+import me.vukas.common.entity.metadata.TypeMetadata;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import static me.vukas.common.base.Objects.*;
+
+public class Diff {
+    private final Compare compare;
+    private final Clone clone;
+    private final ThreadLocal<DiffSession> sessions = new ThreadLocal<DiffSession>() {
+        @Override
+        protected DiffSession initialValue() {
+            return new DiffSession();
+        }
+    };
+
+    private final Map<Class, EntityDefinition> typesToEntityDefinitions;
+    private final MetadataRegistry metadataRegistry;
+    private final GenerationRegistry<EntityGeneration<?>> entityGenerations;
+    private final Map<Class, ObjectEntityGeneration<?>> typesToObjectGenerations = new HashMap<Class, ObjectEntityGeneration<?>>();
+    private final EntityGeneration<?> arrayGeneration;
+    private final EntityGeneration<?> mapGeneration;
+    private final EntityGeneration<?> primitiveArrayGeneration;
+    private final StringEntityGeneration stringGeneration;
+    private final ForkJoinPool forkJoinPool;
+    private final int parallelThreshold;
+    private final boolean sparse;
+    private final boolean lazy;
+    private final boolean fingerprintKeys;
+    private final boolean compileTypes;
+
+    @SuppressWarnings("unchecked")
+    private Diff(Builder builder) {
+        this.typesToEntityDefinitions = new HashMap<Class, EntityDefinition>(builder.typesToEntityDefinitions);
+        this.forkJoinPool = builder.forkJoinPool;
+        this.parallelThreshold = builder.parallelThreshold;
+        this.sparse = builder.sparse;
+        this.lazy = builder.lazy;
+        this.fingerprintKeys = builder.fingerprintKeys;
+        this.compileTypes = builder.compileTypes;
+        this.metadataRegistry = new MetadataRegistry(builder.typesToEntityDefinitions, builder.typesToIgnoredFields);
+
+        List<EntityGeneration<?>> entityGenerations = new ArrayList<EntityGeneration<?>>(builder.entityGenerations);
+        registerInternalEntityGenerations(entityGenerations);
+        this.entityGenerations = this.registerEntityGenerations(entityGenerations);
+        this.registerObjectEntityGenerations(builder.objectEntityGenerations);
+
+        this.compare = new Compare.Builder()
+                .registerEntities(new ArrayList<EntityDefinition>(this.typesToEntityDefinitions.values()))
+                .registerEntityGenerations((List<EntityComparison<?>>) (List<?>) entityGenerations)
+                .registerObjectEntityGenerations(builder.objectEntityGenerations)
+                .compileTypes(builder.compileTypes).build();
+        this.arrayGeneration = new ArrayEntityGeneration<Object>(this, this.compare);
+        this.mapGeneration = new MapEntityGeneration<Object>(this, this.compare, (ArrayEntityGeneration<Object>) this.arrayGeneration);
+        this.primitiveArrayGeneration = new PrimitiveArrayEntityGeneration<Object>(this, this.compare);
+        this.stringGeneration = builder.stringDeltaLength > 0 ? new StringEntityGeneration(this, builder.stringDeltaLength) : null;
+
+        this.clone = new Clone(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Diff(Map<Class, IgnoredFields> typesToIgnoredFields, Clone clone) {
+        this.typesToEntityDefinitions = new HashMap<Class, EntityDefinition>();
+        this.forkJoinPool = null;
+        this.parallelThreshold = 0;
+        this.sparse = false;
+        this.lazy = false;
+        this.fingerprintKeys = false;
+        this.compileTypes = false;
+        this.metadataRegistry = new MetadataRegistry(this.typesToEntityDefinitions, typesToIgnoredFields);
+
+        List<EntityGeneration<?>> entityGenerations = new ArrayList<EntityGeneration<?>>();
+        registerInternalEntityGenerations(entityGenerations);
+        this.entityGenerations = this.registerEntityGenerations(entityGenerations);
+        this.registerObjectEntityGenerations(Collections.<ObjectEntityGeneration<?>>emptyList());
+
+        this.compare = new Compare.Builder()
+                .registerEntities(new ArrayList<EntityDefinition>(this.typesToEntityDefinitions.values()))
+                .registerEntityGenerations((List<EntityComparison<?>>) (List<?>) entityGenerations).build();
+        this.arrayGeneration = new ArrayEntityGeneration<Object>(this, this.compare);
+        this.mapGeneration = new MapEntityGeneration<Object>(this, this.compare, (ArrayEntityGeneration<Object>) this.arrayGeneration);
+        this.primitiveArrayGeneration = new PrimitiveArrayEntityGeneration<Object>(this, this.compare);
+        this.stringGeneration = null;
+
+        this.clone = clone;
+    }
+
+    private static void registerInternalEntityGenerations(List<EntityGeneration<?>> entityGenerations) {
+        entityGenerations.add(new MapEntryEntityGeneration());
+    }
+
+    private GenerationRegistry<EntityGeneration<?>> registerEntityGenerations(List<EntityGeneration<?>> entityGenerations) {
+        List<EntityGeneration<?>> generations = new ArrayList<EntityGeneration<?>>();
+        for (EntityGeneration<?> entityGeneration : entityGenerations) {
+            entityGeneration.setDiff(this);
+            generations.add(entityGeneration);
+        }
+        return new GenerationRegistry<EntityGeneration<?>>(generations);
+    }
+
+    //registered ones first, then the ones generated by entity-sync-processor
+    private void registerObjectEntityGenerations(List<ObjectEntityGeneration<?>> objectEntityGenerations) {
+        for (ObjectEntityGeneration<?> objectEntityGeneration : objectEntityGenerations) {
+            this.typesToObjectGenerations.putIfAbsent(objectEntityGeneration.getType(), objectEntityGeneration);
+        }
+        for (ObjectEntityGeneration<?> objectEntityGeneration : ObjectEntityGeneration.getGenerated()) {
+            this.typesToObjectGenerations.putIfAbsent(objectEntityGeneration.getType(), objectEntityGeneration);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> EntityGeneration<T> getEntityGeneration(Class type) {
+        if (ClassMetadata.forClass(type).isPrimitiveArray()) {
+            return (EntityGeneration<T>) this.primitiveArrayGeneration;
+        }
+        if (ClassMetadata.forClass(type).isMap()) {
+            return (EntityGeneration<T>) this.mapGeneration;
+        }
+        if (ClassMetadata.forClass(type).isContainer()) {
+            return (EntityGeneration<T>) this.arrayGeneration;
+        }
+        return (EntityGeneration<T>) this.entityGenerations.getGeneration(type);
+    }
+
+    DiffSession openSession() {
+        DiffSession session = this.sessions.get();
+        session.enter();
+        return session;
+    }
+
+    void closeSession(DiffSession session) {
+        session.exit();
+    }
+
+    public <T> Element<Name, T> diff(T original, T revised) {
+        return this.diff(original, revised, false);
+    }
+
+    //keys of objects are always fingerprint keys here, FlatDiff stores them in its columns instead of keeping them
+    public <T> FlatDiff<Name, T> diffFlat(T original, T revised) {
+        return new FlatDiff<Name, T>(this.diff(original, revised, true));
+    }
+
+    private <T> Element<Name, T> diff(final T original, final T revised, final boolean fingerprintKeys) {
+        if (this.forkJoinPool != null) {
+            return this.forkJoinPool.invoke(new RecursiveTask<Element<Name, T>>() {
+                @Override
+                protected Element<Name, T> compute() {
+                    DiffSession previous = Diff.this.sessions.get();
+                    Diff.this.sessions.set(new DiffSession());
+                    try {
+                        return Diff.this.diffRoot(original, revised, fingerprintKeys);
+                    } finally {
+                        Diff.this.sessions.set(previous);
+                    }
+                }
+            });
+        }
+        return this.diffRoot(original, revised, fingerprintKeys);
+    }
+
+    //a flat diff is not diffed lazily, it is flattened as a whole right away
+    private <T> Element<Name, T> diffRoot(T original, T revised, boolean fingerprintKeys) {
+        if (this.lazy && !this.sparse && !fingerprintKeys && this.canDiffLazily(original, revised)) {
+            return this.diffRootLazily(original, revised);
+        }
+
+        DiffSession session = this.openSession();
+        boolean previousFingerprintKeys = session.fingerprintKeys;
+        session.fingerprintKeys = previousFingerprintKeys || fingerprintKeys;
+        try {
+            Class revisedClass = revised == null ? null : revised.getClass();
+            Key<Name, T> rootKey = this.generateKey(session, Name.ROOT, revisedClass, null, original);
+            Element<Name, T> element = this.diff(session, original, revised, Name.ROOT, revisedClass, null, rootKey);
+            return this.sparse ? (Element<Name, T>) this.prune(element) : element;
+        } finally {
+            session.fingerprintKeys = previousFingerprintKeys;
+            this.closeSession(session);
+        }
+    }
+
+    //only objects diffed field by field through reflection, the other generations build all children at once
+    private boolean canDiffLazily(Object original, Object revised) {
+        if (original == null || revised == null || original == revised || original.getClass() != revised.getClass()) {
+            return false;
+        }
+        Class type = revised.getClass();
+        return !isStringOrPrimitiveOrWrapped(type) && this.getEntityGeneration(type) == null
+                && !this.typesToObjectGenerations.containsKey(type);
+    }
+
+    //the root keeps its own session so fields diffed later see the same state as they would in one pass
+    private <T> Element<Name, T> diffRootLazily(T original, T revised) {
+        DiffSession session = new DiffSession();
+        session.enter();    //never reset, discarded with the root
+        DiffSession previous = this.sessions.get();
+        this.sessions.set(session);
+        try {
+            Class revisedClass = revised.getClass();
+            Key<Name, T> rootKey = this.generateKey(session, Name.ROOT, revisedClass, null, original);
+            session.putRevisedElement(original, revised);
+            session.putOriginalElement(revised, original);
+            List<FieldMetadata> fields = this.metadataRegistry.getTypeMetadata(revisedClass).getFields();
+            return new LazyNodeElement<Name, T>(this, session, Name.ROOT, rootKey, fields, original, revised);
+        } finally {
+            this.sessions.set(previous);
+        }
+    }
+
+    //field of a lazy node, diffed in the session of the root with the path to the node visited
+    //an object diffed through reflection becomes a lazy node itself
+    Element<?, ?> diffFieldLazily(DiffSession session, LazyNodeElement<?, ?> parent, Object[] path, FieldMetadata field, Object original, Object revised) {
+        DiffSession previous = this.sessions.get();
+        this.sessions.set(session);
+        for (Object visited : path) {
+            session.visitedElements.push(visited);
+        }
+        try {
+            return this.diffField(session, field, original, revised, parent);
+        } finally {
+            for (Object visited : path) {
+                session.visitedElements.pop(visited);
+            }
+            this.sessions.set(previous);
+        }
+    }
+
+    public boolean shouldDiffInParallel(int children) {
+        return this.forkJoinPool != null && children >= this.parallelThreshold && ForkJoinTask.inForkJoinPool();
+    }
+
+    //children are diffed in forked sessions and merged in order, a child which touched an object written by a child
+    //before it saw different state than it would in one pass, so it and the children after it are diffed again in
+    //parallel on top of the merged results (shared objects are then read as circular references)
+    //returns the diffed prefix of children, the caller diffs the rest sequentially when a child returns null because it
+    //can only be diffed in order, or when conflicts chain so that rounds keep only one child
+    public List<Element<?, ?>> diffInParallel(List<Callable<Element<?, ?>>> children) {
+        DiffSession session = this.sessions.get();
+        List<Element<?, ?>> elements = new ArrayList<Element<?, ?>>(children.size());
+        for (int round = 0; elements.size() < children.size(); round++) {
+            List<DiffTask> tasks = new ArrayList<DiffTask>(children.size() - elements.size());
+            for (Callable<Element<?, ?>> child : children.subList(elements.size(), children.size())) {
+                tasks.add(new DiffTask(new ForkedDiffSession(session), child));
+            }
+            ForkJoinTask.invokeAll(tasks);
+
+            IdentityMap<Object, Object> writtenElements = new IdentityMap<Object, Object>();
+            int merged = 0;
+            for (DiffTask task : tasks) {
+                Element<?, ?> element = task.getRawResult();
+                if (element == null) {
+                    return elements;
+                }
+                if (task.session.conflictsWith(writtenElements)) {
+                    break;
+                }
+                task.session.collectWrittenElements(writtenElements);
+                task.session.mergeInto(session);
+                elements.add(element);
+                merged++;
+            }
+            if (round > 0 && merged == 1 && elements.size() < children.size()) {
+                return elements;
+            }
+        }
+        return elements;
+    }
+
+    public <N, T> Element<N, T> diff(T original, T revised, N elementName, Class fieldType, Class containerType, Key<N, T> key) {
+        DiffSession session = this.openSession();
+        try {
+            return this.diff(session, original, revised, elementName, fieldType, containerType, key);
+        } finally {
+            this.closeSession(session);
+        }
+    }
+
+    private <N, T> Element<N, T> diff(DiffSession session, T original, T revised, N elementName, Class fieldType, Class containerType, Key<N, T> key) {
+        return this.diff(session, original, revised, elementName, fieldType, containerType, key, null);
+    }
+
+    //with a lazy parent, an object diffed through reflection is returned as a lazy node instead of diffing its fields
+    private <N, T> Element<N, T> diff(DiffSession session, T original, T revised, N elementName, Class fieldType, Class containerType, Key<N, T> key, LazyNodeElement<?, ?> lazyParent) {
+
+        //containers left null are leaves, their generations diff and patch existing containers only
+        boolean nullContainer = (original == null || revised == null) && fieldType != null && ClassMetadata.forClass(fieldType).isContainer();
+
+        if (original == revised) {
+
+            if(fieldType!=null && !nullContainer){
+                EntityGeneration<T> entityGeneration = this.getEntityGeneration(fieldType);
+                if (entityGeneration != null) {
+                    session.visitedElements.push(original);
+                    Element<N, T> element = entityGeneration.diff(original, revised, elementName, fieldType, containerType, key);
+                    session.visitedElements.pop(original);
+                    return element;
+                }
+            }
+
+            if (session.getRootCircularKey(revised) != null && (session.getRevisedElement(revised) != null || session.getOriginalElement(revised) != null)) {
+
+                return this.diff(session, session.getRevisedIfCircularReference(revised), revised, elementName, fieldType, containerType, key, lazyParent);
+            }
+
+            return new LeafElement<N, T>(elementName, Element.Status.EQUAL, key, revised);
+        }
+
+        if (original == null) {
+            EntityGeneration<T> entityGeneration = this.getEntityGeneration(fieldType);
+            if (entityGeneration != null && !nullContainer) {
+                return entityGeneration.diff(original, revised, elementName, fieldType, containerType, key);
+            }
+
+            if (session.getRootCircularKey(revised) != null && session.getRevisedElement(revised) != null) {
+                LeafElement<N, T> element = new LeafElement<N, T>(elementName, Element.Status.MODIFIED, key, (T) Name.CIRCULAR_REFERENCE);
+                session.registerCircularElement(session.getRootCircularKey(session.getRevisedElement(revised)), element);
+                return element;
+            }
+
+            return new LeafElement<N, T>(elementName, Element.Status.MODIFIED, key, this.clone.clone(revised, true));
+        }
+
+        if (revised == null) {
+            return new LeafElement<N, T>(elementName, Element.Status.MODIFIED, key, null);
+        }
+
+        if (!getWrappedClass(fieldType).equals(revised.getClass())) {
+            throw new UnsupportedOperationException("Diff objects must have the same type");
+        }
+
+        if (isStringOrPrimitiveOrWrapped(fieldType)) {
+            if (original.equals(revised)) {
+                return new LeafElement<N, T>(elementName, Element.Status.EQUAL, key, revised);
+            }
+            if (this.stringGeneration != null && fieldType == String.class) {
+                return (Element<N, T>) this.stringGeneration.diff((String) original, (String) revised, elementName, fieldType, containerType, (Key<N, String>) key);
+            }
+            return new LeafElement<N, T>(elementName, Element.Status.MODIFIED, key, revised);
+        }
+
+        if (session.getRootCircularKey(original) != null && session.getRevisedElement(original) != null) {
+            LeafElement<N, T> element = new LeafElement<N, T>(elementName, Element.Status.MODIFIED, key, (T) Name.CIRCULAR_REFERENCE);
+            session.registerCircularElement(session.getRootCircularKey(original), element);
+            return element;
+        }
+
+        //TODO: here was if with this.visitedElements.contains(original) - do we need this anymore?
+
+        session.visitedElements.push(original);
+
+        EntityGeneration<T> entityGeneration = this.getEntityGeneration(fieldType);
+        if (entityGeneration != null) {
+            Element<N, T> element = entityGeneration.diff(original, revised, elementName, fieldType, containerType, key);
+            session.visitedElements.pop(original);
+            return element;
+        }
+
+        session.putRevisedElement(original, revised);
+        session.putOriginalElement(revised, original);
+
+        if (lazyParent != null && !this.typesToObjectGenerations.containsKey(fieldType)) {
+            session.visitedElements.pop(original);
+            List<FieldMetadata> fields = this.metadataRegistry.getTypeMetadata(fieldType).getFields();
+            return new LazyNodeElement<N, T>(lazyParent, elementName, key, fields, original, revised);
+        }
+
+        List<Element<?, ?>> elements = this.processFields(session, fieldType, original, revised);
+
+        Element.Status status = determineElementStatus(elements);
+
+        session.visitedElements.pop(original);
+        return new NodeElement<N, T>(elementName, status, key, elements);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<Element<?, ?>> processFields(DiffSession session, Class fieldType, T original, T revised) {
+        ObjectEntityGeneration<T> objectGeneration = (ObjectEntityGeneration<T>) this.typesToObjectGenerations.get(fieldType);
+        if (objectGeneration != null) {
+            return objectGeneration.diffFields(this, original, revised);
+        }
+
+        TypeMetadata typeMetadata = this.metadataRegistry.getTypeMetadata(fieldType);
+        List<FieldMetadata> fields = typeMetadata.getFields();
+        boolean parallel = this.shouldDiffInParallel(fields.size());
+        if (this.compileTypes && !parallel) {
+            objectGeneration = (ObjectEntityGeneration<T>) typeMetadata.getCompiledGeneration();
+            if (objectGeneration != null) {
+                return objectGeneration.diffFields(this, original, revised);
+            }
+        }
+
+        List<Element<?, ?>> elements = parallel
+                ? this.diffInParallel(this.fieldDiffs(fields, original, revised))
+                : new ArrayList<Element<?, ?>>(fields.size());
+        for (int i = elements.size(); i < fields.size(); i++) {
+            elements.add(this.diffField(session, fields.get(i), original, revised));
+        }
+        return elements;
+    }
+
+    private <T> List<Callable<Element<?, ?>>> fieldDiffs(List<FieldMetadata> fields, final T original, final T revised) {
+        List<Callable<Element<?, ?>>> fieldDiffs = new ArrayList<Callable<Element<?, ?>>>(fields.size());
+        for (final FieldMetadata field : fields) {
+            fieldDiffs.add(new Callable<Element<?, ?>>() {
+                @Override
+                public Element<?, ?> call() {
+                    return Diff.this.diffField(Diff.this.sessions.get(), field, original, revised);
+                }
+            });
+        }
+        return fieldDiffs;
+    }
+
+    private <T> Element<?, ?> diffField(DiffSession session, FieldMetadata field, T original, T revised) {
+        return this.diffField(session, field, original, revised, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Element<?, ?> diffField(DiffSession session, FieldMetadata field, T original, T revised, LazyNodeElement<?, ?> lazyParent) {
+        Object originalField = field.get(original);
+        Object revisedField = field.get(revised);
+        if (field.isPrimitive()) {
+            Element.Status status = field.equalValues(original, revised) ? Element.Status.EQUAL : Element.Status.MODIFIED;
+            Key fieldKey = new LeafKey(field.getName(), field.getType(), field.getDeclaringClass(), originalField);
+            return new LeafElement(field.getName(), status, fieldKey, revisedField);
+        }
+        Class revisedFieldType = revisedField == null ? null : revisedField.getClass();
+        Key fieldKey = this.generateKey(session, field.getName(), field.getType(), field.getDeclaringClass(), originalField);
+        return this.diff(session, session.getRevisedIfCircularReference(originalField), revisedField, field.getName(), revisedFieldType, field.getDeclaringClass(), fieldKey, lazyParent);
+    }
+
+    //EQUAL elements are left out unless a circular reference is resolved through a key in their subtree, patch keeps
+    //absent children unchanged, shifted elements of ordered collections stay as EQUAL leaves so patch knows where they moved
+    //keys of collections and maps are reduced to the kept elements
+    @SuppressWarnings("unchecked")
+    private Element<?, ?> prune(Element<?, ?> element) {
+        if (!(element instanceof NodeElement)) {
+            return element;
+        }
+
+        Key key = element.getKey();
+        List<Element<?, ?>> children = new ArrayList<Element<?, ?>>();
+        for (Element<?, ?> child : ((NodeElement<?, ?>) element).getChildren()) {
+            Element<?, ?> prunedChild = this.prune(child);
+            if (!isUnchanged(prunedChild)) {
+                children.add(prunedChild);
+            } else if (key instanceof ArrayNodeKey && !child.getName().equals(child.getKey().getName())) {
+                children.add(new LeafElement(child.getName(), child.getStatus(), child.getKey(), null));
+            }
+        }
+
+        if (key instanceof ArrayNodeKey) {
+            //child keys keep their order, it decides which of them are matched by index
+            Set<Object> keptIndexes = new HashSet<Object>();
+            for (Element<?, ?> child : children) {
+                if (child.getStatus() != Element.Status.ADDED) {
+                    keptIndexes.add(child.getKey().getName());
+                }
+            }
+            List<Key<?, ?>> childKeys = new ArrayList<Key<?, ?>>();
+            for (Key<?, ?> childKey : ((ArrayNodeKey<?, ?>) key).getChildren()) {
+                if (keptIndexes.contains(childKey.getName())) {
+                    childKeys.add(childKey);
+                }
+            }
+            key = new ArrayNodeKey(key.getName(), key.getType(), key.getContainer(), childKeys, ((ArrayNodeKey) key).getLength());
+        } else if (key instanceof MapNodeKey) {
+            Map<Object, Key<?, ?>> valueKeys = new HashMap<Object, Key<?, ?>>();
+            for (Element<?, ?> child : children) {
+                if (child.getStatus() != Element.Status.ADDED) {
+                    valueKeys.put(child.getName(), child.getKey());
+                }
+            }
+            key = new MapNodeKey(key.getName(), key.getType(), key.getContainer(), valueKeys, ((MapNodeKey) key).getSize());
+        }
+        return new NodeElement(element.getName(), element.getStatus(), key, children);
+    }
+
+    private static boolean isUnchanged(Element<?, ?> element) {
+        if (element.getStatus() != Element.Status.EQUAL) {
+            return false;
+        }
+        if (element.getKey() instanceof CircularKey && ((CircularKey) element.getKey()).isReferenced()) {
+            return false;
+        }
+        return !(element instanceof NodeElement) || ((NodeElement<?, ?>) element).getChildren().isEmpty();
+    }
+
+    public static Element.Status determineElementStatus(List<Element<?, ?>> children) {
+        for (Element<?, ?> element : children) {
+            if (element.getStatus() != Element.Status.EQUAL) {
+                return Element.Status.MODIFIED;
+            }
+        }
+        return Element.Status.EQUAL;
+    }
+
+    public <T> T getRevisedIfCircularReference(T original) {
+        return this.sessions.get().getRevisedIfCircularReference(original);
+    }
+
+    public <T> void registerCircularElement(T original, LeafElement element) {
+        DiffSession session = this.sessions.get();
+        session.registerCircularElement(session.getRootCircularKey(original), element);
+    }
+
+    public <N, T> Key<N, T> generateKey(N elementName, Class elementType, Class containerType, T value) {
+        DiffSession session = this.openSession();
+        try {
+            return this.generateKey(session, elementName, elementType, containerType, value);
+        } finally {
+            this.closeSession(session);
+        }
+    }
+
+    private <N, T> Key<N, T> generateKey(DiffSession session, N elementName, Class elementType, Class containerType, T value) {
+        if (value == null || elementType == null || isStringOrPrimitiveOrWrapped(elementType) || Enum.class.isAssignableFrom(elementType)) {
+            return new LeafKey<N, T>(elementName, elementType, containerType, value);
+        }
+
+        CircularKey rootCircularKey = session.getRootCircularKey(value);
+        if (rootCircularKey != null) {
+            LeafKey<N, T> key = new LeafKey<N, T>(elementName, elementType, containerType, (T) Name.CIRCULAR_REFERENCE);
+            session.registerCircularKey(rootCircularKey, key);
+            return key;
+        }
+
+        if (session.isVisited(value)) {
+            LeafKey<N, T> key = new LeafKey<N, T>(elementName, elementType, containerType, (T) Name.CIRCULAR_REFERENCE);
+            session.addVisitedCircularKey(value, key);
+            return key;
+        }
+
+        EntityGeneration<T> entityGeneration = this.getEntityGeneration(elementType);
+        if ((this.fingerprintKeys || session.hasFingerprintKeys()) && entityGeneration == null) {
+            return this.generateFingerprintKey(session, elementName, elementType, containerType, value);
+        }
+
+        session.visitedKeys.push(value);
+
+        if (entityGeneration != null) {
+            Key<N, T> key = entityGeneration.generateKey(elementName, elementType, containerType, value);
+            session.visitedKeys.pop(value);
+            return key;
+        }
+
+        List<Key<?, ?>> keys;
+        ObjectEntityGeneration<T> objectGeneration = (ObjectEntityGeneration<T>) this.typesToObjectGenerations.get(elementType);
+        ObjectEntityGeneration<T> compiledGeneration = null;    //its keys are matched by generated code too
+        if (objectGeneration == null && this.compileTypes) {
+            compiledGeneration = (ObjectEntityGeneration<T>) this.metadataRegistry.getTypeMetadata(elementType).getCompiledGeneration();
+        }
+        if (objectGeneration != null) {
+            keys = objectGeneration.generateFieldKeys(this, value);
+        } else if (compiledGeneration != null) {
+            keys = compiledGeneration.generateFieldKeys(this, value);
+        } else {
+            List<FieldMetadata> fields = this.metadataRegistry.getTypeMetadata(elementType).getKeyFields();
+            keys = new ArrayList<Key<?, ?>>(fields.size());
+            for (FieldMetadata field : fields) {
+                Key<?, ?> key = this.generateKey(session, field.getName(), field.getType(), field.getDeclaringClass(), field.get(value));
+                keys.add(key);
+            }
+        }
+
+        session.visitedKeys.pop(value);
+        NodeKey<N, T> key = new NodeKey<N, T>(elementName, elementType, containerType, keys, compiledGeneration);
+        List<LeafKey> visitedCircularKeys = session.getVisitedCircularKeys(value);
+        if (visitedCircularKeys != null) {
+            for (LeafKey leafKey : visitedCircularKeys) {
+                key.registerCircularKey(leafKey);
+            }
+        }
+        session.putRootCircularKey(value, key);
+        return key;
+    }
+
+    //objects which already have keys are cut from the hash, they are matched through their own keys
+    private <N, T> Key<N, T> generateFingerprintKey(final DiffSession session, N elementName, Class elementType, Class containerType, T value) {
+        final List<Integer> cuts = new ArrayList<Integer>();
+        final List<Object> nested = new ArrayList<Object>();    //objects inside the value, by position
+        long fingerprint = new StructuralHash(this.metadataRegistry) {
+            @Override
+            protected boolean isCut(Object object, int position) {
+                if (session.getRootCircularKey(object) != null || session.isVisited(object)) {
+                    cuts.add(position);
+                    nested.add(null);
+                    return true;
+                }
+                nested.add(object);
+                return false;
+            }
+        }.hash(value);
+
+        int[] cutPositions = new int[cuts.size()];
+        for (int i = 0; i < cutPositions.length; i++) {
+            cutPositions[i] = cuts.get(i);
+        }
+        FingerprintKey<N, T> key = new FingerprintKey<N, T>(elementName, elementType, containerType, this.metadataRegistry, fingerprint, cutPositions);
+        session.putRootCircularKey(value, key);
+        //circular references to nested objects resolve through the key, as they would through their own keys
+        for (int position = 1; position < nested.size(); position++) {
+            Object object = nested.get(position);
+            if (object != null && session.getRootCircularKey(object) == null) {
+                session.putRootCircularKey(object, new FingerprintKey.Reference(key, position, object.getClass()));
+            }
+        }
+        return key;
+    }
+
+    public MetadataRegistry getMetadataRegistry() {
+        return this.metadataRegistry;
+    }
+
+    public static class Builder {
+        private final Map<Class, EntityDefinition> typesToEntityDefinitions = new HashMap<Class, EntityDefinition>();
+        private final Map<Class, IgnoredFields> typesToIgnoredFields = new HashMap<Class, IgnoredFields>();
+        private final List<EntityGeneration<?>> entityGenerations = new ArrayList<EntityGeneration<?>>();
+        private final List<ObjectEntityGeneration<?>> objectEntityGenerations = new ArrayList<ObjectEntityGeneration<?>>();
+        private boolean compileTypes;
+        private ForkJoinPool forkJoinPool;
+        private int parallelThreshold;
+        private int stringDeltaLength;
+        private boolean sparse;
+        private boolean lazy;
+        private boolean fingerprintKeys;
+
+        public Builder registerEntity(EntityDefinition entityDefinition) {
+            this.typesToEntityDefinitions.putIfAbsent(entityDefinition.getType(), entityDefinition);
+            return this;
+        }
+
+        public Builder registerEntities(List<EntityDefinition> entityDefinitions) {
+            for (EntityDefinition entityDefinition : entityDefinitions) {
+                this.typesToEntityDefinitions.putIfAbsent(entityDefinition.getType(), entityDefinition);
+            }
+            return this;
+        }
+
+        public Builder ignoreFields(IgnoredFields ignoredFields) {
+            this.typesToIgnoredFields.putIfAbsent(ignoredFields.getType(), ignoredFields);
+            return this;
+        }
+
+        public Builder registerEntityGeneration(EntityGeneration entityGeneration) {
+            this.entityGenerations.add(entityGeneration);
+            return this;
+        }
+
+        public Builder registerEntityGenerations(List<EntityGeneration<?>> entityGenerations) {
+            this.entityGenerations.addAll(entityGenerations);
+            return this;
+        }
+
+        public Builder registerObjectEntityGeneration(ObjectEntityGeneration<?> objectEntityGeneration) {
+            this.objectEntityGenerations.add(objectEntityGeneration);
+            return this;
+        }
+
+        //objects are handled by code generated for their type on first use, see CompiledEntityGeneration
+        public Builder compileTypes(boolean compileTypes) {
+            this.compileTypes = compileTypes;
+            return this;
+        }
+
+        //nodes with at least threshold fields or elements have their children diffed in parallel
+        public Builder parallel(ForkJoinPool forkJoinPool, int threshold) {
+            this.forkJoinPool = forkJoinPool;
+            this.parallelThreshold = threshold;
+            return this;
+        }
+
+        public Builder parallel(int threshold) {
+            return this.parallel(ForkJoinPool.commonPool(), threshold);
+        }
+
+        //changed strings of at least minLength characters are diffed into a delta of the original string
+        public Builder stringDelta(int minLength) {
+            this.stringDeltaLength = minLength;
+            return this;
+        }
+
+        //unchanged elements are left out of the diff
+        public Builder sparse(boolean sparse) {
+            this.sparse = sparse;
+            return this;
+        }
+
+        //fields of objects diffed through reflection are diffed when their status or children are first read, starting
+        //at the root, sparse diffs are never lazy
+        public Builder lazy(boolean lazy) {
+            this.lazy = lazy;
+            return this;
+        }
+
+        //objects are keyed by a structural hash of their key fields instead of a key per field, matched by rehashing
+        public Builder fingerprintKeys(boolean fingerprintKeys) {
+            this.fingerprintKeys = fingerprintKeys;
+            return this;
+        }
+
+        public Diff build() {
+            return new Diff(this);
+        }
+    }
+
+    private class DiffTask extends RecursiveTask<Element<?, ?>> {
+        private final ForkedDiffSession session;
+        private final Callable<Element<?, ?>> child;
+
+        private DiffTask(ForkedDiffSession session, Callable<Element<?, ?>> child) {
+            this.session = session;
+            this.child = child;
+        }
+
+        @Override
+        protected Element<?, ?> compute() {
+            DiffSession previous = Diff.this.sessions.get();
+            Diff.this.sessions.set(this.session);
+            try {
+                return this.child.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new UnsupportedOperationException(e);
+            } finally {
+                Diff.this.sessions.set(previous);
+            }
+        }
+    }
+}
\ No newline at end of file
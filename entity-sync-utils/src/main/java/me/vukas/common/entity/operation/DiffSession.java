@@ -0,0 +1,157 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.base.IdentityCounter;
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.key.CircularKey;
+import me.vukas.common.entity.key.LeafKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//traversal state of one diff (or clone) call, pooled per thread and reset when the outermost call returns
+class DiffSession {
+    final IdentityCounter visitedElements = new IdentityCounter();
+    final IdentityCounter visitedKeys = new IdentityCounter();
+
+    final IdentityMap<Object, List<LeafKey>> visitedCircularKeys = new IdentityMap<Object, List<LeafKey>>();
+    final IdentityMap<Object, CircularKey> rootCircularKeys = new IdentityMap<Object, CircularKey>();
+
+    final IdentityMap<Object, Object> originalToRevisedElements = new IdentityMap<Object, Object>();
+    final IdentityMap<Object, Object> revisedToOriginalElements = new IdentityMap<Object, Object>();
+
+    final IdentityMap<Object, Object> originalToClonedElements = new IdentityMap<Object, Object>();
+
+    boolean fingerprintKeys;    //for the whole call, set by the root of a flat diff
+
+    private int depth;
+
+    void enter() {
+        this.depth++;
+    }
+
+    void exit() {
+        if (--this.depth == 0) {
+            this.reset();
+        }
+    }
+
+    private void reset() {
+        this.visitedElements.clear();
+        this.visitedKeys.clear();
+        this.visitedCircularKeys.clear();
+        this.rootCircularKeys.clear();
+        this.originalToRevisedElements.clear();
+        this.revisedToOriginalElements.clear();
+        this.originalToClonedElements.clear();
+    }
+
+    //lookups go through these methods so ForkedDiffSession can overlay the state of its parent
+
+    boolean hasFingerprintKeys() {
+        return this.fingerprintKeys;
+    }
+
+    boolean isVisited(Object value) {
+        return this.visitedElements.contains(value) || this.visitedKeys.contains(value);
+    }
+
+    void touch(Object value) {
+    }
+
+    CircularKey findRootCircularKey(Object value) {
+        return this.rootCircularKeys.get(value);
+    }
+
+    Object findRevisedElement(Object original) {
+        return this.originalToRevisedElements.get(original);
+    }
+
+    Object findOriginalElement(Object revised) {
+        return this.revisedToOriginalElements.get(revised);
+    }
+
+    Object findClonedElement(Object original) {
+        return this.originalToClonedElements.get(original);
+    }
+
+    List<LeafKey> findVisitedCircularKeys(Object value) {
+        return this.visitedCircularKeys.get(value);
+    }
+
+    CircularKey getRootCircularKey(Object value) {
+        this.touch(value);
+        return this.findRootCircularKey(value);
+    }
+
+    Object getRevisedElement(Object original) {
+        this.touch(original);
+        return this.findRevisedElement(original);
+    }
+
+    Object getOriginalElement(Object revised) {
+        this.touch(revised);
+        return this.findOriginalElement(revised);
+    }
+
+    Object getClonedElement(Object original) {
+        this.touch(original);
+        return this.findClonedElement(original);
+    }
+
+    List<LeafKey> getVisitedCircularKeys(Object value) {
+        this.touch(value);
+        return this.findVisitedCircularKeys(value);
+    }
+
+    void putRootCircularKey(Object value, CircularKey key) {
+        this.touch(value);
+        this.rootCircularKeys.put(value, key);
+    }
+
+    void putRevisedElement(Object original, Object revised) {
+        this.touch(original);
+        this.originalToRevisedElements.put(original, revised);
+    }
+
+    void putOriginalElement(Object revised, Object original) {
+        this.touch(revised);
+        this.revisedToOriginalElements.put(revised, original);
+    }
+
+    void putClonedElement(Object original, Object cloned) {
+        this.touch(original);
+        this.originalToClonedElements.put(original, cloned);
+    }
+
+    void addVisitedCircularKey(Object value, LeafKey key) {
+        this.touch(value);
+        List<LeafKey> leafKeys = this.visitedCircularKeys.get(value);
+        if (leafKeys == null) {
+            leafKeys = new ArrayList<LeafKey>();
+            this.visitedCircularKeys.put(value, leafKeys);
+        }
+        leafKeys.add(key);
+    }
+
+    void registerCircularElement(CircularKey key, LeafElement element) {
+        key.registerCircularElement(element);
+    }
+
+    void registerCircularKey(CircularKey key, LeafKey leafKey) {
+        key.registerCircularKey(leafKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T getRevisedIfCircularReference(T original) {
+        Object revised = this.getRevisedElement(original);
+        if (revised != null) {
+            return (T) revised;
+        }
+        Object originalElement = this.getOriginalElement(original);
+        if (originalElement != null) {
+            return (T) originalElement;
+        }
+        return original;
+    }
+}
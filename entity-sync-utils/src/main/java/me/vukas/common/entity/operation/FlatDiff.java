@@ -0,0 +1,583 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.Name;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.map.key.MapEntryNodeKey;
+import me.vukas.common.entity.generation.map.key.MapNodeKey;
+import me.vukas.common.entity.key.CircularKey;
+import me.vukas.common.entity.key.FingerprintKey;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.key.LeafKey;
+import me.vukas.common.entity.key.NodeKey;
+import me.vukas.common.entity.key.StructuralHash;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static me.vukas.common.base.Objects.isStringOrPrimitiveOrWrapped;
+
+//diff tree stored in pre-order as parallel arrays, one row per element, with repeated names and types stored once
+//leaf keys and fingerprint keys (see Diff.diffFlat) are stored in columns too, other keys are kept as they are
+//circular references resolved through a fingerprint key are stored as slots of its row: the key itself and the objects
+//at its reference positions, filled when the row is matched during one patch call instead of being set on the keys
+//elements that are neither plain nodes nor plain leaves are kept as they are, and so are circular reference leaves
+//resolved through keys kept as they are, their values are set through those keys during patch
+public class FlatDiff<N, V> {
+    private static final byte NODE = 0;
+    private static final byte LEAF = 1;
+    private static final byte CIRCULAR = 2;     //leaf with the value of a slot
+    private static final byte ELEMENT = 3;
+
+    private static final byte NO_KEY = 0;
+    private static final byte LEAF_KEY = 1;
+    private static final byte CIRCULAR_KEY = 2; //leaf key with the value of a slot
+    private static final byte FINGERPRINT_KEY = 3;
+    private static final byte OBJECT_KEY = 4;
+
+    private final byte[] kinds;
+    private final byte[] statuses;
+    private final int[] parents;
+    private final int[] ends;       //row after the subtree of a row, children of a node follow it up to there
+    private final int[] nameIds;
+    private final Object[] values;
+    private final int[] valueSlots;
+
+    private final byte[] keyKinds;
+    private final int[] keyNameIds;
+    private final int[] keyTypeIds;
+    private final int[] keyContainerIds;
+    private final Object[] keyValues;   //value of a leaf key, the key itself if it is kept as it is
+    private final int[] keySlots;
+    private final long[] fingerprints;
+    private final int[] cutStarts;      //cuts of a fingerprint key are cuts[cutStarts[row]] up to cuts[cutStarts[row + 1]]
+    private final int[] slotStarts;     //slots of a fingerprint key, the key itself first, then its references
+
+    private final Object[] names;
+    private final Class[] types;
+    private final int[] cuts;
+    private final int[] slotPositions;
+    private final int[] slotTypeIds;
+    private MetadataRegistry metadataRegistry;   //of the diff fingerprint keys were generated by
+
+    private int size;   //rows added so far while flattening
+
+    public FlatDiff(Element<N, V> element) {
+        List<Element<?, ?>> elements = new ArrayList<Element<?, ?>>();
+        collectRows(element, elements);
+        int rows = elements.size();
+        this.kinds = new byte[rows];
+        this.statuses = new byte[rows];
+        this.parents = new int[rows];
+        this.ends = new int[rows];
+        this.nameIds = new int[rows];
+        this.values = new Object[rows];
+        this.valueSlots = new int[rows];
+        this.keyKinds = new byte[rows];
+        this.keyNameIds = new int[rows];
+        this.keyTypeIds = new int[rows];
+        this.keyContainerIds = new int[rows];
+        this.keyValues = new Object[rows];
+        this.keySlots = new int[rows];
+        this.fingerprints = new long[rows];
+        this.cutStarts = new int[rows + 1];
+        this.slotStarts = new int[rows + 1];
+
+        List<Class> types = new ArrayList<Class>();
+        Map<Class, Integer> typeIds = new HashMap<Class, Integer>();
+        IdentityMap<Object, Integer> registrantSlots = new IdentityMap<Object, Integer>();
+        List<Integer> slotPositions = new ArrayList<Integer>();
+        List<Integer> slotTypeIds = new ArrayList<Integer>();
+        boolean[] columnar = this.addSlots(elements, registrantSlots, slotPositions, slotTypeIds, types, typeIds);
+
+        List<Object> names = new ArrayList<Object>();
+        List<int[]> cuts = new ArrayList<int[]>();
+        this.add(element, -1, names, new HashMap<Object, Integer>(), types, typeIds, cuts, columnar, registrantSlots);
+        this.names = names.toArray();
+        this.types = types.toArray(new Class[types.size()]);
+
+        this.cuts = new int[this.cutStarts[rows]];
+        int cutRow = 0;
+        for (int row = 0; row < rows; row++) {
+            if (this.keyKinds[row] == FINGERPRINT_KEY) {
+                int[] rowCuts = cuts.get(cutRow++);
+                System.arraycopy(rowCuts, 0, this.cuts, this.cutStarts[row], rowCuts.length);
+            }
+        }
+        this.slotPositions = toArray(slotPositions);
+        this.slotTypeIds = toArray(slotTypeIds);
+    }
+
+    private static void collectRows(Element<?, ?> element, List<Element<?, ?>> elements) {
+        elements.add(element);
+        if (isNode(element)) {
+            for (Element<?, ?> child : ((NodeElement<?, ?>) element).getChildren()) {
+                collectRows(child, elements);
+            }
+        }
+    }
+
+    private static boolean isNode(Element<?, ?> element) {
+        return element instanceof NodeElement;
+    }
+
+    private static boolean isLeaf(Element<?, ?> element) {
+        return element.getClass() == LeafElement.class && ((LeafElement<?, ?>) element).getValue() != Name.CIRCULAR_REFERENCE;
+    }
+
+    private static boolean isCircularLeaf(Element<?, ?> element) {
+        return element.getClass() == LeafElement.class && ((LeafElement<?, ?>) element).getValue() == Name.CIRCULAR_REFERENCE;
+    }
+
+    private static boolean isCircularLeafKey(Key<?, ?> key) {
+        return key != null && key.getClass() == LeafKey.class && ((LeafKey<?, ?>) key).getValue() == Name.CIRCULAR_REFERENCE;
+    }
+
+    //a fingerprint key goes to the columns if every circular reference leaf resolved through it is a row, and every
+    //circular leaf key resolved through it is a row key or not in the diff at all (container generations replace the
+    //key of a container with their own one), not nested in another key
+    private boolean[] addSlots(List<Element<?, ?>> elements, IdentityMap<Object, Integer> registrantSlots, List<Integer> slotPositions,
+                               List<Integer> slotTypeIds, List<Class> types, Map<Class, Integer> typeIds) {
+        IdentityMap<Object, Object> rowRegistrants = new IdentityMap<Object, Object>();
+        IdentityMap<Object, Object> nestedKeys = new IdentityMap<Object, Object>();
+        for (Element<?, ?> element : elements) {
+            boolean keptWithKey = !isNode(element) && !isLeaf(element) && !isCircularLeaf(element);
+            if (!keptWithKey && isCircularLeafKey(element.getKey())) {
+                rowRegistrants.put(element.getKey(), element);
+            } else if (element.getKey() != null) {
+                collectNestedKeys(element.getKey(), nestedKeys);
+            }
+            if (isCircularLeaf(element)) {
+                rowRegistrants.put(element, element);
+            }
+        }
+
+        boolean[] columnar = new boolean[elements.size()];
+        for (int row = 0; row < elements.size(); row++) {
+            this.slotStarts[row + 1] = this.slotStarts[row];
+            Key<?, ?> key = elements.get(row).getKey();
+            if (isNode(elements.get(row)) || isLeaf(elements.get(row))) {
+                if (key != null && key.getClass() == FingerprintKey.class && resolvesOnlyRows((FingerprintKey<?, ?>) key, rowRegistrants, nestedKeys)) {
+                    columnar[row] = true;
+                    FingerprintKey<?, ?> fingerprintKey = (FingerprintKey<?, ?>) key;
+                    //the key itself takes the first slot, references only get slots if rows are resolved through them
+                    boolean resolvesRows = resolvesRows(fingerprintKey, rowRegistrants);
+                    for (FingerprintKey.Reference reference : fingerprintKey.getReferences()) {
+                        resolvesRows |= resolvesRows(reference, rowRegistrants);
+                    }
+                    if (resolvesRows) {
+                        this.addSlot(row, fingerprintKey, -1, registrantSlots, slotPositions, slotTypeIds, types, typeIds);
+                        for (FingerprintKey.Reference reference : fingerprintKey.getReferences()) {
+                            if (resolvesRows(reference, rowRegistrants)) {
+                                this.addSlot(row, reference, reference.getPosition(), registrantSlots, slotPositions, slotTypeIds, types, typeIds);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return columnar;
+    }
+
+    private static void collectNestedKeys(Key<?, ?> key, IdentityMap<Object, Object> nestedKeys) {
+        List<Key<?, ?>> children = Collections.emptyList();
+        if (key instanceof NodeKey) {
+            children = ((NodeKey<?, ?>) key).getChildren();
+        } else if (key instanceof MapNodeKey) {
+            children = new ArrayList<Key<?, ?>>(((MapNodeKey<?, ?>) key).getValueKeys().values());
+        } else if (key instanceof MapEntryNodeKey) {
+            children = Arrays.<Key<?, ?>>asList(((MapEntryNodeKey<?>) key).getKeyKey(), ((MapEntryNodeKey<?>) key).getKeyValue());
+        }
+        for (Key<?, ?> child : children) {
+            nestedKeys.put(child, child);
+            collectNestedKeys(child, nestedKeys);
+        }
+    }
+
+    private static boolean resolvesOnlyRows(FingerprintKey<?, ?> key, IdentityMap<Object, Object> rowRegistrants, IdentityMap<Object, Object> nestedKeys) {
+        if (!isResolvingOnlyRows(key, rowRegistrants, nestedKeys)) {
+            return false;
+        }
+        for (FingerprintKey.Reference reference : key.getReferences()) {
+            if (!isResolvingOnlyRows(reference, rowRegistrants, nestedKeys)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isResolvingOnlyRows(CircularKey<?, ?> key, IdentityMap<Object, Object> rowRegistrants, IdentityMap<Object, Object> nestedKeys) {
+        for (LeafElement<?, ?> element : key.getCircularLeafElements()) {
+            if (!rowRegistrants.containsKey(element)) {
+                return false;
+            }
+        }
+        for (LeafKey<?, ?> leafKey : key.getCircularLeafKeys()) {
+            if (nestedKeys.containsKey(leafKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean resolvesRows(CircularKey<?, ?> key, IdentityMap<Object, Object> rowRegistrants) {
+        for (LeafElement<?, ?> element : key.getCircularLeafElements()) {
+            if (rowRegistrants.containsKey(element)) {
+                return true;
+            }
+        }
+        for (LeafKey<?, ?> leafKey : key.getCircularLeafKeys()) {
+            if (rowRegistrants.containsKey(leafKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addSlot(int row, CircularKey<?, ?> key, int position, IdentityMap<Object, Integer> registrantSlots,
+                         List<Integer> slotPositions, List<Integer> slotTypeIds, List<Class> types, Map<Class, Integer> typeIds) {
+        int slot = this.slotStarts[row + 1]++;
+        slotPositions.add(position);
+        slotTypeIds.add(typeId(key.getType(), types, typeIds));
+        for (LeafElement<?, ?> element : key.getCircularLeafElements()) {
+            registrantSlots.put(element, slot);
+        }
+        for (LeafKey<?, ?> leafKey : key.getCircularLeafKeys()) {
+            registrantSlots.put(leafKey, slot);
+        }
+    }
+
+    private void add(Element<?, ?> element, int parent, List<Object> names, Map<Object, Integer> nameIds, List<Class> types,
+                     Map<Class, Integer> typeIds, List<int[]> cuts, boolean[] columnar, IdentityMap<Object, Integer> registrantSlots) {
+        int row = this.size++;
+        this.parents[row] = parent;
+        this.statuses[row] = element.getStatus() == null ? -1 : (byte) element.getStatus().ordinal();
+        this.nameIds[row] = this.nameId(element.getName(), names, nameIds);
+
+        if (isNode(element)) {
+            this.kinds[row] = NODE;
+        } else if (isLeaf(element)) {
+            this.kinds[row] = LEAF;
+            this.values[row] = ((LeafElement<?, ?>) element).getValue();
+        } else if (isCircularLeaf(element) && registrantSlots.containsKey(element)) {
+            this.kinds[row] = CIRCULAR;
+            this.valueSlots[row] = registrantSlots.get(element);
+        } else {
+            this.kinds[row] = ELEMENT;
+            this.values[row] = element;
+        }
+        this.addKey(row, element, names, nameIds, types, typeIds, cuts, columnar[row], registrantSlots);
+
+        if (isNode(element)) {
+            for (Element<?, ?> child : ((NodeElement<?, ?>) element).getChildren()) {
+                this.add(child, row, names, nameIds, types, typeIds, cuts, columnar, registrantSlots);
+            }
+        }
+        this.ends[row] = this.size;
+    }
+
+    //elements kept as they are keep their keys too, except circular reference leaves which are matched from the row
+    private void addKey(int row, Element<?, ?> element, List<Object> names, Map<Object, Integer> nameIds, List<Class> types,
+                        Map<Class, Integer> typeIds, List<int[]> cuts, boolean columnar, IdentityMap<Object, Integer> registrantSlots) {
+        Key<?, ?> key = element.getKey();
+        this.cutStarts[row + 1] = this.cutStarts[row];
+        if (key == null) {
+            this.keyKinds[row] = NO_KEY;
+            return;
+        }
+        if (this.kinds[row] == ELEMENT && !isCircularLeaf(element)) {
+            this.keyKinds[row] = OBJECT_KEY;
+            this.keyValues[row] = key;
+            return;
+        }
+        if (key.getClass() == LeafKey.class && ((LeafKey<?, ?>) key).getValue() != Name.CIRCULAR_REFERENCE) {
+            this.keyKinds[row] = LEAF_KEY;
+            this.keyValues[row] = ((LeafKey<?, ?>) key).getValue();
+        } else if (isCircularLeafKey(key) && registrantSlots.containsKey(key)) {
+            this.keyKinds[row] = CIRCULAR_KEY;
+            this.keySlots[row] = registrantSlots.get(key);
+        } else if (columnar) {
+            FingerprintKey<?, ?> fingerprintKey = (FingerprintKey<?, ?>) key;
+            this.keyKinds[row] = FINGERPRINT_KEY;
+            this.fingerprints[row] = fingerprintKey.getFingerprint();
+            this.cutStarts[row + 1] += fingerprintKey.getCuts().length;
+            cuts.add(fingerprintKey.getCuts());
+            this.metadataRegistry = fingerprintKey.getMetadataRegistry();
+        } else {
+            this.keyKinds[row] = OBJECT_KEY;
+            this.keyValues[row] = key;
+            return;
+        }
+        this.keyNameIds[row] = key.getName() == element.getName() ? this.nameIds[row] : this.nameId(key.getName(), names, nameIds);
+        this.keyTypeIds[row] = typeId(key.getType(), types, typeIds);
+        this.keyContainerIds[row] = typeId(key.getContainer(), types, typeIds);
+    }
+
+    //field names and indexes repeat across elements, other names (map keys) are not relied on to hash consistently
+    private int nameId(Object name, List<Object> names, Map<Object, Integer> nameIds) {
+        boolean shared = name == null || name instanceof Name || isStringOrPrimitiveOrWrapped(name.getClass());
+        if (shared) {
+            Integer nameId = nameIds.get(name);
+            if (nameId != null) {
+                return nameId;
+            }
+            nameIds.put(name, names.size());
+        }
+        names.add(name);
+        return names.size() - 1;
+    }
+
+    private static int typeId(Class type, List<Class> types, Map<Class, Integer> typeIds) {
+        if (type == null) {
+            return -1;
+        }
+        Integer typeId = typeIds.get(type);
+        if (typeId == null) {
+            typeId = types.size();
+            typeIds.put(type, typeId);
+            types.add(type);
+        }
+        return typeId;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    public int size() {
+        return this.kinds.length;
+    }
+
+    public int getParent(int row) {
+        return this.parents[row];
+    }
+
+    //row after the last row of the subtree of a row
+    public int getEnd(int row) {
+        return this.ends[row];
+    }
+
+    public Element.Status getStatus(int row) {
+        return this.statuses[row] < 0 ? null : Element.Status.values()[this.statuses[row]];
+    }
+
+    public Object getName(int row) {
+        return this.names[this.nameIds[row]];
+    }
+
+    //keys stored in columns are rebuilt on every call, circular ones unresolved
+    public Key<?, ?> getKey(int row) {
+        return this.buildKey(row, null, 0, null);
+    }
+
+    //value of a leaf, null for nodes
+    public Object getValue(int row) {
+        return this.kinds[row] == LEAF ? this.values[row] : null;
+    }
+
+    //slots of one patch call
+    Object[] createSlots() {
+        return new Object[this.slotPositions.length];
+    }
+
+    boolean isNode(int row) {
+        return this.kinds[row] == NODE;
+    }
+
+    //leaf with its value in the row, in a slot, or set on a circular reference leaf through its key
+    boolean isValue(int row) {
+        return this.kinds[row] == LEAF || this.kinds[row] == CIRCULAR
+                || this.kinds[row] == ELEMENT && isCircularLeaf((Element<?, ?>) this.values[row]);
+    }
+
+    Object getValue(int row, Object[] slots) {
+        if (this.kinds[row] == CIRCULAR) {
+            Object value = slots[this.valueSlots[row]];
+            return value == null ? Name.CIRCULAR_REFERENCE : value;
+        }
+        if (this.kinds[row] == ELEMENT) {
+            return ((LeafElement<?, ?>) this.values[row]).getValue();
+        }
+        return this.getValue(row);
+    }
+
+    boolean hasKey(int row) {
+        return this.keyKinds[row] != NO_KEY;
+    }
+
+    Class getKeyType(int row) {
+        return this.keyKinds[row] == OBJECT_KEY ? ((Key<?, ?>) this.keyValues[row]).getType() : this.type(this.keyTypeIds[row]);
+    }
+
+    private Object getKeyName(int row) {
+        return this.names[this.keyNameIds[row]];
+    }
+
+    private Class getKeyContainer(int row) {
+        return this.type(this.keyContainerIds[row]);
+    }
+
+    private Class type(int typeId) {
+        return typeId < 0 ? null : this.types[typeId];
+    }
+
+    //matches the key of a row without rebuilding it, as its key would match the value, and fills the slots of the row
+    @SuppressWarnings("unchecked")
+    boolean matchKey(int row, Object value, Object[] slots) {
+        switch (this.keyKinds[row]) {
+            case LEAF_KEY:
+                Object keyValue = this.keyValues[row];
+                return keyValue == value || keyValue != null && keyValue.equals(value);
+            case CIRCULAR_KEY:
+                Object resolved = slots[this.keySlots[row]];
+                return resolved == null || resolved == value || resolved.equals(value);
+            case FINGERPRINT_KEY:
+                return this.matchFingerprint(row, value, slots);
+            case OBJECT_KEY:
+                return ((Key<?, Object>) this.keyValues[row]).match(value);
+            default:
+                return true;
+        }
+    }
+
+    private boolean matchFingerprint(int row, Object value, Object[] slots) {
+        final int cutsFrom = this.cutStarts[row];
+        final int cutsTo = this.cutStarts[row + 1];
+        final int slotsFrom = this.slotStarts[row];
+        final Object[] reached = new Object[this.slotStarts[row + 1] - slotsFrom];
+        long hash = new StructuralHash(this.metadataRegistry) {
+            @Override
+            protected boolean isCut(Object value, int position) {
+                return cutsFrom < cutsTo && Arrays.binarySearch(FlatDiff.this.cuts, cutsFrom, cutsTo, position) >= 0;
+            }
+
+            @Override
+            protected void reached(Object value, int position) {
+                for (int i = 1; i < reached.length; i++) {
+                    if (FlatDiff.this.slotPositions[slotsFrom + i] == position) {
+                        reached[i] = value;
+                    }
+                }
+            }
+        }.hash(value);
+        if (hash != this.fingerprints[row]) {
+            return false;
+        }
+        if (reached.length > 0) {
+            reached[0] = value;
+            System.arraycopy(reached, 0, slots, slotsFrom, reached.length);
+        }
+        return true;
+    }
+
+    //field a row of an object node is patched into
+    FieldMetadata getFieldMetadata(int row) {
+        if (this.keyKinds[row] == OBJECT_KEY) {
+            return ((Key<?, ?>) this.keyValues[row]).getFieldMetadata();
+        }
+        FieldMetadata field = this.hasKey(row) ? ClassMetadata.forClass(this.getKeyContainer(row)).getDeclaredField((String) this.getKeyName(row)) : null;
+        if (field == null) {
+            throw new UnsupportedOperationException("Field not found during patch process");
+        }
+        return field;
+    }
+
+    public Element<N, V> toElement() {
+        return this.toElement(0, null);
+    }
+
+    //element of the subtree of a row, with keys it resolves circular references through rebuilt and registered as the
+    //diff registered them, circular references resolved outside of it take the values of their slots
+    //rows are built from the last one, so children are ready (in reverse order) when their parent is built
+    @SuppressWarnings("unchecked")
+    <M, T> Element<M, T> toElement(int root, Object[] slots) {
+        int end = this.ends[root];
+        int firstSlot = this.slotStarts[root];
+        CircularKey<?, ?>[] slotKeys = new CircularKey<?, ?>[this.slotStarts[end] - firstSlot];
+        Key<?, ?>[] keys = new Key<?, ?>[end - root];
+        for (int row = root; row < end; row++) {
+            if (this.keyKinds[row] == FINGERPRINT_KEY && this.slotStarts[row + 1] > this.slotStarts[row]) {
+                FingerprintKey<?, ?> key = (FingerprintKey<?, ?>) this.buildKey(row, null, 0, null);
+                keys[row - root] = key;
+                slotKeys[this.slotStarts[row] - firstSlot] = key;
+                for (int slot = this.slotStarts[row] + 1; slot < this.slotStarts[row + 1]; slot++) {
+                    slotKeys[slot - firstSlot] = new FingerprintKey.Reference(key, this.slotPositions[slot], this.type(this.slotTypeIds[slot]));
+                }
+            }
+        }
+
+        List<Element<?, ?>>[] children = new List[end - root];
+        Element<?, ?> element = null;
+        for (int row = end - 1; row >= root; row--) {
+            Key<?, ?> key = keys[row - root] != null || this.kinds[row] == ELEMENT ? keys[row - root] : this.buildKey(row, slotKeys, firstSlot, slots);
+            if (this.kinds[row] == NODE) {
+                List<Element<?, ?>> rowChildren = children[row - root] == null ? new ArrayList<Element<?, ?>>() : children[row - root];
+                Collections.reverse(rowChildren);
+                element = new NodeElement(this.getName(row), this.getStatus(row), key, rowChildren);
+            } else if (this.kinds[row] == LEAF) {
+                element = new LeafElement(this.getName(row), this.getStatus(row), key, this.values[row]);
+            } else if (this.kinds[row] == CIRCULAR) {
+                int slot = this.valueSlots[row];
+                CircularKey<?, ?> slotKey = this.slotKey(slot, slotKeys, firstSlot);
+                Object value = slotKey != null || slots == null || slots[slot] == null ? Name.CIRCULAR_REFERENCE : slots[slot];
+                element = new LeafElement(this.getName(row), this.getStatus(row), key, value);
+                if (slotKey != null) {
+                    slotKey.registerCircularElement((LeafElement<?, ?>) element);
+                }
+            } else {
+                element = (Element<?, ?>) this.values[row];
+            }
+            children[row - root] = null;
+
+            if (row > root) {
+                int parent = this.parents[row];
+                if (children[parent - root] == null) {
+                    children[parent - root] = new ArrayList<Element<?, ?>>();
+                }
+                children[parent - root].add(element);
+            }
+        }
+        return (Element<M, T>) element;
+    }
+
+    private CircularKey<?, ?> slotKey(int slot, CircularKey<?, ?>[] slotKeys, int firstSlot) {
+        return slotKeys != null && slot >= firstSlot && slot - firstSlot < slotKeys.length ? slotKeys[slot - firstSlot] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Key<?, ?> buildKey(int row, CircularKey<?, ?>[] slotKeys, int firstSlot, Object[] slots) {
+        switch (this.keyKinds[row]) {
+            case LEAF_KEY:
+                return new LeafKey(this.getKeyName(row), this.getKeyType(row), this.getKeyContainer(row), this.keyValues[row]);
+            case CIRCULAR_KEY:
+                int slot = this.keySlots[row];
+                CircularKey<?, ?> slotKey = this.slotKey(slot, slotKeys, firstSlot);
+                Object value = slotKey != null || slots == null || slots[slot] == null ? Name.CIRCULAR_REFERENCE : slots[slot];
+                LeafKey<?, ?> key = new LeafKey(this.getKeyName(row), this.getKeyType(row), this.getKeyContainer(row), value);
+                if (slotKey != null) {
+                    slotKey.registerCircularKey(key);
+                }
+                return key;
+            case FINGERPRINT_KEY:
+                return new FingerprintKey(this.getKeyName(row), this.getKeyType(row), this.getKeyContainer(row), this.metadataRegistry,
+                        this.fingerprints[row], Arrays.copyOfRange(this.cuts, this.cutStarts[row], this.cutStarts[row + 1]));
+            case OBJECT_KEY:
+                return (Key<?, ?>) this.keyValues[row];
+            default:
+                return null;
+        }
+    }
+}
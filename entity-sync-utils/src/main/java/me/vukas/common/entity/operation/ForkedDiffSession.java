@@ -0,0 +1,136 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.base.IdentityMap;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.key.CircularKey;
+import me.vukas.common.entity.key.LeafKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//session of one parallel subtree, reads fall through to the (frozen) parent and writes stay local until merged,
+//every touched object is recorded so subtrees that share objects can be detected and diffed again after the merge
+class ForkedDiffSession extends DiffSession {
+    private final DiffSession parent;
+    private final IdentityMap<Object, Object> touchedElements = new IdentityMap<Object, Object>();
+    private final List<Object[]> circularRegistrations = new ArrayList<Object[]>();
+
+    ForkedDiffSession(DiffSession parent) {
+        this.parent = parent;
+        this.enter();   //never reset, discarded or merged as a whole
+    }
+
+    @Override
+    boolean hasFingerprintKeys() {
+        return this.parent.hasFingerprintKeys();
+    }
+
+    @Override
+    boolean isVisited(Object value) {
+        return super.isVisited(value) || this.parent.isVisited(value);
+    }
+
+    @Override
+    void touch(Object value) {
+        this.touchedElements.put(value, value);
+    }
+
+    @Override
+    CircularKey findRootCircularKey(Object value) {
+        CircularKey key = super.findRootCircularKey(value);
+        return key != null ? key : this.parent.findRootCircularKey(value);
+    }
+
+    @Override
+    Object findRevisedElement(Object original) {
+        Object revised = super.findRevisedElement(original);
+        return revised != null ? revised : this.parent.findRevisedElement(original);
+    }
+
+    @Override
+    Object findOriginalElement(Object revised) {
+        Object original = super.findOriginalElement(revised);
+        return original != null ? original : this.parent.findOriginalElement(revised);
+    }
+
+    @Override
+    Object findClonedElement(Object original) {
+        Object cloned = super.findClonedElement(original);
+        return cloned != null ? cloned : this.parent.findClonedElement(original);
+    }
+
+    @Override
+    List<LeafKey> findVisitedCircularKeys(Object value) {
+        List<LeafKey> parentKeys = this.parent.findVisitedCircularKeys(value);
+        List<LeafKey> ownKeys = super.findVisitedCircularKeys(value);
+        if (parentKeys == null || ownKeys == null) {
+            return parentKeys == null ? ownKeys : parentKeys;
+        }
+        List<LeafKey> leafKeys = new ArrayList<LeafKey>(parentKeys);
+        leafKeys.addAll(ownKeys);
+        return leafKeys;
+    }
+
+    @Override
+    void registerCircularElement(CircularKey key, LeafElement element) {
+        this.circularRegistrations.add(new Object[]{key, element});
+    }
+
+    @Override
+    void registerCircularKey(CircularKey key, LeafKey leafKey) {
+        this.circularRegistrations.add(new Object[]{key, leafKey});
+    }
+
+    boolean conflictsWith(IdentityMap<Object, Object> writtenElements) {
+        for (Object element : this.touchedElements.keys()) {
+            if (writtenElements.containsKey(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void collectWrittenElements(IdentityMap<Object, Object> writtenElements) {
+        collectKeys(this.rootCircularKeys, writtenElements);
+        collectKeys(this.originalToRevisedElements, writtenElements);
+        collectKeys(this.revisedToOriginalElements, writtenElements);
+        collectKeys(this.originalToClonedElements, writtenElements);
+        collectKeys(this.visitedCircularKeys, writtenElements);
+    }
+
+    private static void collectKeys(IdentityMap<Object, ?> source, IdentityMap<Object, Object> target) {
+        for (Object key : source.keys()) {
+            target.put(key, key);
+        }
+    }
+
+    void mergeInto(DiffSession session) {
+        for (Object element : this.touchedElements.keys()) {
+            session.touch(element);
+        }
+        for (Object value : this.rootCircularKeys.keys()) {
+            session.putRootCircularKey(value, this.rootCircularKeys.get(value));
+        }
+        for (Object original : this.originalToRevisedElements.keys()) {
+            session.putRevisedElement(original, this.originalToRevisedElements.get(original));
+        }
+        for (Object revised : this.revisedToOriginalElements.keys()) {
+            session.putOriginalElement(revised, this.revisedToOriginalElements.get(revised));
+        }
+        for (Object original : this.originalToClonedElements.keys()) {
+            session.putClonedElement(original, this.originalToClonedElements.get(original));
+        }
+        for (Object value : this.visitedCircularKeys.keys()) {
+            for (LeafKey leafKey : this.visitedCircularKeys.get(value)) {
+                session.addVisitedCircularKey(value, leafKey);
+            }
+        }
+        for (Object[] registration : this.circularRegistrations) {
+            if (registration[1] instanceof LeafElement) {
+                session.registerCircularElement((CircularKey) registration[0], (LeafElement) registration[1]);
+            } else {
+                session.registerCircularKey((CircularKey) registration[0], (LeafKey) registration[1]);
+            }
+        }
+    }
+}
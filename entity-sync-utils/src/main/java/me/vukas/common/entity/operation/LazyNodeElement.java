@@ -0,0 +1,163 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.key.Key;
+import me.vukas.common.entity.metadata.FieldMetadata;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+//object node whose fields are diffed in declaration order on demand, fields holding objects diffed through reflection
+//are lazy nodes themselves, status stops at the first changed field and the diffed objects are released once every field is diffed
+//reading a child first completes the subtrees of the children before it, so the diff sees the same state as one eager pass
+//keys only settle once the whole diff is done, circular references anywhere in it register on them, so getKey() completes it
+class LazyNodeElement<N, V> extends NodeElement<N, V> {
+    private final LazyNodeElement<?, ?> root;
+    private final int size;
+    private Diff diff;
+    private DiffSession session;
+    private List<FieldMetadata> fields;
+    private Object[] path;      //original objects from the root down to this node, visited while its fields are diffed
+    private Object revised;
+    private final List<Element<?, ?>> children;
+    private final List<Element<?, ?>> childrenView;
+
+    LazyNodeElement(Diff diff, DiffSession session, N name, Key<N, V> key, List<FieldMetadata> fields, Object original, Object revised) {
+        this(null, diff, session, name, key, fields, new Object[]{original}, revised);
+    }
+
+    LazyNodeElement(LazyNodeElement<?, ?> parent, N name, Key<N, V> key, List<FieldMetadata> fields, Object original, Object revised) {
+        this(parent.root, parent.diff, parent.session, name, key, fields, append(parent.path, original), revised);
+    }
+
+    private LazyNodeElement(LazyNodeElement<?, ?> root, Diff diff, DiffSession session, N name, Key<N, V> key, List<FieldMetadata> fields, Object[] path, Object revised) {
+        super(name, null, key, null);
+        this.root = root == null ? this : root;
+        this.size = fields.size();
+        this.diff = diff;
+        this.session = session;
+        this.fields = fields;
+        this.path = path;
+        this.revised = revised;
+        this.children = new ArrayList<Element<?, ?>>(fields.size());
+        this.childrenView = new AbstractList<Element<?, ?>>() {
+            @Override
+            public Element<?, ?> get(int index) {
+                synchronized (LazyNodeElement.this.root) {
+                    return LazyNodeElement.this.getChild(index);
+                }
+            }
+
+            @Override
+            public int size() {
+                return LazyNodeElement.this.size;
+            }
+        };
+        if (fields.isEmpty()) {
+            this.release();
+        }
+    }
+
+    private static Object[] append(Object[] path, Object original) {
+        Object[] appended = new Object[path.length + 1];
+        System.arraycopy(path, 0, appended, 0, path.length);
+        appended[path.length] = original;
+        return appended;
+    }
+
+    @Override
+    public Status getStatus() {
+        synchronized (this.root) {
+            for (int i = 0; super.getStatus() == null; i++) {
+                if (i == this.size) {
+                    super.setStatus(Status.EQUAL);
+                } else if (this.getChild(i).getStatus() != Status.EQUAL) {
+                    super.setStatus(Status.MODIFIED);
+                }
+            }
+            return super.getStatus();
+        }
+    }
+
+    //children are diffed when they are read
+    @Override
+    public List<Element<?, ?>> getChildren() {
+        return this.childrenView;
+    }
+
+    @Override
+    public Key<N, V> getKey() {
+        synchronized (this.root) {
+            this.root.complete();
+        }
+        return super.getKey();
+    }
+
+    @Override
+    public Element<N, V> materialize() {
+        Key<N, V> key = this.getKey();
+        List<Element<?, ?>> children = new ArrayList<Element<?, ?>>(this.size);
+        for (Element<?, ?> child : this.children) {
+            children.add(child.materialize());
+        }
+        return new NodeElement<N, V>(this.getName(), this.getStatus(), key, children);
+    }
+
+    //fields diffed so far, nested nodes are not diffed until they are read
+    int getDiffedFieldCount() {
+        synchronized (this.root) {
+            return this.children.size();
+        }
+    }
+
+    private Element<?, ?> getChild(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        while (this.children.size() <= index) {
+            this.diffNextField();
+        }
+        return this.children.get(index);
+    }
+
+    //diffs the whole subtree, children before the last one are already complete
+    private void complete() {
+        while (!this.isMaterialized()) {
+            this.diffNextField();
+        }
+        if (!this.children.isEmpty()) {
+            complete(this.children.get(this.children.size() - 1));
+        }
+    }
+
+    private static void complete(Element<?, ?> element) {
+        if (element instanceof LazyNodeElement) {
+            ((LazyNodeElement<?, ?>) element).complete();
+        }
+    }
+
+    private boolean isMaterialized() {
+        return this.fields == null;
+    }
+
+    private void diffNextField() {
+        int index = this.children.size();
+        if (index > 0) {
+            complete(this.children.get(index - 1));
+        }
+        this.children.add(this.diff.diffFieldLazily(this.session, this, this.path, this.fields.get(index), this.path[this.path.length - 1], this.revised));
+        if (this.children.size() == this.size) {
+            this.release();
+        }
+    }
+
+    private void release() {
+        this.diff = null;
+        this.session = null;
+        this.fields = null;
+        this.path = null;
+        this.revised = null;
+    }
+}
@@ -0,0 +1,242 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.entity.EntityDefinition;
+import me.vukas.common.entity.EntityGeneration;
+import me.vukas.common.entity.IgnoredFields;
+import me.vukas.common.entity.codec.DiffReader;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.array.ArrayEntityGeneration;
+import me.vukas.common.entity.generation.array.PrimitiveArrayEntityGeneration;
+import me.vukas.common.entity.generation.map.MapEntityGeneration;
+import me.vukas.common.entity.generation.map.MapEntryEntityGeneration;
+import me.vukas.common.entity.generation.object.ObjectEntityGeneration;
+import me.vukas.common.entity.generation.string.StringEntityGeneration;
+import me.vukas.common.entity.metadata.ClassMetadata;
+import me.vukas.common.entity.metadata.FieldMetadata;
+import me.vukas.common.entity.metadata.GenerationRegistry;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.*;
+
+public class Patch {
+    private final ThreadLocal<PatchSession> sessions = new ThreadLocal<PatchSession>() {
+        @Override
+        protected PatchSession initialValue() {
+            return new PatchSession();
+        }
+    };
+    private final GenerationRegistry<EntityGeneration<?>> entityGenerations;
+    private final Map<Class, ObjectEntityGeneration<?>> typesToObjectGenerations = new HashMap<Class, ObjectEntityGeneration<?>>();
+    private final EntityGeneration<?> arrayGeneration = new ArrayEntityGeneration<Object>(this);
+    private final EntityGeneration<?> stringGeneration = new StringEntityGeneration(this);
+    private final EntityGeneration<?> primitiveArrayGeneration = new PrimitiveArrayEntityGeneration<Object>(this);
+    private final EntityGeneration<?> mapGeneration = new MapEntityGeneration<Object>(this, (ArrayEntityGeneration<Object>) this.arrayGeneration);
+
+    private final boolean inPlace;
+    private final MetadataRegistry compiledTypes;   //patch only needs the fields of the class, null unless types are compiled
+
+    @SuppressWarnings("unchecked")
+    private Patch(Builder builder) {
+        this.inPlace = builder.inPlace;
+        this.compiledTypes = builder.compileTypes
+                ? new MetadataRegistry(Collections.<Class, EntityDefinition>emptyMap(), Collections.<Class, IgnoredFields>emptyMap())
+                : null;
+        List<EntityGeneration<?>> entityGenerations = new ArrayList<EntityGeneration<?>>();
+        for (EntityGeneration<?> entityGeneration : builder.entityGenerations) {
+            entityGeneration.setPatch(this);
+            entityGenerations.add(entityGeneration);
+        }
+        this.entityGenerations = new GenerationRegistry<EntityGeneration<?>>(entityGenerations);
+
+        //registered ones first, then the ones generated by entity-sync-processor
+        for (ObjectEntityGeneration<?> objectEntityGeneration : builder.objectEntityGenerations) {
+            this.typesToObjectGenerations.putIfAbsent(objectEntityGeneration.getType(), objectEntityGeneration);
+        }
+        for (ObjectEntityGeneration<?> objectEntityGeneration : ObjectEntityGeneration.getGenerated()) {
+            this.typesToObjectGenerations.putIfAbsent(objectEntityGeneration.getType(), objectEntityGeneration);
+        }
+    }
+
+    public boolean isInPlace() {
+        return this.inPlace;
+    }
+
+    //collection shared by several references is patched in place only once per patch call
+    public boolean isPatchedInPlace(Object original) {
+        return original != null && this.sessions.get().patchedInPlace.containsKey(original);
+    }
+
+    public void putPatchedInPlace(Object original) {
+        this.sessions.get().patchedInPlace.put(original, original);
+    }
+
+    public <N, T> T patch(T original, Element<N, T> diff) {
+        PatchSession session = this.sessions.get();
+        session.enter();
+        try {
+            return this.patchElement(original, diff);
+        } finally {
+            session.exit();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <N, T> T patch(T original, FlatDiff<N, T> diff) {
+        PatchSession session = this.sessions.get();
+        session.enter();
+        try {
+            return (T) this.patchRow(original, diff, 0, diff.createSlots());
+        } finally {
+            session.exit();
+        }
+    }
+
+    //patches with the next diff of the reader
+    public <N, T> T patch(T original, DiffReader reader) throws IOException {
+        Element<N, T> diff = reader.read();
+        if (diff == null) {
+            throw new EOFException("No diff left to patch with");
+        }
+        return this.patch(original, diff);
+    }
+
+    private <N, T> T patchElement(T original, Element<N, T> diff) {
+        Class originalType = diff.getKey() == null ? null : diff.getKey().getType();
+
+        //a collection reached again was already patched in place and no longer matches the key of its original state
+        if (diff.getKey() != null && !this.isPatchedInPlace(original) && !diff.getKey().match(original)) {
+            throw new UnsupportedOperationException("Key does not match");
+        }
+
+        if (diff instanceof LeafElement) {
+            return ((LeafElement<?, T>) diff).getValue();
+        }
+
+        if (originalType == String.class) {    //string that is not a leaf was diffed into a delta
+            return ((EntityGeneration<T>) this.stringGeneration).patch(original, diff);
+        }
+
+        EntityGeneration<T> entityGeneration = (EntityGeneration<T>) this.entityGenerations.getGeneration(originalType);
+        if (entityGeneration != null) {
+            return entityGeneration.patch(original, diff);
+        }
+
+        if (ClassMetadata.forClass(originalType).isPrimitiveArray()) {
+            return ((EntityGeneration<T>) this.primitiveArrayGeneration).patch(original, diff);
+        }
+
+        if (ClassMetadata.forClass(originalType).isMap()) {
+            return ((EntityGeneration<T>) this.mapGeneration).patch(original, diff);
+        }
+
+        if (ClassMetadata.forClass(originalType).isContainer()) {
+            return ((EntityGeneration<T>) this.arrayGeneration).patch(original, diff);
+        }
+
+        ObjectEntityGeneration<T> objectGeneration = (ObjectEntityGeneration<T>) this.typesToObjectGenerations.get(original == null ? null : original.getClass());
+        if (objectGeneration != null) {
+            objectGeneration.patchFields(this, original, (NodeElement<?, T>) diff);
+            return original;
+        }
+
+        if (this.compiledTypes != null && original != null) {
+            objectGeneration = (ObjectEntityGeneration<T>) this.compiledTypes.getTypeMetadata(original.getClass()).getCompiledGeneration();
+            if (objectGeneration != null) {
+                objectGeneration.patchFields(this, original, (NodeElement<?, T>) diff);
+                return original;
+            }
+        }
+
+        //TODO: must be an object?
+        for (Object childElement : ((NodeElement) diff).getChildren()) {
+            FieldMetadata field = ((Element) childElement).getKey().getFieldMetadata();
+            field.set(original, this.patch(field.get(original), (Element) childElement));
+        }
+
+        return original;
+    }
+
+    //leaves and objects patched field by field are patched from the rows, other subtrees are handed to their
+    //generations as elements, slots hold the circular references resolved so far
+    private Object patchRow(Object original, FlatDiff<?, ?> diff, int row, Object[] slots) {
+        if (!diff.isValue(row) && !(diff.isNode(row) && this.isPatchedByFields(diff.getKeyType(row), original))) {
+            return this.patchElement(original, diff.toElement(row, slots));
+        }
+
+        if (diff.hasKey(row) && !this.isPatchedInPlace(original) && !diff.matchKey(row, original, slots)) {
+            throw new UnsupportedOperationException("Key does not match");
+        }
+
+        if (diff.isValue(row)) {
+            return diff.getValue(row, slots);
+        }
+
+        for (int child = row + 1; child < diff.getEnd(row); child = diff.getEnd(child)) {
+            FieldMetadata field = diff.getFieldMetadata(child);
+            field.set(original, this.patchRow(field.get(original), diff, child, slots));
+        }
+        return original;
+    }
+
+    //same dispatch as patchElement
+    private boolean isPatchedByFields(Class originalType, Object original) {
+        if (originalType == null || original == null || originalType == String.class
+                || this.entityGenerations.getGeneration(originalType) != null
+                || ClassMetadata.forClass(originalType).isPrimitiveArray() || ClassMetadata.forClass(originalType).isMap()
+                || ClassMetadata.forClass(originalType).isContainer()
+                || this.typesToObjectGenerations.containsKey(original.getClass())) {
+            return false;
+        }
+        return this.compiledTypes == null || this.compiledTypes.getTypeMetadata(original.getClass()).getCompiledGeneration() == null;
+    }
+
+    public static class Builder {
+        private final List<EntityGeneration<?>> entityGenerations = new ArrayList<EntityGeneration<?>>();
+        private final List<ObjectEntityGeneration<?>> objectEntityGenerations = new ArrayList<ObjectEntityGeneration<?>>();
+        private boolean inPlace;
+        private boolean compileTypes;
+
+        public Builder() {
+            this.registerInternalEntityGenerations();
+        }
+
+        public Builder registerEntityGeneration(EntityGeneration entityGeneration) {
+            this.entityGenerations.add(entityGeneration);
+            return this;
+        }
+
+        public Builder registerEntityGenerations(List<EntityGeneration<?>> entityGenerations) {
+            this.entityGenerations.addAll(entityGenerations);
+            return this;
+        }
+
+        public Builder registerObjectEntityGeneration(ObjectEntityGeneration<?> objectEntityGeneration) {
+            this.objectEntityGenerations.add(objectEntityGeneration);
+            return this;
+        }
+
+        //objects are patched by code generated for their class on first use, see CompiledEntityGeneration
+        public Builder compileTypes(boolean compileTypes) {
+            this.compileTypes = compileTypes;
+            return this;
+        }
+
+        //collections are mutated instead of being replaced by new ones of the same type
+        public Builder inPlace(boolean inPlace) {
+            this.inPlace = inPlace;
+            return this;
+        }
+
+        private void registerInternalEntityGenerations() {
+            this.registerEntityGeneration(new MapEntryEntityGeneration());
+        }
+
+        public Patch build() {
+            return new Patch(this);
+        }
+    }
+}
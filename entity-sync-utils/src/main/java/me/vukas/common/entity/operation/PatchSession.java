@@ -0,0 +1,20 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.base.IdentityMap;
+
+//state of one patch call, pooled per thread and reset when the outermost call returns
+class PatchSession {
+    final IdentityMap<Object, Object> patchedInPlace = new IdentityMap<Object, Object>();
+
+    private int depth;
+
+    void enter() {
+        this.depth++;
+    }
+
+    void exit() {
+        if (--this.depth == 0) {
+            this.patchedInPlace.clear();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package me.vukas.common.base;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class IdentityMapTests {
+
+    @Test
+    public void clearingAfterLargeOperationShouldShrinkOnceSmallOperationFollows() {
+        IdentityMap<Object, Integer> map = new IdentityMap<Object, Integer>();
+        for (int i = 0; i < 10000; i++) {
+            map.put(new Object(), i);
+        }
+        int grownCapacity = map.capacity();
+        map.clear();
+        assertThat(map.capacity(), is(grownCapacity));    //the large operation itself used the whole table
+
+        Object key = new Object();
+        map.put(key, 1);
+        map.clear();
+        assertThat(map.capacity(), is(32));
+        assertThat(map.isEmpty(), is(true));
+        assertThat(map.get(key), is(nullValue()));
+
+        map.put(key, 2);
+        assertThat(map.get(key), is(2));
+    }
+
+    @Test
+    public void clearingAfterSimilarOperationShouldKeepTable() {
+        IdentityMap<Object, Integer> map = new IdentityMap<Object, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(new Object(), i);
+        }
+        int capacity = map.capacity();
+        map.clear();
+        for (int i = 0; i < 600; i++) {
+            map.put(new Object(), i);
+        }
+        map.clear();
+        assertThat(map.capacity(), is(capacity));
+        assertThat(map.size(), is(0));
+    }
+
+    @Test
+    public void clearingCounterShouldShrinkByPeakDepthEvenWhenEmpty() {
+        IdentityCounter counter = new IdentityCounter();
+        Object[] path = new Object[10000];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = new Object();
+            counter.push(path[i]);
+        }
+        int grownCapacity = counter.capacity();
+        for (Object element : path) {
+            counter.pop(element);
+        }
+        counter.clear();
+        assertThat(counter.capacity(), is(grownCapacity));
+
+        counter.push(path[0]);
+        counter.pop(path[0]);
+        counter.clear();
+        assertThat(counter.capacity(), is(32));
+        assertThat(counter.contains(path[0]), is(false));
+    }
+}
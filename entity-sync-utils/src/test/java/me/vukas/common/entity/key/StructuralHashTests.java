@@ -0,0 +1,101 @@
+package me.vukas.common.entity.key;
+
+import me.vukas.common.entity.EntityDefinition;
+import me.vukas.common.entity.IgnoredFields;
+import me.vukas.common.entity.metadata.MetadataRegistry;
+import me.vukas.common.entity.operation.model.Node;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StructuralHashTests {
+    private StructuralHash structuralHash;
+
+    @Before
+    public void buildNewStructuralHashObject() {
+        this.structuralHash = new StructuralHash(new MetadataRegistry(new HashMap<Class, EntityDefinition>(), new HashMap<Class, IgnoredFields>()));
+    }
+
+    @Test
+    public void hashingEqualPlatformValuesShouldReturnEqualHashes() {
+        assertThat(this.structuralHash.hash(new BigDecimal("1.0")), is(this.structuralHash.hash(new BigDecimal("1.0"))));
+        assertThat(this.structuralHash.hash(new BigDecimal("1.0")), is(not(this.structuralHash.hash(new BigDecimal("1.00")))));
+        UUID uuid = UUID.randomUUID();
+        assertThat(this.structuralHash.hash(uuid), is(this.structuralHash.hash(UUID.fromString(uuid.toString()))));
+    }
+
+    @Test
+    public void hashingPlatformObjectsWithIdentityHashCodeShouldHashTheirFields() {
+        assertThat(this.structuralHash.hash(new Object()), is(this.structuralHash.hash(new Object())));
+        assertThat(this.structuralHash.hash(new AtomicInteger(5)), is(this.structuralHash.hash(new AtomicInteger(5))));
+        assertThat(this.structuralHash.hash(new AtomicInteger(5)), is(not(this.structuralHash.hash(new AtomicInteger(6)))));
+    }
+
+    @Test
+    public void hashingSetsWithSharedObjectsInDifferentOrderShouldReturnEqualHashes() {
+        Node shared1 = new Node(3, "shared");
+        Node first1 = new Node(1, "first");
+        Node second1 = new Node(2, "second");
+        first1.setNext(shared1);
+        second1.setNext(shared1);
+        Set<Node> set1 = new LinkedHashSet<Node>(Arrays.asList(first1, second1));
+
+        Node shared2 = new Node(3, "shared");
+        Node first2 = new Node(1, "first");
+        Node second2 = new Node(2, "second");
+        first2.setNext(shared2);
+        second2.setNext(shared2);
+        Set<Node> set2 = new LinkedHashSet<Node>(Arrays.asList(second2, first2));
+
+        //the first node is reached again after the set, so its position is part of the hash
+        assertThat(this.structuralHash.hash(Arrays.asList(set1, first1)), is(this.structuralHash.hash(Arrays.asList(set2, first2))));
+        assertThat(this.structuralHash.hash(Arrays.asList(set1, first1)), is(not(this.structuralHash.hash(Arrays.asList(set2, second2)))));
+    }
+
+    @Test
+    public void hashingMapsWithCutObjectsInDifferentOrderShouldCutSamePositions() {
+        Node cut1 = new Node(1, "cut");
+        Map<String, Node> map1 = new LinkedHashMap<String, Node>();
+        map1.put("cut", cut1);
+        map1.put("kept", new Node(2, "kept"));
+
+        Node cut2 = new Node(1, "cut");
+        Map<String, Node> map2 = new LinkedHashMap<String, Node>();
+        map2.put("kept", new Node(2, "kept"));
+        map2.put("cut", cut2);
+
+        List<Integer> cuts1 = new ArrayList<Integer>();
+        List<Integer> cuts2 = new ArrayList<Integer>();
+        assertThat(this.cuttingHash(cut1, cuts1).hash(map1), is(this.cuttingHash(cut2, cuts2).hash(map2)));
+        assertThat(cuts1, is(cuts2));
+        assertThat(cuts1.size(), is(1));
+    }
+
+    private StructuralHash cuttingHash(final Object cut, final List<Integer> cuts) {
+        return new StructuralHash(new MetadataRegistry(new HashMap<Class, EntityDefinition>(), new HashMap<Class, IgnoredFields>())) {
+            @Override
+            protected boolean isCut(Object value, int position) {
+                if (value == cut) {
+                    cuts.add(position);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+}
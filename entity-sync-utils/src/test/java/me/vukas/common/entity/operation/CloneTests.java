@@ -3,6 +3,7 @@ package me.vukas.common.entity.operation;
 import me.vukas.common.entity.Name;
 import me.vukas.common.entity.element.Element;
 import me.vukas.common.entity.operation.model.EntityNoDefConstructor;
+import me.vukas.common.entity.operation.model.EntityNoHashCode;
 import me.vukas.common.entity.operation.model.GrandChildEntity;
 import org.junit.Before;
 import org.junit.Test;
@@ -161,4 +162,16 @@ public class CloneTests {
         GrandChildEntity cloned = this.clone.clone(gce2);
         assertThat(this.compare.compare(cloned, gce2), is(true));
     }
+
+    @Test
+    public void cloningCircularObjectGraphWithoutHashCodeShouldProduceObjectGraph() {
+        EntityNoHashCode first = new EntityNoHashCode(1);
+        EntityNoHashCode second = new EntityNoHashCode(2);
+        first.setNext(second);
+        second.setNext(first);
+
+        EntityNoHashCode cloned = this.clone.clone(first);
+        assertThat(cloned != first && cloned.getNext() != second, is(true));
+        assertThat(cloned.getNext().getNext() == cloned, is(true));    //compare would call equals() where the cycle closes
+    }
 }
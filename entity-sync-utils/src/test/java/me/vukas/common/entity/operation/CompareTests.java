@@ -1,8 +1,12 @@
 package me.vukas.common.entity.operation;
 
+import me.vukas.common.entity.EntityComparison;
 import me.vukas.common.entity.IgnoredFields;
+import me.vukas.common.entity.operation.model.BaseEntity;
 import me.vukas.common.entity.operation.model.ChildEntity;
 import me.vukas.common.entity.operation.model.GrandChildEntity;
+import me.vukas.common.entity.operation.model.Item;
+import me.vukas.common.entity.operation.model.Node;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -307,4 +311,70 @@ public class CompareTests {
 
         assertThat(compare.compare(gce1, gce2), is(true));
     }
+
+    @Test
+    public void comparingEqualObjectGraphsWithCompiledTypesShouldReturnTrue() {
+        Compare compare = new Compare.Builder().compileTypes(true).build();
+        assertThat(compare.compare(new GrandChildEntity(2), new GrandChildEntity(2)), is(true));
+    }
+
+    @Test
+    public void comparingDifferentObjectGraphsWithCompiledTypesShouldReturnFalse() {
+        GrandChildEntity gce1 = new GrandChildEntity(2);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce2.baseEntityPublicInt = 5;
+
+        Compare compare = new Compare.Builder().compileTypes(true).build();
+
+        assertThat(compare.compare(gce1, gce2), is(false));
+    }
+
+    @Test
+    public void comparingWithRegisteredSubtypeAndSupertypeComparisonsShouldUseMostSpecific() {
+        Compare compare = new Compare.Builder()
+                .registerEntityComparison(new EntityComparison<BaseEntity>() {
+                    @Override
+                    public boolean compare(BaseEntity entity1, BaseEntity entity2, Class fieldType) {
+                        return false;
+                    }
+                })
+                .registerEntityComparison(new EntityComparison<GrandChildEntity>() {
+                    @Override
+                    public boolean compare(GrandChildEntity entity1, GrandChildEntity entity2, Class fieldType) {
+                        return true;
+                    }
+                })
+                .build();
+
+        assertThat(compare.compare(new GrandChildEntity(1), new GrandChildEntity(2)), is(true));
+        assertThat(compare.compare(new ChildEntity(), new ChildEntity()), is(false));
+    }
+
+    @Test
+    public void comparingLargeHashSetsWithDifferentIterationOrderShouldCompareElementsAsMultisets() {
+        Set<Item> set1 = new HashSet<Item>();
+        Set<Item> set2 = new HashSet<Item>();
+        for (int i = 0; i < 50000; i++) {
+            set1.add(new Item(i, "item" + i));
+            set2.add(new Item(i, "item" + i));     //elements hash by identity, so the order differs
+        }
+        assertThat(this.compare.compare(set1, set2), is(true));
+
+        set2.add(new Item(42, "item42"));
+        set1.add(new Item(42, "changed"));
+        assertThat(this.compare.compare(set1, set2), is(false));
+    }
+
+    @Test
+    public void comparingCircularGraphsShouldMatchRevisitedPartner() {
+        Node first1 = new Node(1, "first");
+        Node second1 = new Node(2, "second");
+        first1.setNext(second1);
+        second1.setNext(first1);
+        Node first2 = new Node(1, "first");
+        Node second2 = new Node(2, "second");
+        first2.setNext(second2);
+        second2.setNext(first2);
+        assertThat(this.compare.compare(first1, first2), is(true));
+    }
 }
@@ -0,0 +1,1471 @@
+package me.vukas.common.entity.operation;
+
+import me.vukas.common.entity.EntityDefinition;
+import me.vukas.common.entity.IgnoredFields;
+import me.vukas.common.entity.Name;
+import me.vukas.common.entity.codec.DiffReader;
+import me.vukas.common.entity.codec.DiffWriter;
+import me.vukas.common.entity.codec.JsonPatchReader;
+import me.vukas.common.entity.codec.JsonPatchWriter;
+import me.vukas.common.entity.element.Element;
+import me.vukas.common.entity.element.LeafElement;
+import me.vukas.common.entity.element.NodeElement;
+import me.vukas.common.entity.generation.object.CompiledEntityGeneration;
+import me.vukas.common.entity.generation.object.ObjectEntityGeneration;
+import me.vukas.common.entity.generation.array.element.BlockDeltaElement;
+import me.vukas.common.entity.key.FingerprintKey;
+import me.vukas.common.entity.metadata.TypeMetadata;
+import me.vukas.common.entity.operation.model.Base;
+import me.vukas.common.entity.operation.model.BaseEntity;
+import me.vukas.common.entity.operation.model.DiscountedItem;
+import me.vukas.common.entity.operation.model.GrandChildEntity;
+import me.vukas.common.entity.operation.model.Item;
+import me.vukas.common.entity.operation.model.Labels;
+import me.vukas.common.entity.operation.model.Node;
+import me.vukas.common.entity.operation.model.Order;
+import me.vukas.common.entity.operation.model.Reading;
+import me.vukas.common.entity.operation.model.Shelf;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.math.BigDecimal;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PatchTests {
+    private Diff diff;
+    private Compare compare;
+    private Patch patch;
+
+    @Before
+    public void buildNewCompareObject() {
+        this.diff = new Diff.Builder().build();
+        this.compare = new Compare.Builder().build();
+        this.patch = new Patch.Builder().build();
+    }
+
+    @Test
+    public void patchingNullWithNullShouldProduceNull() {
+        Element diffElement = this.diff.diff(null, null);
+        assertThat(this.compare.compare(this.patch.patch(null, diffElement), null), is(true));
+    }
+
+    @Test
+    public void patchingNullWithIntegerShouldProduceInteger(){
+        Element<Name, Integer> diffElement = this.diff.diff(null, 1);
+        assertThat(this.compare.compare(this.patch.patch(null, diffElement), 1), is(true));
+    }
+
+    @Test
+    public void patchingIntegerWithNullShouldProduceNull(){
+        Element<Name, Integer> diffElement = this.diff.diff(1, null);
+        assertThat(this.compare.compare(this.patch.patch(1, diffElement), null), is(true));
+    }
+
+    @Test
+    public void patchingNullWithStringShouldProduceString(){
+        Element<Name, String> diffElement = this.diff.diff(null, "revised");
+        assertThat(this.compare.compare(this.patch.patch(null, diffElement), "revised"), is(true));
+    }
+
+    @Test
+    public void patchingStringWithNullShouldProduceNull(){
+        Element<Name, String> diffElement = this.diff.diff("original", null);
+        assertThat(this.compare.compare(this.patch.patch("original", diffElement), null), is(true));
+    }
+
+    @Test
+    public void patchingIntegerWithIntegerShouldProduceInteger(){
+        Element<Name, Integer> diffElement = this.diff.diff(1, 2);
+        assertThat(this.compare.compare(this.patch.patch(1, diffElement), 2), is(true));
+    }
+
+    @Test
+    public void patchingStringWithStringShouldProduceString(){
+        Element<Name, String> diffElement = this.diff.diff("original", "revised");
+        assertThat(this.compare.compare(this.patch.patch("original", diffElement), "revised"), is(true));
+    }
+
+    @Test
+    public void patchingEmptyPrimitiveIntegerArrayWithEmptyPrimitiveIntegerArrayShouldProduceEmptyArray(){
+        int[] array1 = new int[0];
+        int[] array2 = new int[0];
+        Element<Name, int[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new int[0], diffElement), new int[0]), is(true));
+    }
+
+    @Test
+    public void patchingEmptyPrimitiveIntegerArrayWithPrimitiveIntegerArrayShouldProduceArray(){
+        int[] array1 = new int[0];
+        int[] array2 = new int[]{1, 2, 3, 4, 5};
+        Element<Name, int[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new int[0], diffElement), new int[]{1, 2, 3, 4, 5}), is(true));
+    }
+
+    @Test
+    public void patchingPrimitiveIntegerArrayWithEmptyPrimitiveIntegerArrayShouldProduceArray(){
+        int[] array1 = new int[]{1, 2, 3, 4, 5};
+        int[] array2 = new int[0];
+        Element<Name, int[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new int[]{1, 2, 3, 4, 5}, diffElement), new int[0]), is(true));
+    }
+
+    @Test
+    public void patchingPrimitiveIntegerArrayWithPrimitiveIntegerArrayShouldProduceArray(){
+        int[] array1 = new int[]{1, 2, 3, 4, 5};
+        int[] array2 = new int[]{2, 6, 7};
+        Element<Name, int[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new int[]{1, 2, 3, 4, 5}, diffElement), new int[]{2, 6, 7}), is(true));
+    }
+
+    @Test
+    public void patchingPrimitiveIntegerArrayWithRepeatingElementsWithPrimitiveIntegerArrayWithRepeatingElementsShouldProduceArray(){
+        int[] array1 = new int[]{1, 2, 2, 3, 4, 7, 5, 1};
+        int[] array2 = new int[]{2, 6, 6, 7, 2, 11, 22, 8, 11};
+        Element<Name, int[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new int[]{1, 2, 2, 3, 4, 7, 5, 1}, diffElement), new int[]{2, 6, 6, 7, 2, 11, 22, 8, 11}), is(true));
+    }
+
+    @Test
+    public void patchingEmptyIntegerArrayWithEmptyIntegerArrayShouldProduceEmptyArray(){
+        Integer[] array1 = new Integer[0];
+        Integer[] array2 = new Integer[0];
+        Element<Name, Integer[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new Integer[0], diffElement), new Integer[0]), is(true));
+    }
+
+    @Test
+    public void patchingEmptyIntegerArrayWithIntegerArrayShouldProduceEmptyArray(){
+        Integer[] array1 = new Integer[0];
+        Integer[] array2 = new Integer[]{1, 2, 3, 4, 5};
+        Element<Name, Integer[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new Integer[0], diffElement), new Integer[]{1, 2, 3, 4, 5}), is(true));
+    }
+
+    @Test
+    public void patchingIntegerArrayWithEmptyIntegerArrayShouldProduceEmptyArray(){
+        Integer[] array1 = new Integer[]{1, 2, 3, 4, 5};
+        Integer[] array2 = new Integer[0];
+        Element<Name, Integer[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new Integer[]{1, 2, 3, 4, 5}, diffElement), new Integer[0]), is(true));
+    }
+
+    @Test
+    public void patchingIntegerArrayWithIntegerArrayShouldProduceArray(){
+        Integer[] array1 = new Integer[]{1, 2, 3, 4, 5};
+        Integer[] array2 = new Integer[]{2, 6, 7};
+        Element<Name, Integer[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new Integer[]{1, 2, 3, 4, 5}, diffElement), new Integer[]{2, 6, 7}), is(true));
+    }
+
+    @Test
+    public void patchingIntegerArrayWithRepeatingElementsWithIntegerArrayWithRepeatingElementsShouldProduceArray(){
+        Integer[] array1 = new Integer[]{1, 2, 2, 3, 4, 7, 5, 1};
+        Integer[] array2 = new Integer[]{2, 6, 6, 7, 2, 11, 22, 8, 11};
+        Element<Name, Integer[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(this.compare.compare(this.patch.patch(new Integer[]{1, 2, 2, 3, 4, 7, 5, 1}, diffElement), new Integer[]{2, 6, 6, 7, 2, 11, 22, 8, 11}), is(true));
+    }
+
+    @Test
+    public void patchingEmptyArrayListWithEmptyArrayListShouldProduceArrayList() {
+        List<Integer> list1 = new ArrayList<Integer>();
+        List<Integer> list2 = new ArrayList<Integer>();
+        Element<Name, List<Integer>> diffElement = this.diff.diff(list1, list2);
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Integer>(), diffElement), new ArrayList<Integer>()), is(true));
+    }
+
+    @Test
+    public void patchingEmptyArrayListWithArrayListShouldProduceArrayList() {
+        List<Integer> list1 = new ArrayList<Integer>();
+        List<Integer> list2 = new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        Element<Name, List<Integer>> diffElement = this.diff.diff(list1, list2);
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Integer>(), diffElement), new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5))), is(true));
+    }
+
+    @Test
+    public void patchingArrayListWithEmptyArrayListShouldProduceArrayList() {
+        List<Integer> list1 = new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        List<Integer> list2 = new ArrayList<Integer>();
+        Element<Name, List<Integer>> diffElement = this.diff.diff(list1, list2);
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5)), diffElement), new ArrayList<Integer>()), is(true));
+    }
+
+    @Test
+    public void patchingArrayListWithArrayListShouldProduceArrayList() {
+        List<Integer> list1 = new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        List<Integer> list2 = new ArrayList<Integer>(Arrays.asList(11, 12, 13, 1));
+        Element<Name, List<Integer>> diffElement = this.diff.diff(list1, list2);
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5)), diffElement), new ArrayList<Integer>(Arrays.asList(11, 12, 13, 1))), is(true));
+    }
+
+    @Test
+    public void patchingArrayListWithRepeatingElementsWithArrayListWithRepeatingElementsShouldProduceArrayList() {
+        List<Integer> list1 = new ArrayList<Integer>(Arrays.asList(1, 2, 2, 3, 4, 7, 5, 1));
+        List<Integer> list2 = new ArrayList<Integer>(Arrays.asList(2, 6, 6, 7, 2, 11, 22, 8, 11));
+        Element<Name, List<Integer>> diffElement = this.diff.diff(list1, list2);
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Integer>(Arrays.asList(1, 2, 2, 3, 4, 7, 5, 1)), diffElement), new ArrayList<Integer>(Arrays.asList(2, 6, 6, 7, 2, 11, 22, 8, 11))), is(true));
+    }
+
+    @Test
+    public void patchingArrayListWithInsertedElementsShouldNotMoveOtherElements() {
+        List<Integer> list1 = new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        List<Integer> list2 = new ArrayList<Integer>(Arrays.asList(0, 1, 2, 6, 3, 4, 5));
+        Element<Name, List<Integer>> diffElement = this.diff.diff(list1, list2);
+
+        List<Element.Status> statuses = new ArrayList<Element.Status>();
+        for (Element<?, ?> child : ((NodeElement<Name, List<Integer>>) diffElement).getChildren()) {
+            statuses.add(child.getStatus());
+        }
+        assertThat(statuses, is(Arrays.asList(Element.Status.EQUAL, Element.Status.EQUAL, Element.Status.EQUAL, Element.Status.EQUAL, Element.Status.EQUAL,
+                Element.Status.ADDED, Element.Status.ADDED)));
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4, 5)), diffElement), list2), is(true));
+    }
+
+    @Test
+    public void patchingLargeArrayListWithReorderedArrayListShouldProduceArrayList() {
+        List<String> list1 = new ArrayList<String>();
+        for (int i = 0; i < 50000; i++) {
+            list1.add("element" + i);
+        }
+        List<String> list2 = new ArrayList<String>(list1);
+        Collections.reverse(list2);
+        list2.set(100, "modified");
+        list2.remove(200);
+        list2.add("added");
+        Element<Name, List<String>> diffElement = this.diff.diff(list1, list2);
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<String>(list1), diffElement), list2), is(true));
+    }
+
+    @Test
+    public void patchingEmptyHashSetWithEmptyHashSetShouldProduceHashSet() {
+        Set<Integer> set1 = new HashSet<Integer>();
+        Set<Integer> set2 = new HashSet<Integer>();
+        Element<Name, Set<Integer>> diffElement = this.diff.diff(set1, set2);
+        assertThat(this.compare.compare(this.patch.patch(new HashSet<Integer>(), diffElement), new HashSet<Integer>()), is(true));
+    }
+
+    @Test
+    public void patchingEmptyHashSetWithHashSetShouldProduceHashSet() {
+        Set<Integer> set1 = new HashSet<Integer>();
+        Set<Integer> set2 = new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        Element<Name, Set<Integer>> diffElement = this.diff.diff(set1, set2);
+        assertThat(this.compare.compare(this.patch.patch(new HashSet<Integer>(), diffElement), new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5))), is(true));
+    }
+
+    @Test
+    public void patchingHashSetWithEmptyHashSetShouldProduceHashSet() {
+        Set<Integer> set1 = new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        Set<Integer> set2 = new HashSet<Integer>();
+        Element<Name, Set<Integer>> diffElement = this.diff.diff(set1, set2);
+        assertThat(this.compare.compare(this.patch.patch(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5)), diffElement), new HashSet<Integer>()), is(true));
+    }
+
+    @Test
+    public void patchingHashSetWithHashSetShouldProduceHashSet() {
+        Set<Integer> set1 = new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        Set<Integer> set2 = new HashSet<Integer>(Arrays.asList(11, 12, 13, 1));
+        Element<Name, Set<Integer>> diffElement = this.diff.diff(set1, set2);
+        assertThat(this.compare.compare(this.patch.patch(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5)), diffElement), new HashSet<Integer>(Arrays.asList(11, 12, 13, 1))), is(true));
+    }
+
+    @Test
+    public void patchingHashSetWithRepeatingElementsWithHashSetWithRepeatingElementsShouldProduceHashSet() {
+        Set<Integer> set1 = new HashSet<Integer>(Arrays.asList(1, 2, 2, 3, 4, 7, 5, 1));
+        Set<Integer> set2 = new HashSet<Integer>(Arrays.asList(2, 6, 6, 7, 2, 11, 22, 8, 11));
+        Element<Name, Set<Integer>> diffElement = this.diff.diff(set1, set2);
+        assertThat(this.compare.compare(this.patch.patch(new HashSet<Integer>(Arrays.asList(1, 2, 2, 3, 4, 7, 5, 1)), diffElement), new HashSet<Integer>(Arrays.asList(2, 6, 6, 7, 2, 11, 22, 8, 11))), is(true));
+    }
+
+    @Test
+    public void patchingUnorderedLinkedHashSetWithUnorderedLinkedHashSetShouldProduceLinkedHashSet() {
+        Set<Integer> set1 = new LinkedHashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+        Set<Integer> set2 = new LinkedHashSet<Integer>(Arrays.asList(11, 12, 13, 1));
+        Element<Name, Set<Integer>> diffElement = this.diff.diff(set1, set2);
+        assertThat(this.compare.compare(this.patch.patch(new LinkedHashSet<Integer>(Arrays.asList(5, 4, 3, 2, 1)), diffElement), new LinkedHashSet<Integer>(Arrays.asList(1, 13, 12, 11))), is(true));
+    }
+
+    @Test
+    public void patchingUnorderedLinkedHashSetWithRepeatingElementsWithUnorderedLinkedHashSetWithRepeatingElementsShouldProduceLinkedHashSet() {
+        Set<Integer> set1 = new LinkedHashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5, 2, 2, 4, 11));
+        Set<Integer> set2 = new LinkedHashSet<Integer>(Arrays.asList(11, 2, 2, 12, 13, 1));
+        Element<Name, Set<Integer>> diffElement = this.diff.diff(set1, set2);
+        assertThat(this.compare.compare(this.patch.patch(new LinkedHashSet<Integer>(Arrays.asList(5, 4, 3, 2, 1, 11, 4, 2, 2)), diffElement), new LinkedHashSet<Integer>(Arrays.asList(1, 13, 12, 11, 2, 2))), is(true));
+    }
+
+    @Test
+    public void patchingEmptyHashMapWithEmptyHashMapShouldProduceHashMap() {
+        Map<Integer, Integer> map1 = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> map2 = new HashMap<Integer, Integer>();
+        Element<Name, Map<Integer, Integer>> diffElement = this.diff.diff(map1, map2);
+        assertThat(this.compare.compare(this.patch.patch(new HashMap<Integer, Integer>(), diffElement), new HashMap<Integer, Integer>()), is(true));
+    }
+
+    @Test
+    public void patchingEmptyHashMapWithHashMapShouldProduceHashMap() {
+        Map<Integer, Integer> map1 = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> map2 = new HashMap<Integer, Integer>();
+        map2.put(4, 5);
+        map2.put(3, 4);
+        map2.put(2, 3);
+        map2.put(1, 2);
+        Element<Name, Map<Integer, Integer>> diffElement = this.diff.diff(map1, map2);
+        assertThat(this.compare.compare(this.patch.patch(new HashMap<Integer, Integer>(), diffElement), map2), is(true));
+    }
+
+    @Test
+    public void patchingHashMapWithEmptyHashMapShouldProduceHashMap() {
+        Map<Integer, Integer> map1 = new HashMap<Integer, Integer>();
+        map1.put(4, 5);
+        map1.put(3, 4);
+        map1.put(2, 3);
+        map1.put(1, 2);
+        Map<Integer, Integer> map2 = new HashMap<Integer, Integer>();
+        Element<Name, Map<Integer, Integer>> diffElement = this.diff.diff(map1, map2);
+        assertThat(this.compare.compare(this.patch.patch(map1, diffElement), new HashMap<Integer, Integer>()), is(true));
+    }
+
+    @Test
+    public void patchingHashMapWithHashMapShouldProduceHashMap() {
+        Map<Integer, Integer> map1 = new HashMap<Integer, Integer>();
+        map1.put(4, 5);
+        map1.put(3, 4);
+        map1.put(2, 3);
+        map1.put(1, 2);
+        Map<Integer, Integer> map2 = new HashMap<Integer, Integer>();
+        map2.put(10, 22);
+        map2.put(2, 14);
+        map2.put(42, 8);
+        map2.put(1, 2);
+        Element<Name, Map<Integer, Integer>> diffElement = this.diff.diff(map1, map2);
+        assertThat(this.compare.compare(this.patch.patch(map1, diffElement), map2), is(true));
+    }
+
+    @Test
+    public void patchingLargeHashMapWithModifiedValueShouldPatchHashMapInPlace() {
+        Map<String, Integer> map1 = new HashMap<String, Integer>();
+        for (int i = 0; i < 100000; i++) {
+            map1.put("key" + i, i);
+        }
+        Map<String, Integer> map2 = new HashMap<String, Integer>(map1);
+        map2.put("key42", -42);
+        map2.remove("key43");
+        map2.put("added", 0);
+        Element<Name, Map<String, Integer>> diffElement = this.diff.diff(map1, map2);
+
+        Map<String, Integer> map3 = new HashMap<String, Integer>(map1);
+        Map<String, Integer> patched = this.patch.patch(map3, diffElement);
+        assertThat(patched == map3, is(true));
+        assertThat(this.compare.compare(patched, map2), is(true));
+    }
+
+    @Test
+    public void patchingObjectWhoseFieldsShareHashMapShouldPatchHashMapOnce() {
+        Map<String, String> map1 = new HashMap<String, String>();
+        map1.put("color", "red");
+        map1.put("size", "large");
+        Map<String, String> map2 = new HashMap<String, String>(map1);
+        map2.put("color", "blue");
+        map2.remove("size");
+        map2.put("shape", "round");
+        Element<Name, Labels> diffElement = this.diff.diff(new Labels(map1, map1), new Labels(map2, map2));
+
+        Map<String, String> map3 = new HashMap<String, String>(map1);
+        Labels patched = this.patch.patch(new Labels(map3, map3), diffElement);
+        assertThat(patched.getLabels() == patched.getAliases(), is(true));
+        assertThat(this.compare.compare(patched.getLabels(), map2), is(true));
+    }
+
+    @Test
+    public void patchingTreeMapWithBigDecimalKeysShouldPatchTreeMapInPlace() {
+        SortedMap<BigDecimal, Item> map1 = new TreeMap<BigDecimal, Item>();
+        for (int i = 0; i < 10000; i++) {
+            map1.put(BigDecimal.valueOf(i, 2), new Item(i, "level" + i));
+        }
+        SortedMap<BigDecimal, Item> map2 = new TreeMap<BigDecimal, Item>(map1);
+        map2.put(new BigDecimal("10.00"), new Item(1000, "changed"));
+        map2.remove(new BigDecimal("20.00"));
+        map2.put(new BigDecimal("20.005"), new Item(-1, "added"));
+        Element<Name, SortedMap<BigDecimal, Item>> diffElement = this.diff.diff(map1, map2);
+
+        List<Element.Status> statuses = new ArrayList<Element.Status>();
+        for (Element<?, ?> element : ((NodeElement<?, ?>) diffElement).getChildren()) {
+            if (element.getStatus() != Element.Status.EQUAL) {
+                statuses.add(element.getStatus());
+            }
+        }
+        assertThat(statuses, is(Arrays.asList(Element.Status.MODIFIED, Element.Status.DELETED, Element.Status.ADDED)));
+
+        SortedMap<BigDecimal, Item> map3 = new TreeMap<BigDecimal, Item>(map1);
+        assertThat(this.patch.patch(map3, diffElement) == map3, is(true));
+        assertThat(this.compare.compare(map3, map2), is(true));
+    }
+
+    @Test
+    public void patchingTreeSetWithTreeSetShouldPairElementsInOrder() {
+        SortedSet<String> set1 = new TreeSet<String>(Arrays.asList("a", "b", "c", "d"));
+        SortedSet<String> set2 = new TreeSet<String>(Arrays.asList("b", "c", "c1", "d", "e"));
+        Element<Name, SortedSet<String>> diffElement = this.diff.diff(set1, set2);
+
+        List<Element.Status> statuses = new ArrayList<Element.Status>();
+        for (Element<?, ?> element : ((NodeElement<?, ?>) diffElement).getChildren()) {
+            statuses.add(element.getStatus());
+        }
+        assertThat(statuses, is(Arrays.asList(Element.Status.DELETED, Element.Status.EQUAL, Element.Status.EQUAL, Element.Status.EQUAL,
+                Element.Status.ADDED, Element.Status.ADDED)));
+        assertThat(this.patch.patch(new TreeSet<String>(set1), diffElement), is(set2));
+    }
+
+    @Test
+    public void patchingLargeHashSetWithDifferentIterationOrderShouldProduceHashSet() {
+        Set<String> set1 = new HashSet<String>();
+        for (int i = 0; i < 50000; i++) {
+            set1.add("element" + i);
+        }
+        Set<String> set2 = new HashSet<String>(set1);
+        set2.remove("element42");
+        set2.add("added");
+        Element<Name, Set<String>> diffElement = this.diff.diff(set1, set2);
+
+        Set<String> set3 = new HashSet<String>(1 << 20);    //same elements in different iteration order
+        set3.addAll(set1);
+        assertThat(this.patch.patch(set3, diffElement), is(set2));
+    }
+
+    @Test
+    public void patchingLargeArrayListInPlaceShouldKeepArrayListInstance() {
+        List<Integer> list1 = new ArrayList<Integer>();
+        for (int i = 0; i < 200000; i++) {
+            list1.add(i);
+        }
+        List<Integer> list2 = new ArrayList<Integer>(list1);
+        list2.set(100000, -1);
+        list2.add(5, -5);
+        list2.remove(150000);
+        Element<Name, List<Integer>> diffElement = this.diff.diff(list1, list2);
+
+        Patch patch = new Patch.Builder().inPlace(true).build();
+        List<Integer> list3 = new ArrayList<Integer>(list1);
+        List<Integer> patched = patch.patch(list3, diffElement);
+        assertThat(patched == list3, is(true));
+        assertThat(patched, is(list2));
+
+        List<Integer> list4 = Collections.synchronizedList(new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+        Element<Name, List<Integer>> movedElement = this.diff.diff(list4, Arrays.asList(3, 1, 2, 4));
+        List<Integer> list5 = Collections.synchronizedList(new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+        assertThat(patch.patch(list5, movedElement) == list5, is(true));
+        assertThat(list5, is(Arrays.asList(3, 1, 2, 4)));
+    }
+
+    @Test
+    public void patchingLargeDoubleArrayWithModifiedSamplesShouldProduceDoubleArray() {
+        double[] array1 = new double[1000000];
+        for (int i = 0; i < array1.length; i++) {
+            array1[i] = i * 0.5;
+        }
+        double[] array2 = array1.clone();
+        array2[0] = -1;
+        array2[500000] = Double.NaN;
+        array2[500003] = 42;
+        array2[999999] = -2;
+        Element<Name, double[]> diffElement = this.diff.diff(array1, array2);
+        assertThat(((NodeElement<?, ?>) diffElement).getChildren().size(), is(3));
+
+        double[] patched = this.patch.patch(array1.clone(), diffElement);
+        assertThat(Arrays.equals(patched, array2), is(true));
+
+        double[] array3 = Arrays.copyOf(array1, 1000002);
+        Element<Name, double[]> resizedElement = this.diff.diff(array1, array3);
+        assertThat(Arrays.equals(this.patch.patch(array1.clone(), resizedElement), array3), is(true));
+    }
+
+    @Test
+    public void patchingLargeByteArrayWithInsertedAndDeletedBytesShouldProduceByteArrayFromBlockDelta() {
+        byte[] array1 = new byte[256 * 1024];
+        new Random(42).nextBytes(array1);
+        ByteArrayOutputStream revised = new ByteArrayOutputStream();
+        revised.write(array1, 0, 1000);
+        revised.write(new byte[]{1, 2, 3}, 0, 3);
+        revised.write(array1, 1000, 100000);
+        revised.write(array1, 102000, array1.length - 102000);
+        byte[] array2 = revised.toByteArray();
+
+        Element<Name, byte[]> diffElement = this.diff.diff(array1, array2);
+        int insertedLength = 0;
+        for (BlockDeltaElement.Block block : ((BlockDeltaElement<?>) (Element<?, ?>) diffElement).getBlocks()) {
+            if (!block.isCopy()) {
+                insertedLength += block.getLength();
+            }
+        }
+        assertThat(insertedLength < 2 * 1024, is(true));
+        assertThat(Arrays.equals(this.patch.patch(array1.clone(), diffElement), array2), is(true));
+    }
+
+    @Test
+    public void patchingPrimitiveArraysWhoseHashCodesCollideShouldNotMatchKey() {
+        int[] array1 = new int[]{1, 0, 5};
+        int[] array2 = new int[]{1, 0, 6};
+        int[] collidingArray = new int[]{0, 31, 5};
+        assertThat(Arrays.hashCode(collidingArray), is(Arrays.hashCode(array1)));
+        Element<Name, int[]> diffElement = this.diff.diff(array1, array2);
+        try {
+            this.patch.patch(collidingArray, diffElement);
+            assertThat("keys should not match", false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage(), is("Key does not match"));
+        }
+
+        byte[] bytes1 = new byte[8 * 1024];
+        new Random(42).nextBytes(bytes1);
+        bytes1[100] = 10;
+        bytes1[101] = 50;
+        byte[] bytes2 = bytes1.clone();
+        bytes2[5000]++;
+        byte[] collidingBytes = bytes1.clone();
+        collidingBytes[100] = 11;
+        collidingBytes[101] = 19;
+        assertThat(Arrays.hashCode(collidingBytes), is(Arrays.hashCode(bytes1)));
+        Element<Name, byte[]> blockDeltaElement = this.diff.diff(bytes1, bytes2);
+        assertThat(blockDeltaElement instanceof BlockDeltaElement, is(true));
+        try {
+            this.patch.patch(collidingBytes, blockDeltaElement);
+            assertThat("keys should not match", false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage(), is("Key does not match"));
+        }
+        assertThat(Arrays.equals(this.patch.patch(bytes1.clone(), blockDeltaElement), bytes2), is(true));
+    }
+
+    @Test
+    public void patchingObjectWithLargeStringFieldShouldProduceObjectFromStringDelta() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        String name1 = text.toString();
+        String name2 = text.insert(50000, "inserted line\n").delete(100000, 100100).toString();
+
+        Diff diff = new Diff.Builder().stringDelta(1024).build();
+        Element<Name, Item> diffElement = diff.diff(new Item(1, name1), new Item(1, name2));
+        Element<?, ?> nameElement = ((NodeElement<?, ?>) diffElement).getChildren().get(1);
+        assertThat(nameElement instanceof BlockDeltaElement, is(true));
+
+        Item patched = this.patch.patch(new Item(1, name1), diffElement);
+        assertThat(this.compare.compare(patched, new Item(1, name2)), is(true));
+    }
+
+    @Test
+    public void patchingStringWhoseHashCodeCollidesShouldNotMatchStringDeltaKey() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        String name1 = "Aa" + text;
+        String name2 = "Aa" + text + "appended line\n";
+        String collidingName = "BB" + text;
+        assertThat(collidingName.hashCode(), is(name1.hashCode()));
+
+        Diff diff = new Diff.Builder().stringDelta(50).build();
+        Element<Name, Item> diffElement = diff.diff(new Item(1, name1), new Item(1, name2));
+        assertThat(((NodeElement<?, ?>) diffElement).getChildren().get(1) instanceof BlockDeltaElement, is(true));
+        try {
+            this.patch.patch(new Item(1, collidingName), diffElement);
+            assertThat("keys should not match", false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage(), is("Key does not match"));
+        }
+        assertThat(this.compare.compare(this.patch.patch(new Item(1, name1), diffElement), new Item(1, name2)), is(true));
+    }
+
+    @Test
+    public void patchingEmptyObjectGraphWithEmptyObjectGraphShouldProduceObjectGraph(){
+        GrandChildEntity gce1 = new GrandChildEntity(false);
+        GrandChildEntity gce2 = new GrandChildEntity(false);
+        Element<Name, GrandChildEntity> diffElement = this.diff.diff(gce1, gce2);
+        assertThat(this.compare.compare(this.patch.patch(new GrandChildEntity(false), diffElement), new GrandChildEntity(false)), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithObjectGraphShouldProduceObjectGraph(){
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        Element<Name, GrandChildEntity> diffElement = this.diff.diff(gce1, gce2);
+        assertThat(this.compare.compare(this.patch.patch(new GrandChildEntity(1), diffElement), new GrandChildEntity(2)), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithObjectGraphWitchCircularReferencesShouldProduceObjectGraph() {
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce1.setParent1(gce2);
+        gce1.setParent2(gce1);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce1.addParentInSet(gce1);
+        gce1.addParentInSet(gce2);
+        gce1.addParentInSet(gce1);
+        gce1.addParentInSet(gce2);
+        gce1.addParentInArray(0, gce1);
+        gce1.addParentsInMap(gce1, gce1);
+        gce1.addParentsInMap(gce2, gce1);
+        gce1.setParentRecursiveInterfaceArray(gce2.getParentsArray());
+        gce2.setParent1(gce1);
+        gce2.setParent2(gce2);
+        gce2.addParentInList(gce2);
+        gce2.addParentInList(gce1);
+        gce2.addParentInSet(gce2);
+        gce2.addParentInSet(gce1);
+        gce2.addParentInSet(null);
+        gce2.addParentInSet(null);
+        gce2.addParentInArray(0, gce2);
+        gce2.addParentInArray(1, gce1);
+        gce2.addParentsInMap(gce2, gce2);
+        gce2.addParentsInMap(null, gce1);
+        gce2.addParentsInMap(gce1, null);
+        gce2.addParentsInMap(gce2, gce1);
+        gce2.setParentRecursiveInterfaceArray(gce1.getParentsArray());
+
+        GrandChildEntity gce3 = new GrandChildEntity(1);
+        GrandChildEntity gce4 = new GrandChildEntity(2);
+        gce3.setParent1(gce4);
+        gce3.setParent2(gce3);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce3.addParentInSet(gce3);
+        gce3.addParentInSet(gce4);
+        gce3.addParentInSet(gce3);
+        gce3.addParentInSet(gce4);
+        gce3.addParentInArray(0, gce3);
+        gce3.addParentsInMap(gce3, gce3);
+        gce3.addParentsInMap(gce4, gce3);
+        gce3.setParentRecursiveInterfaceArray(gce4.getParentsArray());
+        gce4.setParent1(gce3);
+        gce4.setParent2(gce4);
+        gce4.addParentInList(gce4);
+        gce4.addParentInList(gce3);
+        gce4.addParentInSet(gce4);
+        gce4.addParentInSet(gce3);
+        gce4.addParentInSet(null);
+        gce4.addParentInSet(null);
+        gce4.addParentInArray(0, gce4);
+        gce4.addParentInArray(1, gce3);
+        gce4.addParentsInMap(gce4, gce4);
+        gce4.addParentsInMap(null, gce3);
+        gce4.addParentsInMap(gce3, null);
+        gce4.addParentsInMap(gce4, gce3);
+        gce4.setParentRecursiveInterfaceArray(gce3.getParentsArray());
+
+        Element<Name, GrandChildEntity> diffElement = this.diff.diff(gce1, gce2);
+        GrandChildEntity patched = this.patch.patch(gce3, diffElement);
+
+        assertThat(this.compare.compare(patched, gce2), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithObjectGraphWitchRepeatingListReferencesShouldProduceObjectGraph() {
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce2.addParentInSet(gce1);
+        gce2.setParentsList(gce1.getParentsList());
+
+        GrandChildEntity gce3 = new GrandChildEntity(1);
+        GrandChildEntity gce4 = new GrandChildEntity(2);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce4.addParentInSet(gce3);
+        gce4.setParentsList(gce3.getParentsList());
+
+        Element<Name, GrandChildEntity> diffElement = this.diff.diff(gce1, gce2);
+        GrandChildEntity patched = this.patch.patch(gce3, diffElement);
+
+        assertThat(this.compare.compare(patched, gce2), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithObjectGraphWitchCircularReferencesUsingPartialKeyShouldProduceObjectGraph(){
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce1.setParent1(gce2);
+        gce1.setParent2(gce1);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce1.addParentInSet(gce1);
+        gce1.addParentInSet(gce2);
+        gce1.addParentInSet(gce1);
+        gce1.addParentInSet(gce2);
+        gce1.addParentInArray(0, gce1);
+        gce1.addParentsInMap(gce1, gce1);
+        gce1.addParentsInMap(gce2, gce1);
+        gce1.setParentInterface(gce2);
+        gce1.setParentAbstract(gce1);
+        gce1.addParentInInterfaceArray(0, gce1);
+        gce1.addParentInAbstractArray(0, gce2);
+        gce1.setParentRecursiveInterfaceArray(gce1.getParentsArray());
+        gce2.setParent1(gce1);
+        gce2.setParent2(gce2);
+        gce2.addParentInList(gce2);
+        gce2.addParentInList(gce1);
+        gce2.addParentInSet(gce2);
+        gce2.addParentInSet(gce1);
+        gce2.addParentInSet(null);
+        gce2.addParentInSet(null);
+        gce2.addParentInArray(0, gce2);
+        gce2.addParentInArray(1, gce1);
+        gce2.addParentsInMap(gce2, gce2);
+        gce2.addParentsInMap(null, gce1);
+        gce2.addParentsInMap(gce1, null);
+        gce2.addParentsInMap(gce2, gce1);
+        gce2.setParentRecursiveInterfaceArray(gce1.getParentsArray());
+
+        GrandChildEntity gce3 = new GrandChildEntity(1);
+        GrandChildEntity gce4 = new GrandChildEntity(2);
+        gce3.setParent1(gce4);
+        gce3.setParent2(gce3);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce3.addParentInSet(gce3);
+        gce3.addParentInSet(gce4);
+        gce3.addParentInSet(gce3);
+        gce3.addParentInSet(gce4);
+        gce3.addParentInArray(0, gce3);
+        gce3.addParentsInMap(gce3, gce3);
+        gce3.addParentsInMap(gce4, gce3);
+        gce3.setParentInterface(gce4);
+        gce3.setParentAbstract(gce3);
+        gce3.addParentInInterfaceArray(0, gce3);
+        gce3.addParentInAbstractArray(0, gce4);
+        gce3.setParentRecursiveInterfaceArray(gce3.getParentsArray());
+        gce4.setParent1(gce3);
+        gce4.setParent2(gce4);
+        gce4.addParentInList(gce4);
+        gce4.addParentInList(gce3);
+        gce4.addParentInSet(gce4);
+        gce4.addParentInSet(gce3);
+        gce4.addParentInSet(null);
+        gce4.addParentInSet(null);
+        gce4.addParentInArray(0, gce4);
+        gce4.addParentInArray(1, gce3);
+        gce4.addParentsInMap(gce4, gce4);
+        gce4.addParentsInMap(null, gce3);
+        gce4.addParentsInMap(gce3, null);
+        gce4.addParentsInMap(gce4, gce3);
+        gce4.setParentRecursiveInterfaceArray(gce3.getParentsArray());
+
+
+        EntityDefinition entityDefinition = new EntityDefinition(GrandChildEntity.class, "commonInt", "commonString");
+        Diff diff = new Diff.Builder().registerEntity(entityDefinition).build();
+        Patch patch = new Patch.Builder().build();
+        Compare compare = new Compare.Builder().build();
+
+        Element<Name, GrandChildEntity> diffElement = diff.diff(gce1, gce2);
+        GrandChildEntity patched = patch.patch(gce3, diffElement);
+        assertThat(compare.compare(patched, gce2), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithObjectGraphUsingPartialKeyShouldProduceObjectGraph(){
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+
+        EntityDefinition entityDefinition = new EntityDefinition(GrandChildEntity.class, "commonInt", "commonString").registerSuperclass(BaseEntity.class, "commonInt");
+        Diff diff = new Diff.Builder().registerEntity(entityDefinition).build();
+        Patch patch = new Patch.Builder().build();
+        Compare compare = new Compare.Builder().build();
+
+        Element<Name, GrandChildEntity> diffElement = diff.diff(gce1, gce2);
+        assertThat(compare.compare(patch.patch(new GrandChildEntity(1), diffElement), new GrandChildEntity(2)), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithObjectGraphUsingPartialKeyAndIgnoredFieldsShouldPatchPartialObjectGraph(){
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce2.setParent1(gce2);
+
+        EntityDefinition entityDefinition = new EntityDefinition(GrandChildEntity.class, "commonInt", "commonString").registerSuperclass(BaseEntity.class, "commonInt");
+        IgnoredFields ignoredFields = new IgnoredFields(GrandChildEntity.class, "parent1", "parent2");
+        Diff diff = new Diff.Builder().registerEntity(entityDefinition).ignoreFields(ignoredFields).build();
+        Patch patch = new Patch.Builder().build();
+        Compare compare = new Compare.Builder().build();
+
+        Element<Name, GrandChildEntity> diffElement = diff.diff(gce1, gce2);
+        GrandChildEntity patched = patch.patch(new GrandChildEntity(1), diffElement);
+        assertThat(compare.compare(patched, gce2), is(false));  //parent1 in patched object will be null, since this field is ignored
+    }
+
+    @Test
+    public void patchingEntityListWithModifiedEntitiesShouldMatchEntitiesByKey() {
+        List<Item> list1 = new ArrayList<Item>(Arrays.asList(new Item(1, "first"), new Item(2, "second"), new DiscountedItem(3, "third", 10)));
+        List<Item> list2 = new ArrayList<Item>(Arrays.asList(new DiscountedItem(3, "third", 20), new Item(2, "changed"), new Item(1, "first")));
+
+        Diff diff = new Diff.Builder()
+                .registerEntity(new EntityDefinition(Item.class, "id"))
+                .registerEntity(new EntityDefinition(DiscountedItem.class).registerSuperclass(Item.class, "id"))
+                .build();
+        Element<Name, List<Item>> diffElement = diff.diff(list1, list2);
+
+        List<Element.Status> statuses = new ArrayList<Element.Status>();
+        for (Element<?, ?> child : ((NodeElement<Name, List<Item>>) diffElement).getChildren()) {
+            statuses.add(child.getStatus());
+        }
+        assertThat(statuses, is(Arrays.asList(Element.Status.EQUAL_MOVED, Element.Status.MODIFIED_MOVED, Element.Status.MODIFIED)));
+
+        List<Item> list3 = new ArrayList<Item>(Arrays.asList(new Item(1, "first"), new Item(2, "second"), new DiscountedItem(3, "third", 10)));
+        assertThat(this.compare.compare(this.patch.patch(list3, diffElement), list2), is(true));
+    }
+
+    @Test
+    public void patchingListWhoseElementWasRetargetedThroughEarlierSiblingShouldMatchResolvedElement() {
+        Node first1 = new Node(1, "first");
+        Node second1 = new Node(2, "second");
+        first1.setNext(second1);
+        List<Node> list1 = new ArrayList<Node>(Arrays.asList(first1, second1));
+
+        Node first2 = new Node(1, "first");
+        Node second2 = new Node(2, "second");
+        first2.setNext(new Node(3, "third"));     //diffing the first element pairs second1 with the third node
+        List<Node> list2 = new ArrayList<Node>(Arrays.asList(first2, second2));
+
+        Diff diff = new Diff.Builder().registerEntity(new EntityDefinition(Node.class, "id")).build();
+        Element<Name, List<Node>> diffElement = diff.diff(list1, list2);
+
+        List<Element.Status> statuses = new ArrayList<Element.Status>();
+        for (Element<?, ?> child : ((NodeElement<Name, List<Node>>) diffElement).getChildren()) {
+            statuses.add(child.getStatus());
+        }
+        assertThat(statuses, is(Arrays.asList(Element.Status.MODIFIED, Element.Status.DELETED, Element.Status.ADDED)));
+
+        Node first3 = new Node(1, "first");
+        Node second3 = new Node(2, "second");
+        first3.setNext(second3);
+        List<Node> patched = this.patch.patch(new ArrayList<Node>(Arrays.asList(first3, second3)), diffElement);
+        assertThat(this.compare.compare(patched, list2), is(true));
+        assertThat(patched.get(0).getNext() == patched.get(1), is(false));
+    }
+
+    @Test
+    public void patchingObjectGraphsFromMultipleThreadsWithSharedEnginesShouldProduceObjectGraphs() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 32; i++) {
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    GrandChildEntity gce1 = new GrandChildEntity(1);
+                    GrandChildEntity gce2 = new GrandChildEntity(2);
+                    gce2.setParent1(gce2);
+                    Element<Name, GrandChildEntity> diffElement = diff.diff(gce1, gce2);
+                    return compare.compare(patch.patch(new GrandChildEntity(1), diffElement), gce2);
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertThat(result.get(), is(true));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void patchingObjectGraphWithParallelDiffShouldProduceObjectGraph() {
+        Diff diff = new Diff.Builder().parallel(1).build();
+        Element<Name, GrandChildEntity> diffElement = diff.diff(new GrandChildEntity(1), new GrandChildEntity(2));
+        assertThat(this.compare.compare(this.patch.patch(new GrandChildEntity(1), diffElement), new GrandChildEntity(2)), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWitchRepeatingListReferencesWithParallelDiffShouldProduceObjectGraph() {
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce1.addParentInList(gce1);
+        gce2.addParentInSet(gce1);
+        gce2.setParentsList(gce1.getParentsList());
+
+        GrandChildEntity gce3 = new GrandChildEntity(1);
+        GrandChildEntity gce4 = new GrandChildEntity(2);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce3.addParentInList(gce3);
+        gce4.addParentInSet(gce3);
+        gce4.setParentsList(gce3.getParentsList());
+
+        Diff diff = new Diff.Builder().parallel(1).build();
+        Element<Name, GrandChildEntity> diffElement = diff.diff(gce1, gce2);
+        GrandChildEntity patched = this.patch.patch(gce3, diffElement);
+
+        assertThat(this.compare.compare(patched, gce2), is(true));
+    }
+
+    @Test
+    public void diffingChildrenSharingObjectInParallelShouldKeepParallelResult() {
+        final List<Node> originals = new ArrayList<Node>();
+        final List<Node> revisions = new ArrayList<Node>();
+        Node sharedOriginal = new Node(0, "shared");
+        Node sharedRevised = new Node(0, "changed");
+        for (int i = 1; i <= 8; i++) {
+            Node original = new Node(i, "node" + i);
+            original.setNext(new Node(10 + i, "leaf" + i));
+            original.getNext().setNext(sharedOriginal);
+            originals.add(original);
+            Node revised = new Node(i, "node" + i);
+            revised.setNext(new Node(10 + i, "leaf" + i));
+            revised.getNext().setNext(sharedRevised);
+            revisions.add(revised);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        final Diff diff = new Diff.Builder().parallel(pool, 2).build();
+        final List<Callable<Element<?, ?>>> children = new ArrayList<Callable<Element<?, ?>>>();
+        for (int i = 0; i < originals.size(); i++) {
+            final int index = i;
+            children.add(new Callable<Element<?, ?>>() {
+                @Override
+                public Element<?, ?> call() {
+                    Node original = originals.get(index);
+                    return diff.diff(original, revisions.get(index), index, Node.class, null, diff.generateKey(index, Node.class, null, original));
+                }
+            });
+        }
+        List<Element<?, ?>> elements = pool.invoke(new RecursiveTask<List<Element<?, ?>>>() {
+            @Override
+            protected List<Element<?, ?>> compute() {
+                return diff.diffInParallel(children);
+            }
+        });
+        assertThat(elements.size(), is(8));     //every child kept, none left to be diffed sequentially
+        assertThat(elements.get(0).getStatus(), is(Element.Status.MODIFIED));
+        for (Element<?, ?> element : elements.subList(1, elements.size())) {
+            assertThat(element.getStatus(), is(Element.Status.EQUAL));     //as in one pass, the shared object is diffed once
+        }
+
+        Element<Name, List<Node>> diffElement = diff.diff(originals, revisions);
+        List<Node> patched = this.patch.patch(new ArrayList<Node>(originals), diffElement);
+        assertThat(this.compare.compare(patched, revisions), is(true));
+        assertThat(patched.get(0).getNext().getNext() == patched.get(7).getNext().getNext(), is(true));
+        pool.shutdown();
+    }
+
+    @Test
+    public void diffingAndPatchingWithCompiledTypesShouldMatchReflectivePath() throws IOException {
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce2.setParent1(gce2);
+        gce2.addParentInList(gce2);
+
+        Diff diff = new Diff.Builder().compileTypes(true).build();
+        Element<Name, GrandChildEntity> diffElement = diff.diff(gce1, gce2);
+        assertThat(diff.getMetadataRegistry().getTypeMetadata(GrandChildEntity.class).getCompiledGeneration() instanceof CompiledEntityGeneration, is(true));
+        assertThat(write(diffElement), is(write(this.diff.diff(gce1, gce2))));
+
+        Patch patch = new Patch.Builder().compileTypes(true).build();
+        Compare compare = new Compare.Builder().compileTypes(true).build();
+        assertThat(compare.compare(patch.patch(new GrandChildEntity(1), diffElement), gce2), is(true));
+        assertThat(compare.compare(new GrandChildEntity(1), gce2), is(false));
+    }
+
+    @Test
+    public void compilingTypeOnConcurrentFirstUseShouldGenerateOneGeneration() throws Exception {
+        final TypeMetadata typeMetadata = new Diff.Builder().compileTypes(true).build().getMetadataRegistry().getTypeMetadata(Reading.class);
+        List<Callable<ObjectEntityGeneration<?>>> tasks = new ArrayList<Callable<ObjectEntityGeneration<?>>>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(new Callable<ObjectEntityGeneration<?>>() {
+                @Override
+                public ObjectEntityGeneration<?> call() {
+                    return typeMetadata.getCompiledGeneration();
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ObjectEntityGeneration<?>>> generations = executor.invokeAll(tasks);
+        executor.shutdown();
+        assertThat(generations.get(0).get() instanceof CompiledEntityGeneration, is(true));
+        for (Future<ObjectEntityGeneration<?>> generation : generations) {
+            assertThat(generation.get() == generations.get(0).get(), is(true));
+        }
+    }
+
+    @Test
+    public void patchingPrimitiveFieldsWithCompiledTypesShouldMatchReflectivePath() throws IOException {
+        Reading reading1 = new Reading(1, 1000L, 21.5, true);
+        Reading reading2 = new Reading(2, 2000L, -0.0, false);
+        reading2.setPrevious(new Reading(1, 1000L, Double.NaN, true));
+
+        Diff diff = new Diff.Builder().compileTypes(true).build();
+        Element<Name, Reading> diffElement = diff.diff(reading1, reading2);
+        assertThat(write(diffElement), is(write(this.diff.diff(reading1, reading2))));
+        assertThat(diff.diff(reading2, reading2).getStatus(), is(Element.Status.EQUAL));
+
+        Patch patch = new Patch.Builder().compileTypes(true).build();
+        Compare compare = new Compare.Builder().compileTypes(true).build();
+        Reading patched = patch.patch(new Reading(1, 1000L, 21.5, true), diffElement);
+        assertThat(compare.compare(patched, reading2), is(true));
+        assertThat(this.compare.compare(patched, reading2), is(true));
+        assertThat(compare.compare(new Reading(2, 2000L, 0.0, false), new Reading(2, 2000L, -0.0, false)), is(false));  //as Double.equals
+    }
+
+    @Test
+    public void patchingEntityListWithCompiledTypesShouldMatchEntitiesByGeneratedKeys() {
+        List<Item> list1 = new ArrayList<Item>(Arrays.asList(new Item(1, "first"), new Item(2, "second"), new DiscountedItem(3, "third", 10)));
+        List<Item> list2 = new ArrayList<Item>(Arrays.asList(new DiscountedItem(3, "third", 20), new Item(2, "changed"), new Item(1, "first")));
+
+        Diff diff = new Diff.Builder()
+                .registerEntity(new EntityDefinition(Item.class, "id"))
+                .registerEntity(new EntityDefinition(DiscountedItem.class).registerSuperclass(Item.class, "id"))
+                .compileTypes(true)
+                .build();
+        Element<Name, List<Item>> diffElement = diff.diff(list1, list2);
+
+        List<Element.Status> statuses = new ArrayList<Element.Status>();
+        for (Element<?, ?> child : ((NodeElement<Name, List<Item>>) diffElement).getChildren()) {
+            statuses.add(child.getStatus());
+        }
+        assertThat(statuses, is(Arrays.asList(Element.Status.EQUAL_MOVED, Element.Status.MODIFIED_MOVED, Element.Status.MODIFIED)));
+
+        Patch patch = new Patch.Builder().compileTypes(true).build();
+        List<Item> list3 = new ArrayList<Item>(Arrays.asList(new Item(1, "first"), new Item(2, "second"), new DiscountedItem(3, "third", 10)));
+        assertThat(this.compare.compare(patch.patch(list3, diffElement), list2), is(true));
+        List<Item> list4 = new ArrayList<Item>(Arrays.asList(new Item(1, "first"), new Item(4, "second"), new DiscountedItem(3, "third", 10)));
+        try {
+            patch.patch(list4, diffElement);
+            assertThat("keys should not match", false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage(), is("Key does not match"));
+        }
+    }
+
+    private static byte[] write(Element<?, ?> diffElement) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DiffWriter writer = new DiffWriter(bytes);
+        writer.write(diffElement);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void patchingLargeListAndMapWithSparseDiffShouldProduceListAndMap() {
+        List<Item> list1 = new ArrayList<Item>();
+        Map<Integer, Item> map1 = new HashMap<Integer, Item>();
+        for (int i = 0; i < 10000; i++) {
+            list1.add(new Item(i, "item" + i));
+            map1.put(i, new Item(i, "item" + i));
+        }
+        List<Item> list2 = new ArrayList<Item>(list1);
+        list2.set(5000, new Item(5000, "changed"));
+        list2.add(new Item(-1, "last"));
+        Map<Integer, Item> map2 = new HashMap<Integer, Item>(map1);
+        map2.put(7000, new Item(7000, "changed"));
+
+        Diff diff = new Diff.Builder().sparse(true).build();
+        Element<Name, Map<Integer, Item>> mapElement = diff.diff(map1, map2);
+        assertThat(((NodeElement<?, ?>) mapElement).getChildren().size(), is(1));
+        assertThat(this.compare.compare(this.patch.patch(new HashMap<Integer, Item>(map1), mapElement), map2), is(true));
+
+        Element<Name, List<Item>> listElement = diff.diff(list1, list2);
+        assertThat(((NodeElement<?, ?>) listElement).getChildren().size(), is(3));
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Item>(list1), listElement), list2), is(true));
+
+        List<Item> list3 = new ArrayList<Item>(list1);
+        list3.remove(0);
+        try {
+            this.patch.patch(list3, listElement);
+            assertThat(false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage(), is("Array size and/or element mismatch"));
+        }
+    }
+
+    @Test
+    public void patchingObjectGraphWithLazyDiffShouldProduceObjectGraph() {
+        Diff diff = new Diff.Builder().lazy(true).build();
+        assertThat(diff.diff(new GrandChildEntity(1), new GrandChildEntity(1)).getStatus(), is(Element.Status.EQUAL));
+
+        Element<Name, GrandChildEntity> diffElement = diff.diff(new GrandChildEntity(1), new GrandChildEntity(2));
+        assertThat(diffElement.getStatus(), is(Element.Status.MODIFIED));
+        Element<Name, GrandChildEntity> materialized = diffElement.materialize();
+        assertThat(materialized.getStatus(), is(Element.Status.MODIFIED));
+        assertThat(this.compare.compare(this.patch.patch(new GrandChildEntity(1), materialized), new GrandChildEntity(2)), is(true));
+    }
+
+    @Test
+    public void diffingLazilyShouldDiffNestedObjectsOnlyWhenRead() {
+        Node first1 = new Node(1, "first");
+        Node second1 = new Node(2, "second");
+        Node third1 = new Node(3, "third");
+        first1.setNext(second1);
+        second1.setNext(third1);
+        third1.setNext(first1);
+        Node first2 = new Node(1, "changed");
+        Node second2 = new Node(2, "second");
+        Node third2 = new Node(3, "changed");
+        first2.setNext(second2);
+        second2.setNext(third2);
+        third2.setNext(first2);
+
+        Diff diff = new Diff.Builder().lazy(true).build();
+        Element<Name, Node> diffElement = diff.diff(first1, first2);
+        assertThat(diffElement.getStatus(), is(Element.Status.MODIFIED));    //stops at the changed name of the root
+        List<Element<?, ?>> children = ((NodeElement<Name, Node>) diffElement).getChildren();
+        assertThat(children.size(), is(3));
+        LazyNodeElement<?, ?> second = (LazyNodeElement<?, ?>) children.get(2);
+        assertThat(second.getDiffedFieldCount(), is(0));
+
+        assertThat(second.getStatus(), is(Element.Status.MODIFIED));
+        LazyNodeElement<?, ?> third = (LazyNodeElement<?, ?>) second.getChildren().get(2);
+        assertThat(second.getDiffedFieldCount(), is(3));
+        assertThat(third.getDiffedFieldCount(), is(2));    //status of the third node stopped at its changed name
+        assertThat(third.getChildren().get(1).getStatus(), is(Element.Status.MODIFIED));
+
+        Element<Name, Node> materialized = diffElement.materialize();
+        Node first3 = new Node(1, "first");
+        Node second3 = new Node(2, "second");
+        Node third3 = new Node(3, "third");
+        first3.setNext(second3);
+        second3.setNext(third3);
+        third3.setNext(first3);
+        Node patched = this.patch.patch(first3, materialized);
+        assertThat(this.compare.compare(patched, first2), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithFlatDiffShouldProduceObjectGraph() {
+        Element<Name, GrandChildEntity> diffElement = this.diff.diff(new GrandChildEntity(1), new GrandChildEntity(2));
+        FlatDiff<Name, GrandChildEntity> flatDiff = new FlatDiff<Name, GrandChildEntity>(diffElement);
+        assertThat(flatDiff.getParent(0), is(-1));
+        assertThat(flatDiff.getName(0), is((Object) Name.ROOT));
+        assertThat(flatDiff.getStatus(0), is(diffElement.getStatus()));
+        assertThat(flatDiff.getKey(0) == diffElement.getKey(), is(true));
+        assertThat(this.compare.compare(this.patch.patch(new GrandChildEntity(1), flatDiff), new GrandChildEntity(2)), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphWithFlatDiffShouldMatchKeysStoredInColumns() {
+        FlatDiff<Name, GrandChildEntity> flatDiff = this.diff.diffFlat(new GrandChildEntity(1), new GrandChildEntity(2));
+        assertThat(flatDiff.getKey(0) instanceof FingerprintKey, is(true));
+        assertThat(flatDiff.getKey(0) == flatDiff.getKey(0), is(false));
+        assertThat(this.compare.compare(this.patch.patch(new GrandChildEntity(1), flatDiff), new GrandChildEntity(2)), is(true));
+        try {
+            this.patch.patch(new GrandChildEntity(3), flatDiff);
+            assertThat("keys should not match", false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage(), is("Key does not match"));
+        }
+
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce2.addParentInSet(gce1);
+        gce2.setParentsList(gce1.getParentsList());
+        gce2.setParent1(gce1);
+
+        GrandChildEntity gce3 = new GrandChildEntity(1);
+        GrandChildEntity gce4 = new GrandChildEntity(2);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce4.addParentInSet(gce3);
+        gce4.setParentsList(gce3.getParentsList());
+        gce4.setParent1(gce3);
+        assertThat(this.compare.compare(this.patch.patch(gce3, this.diff.diffFlat(gce1, gce2)), gce2), is(true));
+
+        Node first1 = new Node(1, "first");
+        Node second1 = new Node(2, "second");
+        first1.setNext(second1);
+        second1.setNext(first1);
+        Node first2 = new Node(1, "changed");
+        Node second2 = new Node(2, "second");
+        first2.setNext(second2);
+        second2.setNext(first2);
+        FlatDiff<Name, Node> cycleDiff = this.diff.diffFlat(first1, first2);
+        assertThat(cycleDiff.getKey(0) instanceof FingerprintKey, is(true));    //circular references resolve through slots
+
+        Node first3 = new Node(1, "first");
+        Node second3 = new Node(2, "second");
+        first3.setNext(second3);
+        second3.setNext(first3);
+        assertThat(this.compare.compare(this.patch.patch(first3, cycleDiff), first2), is(true));
+        Node first4 = new Node(1, "first");
+        first4.setNext(new Node(2, "other"));
+        try {
+            this.patch.patch(first4, cycleDiff);
+            assertThat("keys should not match", false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage(), is("Key does not match"));
+        }
+    }
+
+    @Test
+    public void patchingObjectGraphsWithDiffsReadFromStreamShouldProduceObjectGraphs() throws IOException {
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce2.addParentInSet(gce1);
+        gce2.setParentsList(gce1.getParentsList());
+
+        GrandChildEntity gce3 = new GrandChildEntity(1);
+        GrandChildEntity gce4 = new GrandChildEntity(2);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce4.addParentInSet(gce3);
+        gce4.setParentsList(gce3.getParentsList());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DiffWriter writer = new DiffWriter(bytes, true);
+        writer.write(this.diff.diff(gce1, gce2));
+        writer.write(this.diff.diff(new GrandChildEntity(1), new GrandChildEntity(2)));
+        writer.close();
+
+        DiffReader reader = new DiffReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(this.compare.compare(this.patch.patch(gce3, reader), gce2), is(true));
+        assertThat(this.compare.compare(this.patch.patch(new GrandChildEntity(1), reader), new GrandChildEntity(2)), is(true));
+        assertThat(reader.read() == null, is(true));
+    }
+
+    @Test
+    public void readingDiffWithForgedClassOrLengthShouldBeRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DiffWriter writer = new DiffWriter(bytes);
+        writer.write(new LeafElement<Name, Date>(null, Element.Status.MODIFIED, null, new Date(2)));     //platform classes are serialized
+        writer.write(this.diff.diff("original", "forged"));
+        writer.close();
+        byte[] stream = bytes.toByteArray();
+
+        DiffReader reader = new DiffReader(new ByteArrayInputStream(stream));
+        assertThat(((LeafElement<?, ?>) reader.read()).getValue(), is((Object) new Date(2)));
+        assertThat(this.patch.patch("original", reader), is("forged"));
+
+        byte[] serializedDate = serialize(new Date(2));
+        byte[] serializedPayload = serialize(new Payload());
+        byte[] forgedClass = replace(stream, concat(varint(serializedDate.length), serializedDate), concat(varint(serializedPayload.length), serializedPayload));
+        try {
+            new DiffReader(new ByteArrayInputStream(forgedClass)).read();
+            assertThat("class should be rejected", false, is(true));
+        } catch (InvalidClassException e) {
+            assertThat(e.getMessage().contains(Payload.class.getName()), is(true));
+        }
+
+        byte[] forgedLength = replace(stream, concat(varint(6), "forged".getBytes("UTF-8")), concat(varint(1 << 30), "forged".getBytes("UTF-8")));
+        reader = new DiffReader(new ByteArrayInputStream(forgedLength));
+        reader.read();
+        try {
+            reader.read();
+            assertThat("length should be rejected", false, is(true));
+        } catch (StreamCorruptedException e) {
+            assertThat(e.getMessage(), is("Length 1073741824 out of bounds"));
+        }
+
+        byte[] truncatedLength = replace(stream, concat(varint(6), "forged".getBytes("UTF-8")), concat(varint(1 << 25), "forged".getBytes("UTF-8")));
+        reader = new DiffReader(new ByteArrayInputStream(truncatedLength));
+        reader.read();
+        try {
+            reader.read();
+            assertThat("stream should end", false, is(true));
+        } catch (EOFException e) {
+            assertThat(e != null, is(true));
+        }
+    }
+
+    private static class Payload implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] varint(int value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while ((value & ~0x7F) != 0) {
+            bytes.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes.write(value);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private static byte[] replace(byte[] bytes, byte[] target, byte[] replacement) {
+        for (int i = 0; i + target.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + target.length), target)) {
+                return concat(concat(Arrays.copyOf(bytes, i), replacement), Arrays.copyOfRange(bytes, i + target.length, bytes.length));
+            }
+        }
+        throw new IllegalArgumentException("Target not found");
+    }
+
+    @Test
+    public void patchingWithDiffsExportedAsJsonPatchShouldProduceRevisedObjects() throws IOException {
+        Order original = new Order(1, "customer", new ArrayList<Item>(Arrays.asList(new Item(1, "a"), new Item(2, "b"), new Item(3, "c"), new Item(4, "d"))),
+                new int[]{1, 2, 3, 4, 5}, new HashMap<String, String>(Collections.singletonMap("x", "1")));
+        Order revised = new Order(1, null, new ArrayList<Item>(Arrays.asList(new Item(3, "c"), new Item(1, "a"), new Item(4, "changed"), new Item(5, "e"))),
+                new int[]{1, 9, 3, 4, 5, 6}, new HashMap<String, String>(Collections.singletonMap("y", "2")));
+
+        Element<Name, Order> diffElement = this.diff.diff(original, revised);
+        JsonPatchReader reader = new JsonPatchReader(this.diff);
+
+        StringWriter json = new StringWriter();
+        new JsonPatchWriter(json).writePatch(diffElement);
+        Element<Name, Order> imported = reader.read(new StringReader(json.toString()), original);
+        assertThat(this.compare.compare(this.patch.patch(original, imported), revised), is(true));
+
+        StringWriter mergeJson = new StringWriter();
+        new JsonPatchWriter(mergeJson).writeMergePatch(diffElement, revised);
+        assertThat(mergeJson.toString().contains("\"customer\":null"), is(true));
+        Element<Name, Order> mergeImported = reader.readMergePatch(new StringReader(mergeJson.toString()), original);
+        assertThat(this.compare.compare(this.patch.patch(original, mergeImported), revised), is(true));
+    }
+
+    @Test
+    public void exportingBlockDeltasAndEntryDiffedMapsAsJsonPatchShouldProduceRevisedValues() throws IOException {
+        JsonPatchReader reader = new JsonPatchReader(this.diff);
+
+        byte[] bytes1 = new byte[8 * 1024];
+        new Random(42).nextBytes(bytes1);
+        byte[] bytes2 = bytes1.clone();
+        bytes2[5000]++;
+        Element<Name, byte[]> bytesElement = this.diff.diff(bytes1, bytes2);
+        assertThat(bytesElement instanceof BlockDeltaElement, is(true));
+        StringWriter bytesJson = new StringWriter();
+        new JsonPatchWriter(bytesJson).writePatch(bytesElement, bytes1);
+        assertThat(bytesJson.toString(), is("[{\"op\":\"replace\",\"path\":\"/5000\",\"value\":" + bytes2[5000] + "}]"));
+        assertThat(Arrays.equals(this.patch.patch(bytes1.clone(), reader.read(new StringReader(bytesJson.toString()), bytes1)), bytes2), is(true));
+        try {
+            new JsonPatchWriter(new StringWriter()).writePatch(bytesElement);
+            assertThat("block delta should need the original", false, is(true));
+        } catch (UnsupportedOperationException e) {
+            assertThat(e.getMessage().contains("with the original"), is(true));
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        String name1 = text.toString();
+        Item item1 = new Item(1, name1);
+        Item item2 = new Item(1, text.insert(5000, "inserted line\n").toString());
+        Element<Name, Item> itemElement = new Diff.Builder().stringDelta(1024).build().diff(item1, item2);
+        StringWriter itemJson = new StringWriter();
+        new JsonPatchWriter(itemJson).writePatch(itemElement, item1);
+        assertThat(this.compare.compare(this.patch.patch(new Item(1, name1), reader.read(new StringReader(itemJson.toString()), item1)), item2), is(true));
+
+        Map<String, Item> map1 = new LinkedHashMap<String, Item>();
+        map1.put("a", new Item(1, "a"));
+        map1.put("b", new Item(2, "b"));
+        map1.put("c", new Item(3, "c"));
+        Map<String, Item> map2 = new LinkedHashMap<String, Item>();
+        map2.put("a", new Item(1, "a"));
+        map2.put("b", new Item(2, "changed"));
+        map2.put("d", new Item(4, "d"));
+        Element<Name, Map<String, Item>> mapElement = this.diff.diff(map1, map2);
+        StringWriter mapJson = new StringWriter();
+        new JsonPatchWriter(mapJson).writePatch(mapElement, map1);
+        assertThat(mapJson.toString().startsWith("[{\"op\":\"remove\",\"path\":\"/c\"}"), is(true));
+        assertThat(this.compare.compare(map1.get("b"), new Item(2, "b")), is(true));     //the original is not patched while writing
+        assertThat(this.compare.compare(this.patch.patch(map1, reader.read(new StringReader(mapJson.toString()), map1)), map2), is(true));
+
+        Map<Item, String> objectKeyed1 = new HashMap<Item, String>(Collections.singletonMap(new Item(1, "a"), "first"));
+        Map<Item, String> objectKeyed2 = new HashMap<Item, String>(Collections.singletonMap(new Item(1, "a"), "second"));
+        StringWriter objectKeyedJson = new StringWriter();
+        new JsonPatchWriter(objectKeyedJson).writePatch(this.diff.diff(objectKeyed1, objectKeyed2), objectKeyed1);
+        assertThat(objectKeyedJson.toString().contains("\"op\":\"add\"") && objectKeyedJson.toString().contains("\"value\":\"second\""), is(true));
+    }
+
+    @Test
+    public void importingJsonPatchOfObjectWithUninitializedContainersShouldProduceRevisedObject() throws IOException {
+        Shelf original = new Shelf("top", new ArrayList<Item>(Arrays.asList(new Item(1, "a"), new Item(2, "b"))),
+                new HashMap<String, Integer>(Collections.singletonMap("a", 1)), new int[]{1, 2});
+        Shelf revised = new Shelf("bottom", new ArrayList<Item>(Arrays.asList(new Item(2, "b"), new Item(3, "c"))),
+                new HashMap<String, Integer>(Collections.singletonMap("c", 3)), new int[]{2, 3, 4});
+
+        Element<Name, Shelf> diffElement = this.diff.diff(original, revised);
+        JsonPatchReader reader = new JsonPatchReader(this.diff);
+
+        StringWriter json = new StringWriter();
+        new JsonPatchWriter(json).writePatch(diffElement);
+        Element<Name, Shelf> imported = reader.read(new StringReader(json.toString()), original);
+        assertThat(this.compare.compare(this.patch.patch(original, imported), revised), is(true));
+
+        Shelf empty = new Shelf();
+        Element<Name, Shelf> filled = reader.read(new StringReader("[{\"op\":\"replace\",\"path\":\"/label\",\"value\":\"top\"}]"), empty);
+        assertThat(this.compare.compare(this.patch.patch(new Shelf(), filled), new Shelf("top", null, null, null)), is(true));
+
+        StringWriter mergeJson = new StringWriter();
+        new JsonPatchWriter(mergeJson).writeMergePatch(this.diff.diff(empty, original), original);
+        Element<Name, Shelf> mergeImported = reader.readMergePatch(new StringReader(mergeJson.toString()), empty);
+        assertThat(this.compare.compare(this.patch.patch(new Shelf(), mergeImported), original), is(true));
+    }
+
+    @Test
+    public void patchingObjectGraphsWithFingerprintKeyedDiffsShouldProduceObjectGraphs() throws IOException {
+        GrandChildEntity gce1 = new GrandChildEntity(1);
+        GrandChildEntity gce2 = new GrandChildEntity(2);
+        gce1.addParentInList(gce1);
+        gce1.addParentInList(gce2);
+        gce1.addParentInList(gce1);
+        gce2.addParentInSet(gce1);
+        gce2.setParentsList(gce1.getParentsList());
+
+        GrandChildEntity gce3 = new GrandChildEntity(1);
+        GrandChildEntity gce4 = new GrandChildEntity(2);
+        gce3.addParentInList(gce3);
+        gce3.addParentInList(gce4);
+        gce3.addParentInList(gce3);
+        gce4.addParentInSet(gce3);
+        gce4.setParentsList(gce3.getParentsList());
+
+        Diff diff = new Diff.Builder().fingerprintKeys(true).build();
+        assertThat(this.compare.compare(this.patch.patch(gce3, diff.diff(gce1, gce2)), gce2), is(true));
+
+        List<Item> list1 = new ArrayList<Item>(Arrays.asList(new Item(1, "a"), new Item(2, "b"), new Item(3, "c")));
+        List<Item> list2 = new ArrayList<Item>(Arrays.asList(new Item(3, "c"), new Item(1, "a"), new Item(4, "d")));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DiffWriter writer = new DiffWriter(bytes);
+        writer.write(diff.diff(list1, list2));
+        writer.close();
+
+        DiffReader reader = new DiffReader(new ByteArrayInputStream(bytes.toByteArray()), DiffReader.class.getClassLoader(), diff.getMetadataRegistry());
+        assertThat(this.compare.compare(this.patch.patch(new ArrayList<Item>(list1), reader), list2), is(true));
+    }
+}
@@ -0,0 +1,17 @@
+package me.vukas.common.entity.operation.model;
+
+public class DiscountedItem extends Item {
+    private int discount;
+
+    public DiscountedItem() {
+    }
+
+    public DiscountedItem(int id, String name, int discount) {
+        super(id, name);
+        this.discount = discount;
+    }
+
+    public void setDiscount(int discount) {
+        this.discount = discount;
+    }
+}
@@ -0,0 +1,31 @@
+package me.vukas.common.entity.operation.model;
+
+public class EntityNoHashCode {
+    private int id;
+    private EntityNoHashCode next;
+
+    public EntityNoHashCode() {
+    }
+
+    public EntityNoHashCode(int id) {
+        this.id = id;
+    }
+
+    public EntityNoHashCode getNext() {
+        return this.next;
+    }
+
+    public void setNext(EntityNoHashCode next) {
+        this.next = next;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        throw new UnsupportedOperationException("equals must not be called during diff");
+    }
+
+    @Override
+    public int hashCode() {
+        throw new UnsupportedOperationException("hashCode must not be called during diff");
+    }
+}
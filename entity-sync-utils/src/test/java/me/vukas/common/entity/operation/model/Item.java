@@ -0,0 +1,18 @@
+package me.vukas.common.entity.operation.model;
+
+public class Item {
+    private int id;
+    private String name;
+
+    public Item() {
+    }
+
+    public Item(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,25 @@
+package me.vukas.common.entity.operation.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class Labels {
+    private Map<String, String> labels = new HashMap<String, String>();
+    private Map<String, String> aliases = new HashMap<String, String>();
+
+    public Labels() {
+    }
+
+    public Labels(Map<String, String> labels, Map<String, String> aliases) {
+        this.labels = labels;
+        this.aliases = aliases;
+    }
+
+    public Map<String, String> getLabels() {
+        return this.labels;
+    }
+
+    public Map<String, String> getAliases() {
+        return this.aliases;
+    }
+}
@@ -0,0 +1,23 @@
+package me.vukas.common.entity.operation.model;
+
+public class Node {
+    private int id;
+    private String name;
+    private Node next;
+
+    public Node() {
+    }
+
+    public Node(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public Node getNext() {
+        return this.next;
+    }
+
+    public void setNext(Node next) {
+        this.next = next;
+    }
+}
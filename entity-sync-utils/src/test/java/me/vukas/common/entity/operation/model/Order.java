@@ -0,0 +1,25 @@
+package me.vukas.common.entity.operation.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Order {
+    private int id;
+    private String customer;
+    private List<Item> items = new ArrayList<Item>();
+    private int[] counts = new int[0];
+    private Map<String, String> tags = new HashMap<String, String>();
+
+    public Order() {
+    }
+
+    public Order(int id, String customer, List<Item> items, int[] counts, Map<String, String> tags) {
+        this.id = id;
+        this.customer = customer;
+        this.items = items;
+        this.counts = counts;
+        this.tags = tags;
+    }
+}
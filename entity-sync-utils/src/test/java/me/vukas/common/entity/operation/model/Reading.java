@@ -0,0 +1,35 @@
+package me.vukas.common.entity.operation.model;
+
+public class Reading {
+    private byte channel;
+    private short sensor;
+    private int id;
+    private long timestamp;
+    private float ratio;
+    private double value;
+    private char unit;
+    private boolean valid;
+    private Double calibration;
+    private String label;
+    private Reading previous;
+
+    public Reading() {
+    }
+
+    public Reading(int id, long timestamp, double value, boolean valid) {
+        this.channel = (byte) id;
+        this.sensor = (short) (id * 10);
+        this.id = id;
+        this.timestamp = timestamp;
+        this.ratio = (float) value / 2;
+        this.value = value;
+        this.unit = 'C';
+        this.valid = valid;
+        this.calibration = value / 10;
+        this.label = "reading" + id;
+    }
+
+    public void setPrevious(Reading previous) {
+        this.previous = previous;
+    }
+}
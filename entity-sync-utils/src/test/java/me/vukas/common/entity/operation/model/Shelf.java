@@ -0,0 +1,21 @@
+package me.vukas.common.entity.operation.model;
+
+import java.util.List;
+import java.util.Map;
+
+public class Shelf {
+    private String label;
+    private List<Item> items;
+    private Map<String, Integer> counts;
+    private int[] sizes;
+
+    public Shelf() {
+    }
+
+    public Shelf(String label, List<Item> items, Map<String, Integer> counts, int[] sizes) {
+        this.label = label;
+        this.items = items;
+        this.counts = counts;
+        this.sizes = sizes;
+    }
+}